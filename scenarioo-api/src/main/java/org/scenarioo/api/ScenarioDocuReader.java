@@ -23,51 +23,149 @@
 
 package org.scenarioo.api;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
+import org.apache.commons.io.IOUtils;
+import org.scenarioo.api.files.BuildArchiveReader;
+import org.scenarioo.api.files.EntityCache;
+import org.scenarioo.api.files.EntityCache.EntityLoader;
+import org.scenarioo.api.files.IndexedStepsFile;
 import org.scenarioo.api.files.ObjectFromDirectory;
+import org.scenarioo.api.files.ObjectResolver;
+import org.scenarioo.api.files.ObjectResolver.StoredObjectLoader;
 import org.scenarioo.api.files.ScenarioDocuFiles;
+import org.scenarioo.api.files.ScreenshotBlobStore;
+import org.scenarioo.api.files.StepIterator;
+import org.scenarioo.api.files.StepIterator.StepSource;
+import org.scenarioo.api.files.StepsPreAggregator;
+import org.scenarioo.api.files.storage.DocuStorage;
+import org.scenarioo.api.files.storage.FileSystemStorage;
+import org.scenarioo.api.util.codec.EntityCodecs;
+import org.scenarioo.api.util.concurrent.OrderedParallelLoader;
+import org.scenarioo.api.util.concurrent.OrderedParallelLoader.ItemLoader;
+import org.scenarioo.api.util.files.BinaryContent;
+import org.scenarioo.api.util.files.BinaryFileUtil;
+import org.scenarioo.api.util.files.FilesUtil;
 import org.scenarioo.api.util.xml.ScenarioDocuXMLFileUtil;
 import org.scenarioo.model.docu.derived.BuildLink;
+import org.scenarioo.model.docu.derived.ScenarioStepsAggregate;
 import org.scenarioo.model.docu.entities.Branch;
 import org.scenarioo.model.docu.entities.Build;
+import org.scenarioo.model.docu.entities.Page;
 import org.scenarioo.model.docu.entities.Scenario;
 import org.scenarioo.model.docu.entities.Step;
 import org.scenarioo.model.docu.entities.UseCase;
+import org.scenarioo.model.docu.entities.generic.ObjectDescription;
 
 /**
- * Gives access to the geenrated scenario docu files in the filesystem.
+ * Gives access to the geenrated scenario docu files in the filesystem, or in any other {@link DocuStorage}.
  */
 public class ScenarioDocuReader {
 	
+	/**
+	 * Elements of a step file that contain the HTML and visible text of the step.
+	 */
+	private static final String[] STEP_ELEMENTS_SKIPPED_WITHOUT_HTML = { "step/html", "step/metadata/visibleText" };
+	
 	private ScenarioDocuFiles docuFiles;
 	
+	private final DocuStorage storage;
+	
+	private boolean parallelUnmarshallingEnabled = false;
+	
+	private boolean binaryFileFormatEnabled = false;
+	
+	/**
+	 * Only set if loaded entities are cached.
+	 */
+	private EntityCache entityCache;
+	
 	public ScenarioDocuReader(final File rootDirectory) {
-		this.docuFiles = new ScenarioDocuFiles(rootDirectory);
+		this(rootDirectory, FileSystemStorage.INSTANCE);
+	}
+	
+	/**
+	 * @param storage
+	 *            storage to read the files from, e.g. an {@link org.scenarioo.api.files.storage.InMemoryStorage}
+	 *            written by a {@link ScenarioDocuWriter} with the same storage.
+	 */
+	public ScenarioDocuReader(final File rootDirectory, final DocuStorage storage) {
+		this.docuFiles = new ScenarioDocuFiles(rootDirectory, storage);
+		this.storage = storage;
+	}
+	
+	/**
+	 * Configure whether lists of branches, builds, use cases, scenarios and steps are unmarshalled in parallel on all
+	 * available processors, which is much faster for big lists (e.g. many steps of a scenario). The loaded lists keep
+	 * their order. Default is false.
+	 */
+	public void setParallelUnmarshallingEnabled(final boolean parallelUnmarshallingEnabled) {
+		this.parallelUnmarshallingEnabled = parallelUnmarshallingEnabled;
+	}
+	
+	/**
+	 * Configure whether files written in binary format (see
+	 * {@link org.scenarioo.api.configuration.ScenarioDocuGeneratorConfiguration#setBinaryFileFormatEnabled(boolean)})
+	 * are read. Only enable this for documentation written by trusted writers, because binary content is read by Java
+	 * deserialization (restricted to the entity classes, see {@link org.scenarioo.api.util.codec.BinaryEntityCodec}).
+	 * Default is false, files in binary format can not be read.
+	 */
+	public void setBinaryFileFormatEnabled(final boolean binaryFileFormatEnabled) {
+		this.binaryFileFormatEnabled = binaryFileFormatEnabled;
+	}
+	
+	/**
+	 * Set a cache for single branches, builds, use cases, scenarios and steps loaded by this reader, e.g. a cache
+	 * shared by the readers of all requests of a server. Each loaded entity is a copy, that may be modified. Lists of
+	 * entities are never cached. Default is null, to not cache any entities.
+	 * 
+	 * Cached entities are validated by the modification time of their files, therefore only entities read from the
+	 * file system are cached.
+	 */
+	public void setEntityCache(final EntityCache entityCache) {
+		this.entityCache = entityCache;
 	}
 	
 	public Branch loadBranch(final String branchName) {
-		File file = docuFiles.getBranchFile(branchName);
-		return ScenarioDocuXMLFileUtil.unmarshal(Branch.class, file);
+		final File file = docuFiles.getBranchFile(branchName);
+		return loadCached(FilesUtil.resolveCompressedFile(storage, file), file.getPath(), new EntityLoader<Branch>() {
+			@Override
+			public Branch load() {
+				return ScenarioDocuXMLFileUtil.unmarshal(storage, Branch.class, file, binaryFileFormatEnabled);
+			}
+		});
 	}
 	
 	public List<Branch> loadBranches() {
 		List<File> branchFiles = docuFiles.getBranchFiles();
-		return ScenarioDocuXMLFileUtil.unmarshalListOfFiles(Branch.class, branchFiles);
+		return ScenarioDocuXMLFileUtil.unmarshalListOfFiles(storage, Branch.class, branchFiles,
+				parallelUnmarshallingEnabled, binaryFileFormatEnabled);
 	}
 	
 	public Build loadBuild(final String branchName, final String buildName) {
-		File file = docuFiles.getBuildFile(branchName, buildName);
-		return ScenarioDocuXMLFileUtil.unmarshal(Build.class, file);
+		final File file = docuFiles.getBuildFile(branchName, buildName);
+		return loadCached(FilesUtil.resolveCompressedFile(storage, file), file.getPath(), new EntityLoader<Build>() {
+			@Override
+			public Build load() {
+				return ScenarioDocuXMLFileUtil.unmarshal(storage, Build.class, file, binaryFileFormatEnabled);
+			}
+		});
 	}
 	
 	public List<BuildLink> loadBuilds(final String branchName) {
 		List<File> buildFiles = docuFiles.getBuildFiles(branchName);
 		List<BuildLink> result = new ArrayList<BuildLink>();
-		for (ObjectFromDirectory<Build> build : ScenarioDocuXMLFileUtil.unmarshalListOfFilesWithDirNames(buildFiles,
-				Build.class)) {
+		for (ObjectFromDirectory<Build> build : ScenarioDocuXMLFileUtil.unmarshalListOfFilesWithDirNames(storage,
+				buildFiles, Build.class, parallelUnmarshallingEnabled, binaryFileFormatEnabled)) {
 			BuildLink link = new BuildLink(build.getObject(), build.getDirectoryName());
 			result.add(link);
 		}
@@ -76,43 +174,542 @@ public class ScenarioDocuReader {
 	
 	public List<UseCase> loadUsecases(final String branchName, final String buildName) {
 		List<File> files = docuFiles.getUseCaseFiles(branchName, buildName);
-		return ScenarioDocuXMLFileUtil.unmarshalListOfFiles(UseCase.class, files);
+		return unmarshalListOfFiles(branchName, buildName, UseCase.class, files);
 	}
 	
 	public UseCase loadUsecase(final String branchName, final String buildName, final String useCaseName) {
 		File file = docuFiles.getUseCaseFile(branchName, buildName, useCaseName);
-		return ScenarioDocuXMLFileUtil.unmarshal(UseCase.class, file);
+		return unmarshalCached(branchName, buildName, UseCase.class, file);
 	}
 	
 	public List<Scenario> loadScenarios(final String branchName, final String buildName, final String useCaseName) {
 		List<File> files = docuFiles.getScenarioFiles(branchName, buildName, useCaseName);
-		return ScenarioDocuXMLFileUtil.unmarshalListOfFiles(Scenario.class, files);
+		return unmarshalListOfFiles(branchName, buildName, Scenario.class, files);
 	}
 	
 	public Scenario loadScenario(final String branchName, final String buildName, final String useCaseName,
 			final String scenarioName) {
 		File file = docuFiles.getScenarioFile(branchName, buildName, useCaseName, scenarioName);
-		return ScenarioDocuXMLFileUtil.unmarshal(Scenario.class, file);
+		return unmarshalCached(branchName, buildName, Scenario.class, file);
 	}
 	
+	/**
+	 * Load all steps of the scenario, no matter whether saved one by one or together in one file.
+	 */
 	public List<Step> loadSteps(final String branchName, final String buildName, final String useCaseName,
 			final String scenarioName) {
-		List<File> files = docuFiles.getStepFiles(branchName, buildName, useCaseName, scenarioName);
-		return ScenarioDocuXMLFileUtil.unmarshalListOfFiles(Step.class, files);
+		List<Step> steps = loadStepsWithoutResolvingObjects(branchName, buildName, useCaseName, scenarioName);
+		ObjectResolver resolver = createObjectResolver(branchName, buildName);
+		for (Step step : steps) {
+			resolver.resolve(step);
+		}
+		return steps;
 	}
 	
+	/**
+	 * Iterate over the steps of the scenario by loading one step after the other, see
+	 * {@link #iterateSteps(String, String, String, String, int)}.
+	 */
+	public StepIterator iterateSteps(final String branchName, final String buildName, final String useCaseName,
+			final String scenarioName) {
+		return iterateSteps(branchName, buildName, useCaseName, scenarioName, 0);
+	}
+	
+	/**
+	 * Iterate over the steps of the scenario in the same order as {@link #loadSteps(String, String, String, String)},
+	 * but only load one step after the other, such that not all steps (with their HTML) have to be held in memory.
+	 * 
+	 * @param readAheadSteps
+	 *            number of steps loaded in advance in the background while the current step is processed, 0 to
+	 *            load each step only when it is requested.
+	 */
+	public StepIterator iterateSteps(final String branchName, final String buildName, final String useCaseName,
+			final String scenarioName, final int readAheadSteps) {
+		return openStepIterator(branchName, buildName, useCaseName, scenarioName, readAheadSteps);
+	}
+	
+	/**
+	 * Iterate over the steps like {@link #iterateSteps(String, String, String, String, int)}, but without their HTML
+	 * and visible text, these elements are skipped while parsing, which is much faster for steps with big HTML.
+	 */
+	public StepIterator iterateStepsWithoutHtml(final String branchName, final String buildName,
+			final String useCaseName, final String scenarioName, final int readAheadSteps) {
+		return openStepIterator(branchName, buildName, useCaseName, scenarioName, readAheadSteps,
+				STEP_ELEMENTS_SKIPPED_WITHOUT_HTML);
+	}
+	
+	private StepIterator openStepIterator(final String branchName, final String buildName, final String useCaseName,
+			final String scenarioName, final int readAheadSteps, final String... skippedElementPaths) {
+		final StepSource source = openStepSource(branchName, buildName, useCaseName, scenarioName,
+				skippedElementPaths);
+		final ObjectResolver resolver = createObjectResolver(branchName, buildName);
+		return new StepIterator(new StepSource() {
+			@Override
+			public boolean hasNextStep() {
+				return source.hasNextStep();
+			}
+			
+			@Override
+			public Step loadNextStep() throws IOException {
+				Step step = source.loadNextStep();
+				resolver.resolve(step);
+				return step;
+			}
+			
+			@Override
+			public void close() throws IOException {
+				source.close();
+			}
+		}, readAheadSteps);
+	}
+	
+	/**
+	 * Load the pre-aggregated steps of the scenario (see {@link ScenarioStepsAggregate}), these contain all data of the
+	 * steps except their HTML and are much faster to load than all steps.
+	 * 
+	 * The aggregate is validated against the hashes of the saved step documents, reading the bytes of the steps is
+	 * still much faster than parsing them.
+	 * 
+	 * @return null if the steps have not been pre-aggregated or if the aggregate does not match the saved steps, the
+	 *         steps have to be loaded by {@link #loadSteps(String, String, String, String)} in this case.
+	 */
+	public ScenarioStepsAggregate loadScenarioStepsAggregate(final String branchName, final String buildName,
+			final String useCaseName, final String scenarioName) {
+		File file = docuFiles.getScenarioStepsAggregateFile(branchName, buildName, useCaseName, scenarioName);
+		if (!exists(branchName, buildName, file)) {
+			return null;
+		}
+		ScenarioStepsAggregate aggregate = unmarshal(branchName, buildName, ScenarioStepsAggregate.class, file);
+		if (!StepsPreAggregator.isValid(aggregate)
+				|| !calculateStepsChecksum(branchName, buildName, useCaseName, scenarioName).equals(
+						aggregate.getStepsChecksum())) {
+			return null;
+		}
+		return aggregate;
+	}
+	
+	/**
+	 * Load one step of the scenario, in case all steps are saved together in one file, only this step is read.
+	 */
 	public Step loadStep(final String branchName, final String buildName, final String useCaseName,
 			final String scenarioName, final int stepIndex) {
+		return loadStepCached(branchName, buildName, useCaseName, scenarioName, stepIndex);
+	}
+	
+	/**
+	 * Load one step like {@link #loadStep(String, String, String, String, int)}, but without its HTML and visible
+	 * text, for usages that only need the description, page and details of the step.
+	 */
+	public Step loadStepWithoutHtml(final String branchName, final String buildName, final String useCaseName,
+			final String scenarioName, final int stepIndex) {
+		return loadStepCached(branchName, buildName, useCaseName, scenarioName, stepIndex,
+				STEP_ELEMENTS_SKIPPED_WITHOUT_HTML);
+	}
+	
+	/**
+	 * Cached steps are cached with resolved objects, the cached step is only validated by the file containing the
+	 * step, because stored pages and objects of a build are never changed.
+	 */
+	private Step loadStepCached(final String branchName, final String buildName, final String useCaseName,
+			final String scenarioName, final int stepIndex, final String... skippedElementPaths) {
+		File stepFile = docuFiles.getStepFile(branchName, buildName, useCaseName, scenarioName, stepIndex);
+		File stepsFile = docuFiles.getIndexedStepsFile(branchName, buildName, useCaseName, scenarioName);
+		File sourceFile;
+		if (docuFiles.isBuildArchived(branchName, buildName)) {
+			sourceFile = docuFiles.getBuildArchiveFile(branchName, buildName);
+		} else if (storage.exists(stepsFile)) {
+			sourceFile = stepsFile;
+		} else {
+			sourceFile = FilesUtil.resolveCompressedFile(storage, stepFile);
+		}
+		String key = stepFile.getPath() + (skippedElementPaths.length > 0 ? "#withoutHtml" : "");
+		return loadCached(sourceFile, key, new EntityLoader<Step>() {
+			@Override
+			public Step load() {
+				Step step = loadStepWithoutResolvingObjects(branchName, buildName, useCaseName, scenarioName,
+						stepIndex, skippedElementPaths);
+				createObjectResolver(branchName, buildName).resolve(step);
+				return step;
+			}
+		});
+	}
+	
+	private List<Step> loadStepsWithoutResolvingObjects(final String branchName, final String buildName,
+			final String useCaseName, final String scenarioName) {
+		File stepsFile = docuFiles.getIndexedStepsFile(branchName, buildName, useCaseName, scenarioName);
+		BuildArchiveReader archive = docuFiles.getBuildArchive(branchName, buildName);
+		if (archive != null) {
+			InputStream inStream = null;
+			try {
+				if (!archive.exists(stepsFile)) {
+					List<File> files = archive.getListOfFiles(docuFiles.getStepsDirectory(branchName, buildName,
+							useCaseName, scenarioName));
+					return unmarshalListOfFiles(archive, Step.class, files);
+				}
+				inStream = archive.open(stepsFile);
+				return IndexedStepsFile.readSteps(inStream, binaryFileFormatEnabled);
+			} catch (IOException e) {
+				throw new RuntimeException("Could not read steps from build archive: " + stepsFile.getAbsolutePath(),
+						e);
+			} finally {
+				IOUtils.closeQuietly(inStream);
+				archive.release();
+			}
+		} else if (storage.exists(stepsFile)) {
+			InputStream inStream = null;
+			try {
+				inStream = new BufferedInputStream(storage.openForReading(stepsFile));
+				return IndexedStepsFile.readSteps(inStream, binaryFileFormatEnabled);
+			} catch (IOException e) {
+				throw new RuntimeException("Could not read steps: " + stepsFile.getAbsolutePath(), e);
+			} finally {
+				IOUtils.closeQuietly(inStream);
+			}
+		}
+		List<File> files = docuFiles.getStepFiles(branchName, buildName, useCaseName, scenarioName);
+		return unmarshalListOfFiles(branchName, buildName, Step.class, files);
+	}
+	
+	private StepSource openStepSource(final String branchName, final String buildName, final String useCaseName,
+			final String scenarioName, final String... skippedElementPaths) {
+		File stepsFile = docuFiles.getIndexedStepsFile(branchName, buildName, useCaseName, scenarioName);
+		BuildArchiveReader archive = docuFiles.getBuildArchive(branchName, buildName);
+		InputStream inStream = null;
+		try {
+			if (archive != null && archive.exists(stepsFile)) {
+				// the opened stream keeps the archive open until the step source is closed
+				inStream = archive.open(stepsFile);
+				return IndexedStepsFile.openStepsReader(inStream, binaryFileFormatEnabled, skippedElementPaths);
+			} else if (archive == null && storage.exists(stepsFile)) {
+				inStream = new BufferedInputStream(storage.openForReading(stepsFile));
+				return IndexedStepsFile.openStepsReader(inStream, binaryFileFormatEnabled, skippedElementPaths);
+			}
+		} catch (IOException e) {
+			IOUtils.closeQuietly(inStream);
+			throw new RuntimeException("Could not read steps: " + stepsFile.getAbsolutePath(), e);
+		} finally {
+			release(archive);
+		}
+		final Iterator<File> files = docuFiles.getStepFiles(branchName, buildName, useCaseName, scenarioName)
+				.iterator();
+		return new StepSource() {
+			@Override
+			public boolean hasNextStep() {
+				return files.hasNext();
+			}
+			
+			@Override
+			public Step loadNextStep() {
+				return unmarshal(branchName, buildName, Step.class, files.next(), skippedElementPaths);
+			}
+			
+			@Override
+			public void close() {
+				// nothing to close, each step file is closed when read
+			}
+		};
+	}
+	
+	/**
+	 * See {@link StepsPreAggregator#calculateStepsChecksum(java.util.Collection)}.
+	 */
+	private String calculateStepsChecksum(final String branchName, final String buildName, final String useCaseName,
+			final String scenarioName) {
+		File stepsFile = docuFiles.getIndexedStepsFile(branchName, buildName, useCaseName, scenarioName);
+		BuildArchiveReader archive = docuFiles.getBuildArchive(branchName, buildName);
+		InputStream inStream = null;
+		try {
+			if (archive != null && archive.exists(stepsFile)) {
+				inStream = archive.open(stepsFile);
+				return StepsPreAggregator.calculateStepsChecksum(IndexedStepsFile.readStepDocumentHashes(inStream)
+						.values());
+			} else if (archive == null && storage.exists(stepsFile)) {
+				inStream = new BufferedInputStream(storage.openForReading(stepsFile));
+				return StepsPreAggregator.calculateStepsChecksum(IndexedStepsFile.readStepDocumentHashes(inStream)
+						.values());
+			}
+			List<String> hashes = new ArrayList<String>();
+			for (File file : docuFiles.getStepFiles(branchName, buildName, useCaseName, scenarioName)) {
+				inStream = archive != null ? archive.open(file) : storage.openForReading(file);
+				if (FilesUtil.isCompressedFile(file)) {
+					inStream = new GZIPInputStream(inStream);
+				}
+				// the stream is closed when the content has been hashed
+				hashes.add(BinaryFileUtil.hash(BinaryContent.fromStream(inStream)));
+			}
+			return StepsPreAggregator.calculateStepsChecksum(hashes);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not read steps of scenario: " + useCaseName + "/" + scenarioName, e);
+		} finally {
+			IOUtils.closeQuietly(inStream);
+			release(archive);
+		}
+	}
+	
+	private Step loadStepWithoutResolvingObjects(final String branchName, final String buildName,
+			final String useCaseName, final String scenarioName, final int stepIndex,
+			final String... skippedElementPaths) {
+		File stepsFile = docuFiles.getIndexedStepsFile(branchName, buildName, useCaseName, scenarioName);
+		BuildArchiveReader archive = docuFiles.getBuildArchive(branchName, buildName);
+		if (archive != null) {
+			InputStream inStream = null;
+			try {
+				if (!archive.exists(stepsFile)) {
+					File file = docuFiles.getStepFile(branchName, buildName, useCaseName, scenarioName, stepIndex);
+					return unmarshal(archive, Step.class, file, skippedElementPaths);
+				}
+				inStream = archive.open(stepsFile);
+				return IndexedStepsFile.readStep(inStream, stepIndex, stepsFile.getAbsolutePath(),
+						binaryFileFormatEnabled, skippedElementPaths);
+			} catch (IOException e) {
+				throw new RuntimeException("Could not read step " + stepIndex + " from build archive: "
+						+ stepsFile.getAbsolutePath(), e);
+			} finally {
+				IOUtils.closeQuietly(inStream);
+				archive.release();
+			}
+		} else if (storage.exists(stepsFile)) {
+			return readStep(stepsFile, stepIndex, skippedElementPaths);
+		}
 		File file = docuFiles.getStepFile(branchName, buildName, useCaseName, scenarioName, stepIndex);
-		return ScenarioDocuXMLFileUtil.unmarshal(Step.class, file);
+		return unmarshal(branchName, buildName, Step.class, file, skippedElementPaths);
+	}
+	
+	/**
+	 * Read the step directly from the file in the file system, only the step is read instead of all steps before.
+	 */
+	private Step readStep(final File stepsFile, final int stepIndex, final String... skippedElementPaths) {
+		InputStream inStream = null;
+		try {
+			if (docuFiles.isFileSystemStorage()) {
+				return IndexedStepsFile.readStep(stepsFile, stepIndex, binaryFileFormatEnabled, skippedElementPaths);
+			}
+			inStream = storage.openForReading(stepsFile);
+			return IndexedStepsFile.readStep(inStream, stepIndex, stepsFile.getAbsolutePath(), binaryFileFormatEnabled,
+					skippedElementPaths);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not read step " + stepIndex + ": " + stepsFile.getAbsolutePath(), e);
+		} finally {
+			IOUtils.closeQuietly(inStream);
+		}
+	}
+	
+	/**
+	 * @return false as long as the build is still being written and should therefore not yet be imported.
+	 */
+	public boolean isBuildComplete(final String branchName, final String buildName) {
+		return docuFiles.isBuildComplete(branchName, buildName);
+	}
+	
+	/**
+	 * @return time in milliseconds when writing of the build has been started, or 0 if the build is not being written.
+	 */
+	public long getBuildWritingStartTime(final String branchName, final String buildName) {
+		return docuFiles.getBuildWritingStartTime(branchName, buildName);
 	}
 	
 	/**
 	 * Screenshot files are simply provided by path, the REST service will take care of streaming it.
+	 * 
+	 * In case the screenshot has been saved with screenshot deduplication, this is the stored blob file. In case the
+	 * build has been written as archive, the returned file does not exist, use
+	 * {@link #openScreenshot(String, String, String, String, String)} instead.
 	 */
 	public File getScreenshotFile(final String branchName, final String buildName, final String useCaseName,
 			final String scenarioName, final String imageName) {
-		return new File(docuFiles.getScreenshotsDirectory(branchName, buildName, useCaseName, scenarioName),
-				imageName);
+		File screenshotFile = new File(docuFiles.getScreenshotsDirectory(branchName, buildName, useCaseName,
+				scenarioName), imageName);
+		ScreenshotBlobStore blobStore = new ScreenshotBlobStore(docuFiles.getScreenshotBlobsDirectory(branchName,
+				buildName));
+		return blobStore.resolveScreenshotFile(screenshotFile);
+	}
+	
+	/**
+	 * Open the screenshot for reading, no matter whether it is stored as file, as blob or inside a build archive. The
+	 * caller is responsible to close the stream.
+	 * 
+	 * @return null if there is no such screenshot.
+	 */
+	public InputStream openScreenshot(final String branchName, final String buildName, final String useCaseName,
+			final String scenarioName, final String imageName) {
+		if (!docuFiles.isFileSystemStorage()) {
+			return openScreenshotFromStorage(new File(docuFiles.getScreenshotsDirectory(branchName, buildName,
+					useCaseName, scenarioName), imageName));
+		}
+		BuildArchiveReader archive = docuFiles.getBuildArchive(branchName, buildName);
+		if (archive == null) {
+			File screenshotFile = getScreenshotFile(branchName, buildName, useCaseName, scenarioName, imageName);
+			try {
+				return screenshotFile.exists() ? new FileInputStream(screenshotFile) : null;
+			} catch (FileNotFoundException e) {
+				throw new RuntimeException("Could not read screenshot: " + screenshotFile.getAbsolutePath(), e);
+			}
+		}
+		try {
+			File screenshotFile = new File(docuFiles.getScreenshotsDirectory(branchName, buildName, useCaseName,
+					scenarioName), imageName);
+			if (!archive.exists(screenshotFile)) {
+				File referenceFile = ScreenshotBlobStore.getReferenceFile(screenshotFile);
+				if (!archive.exists(referenceFile)) {
+					return null;
+				}
+				ScreenshotBlobStore blobStore = new ScreenshotBlobStore(docuFiles.getScreenshotBlobsDirectory(
+						branchName, buildName));
+				try {
+					screenshotFile = blobStore.getBlobFile(ScreenshotBlobStore.readReference(archive
+							.open(referenceFile)));
+				} catch (IOException e) {
+					throw new RuntimeException("Could not read screenshot reference: "
+							+ referenceFile.getAbsolutePath(), e);
+				}
+			}
+			// the opened stream keeps the archive open until it is closed by the caller
+			return archive.open(screenshotFile);
+		} finally {
+			archive.release();
+		}
+	}
+	
+	/**
+	 * Screenshots are neither deduplicated nor archived in other storages than the file system.
+	 */
+	private InputStream openScreenshotFromStorage(final File screenshotFile) {
+		if (!storage.exists(screenshotFile)) {
+			return null;
+		}
+		try {
+			return storage.openForReading(screenshotFile);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not read screenshot: " + screenshotFile.getAbsolutePath(), e);
+		}
+	}
+	
+	/**
+	 * Resolver for pages and objects that are stored only once per build, in case the build has been written with
+	 * object normalization.
+	 */
+	private ObjectResolver createObjectResolver(final String branchName, final String buildName) {
+		return new ObjectResolver(new StoredObjectLoader() {
+			@Override
+			public Page loadPage(final String name) {
+				return unmarshal(branchName, buildName, Page.class, docuFiles.getPageFile(branchName, buildName, name));
+			}
+			
+			@Override
+			public ObjectDescription loadObject(final String type, final String name) {
+				return unmarshal(branchName, buildName, ObjectDescription.class, docuFiles.getObjectFile(branchName,
+						buildName, type, name));
+			}
+		});
 	}
+	
+	/**
+	 * Load the entity through the entity cache, if a cache is set.
+	 * 
+	 * @param sourceFile
+	 *            file the entity is actually read from, to validate a cached entity.
+	 */
+	private <T> T loadCached(final File sourceFile, final String key, final EntityLoader<T> loader) {
+		if (entityCache == null || !docuFiles.isFileSystemStorage()) {
+			return loader.load();
+		}
+		return entityCache.get(sourceFile, key, loader);
+	}
+	
+	private <T> T unmarshalCached(final String branchName, final String buildName, final Class<T> targetClass,
+			final File file) {
+		File sourceFile;
+		if (docuFiles.isBuildArchived(branchName, buildName)) {
+			sourceFile = docuFiles.getBuildArchiveFile(branchName, buildName);
+		} else {
+			sourceFile = FilesUtil.resolveCompressedFile(storage, file);
+		}
+		return loadCached(sourceFile, file.getPath(), new EntityLoader<T>() {
+			@Override
+			public T load() {
+				return unmarshal(branchName, buildName, targetClass, file);
+			}
+		});
+	}
+	
+	private <T> T unmarshal(final String branchName, final String buildName, final Class<T> targetClass,
+			final File file, final String... skippedElementPaths) {
+		BuildArchiveReader archive = docuFiles.getBuildArchive(branchName, buildName);
+		if (archive == null) {
+			return ScenarioDocuXMLFileUtil.unmarshalSkippingElements(storage, targetClass, file, binaryFileFormatEnabled,
+					skippedElementPaths);
+		}
+		try {
+			return unmarshal(archive, targetClass, file, skippedElementPaths);
+		} finally {
+			archive.release();
+		}
+	}
+	
+	private static void release(final BuildArchiveReader archive) {
+		if (archive != null) {
+			archive.release();
+		}
+	}
+	
+	/**
+	 * @return true if the file exists, inside the build archive if the build has been written as archive.
+	 */
+	private boolean exists(final String branchName, final String buildName, final File file) {
+		BuildArchiveReader archive = docuFiles.getBuildArchive(branchName, buildName);
+		if (archive == null) {
+			return storage.exists(FilesUtil.resolveCompressedFile(storage, file));
+		}
+		try {
+			return archive.exists(file);
+		} finally {
+			archive.release();
+		}
+	}
+	
+	/**
+	 * Read from build archive, if the build has been written as archive.
+	 */
+	private <T> List<T> unmarshalListOfFiles(final String branchName, final String buildName,
+			final Class<T> targetClass, final List<File> files) {
+		BuildArchiveReader archive = docuFiles.getBuildArchive(branchName, buildName);
+		if (archive == null) {
+			return ScenarioDocuXMLFileUtil.unmarshalListOfFiles(storage, targetClass, files,
+					parallelUnmarshallingEnabled, binaryFileFormatEnabled);
+		}
+		try {
+			return unmarshalListOfFiles(archive, targetClass, files);
+		} finally {
+			archive.release();
+		}
+	}
+	
+	private <T> List<T> unmarshalListOfFiles(final BuildArchiveReader archive, final Class<T> targetClass,
+			final List<File> files) {
+		ItemLoader<File, T> loader = new ItemLoader<File, T>() {
+			@Override
+			public T load(final File file) {
+				return unmarshal(archive, targetClass, file);
+			}
+		};
+		if (parallelUnmarshallingEnabled) {
+			return OrderedParallelLoader.loadAll(files, loader);
+		}
+		List<T> result = new ArrayList<T>();
+		for (File file : files) {
+			result.add(loader.load(file));
+		}
+		return result;
+	}
+	
+	private <T> T unmarshal(final BuildArchiveReader archive, final Class<T> targetClass, final File file,
+			final String... skippedElementPaths) {
+		InputStream inStream = archive.open(file);
+		try {
+			return EntityCodecs.decode(targetClass, inStream, binaryFileFormatEnabled, skippedElementPaths);
+		} finally {
+			IOUtils.closeQuietly(inStream);
+		}
+	}
+	
 }
@@ -23,45 +23,172 @@
 
 package org.scenarioo.api;
 
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
-import org.apache.commons.codec.binary.Base64;
+import org.apache.log4j.Logger;
 import org.scenarioo.api.configuration.ScenarioDocuGeneratorConfiguration;
 import org.scenarioo.api.exception.ScenarioDocuSaveException;
 import org.scenarioo.api.exception.ScenarioDocuTimeoutException;
+import org.scenarioo.api.files.BuildArchiveWriter;
+import org.scenarioo.api.files.BuildCompletionMarker;
+import org.scenarioo.api.files.BuildPushWriter;
+import org.scenarioo.api.files.IndexedStepsFile;
+import org.scenarioo.api.files.ObjectNormalizer;
+import org.scenarioo.api.files.ObjectNormalizer.StoredObjectWriter;
 import org.scenarioo.api.files.ScenarioDocuFiles;
+import org.scenarioo.api.files.ScreenshotBlobStore;
+import org.scenarioo.api.files.StepsPreAggregator;
+import org.scenarioo.api.files.storage.DocuStorage;
+import org.scenarioo.api.files.storage.FileSystemStorage;
+import org.scenarioo.api.files.StepsPreAggregator.ScenarioStepsAggregateWriter;
+import org.scenarioo.api.metrics.ScenarioDocuWriterMetrics;
+import org.scenarioo.api.metrics.WriteType;
+import org.scenarioo.api.util.codec.EntityCodec;
+import org.scenarioo.api.util.codec.EntityCodecs;
+import org.scenarioo.api.util.concurrent.ByteBudget;
+import org.scenarioo.api.util.concurrent.KeyOrderedExecutor;
+import org.scenarioo.api.util.concurrent.PendingTasks;
+import org.scenarioo.api.util.files.BinaryContent;
+import org.scenarioo.api.util.files.BinaryFileUtil;
 import org.scenarioo.api.util.xml.ScenarioDocuXMLFileUtil;
+import org.scenarioo.model.docu.derived.ScenarioStepsAggregate;
 import org.scenarioo.model.docu.entities.Branch;
 import org.scenarioo.model.docu.entities.Build;
+import org.scenarioo.model.docu.entities.Page;
 import org.scenarioo.model.docu.entities.Scenario;
 import org.scenarioo.model.docu.entities.Step;
+import org.scenarioo.model.docu.entities.StepHtml;
+import org.scenarioo.model.docu.entities.StepMetadata;
 import org.scenarioo.model.docu.entities.UseCase;
+import org.scenarioo.model.docu.entities.generic.ObjectDescription;
 
 /**
  * Generator to produce documentation files for a specific build.
  * 
  * The writer performs all save operations as asynchronous writes, to not block the webtests tht are typically calling
  * the save operations to save docu content.
+ * 
+ * All files of one scenario are written in the order they have been saved. Files of different scenarios can be written
+ * in parallel, see {@link ScenarioDocuGeneratorConfiguration#setAsyncWriteThreads(int)}.
+ * 
+ * The memory retained by files waiting to be written is limited, see
+ * {@link ScenarioDocuGeneratorConfiguration#setAsyncWriteBufferSizeInBytes(long)}.
+ * 
+ * By default each writer has its own threads, many writers can also share the same threads, see
+ * {@link ScenarioDocuGeneratorConfiguration#setSharedAsyncWriteServiceEnabled(boolean)}.
+ * 
+ * The build is marked as being written until all writers of the build have been flushed, see
+ * {@link BuildCompletionMarker}.
+ * 
+ * The files can also be written into another {@link DocuStorage} than the file system, in this case build archives,
+ * screenshot deduplication, pushing to a server and build completion markers are not supported and not applied.
  */
 public class ScenarioDocuWriter {
 	
+	private static final Logger LOGGER = Logger.getLogger(ScenarioDocuWriter.class);
+	
+	/**
+	 * Rough estimate of the bytes retained by an entity waiting to be written, without its text contents.
+	 */
+	private static final long ESTIMATED_ENTITY_SIZE_IN_BYTES = 1024;
+	
 	private ScenarioDocuFiles docuFiles;
 	
 	private String branchName;
 	
 	private String buildName;
 	
-	private ExecutorService asyncWriteExecutor = newAsyncWriteExecutor();
+	/**
+	 * Shared by all writers using the shared async write service, see
+	 * {@link ScenarioDocuGeneratorConfiguration#setSharedAsyncWriteServiceEnabled(boolean)}.
+	 */
+	private static KeyOrderedExecutor sharedAsyncWriteExecutor;
+	
+	private static ByteBudget sharedAsyncWriteBudget;
+	
+	private final boolean sharedAsyncWriteService = ScenarioDocuGeneratorConfiguration.INSTANCE
+			.isSharedAsyncWriteServiceEnabled();
+	
+	private KeyOrderedExecutor asyncWriteExecutor = sharedAsyncWriteService ? getSharedAsyncWriteExecutor()
+			: newAsyncWriteExecutor();
+	
+	private ByteBudget asyncWriteBudget = sharedAsyncWriteService ? getSharedAsyncWriteBudget()
+			: newAsyncWriteBudget();
+	
+	/**
+	 * Writes of this writer that have not yet finished, needed to wait for them in case the executor is shared.
+	 */
+	private PendingTasks pendingAsyncWrites = new PendingTasks();
+	
+	private volatile boolean flushed = false;
+	
+	private final ScenarioDocuWriterMetrics metrics = new ScenarioDocuWriterMetrics();
+	
+	/**
+	 * Set on timeout when the executor is shared, to skip all remaining writes of this writer.
+	 */
+	private volatile boolean asyncWritesCancelled = false;
+	
+	private final boolean formattedXmlOutput = ScenarioDocuGeneratorConfiguration.INSTANCE.isFormattedXmlOutput();
+	
+	private final boolean compressedXmlOutput = ScenarioDocuGeneratorConfiguration.INSTANCE.isCompressedXmlOutput();
+	
+	private final boolean syncedFileWrites = ScenarioDocuGeneratorConfiguration.INSTANCE.isSyncedFileWritesEnabled();
+	
+	private final EntityCodec entityCodec = EntityCodecs.getCodec(
+			ScenarioDocuGeneratorConfiguration.INSTANCE.isBinaryFileFormatEnabled(), formattedXmlOutput);
+	
+	/**
+	 * Only set if screenshot deduplication is enabled.
+	 */
+	private ScreenshotBlobStore screenshotBlobStore;
+	
+	/**
+	 * Only set if object normalization is enabled.
+	 */
+	private ObjectNormalizer objectNormalizer;
+	
+	/**
+	 * Only set if the build is written as archive.
+	 */
+	private BuildArchiveWriter buildArchive;
+	
+	/**
+	 * Only set if the build is pushed to a server instead of writing it into the destination directory.
+	 */
+	private BuildPushWriter buildPush;
+	
+	/**
+	 * Only set if steps are pre-aggregated.
+	 */
+	private StepsPreAggregator stepsPreAggregator;
+	
+	/**
+	 * Directories already known to exist, such that they are not checked again for each file.
+	 */
+	private final Set<File> existingDirectories = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+	
+	private List<RuntimeException> caughtExceptions = Collections.synchronizedList(new ArrayList<RuntimeException>());
 	
-	private List<RuntimeException> caughtExceptions = new ArrayList<RuntimeException>();
+	private boolean writingFinished = false;
 	
 	/**
 	 * Initialize with directory inside which to generate the documentation contents.
@@ -74,10 +201,63 @@ public class ScenarioDocuWriter {
 	 *            name of the build (concrete identifier like revision and date) for which we are generating content.
 	 */
 	public ScenarioDocuWriter(final File destinationRootDirectory, final String branchName, final String buildName) {
-		docuFiles = new ScenarioDocuFiles(destinationRootDirectory);
+		this(destinationRootDirectory, FileSystemStorage.INSTANCE, branchName, buildName);
+	}
+	
+	/**
+	 * Initialize with directory inside which to generate the documentation contents in the given storage.
+	 * 
+	 * @param storage
+	 *            storage to write all files into, e.g. an {@link org.scenarioo.api.files.storage.InMemoryStorage} for
+	 *            tests. The destination directory must already exist in this storage.
+	 */
+	public ScenarioDocuWriter(final File destinationRootDirectory, final DocuStorage storage, final String branchName,
+			final String buildName) {
+		docuFiles = new ScenarioDocuFiles(destinationRootDirectory, storage);
 		this.branchName = branchName;
 		this.buildName = buildName;
-		createBuildDirectoryIfNotYetExists();
+		boolean fileSystemStorage = docuFiles.isFileSystemStorage();
+		String pushServerUrl = ScenarioDocuGeneratorConfiguration.INSTANCE.getPushServerUrl();
+		if (pushServerUrl != null && fileSystemStorage) {
+			buildPush = new BuildPushWriter(pushServerUrl, ScenarioDocuGeneratorConfiguration.INSTANCE
+					.getPushServerToken(), docuFiles.getBranchDirectory(branchName), branchName, buildName,
+					BuildPushWriter.DEFAULT_BATCH_SIZE_IN_BYTES);
+		} else {
+			createBuildDirectoryIfNotYetExists();
+			if (fileSystemStorage) {
+				BuildCompletionMarker.startWriting(getBuildDirectory());
+			}
+		}
+		if (ScenarioDocuGeneratorConfiguration.INSTANCE.isScreenshotDeduplicationEnabled() && fileSystemStorage) {
+			File blobsDirectory = docuFiles.getScreenshotBlobsDirectory(branchName, buildName);
+			createDirectoryIfNotYetExists(blobsDirectory);
+			screenshotBlobStore = new ScreenshotBlobStore(blobsDirectory, syncedFileWrites);
+		}
+		if (ScenarioDocuGeneratorConfiguration.INSTANCE.isBuildArchiveEnabled() && buildPush == null
+				&& fileSystemStorage) {
+			buildArchive = new BuildArchiveWriter(getBuildDirectory(), docuFiles.getBuildArchiveFile(branchName,
+					buildName), syncedFileWrites);
+		}
+		if (ScenarioDocuGeneratorConfiguration.INSTANCE.isStepsPreAggregationEnabled()) {
+			stepsPreAggregator = new StepsPreAggregator();
+		}
+		if (ScenarioDocuGeneratorConfiguration.INSTANCE.isObjectNormalizationEnabled()) {
+			objectNormalizer = new ObjectNormalizer(new StoredObjectWriter() {
+				@Override
+				public void writePage(final Page page) {
+					createDirectoryIfNotYetExists(docuFiles.getPagesDirectory(branchName, buildName));
+					writeXmlFile(WriteType.OBJECT, page, docuFiles.getPageFile(branchName, buildName, page.getName()));
+				}
+				
+				@Override
+				public void writeObject(final ObjectDescription object) {
+					createDirectoryIfNotYetExists(docuFiles.getObjectsDirectory(branchName, buildName,
+							object.getType()));
+					writeXmlFile(WriteType.OBJECT, object, docuFiles.getObjectFile(branchName, buildName,
+							object.getType(), object.getName()));
+				}
+			});
+		}
 	}
 	
 	/**
@@ -87,11 +267,10 @@ public class ScenarioDocuWriter {
 	 *            the branch description to write.
 	 */
 	public void saveBranchDescription(final Branch branch) {
-		executeAsyncWrite(new Runnable() {
+		executeAsyncWrite(WriteType.BRANCH, branchName, ESTIMATED_ENTITY_SIZE_IN_BYTES, new Runnable() {
 			@Override
 			public void run() {
-				File destBranchFile = docuFiles.getBranchFile(branchName);
-				ScenarioDocuXMLFileUtil.marshal(branch, destBranchFile);
+				writeDescriptionFile(WriteType.BRANCH, branch, docuFiles.getBranchFile(branchName));
 			}
 		});
 	}
@@ -103,11 +282,10 @@ public class ScenarioDocuWriter {
 	 *            the build description to write
 	 */
 	public void saveBuildDescription(final Build build) {
-		executeAsyncWrite(new Runnable() {
+		executeAsyncWrite(WriteType.BUILD, buildName, ESTIMATED_ENTITY_SIZE_IN_BYTES, new Runnable() {
 			@Override
 			public void run() {
-				File destBuildFile = docuFiles.getBuildFile(branchName, buildName);
-				ScenarioDocuXMLFileUtil.marshal(build, destBuildFile);
+				writeDescriptionFile(WriteType.BUILD, build, docuFiles.getBuildFile(branchName, buildName));
 			}
 		});
 	}
@@ -119,13 +297,13 @@ public class ScenarioDocuWriter {
 	 *            the use case description to write
 	 */
 	public void saveUseCase(final UseCase useCase) {
-		executeAsyncWrite(new Runnable() {
+		executeAsyncWrite(WriteType.USE_CASE, useCase.getName(), ESTIMATED_ENTITY_SIZE_IN_BYTES, new Runnable() {
 			@Override
 			public void run() {
 				File destCaseDir = getUseCaseDirectory(useCase.getName());
 				createDirectoryIfNotYetExists(destCaseDir);
 				File destCaseFile = docuFiles.getUseCaseFile(branchName, buildName, useCase.getName());
-				ScenarioDocuXMLFileUtil.marshal(useCase, destCaseFile);
+				writeXmlFile(WriteType.USE_CASE, useCase, destCaseFile);
 			}
 		});
 	}
@@ -135,14 +313,15 @@ public class ScenarioDocuWriter {
 	}
 	
 	public void saveScenario(final String useCaseName, final Scenario scenario) {
-		executeAsyncWrite(new Runnable() {
+		String writeKey = getScenarioWriteKey(useCaseName, scenario.getName());
+		executeAsyncWrite(WriteType.SCENARIO, writeKey, ESTIMATED_ENTITY_SIZE_IN_BYTES, new Runnable() {
 			@Override
 			public void run() {
 				File destScenarioDir = getScenarioDirectory(useCaseName, scenario.getName());
 				createDirectoryIfNotYetExists(destScenarioDir);
 				File destScenarioFile = docuFiles.getScenarioFile(branchName, buildName, useCaseName,
 						scenario.getName());
-				ScenarioDocuXMLFileUtil.marshal(scenario, destScenarioFile);
+				writeXmlFile(WriteType.SCENARIO, scenario, destScenarioFile);
 			}
 		});
 	}
@@ -152,16 +331,81 @@ public class ScenarioDocuWriter {
 	}
 	
 	public void saveStep(final String useCaseName, final String scenarioName, final Step step) {
-		executeAsyncWrite(new Runnable() {
+		String writeKey = getScenarioWriteKey(useCaseName, scenarioName);
+		executeAsyncWrite(WriteType.STEP, writeKey, estimateRetainedBytes(step), new Runnable() {
 			@Override
 			public void run() {
 				File destStepsDir = getScenarioStepsDirectory(useCaseName, scenarioName);
 				createDirectoryIfNotYetExists(destStepsDir);
-				File destStepFile = docuFiles.getStepFile(branchName, buildName, useCaseName, scenarioName, step
-						.getStepDescription().getIndex());
-				ScenarioDocuXMLFileUtil.marshal(step, destStepFile);
+				int stepIndex = step.getStepDescription().getIndex();
+				File destStepFile = docuFiles.getStepFile(branchName, buildName, useCaseName, scenarioName, stepIndex);
+				if (stepsPreAggregator == null) {
+					writeXmlFile(WriteType.STEP, normalize(step), destStepFile, entityCodec);
+					return;
+				}
+				HashingEntityCodec codec = new HashingEntityCodec();
+				writeXmlFile(WriteType.STEP, normalize(step), destStepFile, codec);
+				stepsPreAggregator.addStepDocumentHash(useCaseName, scenarioName, stepIndex, codec.getHashes().get(0));
 			}
 		});
+		if (stepsPreAggregator != null) {
+			stepsPreAggregator.addStep(useCaseName, scenarioName, step);
+		}
+	}
+	
+	public void saveSteps(final UseCase useCase, final Scenario scenario, final List<Step> steps) {
+		saveSteps(useCase.getName(), scenario.getName(), steps);
+	}
+	
+	/**
+	 * Save all steps of a scenario together into one file, instead of one file per step, which is much faster to write
+	 * and read for scenarios with many steps. Single steps can still be loaded efficiently by their index.
+	 * 
+	 * The saved steps replace all steps of this scenario, do not save further steps of the same scenario by
+	 * {@link #saveStep(String, String, Step)}.
+	 */
+	public void saveSteps(final String useCaseName, final String scenarioName, final List<Step> steps) {
+		final List<Step> stepsToSave = new ArrayList<Step>(steps);
+		long retainedBytes = 0;
+		for (Step step : stepsToSave) {
+			retainedBytes += estimateRetainedBytes(step);
+		}
+		String writeKey = getScenarioWriteKey(useCaseName, scenarioName);
+		executeAsyncWrite(WriteType.STEPS, writeKey, retainedBytes, new Runnable() {
+			@Override
+			public void run() {
+				createDirectoryIfNotYetExists(getScenarioDirectory(useCaseName, scenarioName));
+				File destStepsFile = docuFiles.getIndexedStepsFile(branchName, buildName, useCaseName, scenarioName);
+				List<Step> normalizedSteps = new ArrayList<Step>(stepsToSave.size());
+				List<Integer> stepIndexes = new ArrayList<Integer>(stepsToSave.size());
+				for (Step step : stepsToSave) {
+					normalizedSteps.add(normalize(step));
+					stepIndexes.add(step.getStepDescription().getIndex());
+				}
+				HashingEntityCodec codec = stepsPreAggregator == null ? null : new HashingEntityCodec();
+				EntityCodec stepsCodec = codec == null ? entityCodec : codec;
+				long bytesWritten;
+				if (buildPush != null) {
+					bytesWritten = buildPush.writeFile(destStepsFile, IndexedStepsFile.toContent(normalizedSteps,
+							stepsCodec, false));
+				} else if (buildArchive != null) {
+					// no additional compression inside the archive
+					bytesWritten = buildArchive.writeFile(destStepsFile, IndexedStepsFile.toContent(normalizedSteps,
+							stepsCodec, false));
+				} else {
+					bytesWritten = BinaryFileUtil.writeFile(docuFiles.getStorage(), destStepsFile,
+							IndexedStepsFile.toContent(normalizedSteps, stepsCodec, compressedXmlOutput),
+							syncedFileWrites);
+				}
+				metrics.recordBytesWritten(WriteType.STEPS, bytesWritten);
+				if (codec != null) {
+					stepsPreAggregator.setStepDocumentHashes(useCaseName, scenarioName, stepIndexes, codec.getHashes());
+				}
+			}
+		});
+		if (stepsPreAggregator != null) {
+			stepsPreAggregator.setSteps(useCaseName, scenarioName, stepsToSave);
+		}
 	}
 	
 	/**
@@ -181,34 +425,128 @@ public class ScenarioDocuWriter {
 	
 	/**
 	 * Save Screenshot as a PNG file in usual file for step.
+	 * 
+	 * The base64 encoded image is decoded while writing it into the file, the passed array must not be modified
+	 * afterwards.
 	 */
 	public void saveScreenshot(final String usecaseName, final String scenarioName, final int stepIndex,
 			final byte[] imageBase64Encoded) {
-		executeAsyncWrite(new Runnable() {
+		String writeKey = getScenarioWriteKey(usecaseName, scenarioName);
+		executeAsyncWrite(WriteType.SCREENSHOT, writeKey, imageBase64Encoded.length, new Runnable() {
 			@Override
 			public void run() {
-				final File screenshotFile = docuFiles.getScreenshotFile(branchName, buildName, usecaseName,
-						scenarioName, stepIndex);
-				File screenshotsDir = getScreenshotsDirectory(usecaseName, scenarioName);
-				createDirectoryIfNotYetExists(screenshotsDir);
-				try {
-					final byte[] decodedScreenshot = Base64.decodeBase64(imageBase64Encoded);
-					final FileOutputStream fos = new FileOutputStream(screenshotFile);
-					fos.write(decodedScreenshot);
-					fos.close();
-				} catch (Exception e) {
-					throw new RuntimeException("Could not write image: " + screenshotFile.getAbsolutePath(), e);
-				}
+				writeScreenshot(usecaseName, scenarioName, stepIndex, BinaryContent.fromBase64(imageBase64Encoded));
 			}
 		});
 	}
 	
 	/**
 	 * Save Screenshot as a PNG file in usual file for step.
+	 * 
+	 * The base64 encoded image is decoded while writing it into the file.
 	 */
 	public void saveScreenshot(final String usecaseName, final String scenarioName, final int stepIndex,
 			final String imageBase64Encoded) {
-		saveScreenshot(usecaseName, scenarioName, stepIndex, imageBase64Encoded.getBytes());
+		String writeKey = getScenarioWriteKey(usecaseName, scenarioName);
+		executeAsyncWrite(WriteType.SCREENSHOT, writeKey, 2L * imageBase64Encoded.length(), new Runnable() {
+			@Override
+			public void run() {
+				writeScreenshot(usecaseName, scenarioName, stepIndex, BinaryContent.fromBase64(imageBase64Encoded));
+			}
+		});
+	}
+	
+	/**
+	 * Save Screenshot from the raw bytes of a PNG image (not base64 encoded) in usual file for step.
+	 * 
+	 * The passed array is written as is and must not be modified afterwards.
+	 */
+	public void saveScreenshotAsPng(final String usecaseName, final String scenarioName, final int stepIndex,
+			final byte[] pngImage) {
+		saveScreenshotAsPng(usecaseName, scenarioName, stepIndex, ByteBuffer.wrap(pngImage));
+	}
+	
+	/**
+	 * Save Screenshot from the remaining raw bytes of a PNG image (not base64 encoded) in usual file for step.
+	 * 
+	 * The content of the passed buffer must not be modified afterwards, its position and limit are not changed.
+	 */
+	public void saveScreenshotAsPng(final String usecaseName, final String scenarioName, final int stepIndex,
+			final ByteBuffer pngImage) {
+		final ByteBuffer content = pngImage.duplicate();
+		String writeKey = getScenarioWriteKey(usecaseName, scenarioName);
+		executeAsyncWrite(WriteType.SCREENSHOT, writeKey, content.remaining(), new Runnable() {
+			@Override
+			public void run() {
+				writeScreenshot(usecaseName, scenarioName, stepIndex, BinaryContent.fromBuffer(content));
+			}
+		});
+	}
+	
+	/**
+	 * Save Screenshot by reading the raw bytes of a PNG image (not base64 encoded) from the stream into usual file for
+	 * step.
+	 * 
+	 * The stream is read asynchronously and closed after writing, it must not be used anymore by the caller.
+	 */
+	public void saveScreenshotAsPng(final String usecaseName, final String scenarioName, final int stepIndex,
+			final InputStream pngImage) {
+		String writeKey = getScenarioWriteKey(usecaseName, scenarioName);
+		executeAsyncWrite(WriteType.SCREENSHOT, writeKey, ESTIMATED_ENTITY_SIZE_IN_BYTES, new Runnable() {
+			@Override
+			public void run() {
+				writeScreenshot(usecaseName, scenarioName, stepIndex, BinaryContent.fromStream(pngImage));
+			}
+		});
+	}
+	
+	/**
+	 * Save Screenshot as a PNG file in usual file for step, the image is encoded as PNG asynchronously to not block the
+	 * calling thread.
+	 * 
+	 * The passed image must not be modified afterwards.
+	 */
+	public void saveScreenshot(final String usecaseName, final String scenarioName, final int stepIndex,
+			final BufferedImage image) {
+		long retainedBytes = 4L * image.getWidth() * image.getHeight();
+		String writeKey = getScenarioWriteKey(usecaseName, scenarioName);
+		executeAsyncWrite(WriteType.SCREENSHOT, writeKey, retainedBytes, new Runnable() {
+			@Override
+			public void run() {
+				writeScreenshot(usecaseName, scenarioName, stepIndex, BinaryContent.fromImageAsPng(image));
+			}
+		});
+	}
+	
+	/**
+	 * Save Screenshot as a PNG file in usual file for step from the raw pixels of the image, the image is encoded as
+	 * PNG asynchronously to not block the calling thread.
+	 * 
+	 * @param argbPixels
+	 *            the pixels in default ARGB color model, row by row (as returned by
+	 *            {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}), the array must not be modified
+	 *            afterwards.
+	 * @param width
+	 *            width of the image in pixels (=length of one row)
+	 * @param height
+	 *            height of the image in pixels (=number of rows)
+	 */
+	public void saveScreenshotFromPixels(final String usecaseName, final String scenarioName, final int stepIndex,
+			final int[] argbPixels, final int width, final int height) {
+		if (argbPixels.length < width * height) {
+			throw new IllegalArgumentException("Expected " + width * height + " pixels for an image of size " + width
+					+ "x" + height + ", but got only " + argbPixels.length);
+		}
+		long retainedBytes = 4L * argbPixels.length;
+		String writeKey = getScenarioWriteKey(usecaseName, scenarioName);
+		executeAsyncWrite(WriteType.SCREENSHOT, writeKey, retainedBytes, new Runnable() {
+			@Override
+			public void run() {
+				BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+				image.setRGB(0, 0, width, height, argbPixels, 0, width);
+				writeScreenshot(usecaseName, scenarioName, stepIndex, BinaryContent.fromImageAsPng(image));
+			}
+		});
 	}
 	
 	/**
@@ -217,27 +555,106 @@ public class ScenarioDocuWriter {
 	 * 
 	 * Will block until writing has finished or timeout occurs.
 	 * 
+	 * As soon as all writers of this build have finished writing, the build is marked as complete. Exceptions during
+	 * saving do not prevent this, but a timeout does.
+	 * 
 	 * @throws ScenarioDocuSaveException
 	 *             if any of the save commands throwed an exception during asynchronous execution.
 	 * @throws ScenarioDocuTimeoutException
 	 *             if waiting for the saving beeing finished exceeds the configured timeout
 	 */
 	public void flush() {
+		boolean complete = false;
 		int timeoutInSeconds = ScenarioDocuGeneratorConfiguration.INSTANCE
 				.getTimeoutWaitingForWritingFinishedInSeconds();
-		asyncWriteExecutor.shutdown();
+		writeStepsAggregates();
+		flushed = true;
 		try {
-			boolean temrinated = asyncWriteExecutor.awaitTermination(timeoutInSeconds, TimeUnit.SECONDS);
+			boolean temrinated = awaitAsyncWrites(timeoutInSeconds);
 			if (!temrinated) {
-				asyncWriteExecutor.shutdownNow();
+				int pendingWrites = pendingAsyncWrites.getPendingTasks();
+				cancelAsyncWrites();
+				LOGGER.error("Timeout after " + timeoutInSeconds + " seconds while waiting for docu files of build "
+						+ branchName + "/" + buildName + " to be written, " + pendingWrites
+						+ " files were still pending (see metrics logged below).");
 				throw new ScenarioDocuTimeoutException(
 						"Timeout occured while waiting for docu files to be written. Writing of files took too long.");
 			}
+			complete = true;
 		} catch (InterruptedException e) {
 			throw new RuntimeException("Async writing of scenarioo docu files was interrupted", e);
+		} finally {
+			try {
+				if (buildArchive != null) {
+					buildArchive.close();
+				}
+			} finally {
+				try {
+					finishWriting(complete);
+				} finally {
+					logMetrics(complete);
+				}
+			}
 		}
 		if (!caughtExceptions.isEmpty()) {
-			throw new ScenarioDocuSaveException(caughtExceptions);
+			throw new ScenarioDocuSaveException(new ArrayList<RuntimeException>(caughtExceptions));
+		}
+	}
+	
+	/**
+	 * Wait for all writes of this writer, a writer's own executor is shut down, a shared executor is kept running.
+	 */
+	private boolean awaitAsyncWrites(final int timeoutInSeconds) throws InterruptedException {
+		if (sharedAsyncWriteService) {
+			return pendingAsyncWrites.awaitNoPendingTasks(timeoutInSeconds, TimeUnit.SECONDS);
+		}
+		asyncWriteExecutor.shutdown();
+		return asyncWriteExecutor.awaitTermination(timeoutInSeconds, TimeUnit.SECONDS);
+	}
+	
+	private void cancelAsyncWrites() {
+		if (sharedAsyncWriteService) {
+			asyncWritesCancelled = true;
+		} else {
+			asyncWriteExecutor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Number of times a save method blocked the calling thread because the buffer for files waiting to be written was
+	 * full.
+	 */
+	public long getBlockedCount() {
+		return metrics.getBlockedCount();
+	}
+	
+	/**
+	 * Total time in milliseconds save methods have blocked calling threads because the buffer for files waiting to be
+	 * written was full.
+	 */
+	public long getBlockedTimeInMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(metrics.getBlockedTimeInNanos());
+	}
+	
+	/**
+	 * Measurements of this writer, like blocked time, write durations and bytes written. The same summary is also
+	 * logged on {@link #flush()}.
+	 */
+	public ScenarioDocuWriterMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Only the first flush finishes writing of the build.
+	 */
+	private synchronized void finishWriting(final boolean complete) {
+		if (!writingFinished) {
+			writingFinished = true;
+			if (buildPush != null) {
+				buildPush.close(complete);
+			} else if (docuFiles.isFileSystemStorage()) {
+				BuildCompletionMarker.finishWriting(getBuildDirectory(), complete);
+			}
 		}
 	}
 	
@@ -257,42 +674,294 @@ public class ScenarioDocuWriter {
 		return docuFiles.getStepsDirectory(branchName, buildName, useCaseName, scenarioName);
 	}
 	
+	private void writeScreenshot(final String usecaseName, final String scenarioName, final int stepIndex,
+			final BinaryContent content) {
+		createDirectoryIfNotYetExists(getScreenshotsDirectory(usecaseName, scenarioName));
+		File screenshotFile = docuFiles.getScreenshotFile(branchName, buildName, usecaseName, scenarioName, stepIndex);
+		long bytesWritten;
+		if (buildPush != null && screenshotBlobStore != null) {
+			bytesWritten = buildPush.writeScreenshotToBlobStore(screenshotFile, screenshotBlobStore, content);
+		} else if (buildPush != null) {
+			bytesWritten = buildPush.writeFile(screenshotFile, content);
+		} else if (buildArchive != null && screenshotBlobStore != null) {
+			bytesWritten = buildArchive.writeScreenshotToBlobStore(screenshotFile, screenshotBlobStore, content);
+		} else if (buildArchive != null) {
+			bytesWritten = buildArchive.writeFile(screenshotFile, content);
+		} else if (screenshotBlobStore != null) {
+			bytesWritten = screenshotBlobStore.saveScreenshot(screenshotFile, content);
+		} else {
+			bytesWritten = BinaryFileUtil.writeFile(docuFiles.getStorage(), screenshotFile, content, syncedFileWrites);
+		}
+		metrics.recordBytesWritten(WriteType.SCREENSHOT, bytesWritten);
+	}
+	
+	private Step normalize(final Step step) {
+		if (objectNormalizer == null) {
+			return step;
+		}
+		return objectNormalizer.normalize(step);
+	}
+	
+	private void writeXmlFile(final WriteType type, final Object entity, final File file) {
+		writeXmlFile(type, entity, file, entityCodec);
+	}
+	
+	private void writeXmlFile(final WriteType type, final Object entity, final File file, final EntityCodec codec) {
+		long bytesWritten;
+		if (buildPush != null) {
+			bytesWritten = buildPush.writeFile(file, toEncodedContent(entity, codec));
+		} else if (buildArchive != null) {
+			bytesWritten = buildArchive.writeFile(file, toEncodedContent(entity, codec));
+		} else {
+			bytesWritten = ScenarioDocuXMLFileUtil.marshal(docuFiles.getStorage(), entity, file, codec,
+					compressedXmlOutput, syncedFileWrites);
+		}
+		metrics.recordBytesWritten(type, bytesWritten);
+	}
+	
+	/**
+	 * Branch and build descriptions are never written into the build archive, such that builds can be found without
+	 * opening any archives.
+	 */
+	private void writeDescriptionFile(final WriteType type, final Object entity, final File file) {
+		long bytesWritten;
+		if (buildPush != null) {
+			bytesWritten = buildPush.writeFile(file, toEncodedContent(entity, entityCodec));
+		} else {
+			bytesWritten = ScenarioDocuXMLFileUtil.marshal(docuFiles.getStorage(), entity, file, entityCodec,
+					compressedXmlOutput, syncedFileWrites);
+		}
+		metrics.recordBytesWritten(type, bytesWritten);
+	}
+	
+	private static BinaryContent toEncodedContent(final Object entity, final EntityCodec codec) {
+		return new BinaryContent() {
+			@Override
+			public void writeTo(final WritableByteChannel channel) {
+				codec.encode(entity, Channels.newOutputStream(channel));
+			}
+		};
+	}
+	
 	private void createBuildDirectoryIfNotYetExists() {
 		createDirectoryIfNotYetExists(getBuildDirectory());
 	}
 	
+	/**
+	 * Each directory is only checked and created once, because checking the filesystem for each written file is
+	 * expensive on network storage.
+	 */
 	private void createDirectoryIfNotYetExists(final File directory) {
-		docuFiles.assertRootDirectoryExists();
-		if (!directory.exists()) {
-			directory.mkdirs();
+		if (existingDirectories.contains(directory)) {
+			return;
+		}
+		if (buildPush == null) {
+			docuFiles.assertRootDirectoryExists();
 		}
+		if (buildArchive == null && buildPush == null && !docuFiles.getStorage().exists(directory)) {
+			// directories inside the build directory only exist inside the archive, if the build is written as archive
+			docuFiles.getStorage().createDirectories(directory);
+		}
+		existingDirectories.add(directory);
 	}
 	
-	private void executeAsyncWrite(final Runnable writeTask) {
-		asyncWriteExecutor.execute(new Runnable() {
+	/**
+	 * Write the pre-aggregated steps of all scenarios with steps saved since the last flush.
+	 */
+	private void writeStepsAggregates() {
+		if (stepsPreAggregator == null) {
+			return;
+		}
+		stepsPreAggregator.writeAggregates(new ScenarioStepsAggregateWriter() {
 			@Override
-			public void run() {
-				try {
-					writeTask.run();
-				}
-				catch (RuntimeException e) {
-					caughtExceptions.add(e);
-				}
+			public void writeAggregate(final String useCaseName, final String scenarioName,
+					final ScenarioStepsAggregate aggregate) {
+				String writeKey = getScenarioWriteKey(useCaseName, scenarioName);
+				long retainedBytes = ESTIMATED_ENTITY_SIZE_IN_BYTES * (1 + aggregate.getNumberOfSteps());
+				executeAsyncWrite(WriteType.STEPS_AGGREGATE, writeKey, retainedBytes, new Runnable() {
+					@Override
+					public void run() {
+						createDirectoryIfNotYetExists(getScenarioDirectory(useCaseName, scenarioName));
+						// the steps of the scenario are written before, by the same thread
+						aggregate.setStepsChecksum(stepsPreAggregator.takeStepsChecksum(useCaseName, scenarioName));
+						writeXmlFile(WriteType.STEPS_AGGREGATE, aggregate, docuFiles.getScenarioStepsAggregateFile(
+								branchName, buildName, useCaseName, scenarioName));
+					}
+				});
 			}
 		});
 	}
 	
 	/**
-	 * Creates an executor that queues the passed tasks for execution by one single additional thread. The excutor will
-	 * start to block further executions as soon as more than the configured write tasks are waiting for execution.
+	 * All files of the same scenario are written in order by the same thread.
+	 */
+	private static String getScenarioWriteKey(final String useCaseName, final String scenarioName) {
+		return useCaseName + "/" + scenarioName;
+	}
+	
+	/**
+	 * The write key is qualified by branch and build, because a shared executor executes writes of several builds.
 	 */
-	private static ExecutorService newAsyncWriteExecutor() {
-		return new ThreadPoolExecutor(
-				1,
-				1,
-				60L,
-				TimeUnit.SECONDS,
-				new LinkedBlockingQueue<Runnable>(ScenarioDocuGeneratorConfiguration.INSTANCE.getAsyncWriteBufferSize()));
+	private void executeAsyncWrite(final WriteType type, final String writeKey, final long retainedBytes,
+			final Runnable writeTask) {
+		if (flushed && sharedAsyncWriteService) {
+			throw new RejectedExecutionException("Writer has already been flushed, files can not be saved anymore.");
+		}
+		acquireWriteBudget(writeKey, retainedBytes);
+		pendingAsyncWrites.taskSubmitted();
+		metrics.recordQueueDepth(pendingAsyncWrites.getPendingTasks());
+		try {
+			asyncWriteExecutor.execute(branchName + "/" + buildName + "/" + writeKey, new Runnable() {
+				@Override
+				public void run() {
+					try {
+						if (!asyncWritesCancelled) {
+							long startTime = System.nanoTime();
+							writeTask.run();
+							metrics.recordWriteTime(type, System.nanoTime() - startTime);
+						}
+					}
+					catch (RuntimeException e) {
+						caughtExceptions.add(e);
+					}
+					finally {
+						asyncWriteBudget.release(retainedBytes);
+						pendingAsyncWrites.taskFinished();
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			asyncWriteBudget.release(retainedBytes);
+			pendingAsyncWrites.taskFinished();
+			throw e;
+		}
+	}
+	
+	private void acquireWriteBudget(final String writeKey, final long retainedBytes) {
+		try {
+			long blockedTimeInNanos = asyncWriteBudget.acquire(retainedBytes);
+			metrics.recordBlockedTime(blockedTimeInNanos);
+			if (blockedTimeInNanos > 0 && LOGGER.isDebugEnabled()) {
+				LOGGER.debug("Saving " + retainedBytes + " bytes for " + writeKey + " was blocked for "
+						+ TimeUnit.NANOSECONDS.toMillis(blockedTimeInNanos) + " ms, because write buffer was full.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for space in write buffer for " + writeKey, e);
+		}
+	}
+	
+	private void logMetrics(final boolean complete) {
+		LOGGER.info((complete ? "Finished" : "Aborted") + " writing docu files of build " + branchName + "/"
+				+ buildName + ":\n" + metrics.getSummary());
+		if (metrics.getBlockedCount() > 0) {
+			LOGGER.info("Saving of docu files blocked the calling threads " + metrics.getBlockedCount()
+					+ " times for " + getBlockedTimeInMillis() + " ms in total (longest "
+					+ TimeUnit.NANOSECONDS.toMillis(metrics.getMaxBlockedTimeInNanos())
+					+ " ms), consider increasing the async write buffer size in bytes of "
+					+ asyncWriteBudget.getMaxBytes() + ".");
+		}
+	}
+	
+	/**
+	 * Estimated heap memory retained by a step, which is dominated by its html source and visible text.
+	 */
+	private static long estimateRetainedBytes(final Step step) {
+		long size = ESTIMATED_ENTITY_SIZE_IN_BYTES;
+		StepHtml html = step.getHtml();
+		if (html != null && html.getHtmlSource() != null) {
+			size += 2L * html.getHtmlSource().length();
+		}
+		StepMetadata metadata = step.getMetadata();
+		if (metadata != null && metadata.getVisibleText() != null) {
+			size += 2L * metadata.getVisibleText().length();
+		}
+		return size;
+	}
+	
+	/**
+	 * Creates an executor that queues the passed tasks for execution by the configured number of additional threads.
+	 * The excutor will start to block further executions as soon as more than the configured write tasks are waiting
+	 * for execution on one thread.
+	 */
+	private static KeyOrderedExecutor newAsyncWriteExecutor() {
+		return new KeyOrderedExecutor(ScenarioDocuGeneratorConfiguration.INSTANCE.getAsyncWriteThreads(),
+				ScenarioDocuGeneratorConfiguration.INSTANCE.getAsyncWriteBufferSize());
+	}
+	
+	private static ByteBudget newAsyncWriteBudget() {
+		return new ByteBudget(ScenarioDocuGeneratorConfiguration.INSTANCE.getAsyncWriteBufferSizeInBytes());
+	}
+	
+	/**
+	 * The shared executor is created on first use and never shut down, therefore its threads are daemon threads.
+	 */
+	private static synchronized KeyOrderedExecutor getSharedAsyncWriteExecutor() {
+		if (sharedAsyncWriteExecutor == null) {
+			sharedAsyncWriteExecutor = new KeyOrderedExecutor(
+					ScenarioDocuGeneratorConfiguration.INSTANCE.getAsyncWriteThreads(),
+					ScenarioDocuGeneratorConfiguration.INSTANCE.getAsyncWriteBufferSize(), new ThreadFactory() {
+						private final AtomicInteger threadNumber = new AtomicInteger(1);
+				
+						@Override
+						public Thread newThread(final Runnable runnable) {
+							Thread thread = new Thread(runnable, "scenarioo-docu-writer-"
+									+ threadNumber.getAndIncrement());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return sharedAsyncWriteExecutor;
+	}
+	
+	private static synchronized ByteBudget getSharedAsyncWriteBudget() {
+		if (sharedAsyncWriteBudget == null) {
+			sharedAsyncWriteBudget = newAsyncWriteBudget();
+		}
+		return sharedAsyncWriteBudget;
+	}
+	
+	/**
+	 * Encodes like the codec of the writer and remembers the hash of each encoded document, for the steps checksum of
+	 * the pre-aggregated steps (see {@link StepsPreAggregator#takeStepsChecksum(String, String)}).
+	 * 
+	 * Only used by one write task, therefore not thread safe.
+	 */
+	private class HashingEntityCodec implements EntityCodec {
+		
+		private final List<String> hashes = new ArrayList<String>();
+		
+		@Override
+		public void encode(final Object object, final OutputStream outStream) {
+			ByteArrayOutputStream document = new ByteArrayOutputStream();
+			entityCodec.encode(object, document);
+			hashes.add(BinaryFileUtil.hash(BinaryContent.fromBuffer(ByteBuffer.wrap(document.toByteArray()))));
+			try {
+				document.writeTo(outStream);
+			} catch (IOException e) {
+				throw new RuntimeException("Could not write encoded document", e);
+			}
+		}
+		
+		@Override
+		public <T> T decode(final Class<T> targetClass, final InputStream inStream,
+				final String... skippedElementPaths) {
+			return entityCodec.decode(targetClass, inStream, skippedElementPaths);
+		}
+		
+		@Override
+		public boolean isEncodedBy(final byte[] header) {
+			return entityCodec.isEncodedBy(header);
+		}
+		
+		/**
+		 * Hashes of the encoded documents in the order they have been encoded.
+		 */
+		public List<String> getHashes() {
+			return hashes;
+		}
+		
 	}
 	
 }
@@ -37,14 +37,42 @@ public class ScenarioDocuGeneratorConfiguration {
 	
 	private int asyncWriteBufferSize = 13;
 	
+	private long asyncWriteBufferSizeInBytes = 64L * 1024 * 1024;
+	
+	private int asyncWriteThreads = 1;
+	
 	private int timeoutWaitingForWritingFinishedInSeconds = 3600;
 	
+	private boolean screenshotDeduplicationEnabled = false;
+	
+	private boolean buildArchiveEnabled = false;
+	
+	private boolean formattedXmlOutput = true;
+	
+	private boolean compressedXmlOutput = false;
+	
+	private boolean objectNormalizationEnabled = false;
+	
+	private boolean sharedAsyncWriteServiceEnabled = false;
+	
+	private boolean syncedFileWritesEnabled = false;
+	
+	private String pushServerUrl = null;
+	
+	private String pushServerToken = null;
+	
+	private boolean stepsPreAggregationEnabled = false;
+	
+	private boolean binaryFileFormatEnabled = false;
+	
 	/**
 	 * Configure the maximum number of files to buffer for saving them asynchronously. As soon as the buffer capacity is
 	 * full, any further calls to save methods on the {@link ScenarioDocuWriter} will block the execution of the
 	 * calling thread, and therefore probably also execution of further webtest execution will be blocked.
 	 * 
-	 * Pay attention, that on the other hand increasing the buffer size may lead to out of memory problems.
+	 * The memory used by the buffered files is additionally limited by {@link #setAsyncWriteBufferSizeInBytes(long)},
+	 * therefore this limit can safely be raised (e.g. to 1000), to not block on bursts of many small files. Default is
+	 * 13.
 	 */
 	public void setAsyncWriteBufferSize(final int asyncWriteBufferSize) {
 		this.asyncWriteBufferSize = asyncWriteBufferSize;
@@ -54,6 +82,40 @@ public class ScenarioDocuGeneratorConfiguration {
 		return asyncWriteBufferSize;
 	}
 	
+	/**
+	 * Configure the maximum number of bytes of heap memory that all files waiting for being saved asynchronously by one
+	 * {@link ScenarioDocuWriter} may retain (estimated by the size of the screenshots and the texts of the steps). As
+	 * soon as this budget is used up, any further calls to save methods will block the calling thread until enough
+	 * buffered files have been written.
+	 * 
+	 * How often and how long callers have been blocked is logged on {@link ScenarioDocuWriter#flush()} and can be used
+	 * to size this budget. Default is 64 MB.
+	 */
+	public void setAsyncWriteBufferSizeInBytes(final long asyncWriteBufferSizeInBytes) {
+		this.asyncWriteBufferSizeInBytes = asyncWriteBufferSizeInBytes;
+	}
+	
+	public long getAsyncWriteBufferSizeInBytes() {
+		return asyncWriteBufferSizeInBytes;
+	}
+	
+	/**
+	 * Configure the number of threads that write the files saved by a {@link ScenarioDocuWriter} asynchronously.
+	 * 
+	 * All files of the same scenario (scenario, steps and screenshots) are always written by the same thread in the
+	 * order they have been saved, while files of different scenarios can be written in parallel by different threads.
+	 * 
+	 * The buffer size configured by {@link #setAsyncWriteBufferSize(int)} applies to each thread. Default is 1, which
+	 * writes all files one after the other.
+	 */
+	public void setAsyncWriteThreads(final int asyncWriteThreads) {
+		this.asyncWriteThreads = asyncWriteThreads;
+	}
+	
+	public int getAsyncWriteThreads() {
+		return asyncWriteThreads;
+	}
+	
 	/**
 	 * Configure the number of seconds to wait in method {@link ScenarioDocuWriter#flush()} until writing has
 	 * finished. If writing has not finished after this time, the method will throw a timeout exception.
@@ -66,4 +128,184 @@ public class ScenarioDocuGeneratorConfiguration {
 		return timeoutWaitingForWritingFinishedInSeconds;
 	}
 	
+	/**
+	 * Configure whether the {@link ScenarioDocuWriter} should store screenshots with same content only once per build.
+	 * Each distinct screenshot is stored in a build level directory with its content hash as name, and a step's
+	 * screenshot file only references this hash. The reader resolves these references transparently.
+	 * 
+	 * This saves disk space and write I/O for builds with many equal screenshots, but costs hashing each screenshot.
+	 * Default is false.
+	 */
+	public void setScreenshotDeduplicationEnabled(final boolean screenshotDeduplicationEnabled) {
+		this.screenshotDeduplicationEnabled = screenshotDeduplicationEnabled;
+	}
+	
+	public boolean isScreenshotDeduplicationEnabled() {
+		return screenshotDeduplicationEnabled;
+	}
+	
+	/**
+	 * Configure whether the {@link ScenarioDocuWriter} should write all files of a build (except the build description)
+	 * into one single ZIP archive inside the build directory, instead of writing each file on its own. This avoids
+	 * creating hundreds of thousands of small files and directories for big builds. The reader (and therefore the
+	 * server) reads such builds directly from the archive.
+	 * 
+	 * The archive is finished by {@link ScenarioDocuWriter#flush()}. In an archive each file can only be saved once.
+	 * Default is false.
+	 */
+	public void setBuildArchiveEnabled(final boolean buildArchiveEnabled) {
+		this.buildArchiveEnabled = buildArchiveEnabled;
+	}
+	
+	public boolean isBuildArchiveEnabled() {
+		return buildArchiveEnabled;
+	}
+	
+	/**
+	 * Configure whether the XML files written by the {@link ScenarioDocuWriter} are formatted with line breaks and
+	 * indentation. Compact XML without formatting is considerably smaller, especially for steps with a lot of html
+	 * source. Default is true.
+	 */
+	public void setFormattedXmlOutput(final boolean formattedXmlOutput) {
+		this.formattedXmlOutput = formattedXmlOutput;
+	}
+	
+	public boolean isFormattedXmlOutput() {
+		return formattedXmlOutput;
+	}
+	
+	/**
+	 * Configure whether the XML files written by the {@link ScenarioDocuWriter} are gzip compressed, the files get the
+	 * additional extension ".gz" (e.g. "000.xml.gz"). The reader (and therefore the server) reads compressed files
+	 * transparently.
+	 * 
+	 * Files inside a build archive (see {@link #setBuildArchiveEnabled(boolean)}) are always compressed by the archive
+	 * itself. Default is false.
+	 */
+	public void setCompressedXmlOutput(final boolean compressedXmlOutput) {
+		this.compressedXmlOutput = compressedXmlOutput;
+	}
+	
+	public boolean isCompressedXmlOutput() {
+		return compressedXmlOutput;
+	}
+	
+	/**
+	 * Configure whether the {@link ScenarioDocuWriter} should store each page and each object description (inside
+	 * details of steps) only once per build, instead of repeating them in each step. Steps only reference stored pages
+	 * by name and stored objects by type and name, the reader resolves these references transparently.
+	 * 
+	 * A page or object that occurs with other details than the first time is still written inside the step. Default is
+	 * false.
+	 */
+	public void setObjectNormalizationEnabled(final boolean objectNormalizationEnabled) {
+		this.objectNormalizationEnabled = objectNormalizationEnabled;
+	}
+	
+	public boolean isObjectNormalizationEnabled() {
+		return objectNormalizationEnabled;
+	}
+	
+	/**
+	 * Configure whether all {@link ScenarioDocuWriter} instances should write their files by one shared set of threads,
+	 * instead of creating own threads for each writer. This avoids creating and stopping threads for each writer, if
+	 * many writers are used (e.g. one per test class), also for different builds at the same time.
+	 * 
+	 * The shared threads and the write buffer limited by {@link #setAsyncWriteBufferSizeInBytes(long)} are created on
+	 * first use with the configuration at that time and are shared by all writers. {@link ScenarioDocuWriter#flush()}
+	 * still waits only for the files of its own writer and reports only its own errors. Default is false.
+	 */
+	public void setSharedAsyncWriteServiceEnabled(final boolean sharedAsyncWriteServiceEnabled) {
+		this.sharedAsyncWriteServiceEnabled = sharedAsyncWriteServiceEnabled;
+	}
+	
+	public boolean isSharedAsyncWriteServiceEnabled() {
+		return sharedAsyncWriteServiceEnabled;
+	}
+	
+	/**
+	 * Configure whether the {@link ScenarioDocuWriter} forces the content of each written file to the storage device
+	 * before the file becomes visible.
+	 * 
+	 * Files are always written into a temporary file first and only renamed to their final name when completely
+	 * written, such that a killed test process never leaves truncated files behind. Enabling this additionally protects
+	 * against a crash of the operating system or a power loss, but makes writing considerably slower. Default is false.
+	 */
+	public void setSyncedFileWritesEnabled(final boolean syncedFileWritesEnabled) {
+		this.syncedFileWritesEnabled = syncedFileWritesEnabled;
+	}
+	
+	public boolean isSyncedFileWritesEnabled() {
+		return syncedFileWritesEnabled;
+	}
+	
+	/**
+	 * Configure a scenarioo server to which the {@link ScenarioDocuWriter} pushes all files over HTTP, instead of
+	 * writing them into its destination directory, e.g. "http://localhost:8080/scenarioo". The server stores the files
+	 * in its own documentation directory and imports the build as soon as all writers of the build have been flushed.
+	 * 
+	 * Files are pushed in batches of a few megabytes, the build archive (see {@link #setBuildArchiveEnabled(boolean)})
+	 * is not used when pushing. Default is null, to write into the destination directory.
+	 * 
+	 * The server only accepts pushed builds if pushing is enabled on its deployment together with a push token, see
+	 * {@link #setPushServerToken(String)}.
+	 */
+	public void setPushServerUrl(final String pushServerUrl) {
+		this.pushServerUrl = pushServerUrl;
+	}
+	
+	public String getPushServerUrl() {
+		return pushServerUrl;
+	}
+	
+	/**
+	 * Secret sent with each push to the server configured by {@link #setPushServerUrl(String)}, has to match the push
+	 * token configured on the server. Default is null, which is rejected by the server.
+	 */
+	public void setPushServerToken(final String pushServerToken) {
+		this.pushServerToken = pushServerToken;
+	}
+	
+	public String getPushServerToken() {
+		return pushServerToken;
+	}
+	
+	/**
+	 * Configure whether the {@link ScenarioDocuWriter} additionally writes the pre-aggregated steps of each scenario
+	 * (grouped by page, without HTML) when it is flushed, such that the server can import the build without parsing
+	 * all steps. The aggregate contains a checksum over the hashes of all saved step documents, the server reads the
+	 * saved steps to verify it (without parsing them) and parses the steps if it does not match, e.g. because steps of
+	 * the scenario have been saved again by a writer without pre-aggregation.
+	 * 
+	 * The data of all saved steps, except their HTML and visible text, is kept in memory until the writer is flushed.
+	 * Default is false.
+	 */
+	public void setStepsPreAggregationEnabled(final boolean stepsPreAggregationEnabled) {
+		this.stepsPreAggregationEnabled = stepsPreAggregationEnabled;
+	}
+	
+	public boolean isStepsPreAggregationEnabled() {
+		return stepsPreAggregationEnabled;
+	}
+	
+	/**
+	 * Configure whether all files are written in a compact binary format (see
+	 * {@link org.scenarioo.api.util.codec.BinaryEntityCodec}) instead of XML, which is much smaller and faster to read
+	 * by the server, but can not be read by other tools. The file names stay the same and the format of each file is
+	 * detected when it is read, such that builds can contain files of both formats. Files in binary format are only
+	 * read by readers with the binary format enabled (see
+	 * {@link org.scenarioo.api.ScenarioDocuReader#setBinaryFileFormatEnabled(boolean)}), the server has to be
+	 * deployed accordingly (init parameter "binaryDocuFileFormatEnabled").
+	 * 
+	 * Formatted XML output (see {@link #setFormattedXmlOutput(boolean)}) does not apply to binary files. Default is
+	 * false, to write XML.
+	 */
+	public void setBinaryFileFormatEnabled(final boolean binaryFileFormatEnabled) {
+		this.binaryFileFormatEnabled = binaryFileFormatEnabled;
+	}
+	
+	public boolean isBinaryFileFormatEnabled() {
+		return binaryFileFormatEnabled;
+	}
+	
 }
@@ -0,0 +1,308 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.files;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.scenarioo.api.exception.ResourceNotFoundException;
+import org.scenarioo.api.util.files.FilesUtil;
+
+/**
+ * Reads the files of a build directly from the build archive written by {@link BuildArchiveWriter}, without extracting
+ * it.
+ * 
+ * Files are addressed by the path they would have inside the build directory. Opened archives are cached, as long as
+ * the archive file has not been changed.
+ * 
+ * The opened archive file is closed as soon as the reader has been removed from the cache (because the archive has
+ * been changed or because too many archives are cached) and is not used anymore. Therefore each reader returned by
+ * {@link #getBuildArchive(File, File)} has to be released by {@link #release()} after usage, and each stream returned
+ * by {@link #open(File)} has to be closed.
+ */
+public class BuildArchiveReader {
+	
+	private static final int MAX_CACHED_ARCHIVES = 16;
+	
+	private static final Map<File, BuildArchiveReader> CACHED_ARCHIVES = new LinkedHashMap<File, BuildArchiveReader>(
+			MAX_CACHED_ARCHIVES, 0.75f, true) {
+		
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<File, BuildArchiveReader> eldest) {
+			if (size() > MAX_CACHED_ARCHIVES) {
+				// closed as soon as other threads do not read from it anymore
+				eldest.getValue().release();
+				return true;
+			}
+			return false;
+		}
+	};
+	
+	private final File buildDirectory;
+	
+	private final File archiveFile;
+	
+	private final long lastModified;
+	
+	private final long length;
+	
+	private final ZipFile zipFile;
+	
+	/**
+	 * Number of users of the archive: the cache, callers of {@link #getBuildArchive(File, File)} that did not yet
+	 * release it and streams that are still open.
+	 */
+	private int references = 1;
+	
+	/**
+	 * Names of all files and sub directories, by path of the directory containing them.
+	 */
+	private final Map<String, List<String>> directoryContents = new HashMap<String, List<String>>();
+	
+	private BuildArchiveReader(final File buildDirectory, final File archiveFile) {
+		this.buildDirectory = buildDirectory;
+		this.archiveFile = archiveFile;
+		this.lastModified = archiveFile.lastModified();
+		this.length = archiveFile.length();
+		try {
+			zipFile = new ZipFile(archiveFile);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not open build archive: " + archiveFile.getAbsolutePath(), e);
+		}
+		indexDirectoryContents();
+	}
+	
+	/**
+	 * Get the reader for the archive of the given build directory, the caller has to {@link #release()} the reader
+	 * after usage.
+	 * 
+	 * @return null if the build has not been written as archive.
+	 */
+	public static BuildArchiveReader getBuildArchive(final File buildDirectory, final File archiveFile) {
+		if (!archiveFile.isFile()) {
+			return null;
+		}
+		synchronized (CACHED_ARCHIVES) {
+			BuildArchiveReader archive = CACHED_ARCHIVES.get(archiveFile);
+			if (archive == null || archive.isOutdated()) {
+				if (archive != null) {
+					CACHED_ARCHIVES.remove(archiveFile);
+					archive.release();
+				}
+				archive = new BuildArchiveReader(buildDirectory, archiveFile);
+				CACHED_ARCHIVES.put(archiveFile, archive);
+			}
+			archive.acquire();
+			return archive;
+		}
+	}
+	
+	/**
+	 * Release the reader returned by {@link #getBuildArchive(File, File)}, the reader must not be used anymore by the
+	 * caller afterwards. Streams opened before are not affected.
+	 */
+	public void release() {
+		synchronized (this) {
+			references--;
+			if (references > 0) {
+				return;
+			}
+		}
+		try {
+			zipFile.close();
+		} catch (IOException e) {
+			throw new RuntimeException("Could not close build archive: " + archiveFile.getAbsolutePath(), e);
+		}
+	}
+	
+	/**
+	 * @return true as soon as the archive file has been closed, because the reader is not used anymore.
+	 */
+	synchronized boolean isClosed() {
+		return references == 0;
+	}
+	
+	private synchronized void acquire() {
+		if (references == 0) {
+			throw new IllegalStateException("Build archive has already been closed: " + archiveFile.getAbsolutePath());
+		}
+		references++;
+	}
+	
+	/**
+	 * Path of the file inside the build directory, as used for entry names in build archives.
+	 */
+	public static String getEntryName(final File buildDirectory, final File file) {
+		String buildPath = buildDirectory.getPath();
+		String filePath = file.getPath();
+		if (!filePath.startsWith(buildPath + File.separator)) {
+			throw new IllegalArgumentException("File " + filePath + " is not inside build directory " + buildPath);
+		}
+		return filePath.substring(buildPath.length() + 1).replace(File.separatorChar, '/');
+	}
+	
+	public boolean exists(final File file) {
+		return zipFile.getEntry(getEntryName(buildDirectory, file)) != null;
+	}
+	
+	/**
+	 * Open the file for reading, the caller is responsible to close the stream. The archive is kept open until the
+	 * stream is closed, even if the reader is released before.
+	 */
+	public InputStream open(final File file) {
+		ZipEntry entry = zipFile.getEntry(getEntryName(buildDirectory, file));
+		if (entry == null) {
+			throw new ResourceNotFoundException(archiveFile.getAbsolutePath() + "!" + file.getAbsolutePath());
+		}
+		acquire();
+		try {
+			return new ArchiveEntryInputStream(zipFile.getInputStream(entry));
+		} catch (IOException e) {
+			release();
+			throw new RuntimeException("Could not read " + entry.getName() + " from build archive "
+					+ archiveFile.getAbsolutePath(), e);
+		}
+	}
+	
+	/**
+	 * List all files (without sub directories) in the directory, sorted like
+	 * {@link org.scenarioo.api.util.files.FilesUtil#getListOfFiles(File)}.
+	 */
+	public List<File> getListOfFiles(final File directory) {
+		List<File> result = new ArrayList<File>();
+		for (String name : getDirectoryContent(directory)) {
+			File file = new File(directory, name);
+			if (!isDirectory(file)) {
+				result.add(file);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * List all files with given name from all sub directories of the directory, sorted like
+	 * {@link org.scenarioo.api.util.files.FilesUtil#getListOfFilesFromSubdirs(File, String)}.
+	 */
+	public List<File> getListOfFilesFromSubdirs(final File directory, final String filename) {
+		List<File> result = new ArrayList<File>();
+		for (String name : getDirectoryContent(directory)) {
+			File subDir = new File(directory, name);
+			if (isDirectory(subDir)) {
+				File file = new File(subDir, filename);
+				if (exists(file)) {
+					result.add(file);
+				}
+			}
+		}
+		return result;
+	}
+	
+	private List<String> getDirectoryContent(final File directory) {
+		List<String> content = directoryContents.get(getDirectoryPath(directory));
+		if (content == null) {
+			throw new ResourceNotFoundException(archiveFile.getAbsolutePath() + "!" + directory.getAbsolutePath());
+		}
+		return content;
+	}
+	
+	private boolean isDirectory(final File file) {
+		return directoryContents.containsKey(getDirectoryPath(file));
+	}
+	
+	private String getDirectoryPath(final File directory) {
+		if (directory.equals(buildDirectory)) {
+			return "";
+		}
+		return getEntryName(buildDirectory, directory);
+	}
+	
+	private boolean isOutdated() {
+		return archiveFile.lastModified() != lastModified || archiveFile.length() != length;
+	}
+	
+	private void indexDirectoryContents() {
+		directoryContents.put("", new ArrayList<String>());
+		Enumeration<? extends ZipEntry> entries = zipFile.entries();
+		while (entries.hasMoreElements()) {
+			addToDirectoryContents(entries.nextElement().getName());
+		}
+		for (List<String> content : directoryContents.values()) {
+			FilesUtil.sortAlphanumerically(content);
+		}
+	}
+	
+	/**
+	 * Add the entry to the contents of its parent directory and all missing parent directories to their parents.
+	 */
+	private void addToDirectoryContents(final String entryName) {
+		int separatorIndex = entryName.lastIndexOf('/');
+		String parentPath = separatorIndex < 0 ? "" : entryName.substring(0, separatorIndex);
+		String name = entryName.substring(separatorIndex + 1);
+		List<String> parentContent = directoryContents.get(parentPath);
+		if (parentContent == null) {
+			parentContent = new ArrayList<String>();
+			directoryContents.put(parentPath, parentContent);
+			addToDirectoryContents(parentPath);
+		}
+		parentContent.add(name);
+	}
+	
+	/**
+	 * Releases the reference to the archive on closing the stream.
+	 */
+	private class ArchiveEntryInputStream extends FilterInputStream {
+		
+		private boolean closed = false;
+		
+		private ArchiveEntryInputStream(final InputStream entryStream) {
+			super(entryStream);
+		}
+		
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				super.close();
+			} finally {
+				release();
+			}
+		}
+		
+	}
+	
+}
@@ -0,0 +1,196 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.files;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.scenarioo.api.util.files.AtomicFileOutputStream;
+import org.scenarioo.api.util.files.BinaryContent;
+import org.scenarioo.api.util.files.BinaryFileUtil;
+
+/**
+ * Writes all files of a build into one single ZIP archive inside the build directory, instead of writing each file on
+ * its own. The entries have the same paths inside the archive as the files would have inside the build directory.
+ * 
+ * Each entry is prepared in memory by the calling thread first, such that several threads can prepare their entries in
+ * parallel and only appending the entries to the archive is synchronized. Each file can only be written once.
+ */
+public class BuildArchiveWriter {
+	
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	private final File buildDirectory;
+	
+	private final File archiveFile;
+	
+	private final AtomicFileOutputStream archiveOut;
+	
+	private final ZipOutputStream zipOut;
+	
+	private final Set<String> writtenEntries = new HashSet<String>();
+	
+	private boolean closed = false;
+	
+	public BuildArchiveWriter(final File buildDirectory, final File archiveFile) {
+		this(buildDirectory, archiveFile, false);
+	}
+	
+	/**
+	 * The archive is written into a temporary file that only replaces the archive file on {@link #close()}.
+	 * 
+	 * @param synced
+	 *            true to force the archive to the storage device before it replaces the archive file.
+	 */
+	public BuildArchiveWriter(final File buildDirectory, final File archiveFile, final boolean synced) {
+		this.buildDirectory = buildDirectory;
+		this.archiveFile = archiveFile;
+		try {
+			archiveOut = new AtomicFileOutputStream(archiveFile, synced);
+			zipOut = new ZipOutputStream(new BufferedOutputStream(archiveOut, BUFFER_SIZE));
+		} catch (IOException e) {
+			throw new RuntimeException("Could not create build archive: " + archiveFile.getAbsolutePath(), e);
+		}
+	}
+	
+	/**
+	 * Write the content as entry for the given file inside the build directory.
+	 * 
+	 * @return number of bytes of the content (before compression).
+	 */
+	public long writeFile(final File file, final BinaryContent content) {
+		byte[] bytes = toByteArray(content);
+		writeEntry(getEntryName(file), bytes, isCompressed(file));
+		return bytes.length;
+	}
+	
+	/**
+	 * Write a screenshot deduplicated, like the {@link ScreenshotBlobStore} does in the build directory: the content is
+	 * only written once with the hash as name and the screenshot entry only references this hash.
+	 * 
+	 * @return number of bytes written, including the content only if it was not yet written.
+	 */
+	public long writeScreenshotToBlobStore(final File screenshotFile, final ScreenshotBlobStore blobStore,
+			final BinaryContent content) {
+		byte[] bytes = toByteArray(content);
+		String hash = BinaryFileUtil.hash(BinaryContent.fromBuffer(ByteBuffer.wrap(bytes)));
+		String blobEntryName = getEntryName(blobStore.getBlobFile(hash));
+		byte[] reference = toAsciiBytes(hash);
+		synchronized (this) {
+			long bytesWritten = reference.length;
+			if (!writtenEntries.contains(blobEntryName)) {
+				writeEntry(blobEntryName, bytes, false);
+				bytesWritten += bytes.length;
+			}
+			writeEntry(getEntryName(ScreenshotBlobStore.getReferenceFile(screenshotFile)), reference, false);
+			return bytesWritten;
+		}
+	}
+	
+	/**
+	 * Finish the archive, no further files can be written afterwards.
+	 */
+	public synchronized void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			zipOut.finish();
+			zipOut.flush();
+			archiveOut.commit();
+		} catch (IOException e) {
+			throw new RuntimeException("Could not close build archive: " + archiveFile.getAbsolutePath(), e);
+		} finally {
+			IOUtils.closeQuietly(zipOut);
+		}
+	}
+	
+	private synchronized void writeEntry(final String entryName, final byte[] bytes, final boolean compressed) {
+		if (!writtenEntries.add(entryName)) {
+			throw new IllegalStateException("File " + entryName + " has already been written to build archive "
+					+ archiveFile.getAbsolutePath() + ", files can not be overwritten in a build archive.");
+		}
+		try {
+			putEntry(zipOut, entryName, bytes, compressed);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not write " + entryName + " to build archive: "
+					+ archiveFile.getAbsolutePath(), e);
+		}
+	}
+	
+	static void putEntry(final ZipOutputStream zipOut, final String entryName, final byte[] bytes,
+			final boolean compressed) throws IOException {
+		ZipEntry entry = new ZipEntry(entryName);
+		if (!compressed) {
+			// Already compressed content (like PNG images) is stored as is, to not waste time on compressing it again.
+			CRC32 crc = new CRC32();
+			crc.update(bytes);
+			entry.setMethod(ZipEntry.STORED);
+			entry.setSize(bytes.length);
+			entry.setCompressedSize(bytes.length);
+			entry.setCrc(crc.getValue());
+		}
+		zipOut.putNextEntry(entry);
+		zipOut.write(bytes);
+		zipOut.closeEntry();
+	}
+	
+	private String getEntryName(final File file) {
+		return BuildArchiveReader.getEntryName(buildDirectory, file);
+	}
+	
+	static boolean isCompressed(final File file) {
+		return !file.getName().endsWith(".png");
+	}
+	
+	static byte[] toByteArray(final BinaryContent content) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			content.writeTo(Channels.newChannel(bytes));
+		} catch (IOException e) {
+			throw new RuntimeException("Could not prepare content of file", e);
+		}
+		return bytes.toByteArray();
+	}
+	
+	static byte[] toAsciiBytes(final String text) {
+		try {
+			return text.getBytes(ScreenshotBlobStore.REFERENCE_FILE_ENCODING);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unsupported " + ScreenshotBlobStore.REFERENCE_FILE_ENCODING + " charset.",
+					e);
+		}
+	}
+	
+}
@@ -0,0 +1,160 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.files;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.scenarioo.api.files.storage.DocuStorage;
+import org.scenarioo.api.files.storage.FileSystemStorage;
+
+/**
+ * Marks whether a build is still being written or has been written completely, such that a build is not imported
+ * while it is still incomplete.
+ * 
+ * As long as any writer of a build is open, the build directory contains the marker file
+ * {@value #FILE_NAME_WRITING}. As soon as the last open writer of the build (in the same JVM) has finished writing,
+ * this file is atomically renamed to {@value #FILE_NAME_COMPLETE}.
+ * 
+ * Builds written by older versions of the writer contain none of both marker files and are treated as complete.
+ * 
+ * The open writers are only counted inside one JVM. In case the same build is written by several JVMs at the same
+ * time (e.g. by forked test runners), the build is marked as complete as soon as the first JVM has finished writing,
+ * even though the others are still writing. A writer that crashes leaves the marker {@value #FILE_NAME_WRITING} behind
+ * and the build is never marked as complete, see {@link #getWritingStartTime(File)} to detect such builds.
+ */
+public class BuildCompletionMarker {
+	
+	static final String FILE_NAME_WRITING = "build.writing";
+	
+	static final String FILE_NAME_COMPLETE = "build.complete";
+	
+	/**
+	 * Writing state of all builds that are currently written, by build directory.
+	 */
+	private static final Map<File, WritingState> WRITING_BUILDS = new HashMap<File, WritingState>();
+	
+	/**
+	 * Mark the build as being written, as long as writing of the build has not finished.
+	 */
+	public static void startWriting(final File buildDirectory) {
+		synchronized (WRITING_BUILDS) {
+			WritingState state = WRITING_BUILDS.get(buildDirectory.getAbsoluteFile());
+			if (state == null) {
+				state = new WritingState();
+				WRITING_BUILDS.put(buildDirectory.getAbsoluteFile(), state);
+				createWritingMarker(buildDirectory);
+			}
+			state.openWriters++;
+		}
+	}
+	
+	/**
+	 * Mark the build as complete, as soon as the last open writer of this build has finished.
+	 * 
+	 * @param complete
+	 *            false if the writer did not finish writing all files (e.g. on timeout), in this case the build is
+	 *            never marked as complete, even when other writers of the same build finish successfully.
+	 */
+	public static void finishWriting(final File buildDirectory, final boolean complete) {
+		synchronized (WRITING_BUILDS) {
+			WritingState state = WRITING_BUILDS.get(buildDirectory.getAbsoluteFile());
+			if (state == null) {
+				throw new IllegalStateException("Writing of build has not been started: "
+						+ buildDirectory.getAbsolutePath());
+			}
+			state.openWriters--;
+			state.complete = state.complete && complete;
+			if (state.openWriters == 0) {
+				WRITING_BUILDS.remove(buildDirectory.getAbsoluteFile());
+				if (state.complete) {
+					renameWritingToCompleteMarker(buildDirectory);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return time in milliseconds when writing of the build has been started, or 0 if the build is not marked as
+	 *         being written. Builds that are marked as being written for a long time have probably not been finished
+	 *         because the writer crashed.
+	 */
+	public static long getWritingStartTime(final File buildDirectory) {
+		File writingMarker = new File(buildDirectory, FILE_NAME_WRITING);
+		if (new File(buildDirectory, FILE_NAME_COMPLETE).exists() || !writingMarker.exists()) {
+			return 0;
+		}
+		return writingMarker.lastModified();
+	}
+	
+	/**
+	 * @return false as long as the build is marked as being written or has not been finished completely.
+	 */
+	public static boolean isComplete(final File buildDirectory) {
+		return isComplete(FileSystemStorage.INSTANCE, buildDirectory);
+	}
+	
+	/**
+	 * Same as {@link #isComplete(File)}, but for a build in the given storage. Builds are only marked in the file
+	 * system, builds in other storages are therefore always treated as complete.
+	 */
+	public static boolean isComplete(final DocuStorage storage, final File buildDirectory) {
+		return storage.exists(new File(buildDirectory, FILE_NAME_COMPLETE))
+				|| !storage.exists(new File(buildDirectory, FILE_NAME_WRITING));
+	}
+	
+	private static void createWritingMarker(final File buildDirectory) {
+		File completeMarker = new File(buildDirectory, FILE_NAME_COMPLETE);
+		if (completeMarker.exists() && !completeMarker.delete()) {
+			throw new RuntimeException("Could not delete build complete marker: " + completeMarker.getAbsolutePath());
+		}
+		File writingMarker = new File(buildDirectory, FILE_NAME_WRITING);
+		try {
+			if (!writingMarker.createNewFile()) {
+				// left behind by a writer that did not finish, writing starts again now
+				writingMarker.setLastModified(System.currentTimeMillis());
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Could not create build writing marker: " + writingMarker.getAbsolutePath(), e);
+		}
+	}
+	
+	private static void renameWritingToCompleteMarker(final File buildDirectory) {
+		File writingMarker = new File(buildDirectory, FILE_NAME_WRITING);
+		File completeMarker = new File(buildDirectory, FILE_NAME_COMPLETE);
+		if (!writingMarker.renameTo(completeMarker)) {
+			throw new RuntimeException("Could not mark build as complete: " + completeMarker.getAbsolutePath());
+		}
+	}
+	
+	private static class WritingState {
+		
+		private int openWriters = 0;
+		
+		private boolean complete = true;
+		
+	}
+	
+}
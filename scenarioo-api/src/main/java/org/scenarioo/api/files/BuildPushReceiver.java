@@ -0,0 +1,262 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.files;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.scenarioo.api.exception.PushedBatchTooLargeException;
+import org.scenarioo.api.util.files.AtomicFileOutputStream;
+
+/**
+ * Stores the batches of files pushed by a {@link BuildPushWriter} into the documentation directory, as if the files
+ * would have been written by a {@link org.scenarioo.api.ScenarioDocuWriter} directly.
+ * 
+ * The build is marked as being written (see {@link BuildCompletionMarker}) with the first batch of a writer and as
+ * complete with its last batch, therefore several writers can push the same build, as long as all batches are received
+ * by the same server instance.
+ * 
+ * Each batch is limited in its size, in the size of its uncompressed files and in its number of files, such that a
+ * client can not fill the disk or keep the server busy with a single request.
+ */
+public class BuildPushReceiver {
+	
+	public static final String CONTENT_TYPE = "application/zip";
+	
+	public static final String PARAM_FIRST_BATCH = "first";
+	
+	public static final String PARAM_LAST_BATCH = "last";
+	
+	public static final String PARAM_COMPLETE = "complete";
+	
+	/**
+	 * Request header containing the secret the server requires for pushing builds, if any.
+	 */
+	public static final String HEADER_PUSH_TOKEN = "X-Scenarioo-Push-Token";
+	
+	public static final long DEFAULT_MAX_BATCH_SIZE_IN_BYTES = 64L * 1024 * 1024;
+	
+	public static final long DEFAULT_MAX_UNCOMPRESSED_BATCH_SIZE_IN_BYTES = 1024L * 1024 * 1024;
+	
+	public static final int DEFAULT_MAX_FILES_PER_BATCH = 100000;
+	
+	private static final int BUFFER_SIZE = 8192;
+	
+	private final ScenarioDocuFiles docuFiles;
+	
+	private final long maxBatchSizeInBytes;
+	
+	private final long maxUncompressedBatchSizeInBytes;
+	
+	private final int maxFilesPerBatch;
+	
+	public BuildPushReceiver(final File rootDirectory) {
+		this(rootDirectory, DEFAULT_MAX_BATCH_SIZE_IN_BYTES, DEFAULT_MAX_UNCOMPRESSED_BATCH_SIZE_IN_BYTES,
+				DEFAULT_MAX_FILES_PER_BATCH);
+	}
+	
+	/**
+	 * @param maxBatchSizeInBytes
+	 *            maximal size of the received ZIP stream of a batch.
+	 * @param maxUncompressedBatchSizeInBytes
+	 *            maximal size of all files of a batch together, after decompression.
+	 * @param maxFilesPerBatch
+	 *            maximal number of files in one batch.
+	 */
+	public BuildPushReceiver(final File rootDirectory, final long maxBatchSizeInBytes,
+			final long maxUncompressedBatchSizeInBytes, final int maxFilesPerBatch) {
+		docuFiles = new ScenarioDocuFiles(rootDirectory);
+		this.maxBatchSizeInBytes = maxBatchSizeInBytes;
+		this.maxUncompressedBatchSizeInBytes = maxUncompressedBatchSizeInBytes;
+		this.maxFilesPerBatch = maxFilesPerBatch;
+	}
+	
+	/**
+	 * Store all files of the batch.
+	 * 
+	 * @param batch
+	 *            ZIP stream with the paths relative to the branch directory as entry names, an empty stream is a batch
+	 *            without any files.
+	 * @param complete
+	 *            only relevant for the last batch, true if the writer has written all files of the build.
+	 * @return true if the build has been written completely after this batch and can be imported.
+	 * @throws PushedBatchTooLargeException
+	 *             if the batch exceeds one of the limits, the files of the batch stored so far are kept, but the build
+	 *             is not marked as complete.
+	 */
+	public boolean receiveBatch(final String branchName, final String buildName, final InputStream batch,
+			final boolean first, final boolean last, final boolean complete) {
+		File buildDirectory = docuFiles.getBuildDirectory(branchName, buildName);
+		docuFiles.assertRootDirectoryExists();
+		buildDirectory.mkdirs();
+		if (first) {
+			BuildCompletionMarker.startWriting(buildDirectory);
+		}
+		boolean stored = false;
+		try {
+			storeFiles(branchName, buildName, batch);
+			stored = true;
+		} finally {
+			if (last) {
+				BuildCompletionMarker.finishWriting(buildDirectory, complete && stored);
+			}
+		}
+		return last && BuildCompletionMarker.isComplete(buildDirectory);
+	}
+	
+	private void storeFiles(final String branchName, final String buildName, final InputStream batch) {
+		InputStream limitedBatch = new LimitedInputStream(batch, maxBatchSizeInBytes);
+		ZipInputStream zipIn = new ZipInputStream(limitedBatch);
+		try {
+			long uncompressedBytes = 0;
+			int files = 0;
+			ZipEntry entry;
+			while ((entry = zipIn.getNextEntry()) != null) {
+				if (!entry.isDirectory()) {
+					if (++files > maxFilesPerBatch) {
+						throw new PushedBatchTooLargeException("Pushed batch of build " + branchName + "/"
+								+ buildName + " contains more than " + maxFilesPerBatch + " files");
+					}
+					File file = getTargetFile(branchName, buildName, entry.getName());
+					uncompressedBytes += storeFile(file, zipIn, maxUncompressedBatchSizeInBytes - uncompressedBytes);
+				}
+			}
+			// the ZIP stream does not read the central directory at the end, read it to receive the whole request
+			skipRemaining(limitedBatch);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not read pushed files of build " + branchName + "/" + buildName, e);
+		}
+	}
+	
+	/**
+	 * @return number of bytes stored.
+	 * @throws PushedBatchTooLargeException
+	 *             if the content is bigger than the remaining bytes, the file is not stored then.
+	 */
+	private long storeFile(final File file, final InputStream content, final long remainingBytes)
+			throws IOException {
+		file.getParentFile().mkdirs();
+		AtomicFileOutputStream out = new AtomicFileOutputStream(file, false);
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			long bytes = 0;
+			int read;
+			while ((read = content.read(buffer)) != -1) {
+				bytes += read;
+				if (bytes > remainingBytes) {
+					throw new PushedBatchTooLargeException("Uncompressed files of pushed batch exceed "
+							+ maxUncompressedBatchSizeInBytes + " bytes, at file " + file.getAbsolutePath());
+				}
+				out.write(buffer, 0, read);
+			}
+			out.commit();
+			return bytes;
+		} finally {
+			out.close();
+		}
+	}
+	
+	private static void skipRemaining(final InputStream in) throws IOException {
+		byte[] buffer = new byte[BUFFER_SIZE];
+		while (in.read(buffer) != -1) {
+			// skip
+		}
+	}
+	
+	/**
+	 * Only the branch file and files inside the build directory (except the completion markers) can be pushed for a
+	 * build.
+	 */
+	private File getTargetFile(final String branchName, final String buildName, final String entryName)
+			throws IOException {
+		File branchFile = docuFiles.getBranchFile(branchName);
+		File file = new File(docuFiles.getBranchDirectory(branchName), entryName);
+		String buildPath = docuFiles.getBuildDirectory(branchName, buildName).getCanonicalPath();
+		String filePath = file.getCanonicalPath();
+		boolean isBuildFile = filePath.startsWith(buildPath + File.separator)
+				&& !isCompletionMarker(buildPath, filePath);
+		if (!filePath.equals(branchFile.getCanonicalPath()) && !isBuildFile) {
+			throw new IllegalArgumentException("Pushed file " + entryName + " is not inside build directory of "
+					+ branchName + "/" + buildName);
+		}
+		return file;
+	}
+	
+	private static boolean isCompletionMarker(final String buildPath, final String filePath) {
+		return filePath.equals(buildPath + File.separator + BuildCompletionMarker.FILE_NAME_WRITING)
+				|| filePath.equals(buildPath + File.separator + BuildCompletionMarker.FILE_NAME_COMPLETE);
+	}
+	
+	/**
+	 * Fails as soon as more than the maximal number of bytes are read.
+	 */
+	private static class LimitedInputStream extends FilterInputStream {
+		
+		private final long maxBytes;
+		
+		private long bytesRead = 0;
+		
+		private LimitedInputStream(final InputStream in, final long maxBytes) {
+			super(in);
+			this.maxBytes = maxBytes;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				count(1);
+			}
+			return b;
+		}
+		
+		@Override
+		public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+			int read = super.read(buffer, offset, length);
+			if (read > 0) {
+				count(read);
+			}
+			return read;
+		}
+		
+		@Override
+		public long skip(final long bytes) throws IOException {
+			long skipped = super.skip(bytes);
+			count(skipped);
+			return skipped;
+		}
+		
+		private void count(final long bytes) {
+			bytesRead += bytes;
+			if (bytesRead > maxBytes) {
+				throw new PushedBatchTooLargeException("Pushed batch exceeds " + maxBytes + " bytes");
+			}
+		}
+		
+	}
+	
+}
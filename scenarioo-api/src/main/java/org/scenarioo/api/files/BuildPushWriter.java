@@ -0,0 +1,246 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.files;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.scenarioo.api.util.files.BinaryContent;
+import org.scenarioo.api.util.files.BinaryFileUtil;
+
+/**
+ * Pushes all files of a build to a scenarioo server over HTTP, instead of writing them into a directory that has to be
+ * shared with the server.
+ * 
+ * The files are collected in batches: each batch is a ZIP stream containing the files with their path relative to the
+ * branch directory as entry name. As soon as a batch exceeds the batch size, it is posted to the push resource of the
+ * server, which stores the files in its own documentation directory, see {@link BuildPushReceiver}. The last batch is
+ * posted on {@link #close(boolean)} and tells the server whether the build has been written completely, such that the
+ * server can import it immediately.
+ */
+public class BuildPushWriter {
+	
+	public static final int DEFAULT_BATCH_SIZE_IN_BYTES = 4 * 1024 * 1024;
+	
+	private static final int CHUNK_SIZE_IN_BYTES = 64 * 1024;
+	
+	private static final int TIMEOUT_IN_MILLIS = 5 * 60 * 1000;
+	
+	private final File branchDirectory;
+	
+	private final String pushUrl;
+	
+	private final String pushToken;
+	
+	private final int batchSizeInBytes;
+	
+	/**
+	 * Entry names of the screenshot blobs already pushed with any batch.
+	 */
+	private final Set<String> pushedBlobEntries = new HashSet<String>();
+	
+	private final Set<String> entriesInBatch = new HashSet<String>();
+	
+	private ByteArrayOutputStream batchBytes;
+	
+	private ZipOutputStream batch;
+	
+	private boolean firstBatch = true;
+	
+	private boolean closed = false;
+	
+	/**
+	 * @param serverUrl
+	 *            URL of the scenarioo server application, e.g. "http://localhost:8080/scenarioo"
+	 * @param pushToken
+	 *            secret required by the server for pushing builds, null if the server does not require one.
+	 * @param branchDirectory
+	 *            the directory the branch would have been written to, file paths are pushed relative to this directory.
+	 */
+	public BuildPushWriter(final String serverUrl, final String pushToken, final File branchDirectory,
+			final String branchName, final String buildName, final int batchSizeInBytes) {
+		this.branchDirectory = branchDirectory;
+		this.pushUrl = removeTrailingSlash(serverUrl) + "/rest/branches/" + encodePathSegment(branchName)
+				+ "/builds/" + encodePathSegment(buildName) + "/push";
+		this.pushToken = pushToken;
+		this.batchSizeInBytes = batchSizeInBytes;
+	}
+	
+	/**
+	 * Push the content of the given file (inside the branch directory) with one of the next batches.
+	 * 
+	 * @return number of bytes of the content (before compression).
+	 */
+	public long writeFile(final File file, final BinaryContent content) {
+		byte[] bytes = BuildArchiveWriter.toByteArray(content);
+		writeEntry(getEntryName(file), bytes, BuildArchiveWriter.isCompressed(file));
+		return bytes.length;
+	}
+	
+	/**
+	 * Push a screenshot deduplicated, like the {@link ScreenshotBlobStore} stores it: the content is only pushed once
+	 * with the hash as name and the screenshot entry only references this hash.
+	 * 
+	 * @return number of bytes pushed, including the content only if it was not yet pushed.
+	 */
+	public long writeScreenshotToBlobStore(final File screenshotFile, final ScreenshotBlobStore blobStore,
+			final BinaryContent content) {
+		byte[] bytes = BuildArchiveWriter.toByteArray(content);
+		String hash = BinaryFileUtil.hash(BinaryContent.fromBuffer(ByteBuffer.wrap(bytes)));
+		String blobEntryName = getEntryName(blobStore.getBlobFile(hash));
+		byte[] reference = BuildArchiveWriter.toAsciiBytes(hash);
+		synchronized (this) {
+			long bytesWritten = reference.length;
+			if (pushedBlobEntries.add(blobEntryName)) {
+				writeEntry(blobEntryName, bytes, false);
+				bytesWritten += bytes.length;
+			}
+			writeEntry(getEntryName(ScreenshotBlobStore.getReferenceFile(screenshotFile)), reference, false);
+			return bytesWritten;
+		}
+	}
+	
+	/**
+	 * Push the last batch, no further files can be written afterwards.
+	 * 
+	 * @param complete
+	 *            false if not all files of the build could be written, the server then never imports the build.
+	 */
+	public synchronized void close(final boolean complete) {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		pushBatch(true, complete);
+	}
+	
+	private synchronized void writeEntry(final String entryName, final byte[] bytes, final boolean compressed) {
+		if (closed) {
+			throw new IllegalStateException("Push of build has already been closed, can not push " + entryName);
+		}
+		if (entriesInBatch.contains(entryName)) {
+			// a file written again replaces the previous content, therefore it has to be pushed with a later batch
+			pushBatch(false, false);
+		}
+		if (batch == null) {
+			batchBytes = new ByteArrayOutputStream();
+			batch = new ZipOutputStream(batchBytes);
+		}
+		try {
+			BuildArchiveWriter.putEntry(batch, entryName, bytes, compressed);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not add " + entryName + " to batch for " + pushUrl, e);
+		}
+		entriesInBatch.add(entryName);
+		if (batchBytes.size() >= batchSizeInBytes) {
+			pushBatch(false, false);
+		}
+	}
+	
+	/**
+	 * Post the current batch to the server, the last batch is also posted if it does not contain any entries.
+	 */
+	private void pushBatch(final boolean last, final boolean complete) {
+		if (batch == null && !last) {
+			return;
+		}
+		String url = pushUrl + "?" + BuildPushReceiver.PARAM_FIRST_BATCH + "=" + firstBatch + "&"
+				+ BuildPushReceiver.PARAM_LAST_BATCH + "=" + last + "&" + BuildPushReceiver.PARAM_COMPLETE + "="
+				+ complete;
+		try {
+			byte[] content = finishBatch();
+			HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			connection.setChunkedStreamingMode(CHUNK_SIZE_IN_BYTES);
+			connection.setConnectTimeout(TIMEOUT_IN_MILLIS);
+			connection.setReadTimeout(TIMEOUT_IN_MILLIS);
+			connection.setRequestProperty("Content-Type", BuildPushReceiver.CONTENT_TYPE);
+			if (pushToken != null) {
+				connection.setRequestProperty(BuildPushReceiver.HEADER_PUSH_TOKEN, pushToken);
+			}
+			OutputStream out = connection.getOutputStream();
+			try {
+				out.write(content);
+			} finally {
+				out.close();
+			}
+			int status = connection.getResponseCode();
+			if (status < 200 || status >= 300) {
+				throw new RuntimeException("Could not push batch to " + url + ", server responded with status "
+						+ status + " " + connection.getResponseMessage());
+			}
+			// read the whole response, such that the connection can be reused for the next batch
+			InputStream response = connection.getInputStream();
+			try {
+				IOUtils.copy(response, new ByteArrayOutputStream());
+			} finally {
+				response.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Could not push batch to " + url, e);
+		} finally {
+			firstBatch = false;
+			batch = null;
+			batchBytes = null;
+			entriesInBatch.clear();
+		}
+	}
+	
+	private byte[] finishBatch() throws IOException {
+		if (batch == null) {
+			// an empty ZIP stream can not be written, the server treats an empty body as batch without entries
+			return new byte[0];
+		}
+		batch.close();
+		return batchBytes.toByteArray();
+	}
+	
+	private String getEntryName(final File file) {
+		return BuildArchiveReader.getEntryName(branchDirectory, file);
+	}
+	
+	private static String removeTrailingSlash(final String url) {
+		return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+	}
+	
+	private static String encodePathSegment(final String name) {
+		try {
+			return URLEncoder.encode(name, "UTF-8").replace("+", "%20");
+		} catch (IOException e) {
+			throw new IllegalStateException("Unsupported UTF-8 charset.", e);
+		}
+	}
+	
+}
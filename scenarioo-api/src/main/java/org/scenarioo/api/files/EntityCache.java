@@ -0,0 +1,204 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.files;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.scenarioo.api.util.codec.EntityCodecs;
+
+/**
+ * Cache of entities loaded from files, bounded by the size of the cached entities, e.g. to not parse the same steps
+ * again and again when users are browsing through the steps of a scenario.
+ * 
+ * An entry is only used as long as the file it has been loaded from still has the same modification time and size.
+ * The least recently used entries are evicted as soon as the cache is full. The cache can be shared by several
+ * readers and threads.
+ * 
+ * Entities are cached serialized (see {@link EntityCodecs#BINARY}), such that the size of the cache is known exactly
+ * and each caller gets its own copy of the entity, that it may modify. Deserializing is still much faster than
+ * parsing the XML file again. Entities that can not be serialized are not cached.
+ */
+public class EntityCache {
+	
+	private static final Logger LOGGER = Logger.getLogger(EntityCache.class);
+	
+	private final long maxSizeInBytes;
+	
+	private final Map<String, CachedEntity> entries = new LinkedHashMap<String, CachedEntity>(16, 0.75f, true);
+	
+	/**
+	 * Sum of the sizes of all entries, guarded by {@link #entries}.
+	 */
+	private long sizeInBytes = 0;
+	
+	private final AtomicLong hits = new AtomicLong();
+	
+	private final AtomicLong misses = new AtomicLong();
+	
+	/**
+	 * Loads the entity on a cache miss.
+	 */
+	public interface EntityLoader<T> {
+		
+		T load();
+		
+	}
+	
+	/**
+	 * @param maxSizeInBytes
+	 *            maximal size of all serialized entities in the cache, bigger entities are never cached.
+	 */
+	public EntityCache(final long maxSizeInBytes) {
+		this.maxSizeInBytes = maxSizeInBytes;
+	}
+	
+	/**
+	 * Get a copy of the cached entity, or load it if it is not cached or the source file has been changed since it was
+	 * loaded.
+	 * 
+	 * @param sourceFile
+	 *            file the entity is loaded from, to validate the cached entity.
+	 * @param key
+	 *            identifies the entity, several entities can be loaded from the same source file.
+	 */
+	public <T> T get(final File sourceFile, final String key, final EntityLoader<T> loader) {
+		// read the state of the file before loading, such that a change during loading is detected on next access
+		long lastModified = sourceFile.lastModified();
+		long length = sourceFile.length();
+		if (lastModified == 0L) {
+			// file does not exist (anymore), let the loader report it
+			misses.incrementAndGet();
+			return loader.load();
+		}
+		CachedEntity cached;
+		synchronized (entries) {
+			cached = entries.get(key);
+		}
+		if (cached != null && cached.lastModified == lastModified && cached.length == length) {
+			hits.incrementAndGet();
+			return EntityCache.<T> cast(EntityCodecs.BINARY.decode(cached.entityClass, new ByteArrayInputStream(
+					cached.serializedEntity)));
+		}
+		misses.incrementAndGet();
+		T entity = loader.load();
+		put(key, new CachedEntity(lastModified, length, entity));
+		return entity;
+	}
+	
+	public long getHits() {
+		return hits.get();
+	}
+	
+	public long getMisses() {
+		return misses.get();
+	}
+	
+	public int getSize() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+	
+	public long getSizeInBytes() {
+		synchronized (entries) {
+			return sizeInBytes;
+		}
+	}
+	
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+			sizeInBytes = 0;
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "EntityCache [entries=" + getSize() + ", sizeInBytes=" + getSizeInBytes() + "/" + maxSizeInBytes
+				+ ", hits=" + getHits() + ", misses=" + getMisses() + "]";
+	}
+	
+	private void put(final String key, final CachedEntity cachedEntity) {
+		if (cachedEntity.serializedEntity == null || cachedEntity.serializedEntity.length > maxSizeInBytes) {
+			return;
+		}
+		synchronized (entries) {
+			CachedEntity replaced = entries.put(key, cachedEntity);
+			if (replaced != null) {
+				sizeInBytes -= replaced.serializedEntity.length;
+			}
+			sizeInBytes += cachedEntity.serializedEntity.length;
+			Iterator<CachedEntity> eldest = entries.values().iterator();
+			while (sizeInBytes > maxSizeInBytes) {
+				sizeInBytes -= eldest.next().serializedEntity.length;
+				eldest.remove();
+			}
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <T> T cast(final Object entity) {
+		return (T) entity;
+	}
+	
+	private static class CachedEntity {
+		
+		private final long lastModified;
+		
+		private final long length;
+		
+		private final Class<?> entityClass;
+		
+		/**
+		 * Null if the entity could not be serialized.
+		 */
+		private final byte[] serializedEntity;
+		
+		private CachedEntity(final long lastModified, final long length, final Object entity) {
+			this.lastModified = lastModified;
+			this.length = length;
+			this.entityClass = entity == null ? null : entity.getClass();
+			this.serializedEntity = entity == null ? null : serialize(entity);
+		}
+		
+		private static byte[] serialize(final Object entity) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try {
+				EntityCodecs.BINARY.encode(entity, bytes);
+			} catch (RuntimeException e) {
+				LOGGER.warn("Could not cache entity of type " + entity.getClass().getName(), e);
+				return null;
+			}
+			return bytes.toByteArray();
+		}
+		
+	}
+	
+}
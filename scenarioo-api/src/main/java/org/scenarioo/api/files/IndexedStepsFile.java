@@ -0,0 +1,393 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.files;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.scenarioo.api.exception.ResourceNotFoundException;
+import org.scenarioo.api.files.StepIterator.StepSource;
+import org.scenarioo.api.util.codec.EntityCodec;
+import org.scenarioo.api.util.codec.EntityCodecs;
+import org.scenarioo.api.util.files.BinaryContent;
+import org.scenarioo.api.util.files.BinaryFileUtil;
+import org.scenarioo.api.util.xml.ScenarioDocuXMLUtil;
+import org.scenarioo.model.docu.entities.Step;
+
+/**
+ * One file containing all steps of a scenario, as an alternative to one XML file per step.
+ * 
+ * The file starts with an index of all contained steps, followed by the XML documents of the steps (optionally each
+ * gzip compressed), such that a single step can be read without reading the other steps:
+ * 
+ * <pre>
+ * int magic number, int version, int flags, int number of steps
+ * for each step: int step index, long offset of XML document (relative to end of index), int length of XML document
+ * XML documents of all steps
+ * </pre>
+ * 
+ * Instead of XML, the steps can also be written in another format (see {@link EntityCodec}), the format of each step
+ * is detected when reading it. Steps in binary format are only read by the methods with the parameter
+ * binaryFormatEnabled (see {@link EntityCodecs#decode(Class, InputStream, boolean, String...)}).
+ */
+public class IndexedStepsFile {
+	
+	private static final int MAGIC_NUMBER = 0x53435354;
+	
+	private static final int VERSION = 1;
+	
+	private static final int FLAG_COMPRESSED = 1;
+	
+	private static final int HEADER_SIZE_IN_BYTES = 16;
+	
+	private static final int INDEX_ENTRY_SIZE_IN_BYTES = 16;
+	
+	/**
+	 * Content of the file containing the passed steps, all steps are marshalled when the content is written.
+	 * 
+	 * @param compressed
+	 *            true to gzip compress the XML document of each step.
+	 */
+	public static BinaryContent toContent(final List<Step> steps, final boolean formattedOutput,
+			final boolean compressed) {
+		return toContent(steps, EntityCodecs.getCodec(false, formattedOutput), compressed);
+	}
+	
+	/**
+	 * Same as {@link #toContent(List, boolean, boolean)}, but each step is written in the format of the given codec.
+	 */
+	public static BinaryContent toContent(final List<Step> steps, final EntityCodec codec, final boolean compressed) {
+		return new BinaryContent() {
+			@Override
+			public void writeTo(final WritableByteChannel channel) throws IOException {
+				write(Channels.newOutputStream(channel), steps, codec, compressed);
+			}
+		};
+	}
+	
+	/**
+	 * Read all steps from the file content in the order they have been written. The stream is not closed.
+	 */
+	public static List<Step> readSteps(final InputStream inStream) throws IOException {
+		return readSteps(inStream, false);
+	}
+	
+	/**
+	 * Same as {@link #readSteps(InputStream)}, but reads steps in binary format as well, if enabled.
+	 */
+	public static List<Step> readSteps(final InputStream inStream, final boolean binaryFormatEnabled)
+			throws IOException {
+		StepsReader reader = new StepsReader(inStream, binaryFormatEnabled);
+		List<Step> steps = new ArrayList<Step>(reader.getNumberOfSteps());
+		while (reader.hasNextStep()) {
+			steps.add(reader.loadNextStep());
+		}
+		return steps;
+	}
+	
+	/**
+	 * Open a reader for all steps of the file content, that reads one step after the other. The stream is closed when
+	 * the reader is closed.
+	 * 
+	 * @param skippedElementPaths
+	 *            elements of the steps not to read, see
+	 *            {@link ScenarioDocuXMLUtil#unmarshalSkippingElements(Class, InputStream, String...)}.
+	 */
+	public static StepsReader openStepsReader(final InputStream inStream, final String... skippedElementPaths)
+			throws IOException {
+		return new StepsReader(inStream, false, skippedElementPaths);
+	}
+	
+	/**
+	 * Same as {@link #openStepsReader(InputStream, String...)}, but reads steps in binary format as well, if enabled.
+	 */
+	public static StepsReader openStepsReader(final InputStream inStream, final boolean binaryFormatEnabled,
+			final String... skippedElementPaths) throws IOException {
+		return new StepsReader(inStream, binaryFormatEnabled, skippedElementPaths);
+	}
+	
+	/**
+	 * Read only the number of steps contained in the file, from the beginning of the file content. The stream is not
+	 * closed.
+	 */
+	public static int readNumberOfSteps(final InputStream inStream) throws IOException {
+		DataInputStream in = new DataInputStream(inStream);
+		return readIndex(in).stepIndexes.length;
+	}
+	
+	/**
+	 * Read the hashes (see {@link BinaryFileUtil#hash(BinaryContent)}) of the uncompressed documents of all steps in the
+	 * file content, without parsing the steps. The stream is not closed.
+	 * 
+	 * @return hashes by step index.
+	 */
+	public static SortedMap<Integer, String> readStepDocumentHashes(final InputStream inStream) throws IOException {
+		DataInputStream in = new DataInputStream(inStream);
+		Index index = readIndex(in);
+		SortedMap<Integer, String> hashes = new TreeMap<Integer, String>();
+		long position = 0;
+		for (int i = 0; i < index.stepIndexes.length; i++) {
+			skipFully(in, index.offsets[i] - position);
+			byte[] document = new byte[index.lengths[i]];
+			in.readFully(document);
+			position = index.offsets[i] + index.lengths[i];
+			InputStream documentStream = new ByteArrayInputStream(document);
+			if (index.compressed) {
+				documentStream = new GZIPInputStream(documentStream);
+			}
+			hashes.put(index.stepIndexes[i], BinaryFileUtil.hash(BinaryContent.fromStream(documentStream)));
+		}
+		return hashes;
+	}
+	
+	/**
+	 * Read a single step from the file content, only the bytes up to the end of the step are read. The stream is not
+	 * closed.
+	 * 
+	 * @throws ResourceNotFoundException
+	 *             if there is no step with this index.
+	 */
+	public static Step readStep(final InputStream inStream, final int stepIndex, final String resourceName,
+			final String... skippedElementPaths) throws IOException {
+		return readStep(inStream, stepIndex, resourceName, false, skippedElementPaths);
+	}
+	
+	/**
+	 * Same as {@link #readStep(InputStream, int, String, String...)}, but reads steps in binary format as well, if
+	 * enabled.
+	 */
+	public static Step readStep(final InputStream inStream, final int stepIndex, final String resourceName,
+			final boolean binaryFormatEnabled, final String... skippedElementPaths) throws IOException {
+		DataInputStream in = new DataInputStream(inStream);
+		Index index = readIndex(in);
+		int i = index.find(stepIndex, resourceName);
+		skipFully(in, index.offsets[i]);
+		return readStep(in, index.lengths[i], index.compressed, binaryFormatEnabled, skippedElementPaths);
+	}
+	
+	/**
+	 * Read a single step from the file, by directly accessing the bytes of this step.
+	 * 
+	 * @throws ResourceNotFoundException
+	 *             if there is no step with this index.
+	 */
+	public static Step readStep(final File file, final int stepIndex, final String... skippedElementPaths)
+			throws IOException {
+		return readStep(file, stepIndex, false, skippedElementPaths);
+	}
+	
+	/**
+	 * Same as {@link #readStep(File, int, String...)}, but reads steps in binary format as well, if enabled.
+	 */
+	public static Step readStep(final File file, final int stepIndex, final boolean binaryFormatEnabled,
+			final String... skippedElementPaths) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			Index index = readIndex(in);
+			int i = index.find(stepIndex, file.getAbsolutePath());
+			in.seek(index.getDataOffset() + index.offsets[i]);
+			return readStep(in, index.lengths[i], index.compressed, binaryFormatEnabled, skippedElementPaths);
+		} finally {
+			in.close();
+		}
+	}
+	
+	private static void write(final OutputStream outStream, final List<Step> steps, final EntityCodec codec,
+			final boolean compressed) throws IOException {
+		List<byte[]> documents = new ArrayList<byte[]>(steps.size());
+		for (Step step : steps) {
+			documents.add(marshal(step, codec, compressed));
+		}
+		DataOutputStream out = new DataOutputStream(outStream);
+		out.writeInt(MAGIC_NUMBER);
+		out.writeInt(VERSION);
+		out.writeInt(compressed ? FLAG_COMPRESSED : 0);
+		out.writeInt(steps.size());
+		long offset = 0;
+		for (int i = 0; i < steps.size(); i++) {
+			out.writeInt(steps.get(i).getStepDescription().getIndex());
+			out.writeLong(offset);
+			out.writeInt(documents.get(i).length);
+			offset += documents.get(i).length;
+		}
+		for (byte[] document : documents) {
+			out.write(document);
+		}
+		out.flush();
+	}
+	
+	private static byte[] marshal(final Step step, final EntityCodec codec, final boolean compressed)
+			throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		if (compressed) {
+			GZIPOutputStream out = new GZIPOutputStream(bytes);
+			codec.encode(step, out);
+			out.finish();
+		} else {
+			codec.encode(step, bytes);
+		}
+		return bytes.toByteArray();
+	}
+	
+	private static Step readStep(final DataInput in, final int length, final boolean compressed,
+			final boolean binaryFormatEnabled, final String... skippedElementPaths) throws IOException {
+		byte[] document = new byte[length];
+		in.readFully(document);
+		InputStream documentStream = new ByteArrayInputStream(document);
+		if (compressed) {
+			documentStream = new GZIPInputStream(documentStream);
+		}
+		return EntityCodecs.decode(Step.class, documentStream, binaryFormatEnabled, skippedElementPaths);
+	}
+	
+	private static Index readIndex(final DataInput in) throws IOException {
+		if (in.readInt() != MAGIC_NUMBER) {
+			throw new IOException("Not an indexed steps file");
+		}
+		int version = in.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported version of indexed steps file: " + version);
+		}
+		Index index = new Index(in.readInt(), in.readInt());
+		for (int i = 0; i < index.stepIndexes.length; i++) {
+			index.stepIndexes[i] = in.readInt();
+			index.offsets[i] = in.readLong();
+			index.lengths[i] = in.readInt();
+		}
+		return index;
+	}
+	
+	private static void skipFully(final InputStream in, final long bytes) throws IOException {
+		long remaining = bytes;
+		while (remaining > 0) {
+			long skipped = in.skip(remaining);
+			if (skipped <= 0) {
+				if (in.read() == -1) {
+					throw new IOException("Unexpected end of indexed steps file");
+				}
+				skipped = 1;
+			}
+			remaining -= skipped;
+		}
+	}
+	
+	/**
+	 * Reads the steps in the order they have been written, only the current step is read into memory.
+	 */
+	public static class StepsReader implements StepSource {
+		
+		private final DataInputStream in;
+		
+		private final Index index;
+		
+		private final boolean binaryFormatEnabled;
+		
+		private final String[] skippedElementPaths;
+		
+		private int nextStep = 0;
+		
+		private long position = 0;
+		
+		private StepsReader(final InputStream inStream, final boolean binaryFormatEnabled,
+				final String... skippedElementPaths) throws IOException {
+			this.binaryFormatEnabled = binaryFormatEnabled;
+			this.skippedElementPaths = skippedElementPaths;
+			in = new DataInputStream(inStream);
+			index = readIndex(in);
+		}
+		
+		public int getNumberOfSteps() {
+			return index.stepIndexes.length;
+		}
+		
+		@Override
+		public boolean hasNextStep() {
+			return nextStep < index.stepIndexes.length;
+		}
+		
+		@Override
+		public Step loadNextStep() throws IOException {
+			skipFully(in, index.offsets[nextStep] - position);
+			Step step = readStep(in, index.lengths[nextStep], index.compressed, binaryFormatEnabled,
+					skippedElementPaths);
+			position = index.offsets[nextStep] + index.lengths[nextStep];
+			nextStep++;
+			return step;
+		}
+		
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+		
+	}
+	
+	private static class Index {
+		
+		private final boolean compressed;
+		
+		private final int[] stepIndexes;
+		
+		private final long[] offsets;
+		
+		private final int[] lengths;
+		
+		private Index(final int flags, final int numberOfSteps) {
+			compressed = (flags & FLAG_COMPRESSED) != 0;
+			stepIndexes = new int[numberOfSteps];
+			offsets = new long[numberOfSteps];
+			lengths = new int[numberOfSteps];
+		}
+		
+		private long getDataOffset() {
+			return HEADER_SIZE_IN_BYTES + (long) stepIndexes.length * INDEX_ENTRY_SIZE_IN_BYTES;
+		}
+		
+		private int find(final int stepIndex, final String resourceName) {
+			for (int i = 0; i < stepIndexes.length; i++) {
+				if (stepIndexes[i] == stepIndex) {
+					return i;
+				}
+			}
+			throw new ResourceNotFoundException(resourceName + "#" + stepIndex);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,190 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.files;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.scenarioo.model.docu.entities.NormalizedPage;
+import org.scenarioo.model.docu.entities.Page;
+import org.scenarioo.model.docu.entities.Step;
+import org.scenarioo.model.docu.entities.StepDescription;
+import org.scenarioo.model.docu.entities.StepMetadata;
+import org.scenarioo.model.docu.entities.generic.Details;
+import org.scenarioo.model.docu.entities.generic.NormalizedObjectDescription;
+import org.scenarioo.model.docu.entities.generic.ObjectDescription;
+import org.scenarioo.model.docu.entities.generic.ObjectList;
+import org.scenarioo.model.docu.entities.generic.ObjectTreeNode;
+
+/**
+ * Stores each page and each object description of a build only once and replaces them inside the steps by references
+ * ({@link NormalizedPage} and {@link NormalizedObjectDescription}), see {@link ObjectResolver} for reading.
+ * 
+ * Pages are identified by name, object descriptions by type and name. If the same page or object occurs with other
+ * details than the already stored one, it is not replaced but kept inside the step.
+ */
+public class ObjectNormalizer {
+	
+	/**
+	 * Writes the pages and objects that are stored.
+	 */
+	public interface StoredObjectWriter {
+		
+		void writePage(Page page);
+		
+		void writeObject(ObjectDescription object);
+		
+	}
+	
+	private final StoredObjectWriter writer;
+	
+	private final ConcurrentMap<String, Page> storedPages = new ConcurrentHashMap<String, Page>();
+	
+	private final ConcurrentMap<List<String>, ObjectDescription> storedObjects =
+			new ConcurrentHashMap<List<String>, ObjectDescription>();
+	
+	public ObjectNormalizer(final StoredObjectWriter writer) {
+		this.writer = writer;
+	}
+	
+	/**
+	 * Store all pages and objects of the step that are not yet stored.
+	 * 
+	 * @return copy of the step that contains references instead of the stored pages and objects, the passed step is
+	 *         not changed.
+	 */
+	public Step normalize(final Step step) {
+		Step result = new Step();
+		result.setPage(normalizePage(step.getPage()));
+		result.setStepDescription(normalizeStepDescription(step.getStepDescription()));
+		result.setHtml(step.getHtml());
+		result.setMetadata(normalizeMetadata(step.getMetadata()));
+		return result;
+	}
+	
+	private Page normalizePage(final Page page) {
+		if (page == null || page.getDetails().isEmpty()) {
+			return page;
+		}
+		Page normalizedPage = new Page(page.getName());
+		normalizedPage.getDetails().putAll(normalizeDetails(page.getDetails()));
+		Page storedPage = storedPages.putIfAbsent(page.getName(), normalizedPage);
+		if (storedPage == null) {
+			writer.writePage(normalizedPage);
+		} else if (!storedPage.getDetails().equals(normalizedPage.getDetails())) {
+			return normalizedPage;
+		}
+		return new NormalizedPage(page.getName());
+	}
+	
+	@SuppressWarnings("deprecation")
+	private StepDescription normalizeStepDescription(final StepDescription stepDescription) {
+		if (stepDescription == null || stepDescription.getDetails().isEmpty()) {
+			return stepDescription;
+		}
+		StepDescription result = new StepDescription();
+		result.setIndex(stepDescription.getIndex());
+		result.setTitle(stepDescription.getTitle());
+		result.setStatus(stepDescription.getStatus());
+		result.setScreenshotFileName(stepDescription.getScreenshotFileName());
+		result.getDetails().putAll(normalizeDetails(stepDescription.getDetails()));
+		result.setOccurence(stepDescription.getOccurence());
+		result.setRelativeIndex(stepDescription.getRelativeIndex());
+		result.setVariantIndex(stepDescription.getVariantIndex());
+		result.setPreviousStepVariant(stepDescription.getPreviousStepVariant());
+		result.setNextStepVariant(stepDescription.getNextStepVariant());
+		return result;
+	}
+	
+	private StepMetadata normalizeMetadata(final StepMetadata metadata) {
+		if (metadata == null || metadata.getDetails() == null) {
+			return metadata;
+		}
+		StepMetadata result = new StepMetadata();
+		result.setVisibleText(metadata.getVisibleText());
+		result.setDetails(normalizeDetails(metadata.getDetails()));
+		return result;
+	}
+	
+	private Details normalizeDetails(final Details details) {
+		Details result = new Details();
+		for (Map.Entry<String, Object> detail : details.entrySet()) {
+			result.put(detail.getKey(), normalizeValue(detail.getValue()));
+		}
+		return result;
+	}
+	
+	private Object normalizeValue(final Object value) {
+		if (value instanceof ObjectDescription) {
+			return normalizeObject((ObjectDescription) value);
+		} else if (value instanceof ObjectList) {
+			return normalizeList((ObjectList<?>) value);
+		} else if (value instanceof ObjectTreeNode) {
+			return normalizeTreeNode((ObjectTreeNode<?>) value);
+		} else if (value instanceof Details) {
+			return normalizeDetails((Details) value);
+		}
+		return value;
+	}
+	
+	private ObjectDescription normalizeObject(final ObjectDescription object) {
+		if (object instanceof NormalizedObjectDescription || object.getDetails() == null
+				|| object.getDetails().isEmpty()) {
+			return object;
+		}
+		ObjectDescription normalizedObject = new ObjectDescription(object.getType(), object.getName());
+		normalizedObject.setDetails(normalizeDetails(object.getDetails()));
+		if (object.getType() == null || object.getName() == null) {
+			return normalizedObject;
+		}
+		ObjectDescription storedObject = storedObjects.putIfAbsent(Arrays.asList(object.getType(),
+				object.getName()), normalizedObject);
+		if (storedObject == null) {
+			writer.writeObject(normalizedObject);
+		} else if (!storedObject.getDetails().equals(normalizedObject.getDetails())) {
+			return normalizedObject;
+		}
+		return new NormalizedObjectDescription(object.getType(), object.getName());
+	}
+	
+	private ObjectList<Object> normalizeList(final ObjectList<?> list) {
+		ObjectList<Object> result = new ObjectList<Object>();
+		for (Object item : list) {
+			result.add(normalizeValue(item));
+		}
+		return result;
+	}
+	
+	private ObjectTreeNode<Object> normalizeTreeNode(final ObjectTreeNode<?> node) {
+		ObjectTreeNode<Object> result = new ObjectTreeNode<Object>(normalizeValue(node.getItem()));
+		result.setDetails(normalizeDetails(node.getDetails()));
+		for (ObjectTreeNode<Object> child : node.<Object> getChildren()) {
+			result.addChild(normalizeTreeNode(child));
+		}
+		return result;
+	}
+	
+}
@@ -0,0 +1,156 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.files;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.scenarioo.model.docu.entities.NormalizedPage;
+import org.scenarioo.model.docu.entities.Page;
+import org.scenarioo.model.docu.entities.Step;
+import org.scenarioo.model.docu.entities.generic.Details;
+import org.scenarioo.model.docu.entities.generic.NormalizedObjectDescription;
+import org.scenarioo.model.docu.entities.generic.ObjectDescription;
+import org.scenarioo.model.docu.entities.generic.ObjectList;
+import org.scenarioo.model.docu.entities.generic.ObjectTreeNode;
+
+/**
+ * Replaces the references to pages and object descriptions written by the {@link ObjectNormalizer} by the stored pages
+ * and objects.
+ * 
+ * Each stored page and object is only loaded once per resolver, all steps resolved by the same resolver share the same
+ * instances.
+ */
+public class ObjectResolver {
+	
+	/**
+	 * Loads the stored pages and objects.
+	 */
+	public interface StoredObjectLoader {
+		
+		Page loadPage(String name);
+		
+		ObjectDescription loadObject(String type, String name);
+		
+	}
+	
+	private final StoredObjectLoader loader;
+	
+	private final Map<String, Page> pages = new HashMap<String, Page>();
+	
+	private final Map<List<String>, ObjectDescription> objects = new HashMap<List<String>, ObjectDescription>();
+	
+	/**
+	 * Objects that are currently loaded, to not resolve cyclic references endlessly.
+	 */
+	private final Set<List<String>> objectsInResolution = new HashSet<List<String>>();
+	
+	public ObjectResolver(final StoredObjectLoader loader) {
+		this.loader = loader;
+	}
+	
+	/**
+	 * Replace all references in the step.
+	 */
+	public void resolve(final Step step) {
+		if (step.getPage() instanceof NormalizedPage) {
+			step.setPage(getPage(step.getPage().getName()));
+		} else if (step.getPage() != null) {
+			resolveDetails(step.getPage().getDetails());
+		}
+		if (step.getStepDescription() != null) {
+			resolveDetails(step.getStepDescription().getDetails());
+		}
+		if (step.getMetadata() != null && step.getMetadata().getDetails() != null) {
+			resolveDetails(step.getMetadata().getDetails());
+		}
+	}
+	
+	private Page getPage(final String name) {
+		Page page = pages.get(name);
+		if (page == null) {
+			page = loader.loadPage(name);
+			resolveDetails(page.getDetails());
+			pages.put(name, page);
+		}
+		return page;
+	}
+	
+	private ObjectDescription getObject(final String type, final String name) {
+		List<String> key = Arrays.asList(type, name);
+		ObjectDescription object = objects.get(key);
+		if (object == null) {
+			if (!objectsInResolution.add(key)) {
+				// cyclic reference, resolve only type and name
+				return new ObjectDescription(type, name);
+			}
+			try {
+				object = loader.loadObject(type, name);
+				resolveDetails(object.getDetails());
+				objects.put(key, object);
+			} finally {
+				objectsInResolution.remove(key);
+			}
+		}
+		return object;
+	}
+	
+	private void resolveDetails(final Details details) {
+		if (details == null) {
+			return;
+		}
+		for (Map.Entry<String, Object> detail : details.entrySet()) {
+			detail.setValue(resolveValue(detail.getValue()));
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private Object resolveValue(final Object value) {
+		if (value instanceof NormalizedObjectDescription) {
+			ObjectDescription reference = (ObjectDescription) value;
+			return getObject(reference.getType(), reference.getName());
+		} else if (value instanceof ObjectDescription) {
+			resolveDetails(((ObjectDescription) value).getDetails());
+		} else if (value instanceof ObjectList) {
+			ObjectList<Object> list = (ObjectList<Object>) value;
+			for (int i = 0; i < list.size(); i++) {
+				list.set(i, resolveValue(list.get(i)));
+			}
+		} else if (value instanceof ObjectTreeNode) {
+			ObjectTreeNode<Object> node = (ObjectTreeNode<Object>) value;
+			node.setItem(resolveValue(node.getItem()));
+			resolveDetails(node.getDetails());
+			for (ObjectTreeNode<Object> child : node.<Object> getChildren()) {
+				resolveValue(child);
+			}
+		} else if (value instanceof Details) {
+			resolveDetails((Details) value);
+		}
+		return value;
+	}
+	
+}
@@ -26,10 +26,15 @@ import java.io.File;
 import java.text.NumberFormat;
 import java.util.List;
 
+import org.scenarioo.api.files.storage.DocuStorage;
+import org.scenarioo.api.files.storage.FileSystemStorage;
 import org.scenarioo.api.util.files.FilesUtil;
 
 /**
  * Represents the file structure of the documentation.
+ * 
+ * The files are addressed by their paths below the root directory, but can be stored in any {@link DocuStorage}.
+ * Build archives are only supported for builds in the file system.
  */
 public class ScenarioDocuFiles {
 	
@@ -37,6 +42,12 @@ public class ScenarioDocuFiles {
 	
 	private static final String DIRECTORY_NAME_SCENARIO_STEPS = "steps";
 	
+	private static final String DIRECTORY_NAME_BUILD_SCREENSHOT_BLOBS = "_screenshotBlobs";
+	
+	private static final String DIRECTORY_NAME_BUILD_PAGES = "_pages";
+	
+	private static final String DIRECTORY_NAME_BUILD_OBJECTS = "_objects";
+	
 	private static final String FILE_NAME_SCENARIO = "scenario.xml";
 	
 	private static final String FILE_NAME_CASE = "usecase.xml";
@@ -45,16 +56,44 @@ public class ScenarioDocuFiles {
 	
 	private static final String FILE_NAME_BRANCH = "branch.xml";
 	
-	private static NumberFormat THREE_DIGIT_NUM_FORMAT = createNumberFormatWithMinimumIntegerDigits(3);
+	private static final String FILE_NAME_BUILD_ARCHIVE = "build.zip";
+	
+	private static final String FILE_NAME_SCENARIO_STEPS = "steps.dat";
+	
+	private static final String FILE_NAME_SCENARIO_STEPS_AGGREGATE = "steps.aggregate.xml";
+	
+	/**
+	 * Number formats are not thread safe, but files are accessed by several writer threads, therefore it is only used
+	 * synchronized (see {@link #formatStepIndex(int)}).
+	 */
+	private static final NumberFormat THREE_DIGIT_NUM_FORMAT = createNumberFormatWithMinimumIntegerDigits(3);
 	
 	private File rootDirectory;
 	
+	private final DocuStorage storage;
+	
 	public ScenarioDocuFiles(final File rootDirectory) {
+		this(rootDirectory, FileSystemStorage.INSTANCE);
+	}
+	
+	public ScenarioDocuFiles(final File rootDirectory, final DocuStorage storage) {
 		this.rootDirectory = rootDirectory;
+		this.storage = storage;
+	}
+	
+	public DocuStorage getStorage() {
+		return storage;
+	}
+	
+	/**
+	 * @return true if the files are stored in the file system.
+	 */
+	public boolean isFileSystemStorage() {
+		return storage instanceof FileSystemStorage;
 	}
 	
 	public void assertRootDirectoryExists() {
-		if (!rootDirectory.exists()) {
+		if (!storage.exists(rootDirectory)) {
 			throw new IllegalArgumentException("Directory for docu content generation does not exist: "
 					+ rootDirectory.getAbsolutePath());
 		}
@@ -74,7 +113,7 @@ public class ScenarioDocuFiles {
 	}
 	
 	public List<File> getBranchFiles() {
-		return FilesUtil.getListOfFilesFromSubdirs(rootDirectory, FILE_NAME_BRANCH);
+		return FilesUtil.getListOfFilesFromSubdirs(storage, rootDirectory, FILE_NAME_BRANCH);
 	}
 	
 	public File getBuildDirectory(final String branchName, final String buildName) {
@@ -87,7 +126,86 @@ public class ScenarioDocuFiles {
 	}
 	
 	public List<File> getBuildFiles(final String branchName) {
-		return FilesUtil.getListOfFilesFromSubdirs(getBranchDirectory(branchName), FILE_NAME_BUILD);
+		return FilesUtil.getListOfFilesFromSubdirs(storage, getBranchDirectory(branchName), FILE_NAME_BUILD);
+	}
+	
+	/**
+	 * Archive containing all files of a build except the build description, in case the build has been written as
+	 * archive, see {@link BuildArchiveWriter}.
+	 */
+	public File getBuildArchiveFile(final String branchName, final String buildName) {
+		return new File(getBuildDirectory(branchName, buildName), FILE_NAME_BUILD_ARCHIVE);
+	}
+	
+	/**
+	 * @return true if the build has been written as archive, see {@link BuildArchiveWriter}.
+	 */
+	public boolean isBuildArchived(final String branchName, final String buildName) {
+		return isFileSystemStorage() && getBuildArchiveFile(branchName, buildName).isFile();
+	}
+	
+	/**
+	 * @return reader for the files inside the build archive, or null if the build is not written as archive. The
+	 *         reader has to be released by the caller, see {@link BuildArchiveReader#release()}.
+	 */
+	public BuildArchiveReader getBuildArchive(final String branchName, final String buildName) {
+		if (!isFileSystemStorage()) {
+			return null;
+		}
+		return BuildArchiveReader.getBuildArchive(getBuildDirectory(branchName, buildName),
+				getBuildArchiveFile(branchName, buildName));
+	}
+	
+	/**
+	 * @return false as long as the build is still being written, see {@link BuildCompletionMarker}.
+	 */
+	public boolean isBuildComplete(final String branchName, final String buildName) {
+		return BuildCompletionMarker.isComplete(storage, getBuildDirectory(branchName, buildName));
+	}
+	
+	/**
+	 * @return time in milliseconds when writing of the build has been started, or 0 if the build is not being written,
+	 *         see {@link BuildCompletionMarker#getWritingStartTime(File)}.
+	 */
+	public long getBuildWritingStartTime(final String branchName, final String buildName) {
+		if (!isFileSystemStorage()) {
+			return 0;
+		}
+		return BuildCompletionMarker.getWritingStartTime(getBuildDirectory(branchName, buildName));
+	}
+	
+	/**
+	 * Directory for all screenshots of a build that are stored only once by their content hash, see
+	 * {@link ScreenshotBlobStore}.
+	 */
+	public File getScreenshotBlobsDirectory(final String branchName, final String buildName) {
+		return new File(getBuildDirectory(branchName, buildName), DIRECTORY_NAME_BUILD_SCREENSHOT_BLOBS);
+	}
+	
+	/**
+	 * Directory for all pages of a build that are stored only once, see {@link ObjectNormalizer}.
+	 */
+	public File getPagesDirectory(final String branchName, final String buildName) {
+		return new File(getBuildDirectory(branchName, buildName), DIRECTORY_NAME_BUILD_PAGES);
+	}
+	
+	public File getPageFile(final String branchName, final String buildName, final String pageName) {
+		return new File(getPagesDirectory(branchName, buildName), FilesUtil.encodeName(pageName) + ".xml");
+	}
+	
+	/**
+	 * Directory for all object descriptions of a type that are stored only once per build, see
+	 * {@link ObjectNormalizer}.
+	 */
+	public File getObjectsDirectory(final String branchName, final String buildName, final String objectType) {
+		return new File(new File(getBuildDirectory(branchName, buildName), DIRECTORY_NAME_BUILD_OBJECTS),
+				FilesUtil.encodeName(objectType));
+	}
+	
+	public File getObjectFile(final String branchName, final String buildName, final String objectType,
+			final String objectName) {
+		return new File(getObjectsDirectory(branchName, buildName, objectType), FilesUtil.encodeName(objectName)
+				+ ".xml");
 	}
 	
 	public File getUseCaseDirectory(final String branchName, final String buildName, final String useCaseName) {
@@ -100,7 +218,15 @@ public class ScenarioDocuFiles {
 	}
 	
 	public List<File> getUseCaseFiles(final String branchName, final String buildName) {
-		return FilesUtil.getListOfFilesFromSubdirs(getBuildDirectory(branchName, buildName), FILE_NAME_CASE);
+		BuildArchiveReader archive = getBuildArchive(branchName, buildName);
+		if (archive != null) {
+			try {
+				return archive.getListOfFilesFromSubdirs(getBuildDirectory(branchName, buildName), FILE_NAME_CASE);
+			} finally {
+				archive.release();
+			}
+		}
+		return FilesUtil.getListOfFilesFromSubdirs(storage, getBuildDirectory(branchName, buildName), FILE_NAME_CASE);
 	}
 	
 	public File getScenarioDirectory(final String branchName, final String buildName, final String useCaseName,
@@ -116,7 +242,16 @@ public class ScenarioDocuFiles {
 	}
 	
 	public List<File> getScenarioFiles(final String branchName, final String buildName, final String useCaseName) {
-		return FilesUtil.getListOfFilesFromSubdirs(getUseCaseDirectory(branchName, buildName, useCaseName),
+		BuildArchiveReader archive = getBuildArchive(branchName, buildName);
+		if (archive != null) {
+			try {
+				return archive.getListOfFilesFromSubdirs(getUseCaseDirectory(branchName, buildName, useCaseName),
+						FILE_NAME_SCENARIO);
+			} finally {
+				archive.release();
+			}
+		}
+		return FilesUtil.getListOfFilesFromSubdirs(storage, getUseCaseDirectory(branchName, buildName, useCaseName),
 				FILE_NAME_SCENARIO);
 	}
 	
@@ -127,15 +262,43 @@ public class ScenarioDocuFiles {
 		return branchDirectory;
 	}
 	
+	/**
+	 * File containing all steps of a scenario, in case the steps have been saved together, see
+	 * {@link IndexedStepsFile}.
+	 */
+	public File getIndexedStepsFile(final String branchName, final String buildName, final String useCaseName,
+			final String scenarioName) {
+		return new File(getScenarioDirectory(branchName, buildName, useCaseName, scenarioName),
+				FILE_NAME_SCENARIO_STEPS);
+	}
+	
+	/**
+	 * File containing the pre-aggregated steps of a scenario, see
+	 * {@link org.scenarioo.model.docu.derived.ScenarioStepsAggregate}.
+	 */
+	public File getScenarioStepsAggregateFile(final String branchName, final String buildName,
+			final String useCaseName, final String scenarioName) {
+		return new File(getScenarioDirectory(branchName, buildName, useCaseName, scenarioName),
+				FILE_NAME_SCENARIO_STEPS_AGGREGATE);
+	}
+	
 	public File getStepFile(final String branchName, final String buildName, final String useCaseName,
 			final String scenarioName, final int stepIndex) {
 		return new File(getStepsDirectory(branchName, buildName, useCaseName, scenarioName),
-				THREE_DIGIT_NUM_FORMAT.format(stepIndex) + ".xml");
+				formatStepIndex(stepIndex) + ".xml");
 	}
 	
 	public List<File> getStepFiles(final String branchName, final String buildName, final String useCaseName,
 			final String scenarioName) {
-		return FilesUtil.getListOfFiles(getStepsDirectory(branchName, buildName, useCaseName, scenarioName));
+		BuildArchiveReader archive = getBuildArchive(branchName, buildName);
+		if (archive != null) {
+			try {
+				return archive.getListOfFiles(getStepsDirectory(branchName, buildName, useCaseName, scenarioName));
+			} finally {
+				archive.release();
+			}
+		}
+		return FilesUtil.getListOfFiles(storage, getStepsDirectory(branchName, buildName, useCaseName, scenarioName));
 	}
 	
 	public File getScreenshotsDirectory(final String branchName, final String buildName,
@@ -147,7 +310,13 @@ public class ScenarioDocuFiles {
 	public File getScreenshotFile(final String branchName, final String buildName,
 			final String useCaseName, final String scenarioName, final int stepIndex) {
 		return new File(getScreenshotsDirectory(branchName, buildName, useCaseName, scenarioName),
-				THREE_DIGIT_NUM_FORMAT.format(stepIndex) + ".png");
+				formatStepIndex(stepIndex) + ".png");
+	}
+	
+	private static String formatStepIndex(final int stepIndex) {
+		synchronized (THREE_DIGIT_NUM_FORMAT) {
+			return THREE_DIGIT_NUM_FORMAT.format(stepIndex);
+		}
 	}
 	
 	private static NumberFormat createNumberFormatWithMinimumIntegerDigits(
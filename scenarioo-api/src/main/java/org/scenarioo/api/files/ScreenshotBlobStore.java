@@ -0,0 +1,213 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.files;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.io.IOUtils;
+import org.scenarioo.api.util.files.BinaryContent;
+import org.scenarioo.api.util.files.BinaryFileUtil;
+
+/**
+ * Stores each distinct screenshot of a build only once, in a build level directory with the hash of the content as
+ * file name.
+ * 
+ * Instead of the screenshot file itself, a small reference file containing the hash is written next to where the
+ * screenshot file would have been, see {@link #resolveScreenshotFile(File)}.
+ */
+public class ScreenshotBlobStore {
+	
+	private static final String BLOB_FILE_EXTENSION = ".png";
+	
+	private static final String REFERENCE_FILE_EXTENSION = ".ref";
+	
+	static final String REFERENCE_FILE_ENCODING = "US-ASCII";
+	
+	private final File blobsDirectory;
+	
+	private final boolean synced;
+	
+	private final ConcurrentMap<String, Boolean> storedHashes = new ConcurrentHashMap<String, Boolean>();
+	
+	public ScreenshotBlobStore(final File blobsDirectory) {
+		this(blobsDirectory, false);
+	}
+	
+	/**
+	 * @param synced
+	 *            true to force all written blobs and references to the storage device before they become visible.
+	 */
+	public ScreenshotBlobStore(final File blobsDirectory, final boolean synced) {
+		this.blobsDirectory = blobsDirectory;
+		this.synced = synced;
+	}
+	
+	public File getBlobFile(final String hash) {
+		return new File(blobsDirectory, hash + BLOB_FILE_EXTENSION);
+	}
+	
+	/**
+	 * Save the screenshot content into the blob store (if not yet stored) and write a reference to it instead of the
+	 * screenshot file.
+	 * 
+	 * @return number of bytes written, including the blob only if it was not yet stored.
+	 */
+	public long saveScreenshot(final File screenshotFile, final BinaryContent content) {
+		StoredBlob blob = storeBlob(content);
+		String hash = blob.hash;
+		if (screenshotFile.exists() && !screenshotFile.delete()) {
+			throw new RuntimeException("Could not delete outdated screenshot file: "
+					+ screenshotFile.getAbsolutePath());
+		}
+		writeReference(getReferenceFile(screenshotFile), hash);
+		return blob.bytesWritten + hash.length();
+	}
+	
+	/**
+	 * Store the content, if content with same hash is not yet stored.
+	 * 
+	 * Repeatable content is only hashed first, to not write it at all if already stored. Other content is written to a
+	 * temporary file while hashing and only kept if not yet stored.
+	 * 
+	 * @return the hash of the content.
+	 */
+	public String store(final BinaryContent content) {
+		return storeBlob(content).hash;
+	}
+	
+	private StoredBlob storeBlob(final BinaryContent content) {
+		if (content.isRepeatable()) {
+			String hash = BinaryFileUtil.hash(content);
+			long bytesWritten = 0;
+			if (markAsStored(hash)) {
+				bytesWritten = BinaryFileUtil.writeFile(getBlobFile(hash), content, synced);
+			}
+			return new StoredBlob(hash, bytesWritten);
+		} else {
+			File tempFile = createTempFile();
+			String hash = BinaryFileUtil.writeFileAndHash(tempFile, content, synced);
+			if (markAsStored(hash)) {
+				long bytesWritten = tempFile.length();
+				moveToBlobFile(tempFile, hash);
+				return new StoredBlob(hash, bytesWritten);
+			} else {
+				tempFile.delete();
+				return new StoredBlob(hash, 0);
+			}
+		}
+	}
+	
+	/**
+	 * Get the file containing the screenshot, either the screenshot file itself or the blob file it is referencing.
+	 * 
+	 * @return the screenshot file itself, if it is not referencing a blob.
+	 */
+	public File resolveScreenshotFile(final File screenshotFile) {
+		if (screenshotFile.exists()) {
+			return screenshotFile;
+		}
+		File referenceFile = getReferenceFile(screenshotFile);
+		if (!referenceFile.exists()) {
+			return screenshotFile;
+		}
+		return getBlobFile(readReference(referenceFile));
+	}
+	
+	/**
+	 * The file containing the hash of the stored blob, for a screenshot that has been stored in a blob store.
+	 */
+	public static File getReferenceFile(final File screenshotFile) {
+		return new File(screenshotFile.getParentFile(), screenshotFile.getName() + REFERENCE_FILE_EXTENSION);
+	}
+	
+	/**
+	 * @return true if the calling thread has to store the blob, false if it is already stored (or being stored).
+	 */
+	private boolean markAsStored(final String hash) {
+		return storedHashes.putIfAbsent(hash, Boolean.TRUE) == null && !getBlobFile(hash).exists();
+	}
+	
+	private File createTempFile() {
+		try {
+			return File.createTempFile("screenshot", ".tmp", blobsDirectory);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not create temporary file in " + blobsDirectory.getAbsolutePath(), e);
+		}
+	}
+	
+	private void moveToBlobFile(final File tempFile, final String hash) {
+		File blobFile = getBlobFile(hash);
+		if (!tempFile.renameTo(blobFile)) {
+			tempFile.delete();
+			throw new RuntimeException("Could not move screenshot to " + blobFile.getAbsolutePath());
+		}
+	}
+	
+	private void writeReference(final File referenceFile, final String hash) {
+		try {
+			BinaryFileUtil.writeFile(referenceFile,
+					BinaryContent.fromBuffer(ByteBuffer.wrap(hash.getBytes(REFERENCE_FILE_ENCODING))), synced);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not write screenshot reference: " + referenceFile.getAbsolutePath(), e);
+		}
+	}
+	
+	private String readReference(final File referenceFile) {
+		try {
+			return readReference(new FileInputStream(referenceFile));
+		} catch (IOException e) {
+			throw new RuntimeException("Could not read screenshot reference: " + referenceFile.getAbsolutePath(), e);
+		}
+	}
+	
+	/**
+	 * Read the hash from the content of a reference file, the stream is closed afterwards.
+	 */
+	public static String readReference(final InputStream referenceContent) throws IOException {
+		try {
+			return IOUtils.toString(referenceContent, REFERENCE_FILE_ENCODING).trim();
+		} finally {
+			IOUtils.closeQuietly(referenceContent);
+		}
+	}
+	
+	private static class StoredBlob {
+		
+		private final String hash;
+		
+		private final long bytesWritten;
+		
+		private StoredBlob(final String hash, final long bytesWritten) {
+			this.hash = hash;
+			this.bytesWritten = bytesWritten;
+		}
+		
+	}
+	
+}
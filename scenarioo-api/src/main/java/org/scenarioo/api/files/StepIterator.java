@@ -0,0 +1,232 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.files;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.scenarioo.api.util.concurrent.OrderedParallelLoader;
+import org.scenarioo.model.docu.entities.Step;
+
+/**
+ * Iterates over the steps of a scenario by loading one step after the other, such that only the current step (and the
+ * steps read ahead) are held in memory, instead of all steps of the scenario.
+ * 
+ * Optionally the next steps are read ahead in the background while the current step is processed, by the shared pool
+ * of {@link OrderedParallelLoader}. Reading ahead stops as soon as the configured number of steps is waiting, such that
+ * no thread is blocked by an iterator that is not used anymore. The iterator is closed automatically when iterating
+ * until the last step, close it explicitly when stopping earlier to release the source.
+ */
+public class StepIterator implements Iterator<Step>, Closeable {
+	
+	private static final Object END_OF_STEPS = new Object();
+	
+	private final StepSource source;
+	
+	/**
+	 * Only set if steps are read ahead, contains the loaded steps, an exception or {@link #END_OF_STEPS}.
+	 */
+	private final BlockingQueue<Object> readAheadQueue;
+	
+	/**
+	 * True while a read ahead task is scheduled or running, only one task loads steps at a time.
+	 */
+	private final AtomicBoolean readingAhead = new AtomicBoolean(false);
+	
+	private final AtomicBoolean sourceClosed = new AtomicBoolean(false);
+	
+	private volatile boolean closed = false;
+	
+	/**
+	 * Set by the read ahead task as soon as the last step or an exception has been read.
+	 */
+	private volatile boolean exhausted = false;
+	
+	private Object nextItem = null;
+	
+	/**
+	 * Source of the steps to iterate, steps are always loaded by one thread in order.
+	 */
+	public interface StepSource extends Closeable {
+		
+		boolean hasNextStep();
+		
+		Step loadNextStep() throws IOException;
+		
+	}
+	
+	/**
+	 * @param readAheadSteps
+	 *            number of steps loaded in advance in the background, 0 to load each step only when it is
+	 *            requested.
+	 */
+	public StepIterator(final StepSource source, final int readAheadSteps) {
+		this.source = source;
+		if (readAheadSteps > 0) {
+			readAheadQueue = new ArrayBlockingQueue<Object>(readAheadSteps);
+			scheduleReadAhead();
+		} else {
+			readAheadQueue = null;
+		}
+	}
+	
+	@Override
+	public boolean hasNext() {
+		if (nextItem == null) {
+			nextItem = closed ? END_OF_STEPS : fetchNextItem();
+		}
+		if (nextItem == END_OF_STEPS) {
+			close();
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * @throws RuntimeException
+	 *             if the step could not be loaded, the iterator is closed in this case.
+	 */
+	@Override
+	public Step next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		Object item = nextItem;
+		nextItem = null;
+		if (item instanceof RuntimeException) {
+			nextItem = END_OF_STEPS;
+			close();
+			throw (RuntimeException) item;
+		}
+		return (Step) item;
+	}
+	
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("Steps can not be removed.");
+	}
+	
+	/**
+	 * Stop loading further steps and release the source.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (readAheadQueue != null) {
+			readAheadQueue.clear();
+		}
+		if (!readingAhead.get()) {
+			// otherwise the running read ahead task closes the source when it stops
+			closeSource();
+		}
+	}
+	
+	private Object fetchNextItem() {
+		if (readAheadQueue == null) {
+			return loadNextItem();
+		}
+		try {
+			scheduleReadAhead();
+			Object item = readAheadQueue.take();
+			scheduleReadAhead();
+			return item;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for next step to be read.", e);
+		}
+	}
+	
+	private Object loadNextItem() {
+		try {
+			if (!source.hasNextStep()) {
+				return END_OF_STEPS;
+			}
+			return source.loadNextStep();
+		} catch (IOException e) {
+			return new RuntimeException("Could not read step.", e);
+		} catch (RuntimeException e) {
+			return e;
+		}
+	}
+	
+	private void scheduleReadAhead() {
+		if (!closed && !exhausted && readingAhead.compareAndSet(false, true)) {
+			OrderedParallelLoader.submit(new Runnable() {
+				@Override
+				public void run() {
+					readAhead();
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Load steps until the queue is full, the iterator is closed or all steps are read. The task never blocks, it is
+	 * scheduled again as soon as the consumer has taken a step.
+	 */
+	private void readAhead() {
+		try {
+			while (!closed && !exhausted && readAheadQueue.remainingCapacity() > 0) {
+				Object item = loadNextItem();
+				if (item == END_OF_STEPS || item instanceof RuntimeException) {
+					exhausted = true;
+				}
+				// only this task adds items, therefore the queue can not be full
+				readAheadQueue.offer(item);
+			}
+		} catch (Error e) {
+			// the consumer must not wait forever for the next step
+			exhausted = true;
+			readAheadQueue.offer(new RuntimeException("Could not read step.", e));
+			throw e;
+		} finally {
+			readingAhead.set(false);
+		}
+		if (closed || exhausted) {
+			closeSource();
+		} else if (readAheadQueue.remainingCapacity() > 0) {
+			// the consumer might have taken a step while this task was stopping
+			scheduleReadAhead();
+		}
+	}
+	
+	private void closeSource() {
+		if (!sourceClosed.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			source.close();
+		} catch (IOException e) {
+			// nothing to do, no more steps are read from this source
+		}
+	}
+	
+}
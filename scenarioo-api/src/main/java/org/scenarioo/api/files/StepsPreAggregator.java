@@ -0,0 +1,277 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.files;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.scenarioo.api.util.files.BinaryContent;
+import org.scenarioo.api.util.files.BinaryFileUtil;
+import org.scenarioo.model.docu.derived.PageStepsAggregate;
+import org.scenarioo.model.docu.derived.ScenarioStepsAggregate;
+import org.scenarioo.model.docu.entities.Page;
+import org.scenarioo.model.docu.entities.Step;
+import org.scenarioo.model.docu.entities.StepDescription;
+import org.scenarioo.model.docu.entities.StepMetadata;
+
+/**
+ * Collects the steps saved by a writer for each scenario, to write the pre-aggregated steps of each scenario (see
+ * {@link ScenarioStepsAggregate}) when the writer is flushed.
+ * 
+ * Only the data needed for aggregation is kept for each step (without its HTML), until the aggregates are written.
+ */
+public class StepsPreAggregator {
+	
+	private static final String CHECKSUM_ENCODING = "UTF-8";
+	
+	/**
+	 * Steps by index, for each scenario by use case name and scenario name.
+	 */
+	private final Map<String, Map<String, SortedMap<Integer, Step>>> stepsByScenario =
+			new LinkedHashMap<String, Map<String, SortedMap<Integer, Step>>>();
+	
+	/**
+	 * Hashes of the written step documents by step index, for each scenario by use case name and scenario name.
+	 */
+	private final Map<String, SortedMap<Integer, String>> stepDocumentHashesByScenario =
+			new HashMap<String, SortedMap<Integer, String>>();
+	
+	/**
+	 * Writes the aggregated steps of a scenario.
+	 */
+	public interface ScenarioStepsAggregateWriter {
+		
+		void writeAggregate(String useCaseName, String scenarioName, ScenarioStepsAggregate aggregate);
+		
+	}
+	
+	/**
+	 * Remember the step for the aggregate of its scenario, a step with the same index replaces the previous one.
+	 * Steps without description are ignored, these can not be written anyway.
+	 */
+	public synchronized void addStep(final String useCaseName, final String scenarioName, final Step step) {
+		if (step.getStepDescription() == null) {
+			return;
+		}
+		Map<String, SortedMap<Integer, Step>> scenarios = stepsByScenario.get(useCaseName);
+		if (scenarios == null) {
+			scenarios = new LinkedHashMap<String, SortedMap<Integer, Step>>();
+			stepsByScenario.put(useCaseName, scenarios);
+		}
+		SortedMap<Integer, Step> scenarioSteps = scenarios.get(scenarioName);
+		if (scenarioSteps == null) {
+			scenarioSteps = new TreeMap<Integer, Step>();
+			scenarios.put(scenarioName, scenarioSteps);
+		}
+		Step aggregatedStep = new Step();
+		aggregatedStep.setPage(step.getPage());
+		aggregatedStep.setStepDescription(step.getStepDescription());
+		if (step.getMetadata() != null) {
+			// the visible text is not needed for aggregation and might be big
+			StepMetadata metadata = new StepMetadata();
+			metadata.setDetails(step.getMetadata().getDetails());
+			aggregatedStep.setMetadata(metadata);
+		}
+		scenarioSteps.put(step.getStepDescription().getIndex(), aggregatedStep);
+	}
+	
+	/**
+	 * Replace all steps remembered for the scenario by the passed steps.
+	 */
+	public synchronized void setSteps(final String useCaseName, final String scenarioName, final List<Step> steps) {
+		Map<String, SortedMap<Integer, Step>> scenarios = stepsByScenario.get(useCaseName);
+		if (scenarios != null) {
+			scenarios.remove(scenarioName);
+		}
+		for (Step step : steps) {
+			addStep(useCaseName, scenarioName, step);
+		}
+	}
+	
+	/**
+	 * Remember the hash of the written document of a step (see {@link #calculateStepsChecksum(Collection)}), a step
+	 * with the same index replaces the previous one.
+	 */
+	public synchronized void addStepDocumentHash(final String useCaseName, final String scenarioName,
+			final int stepIndex, final String hash) {
+		String key = getScenarioKey(useCaseName, scenarioName);
+		SortedMap<Integer, String> hashes = stepDocumentHashesByScenario.get(key);
+		if (hashes == null) {
+			hashes = new TreeMap<Integer, String>();
+			stepDocumentHashesByScenario.put(key, hashes);
+		}
+		hashes.put(stepIndex, hash);
+	}
+	
+	/**
+	 * Replace the hashes of all written step documents of the scenario, by the hashes of the passed step indexes.
+	 */
+	public synchronized void setStepDocumentHashes(final String useCaseName, final String scenarioName,
+			final List<Integer> stepIndexes, final List<String> hashes) {
+		stepDocumentHashesByScenario.remove(getScenarioKey(useCaseName, scenarioName));
+		for (int i = 0; i < stepIndexes.size(); i++) {
+			addStepDocumentHash(useCaseName, scenarioName, stepIndexes.get(i), hashes.get(i));
+		}
+	}
+	
+	/**
+	 * Checksum of all step documents of the scenario written so far, the remembered hashes are forgotten, because the
+	 * aggregate of a scenario is only written once.
+	 */
+	public synchronized String takeStepsChecksum(final String useCaseName, final String scenarioName) {
+		SortedMap<Integer, String> hashes = stepDocumentHashesByScenario.remove(getScenarioKey(useCaseName,
+				scenarioName));
+		if (hashes == null) {
+			return calculateStepsChecksum(new ArrayList<String>());
+		}
+		return calculateStepsChecksum(hashes.values());
+	}
+	
+	/**
+	 * Write the aggregates of all scenarios with steps added since the last call and forget these steps.
+	 */
+	public synchronized void writeAggregates(final ScenarioStepsAggregateWriter writer) {
+		for (Entry<String, Map<String, SortedMap<Integer, Step>>> useCase : stepsByScenario.entrySet()) {
+			for (Entry<String, SortedMap<Integer, Step>> scenario : useCase.getValue().entrySet()) {
+				writer.writeAggregate(useCase.getKey(), scenario.getKey(), aggregate(scenario.getValue().values()));
+			}
+		}
+		stepsByScenario.clear();
+	}
+	
+	/**
+	 * Group the steps by page, in the same way as the server groups steps of a scenario by page: consecutive steps on
+	 * the same page form one group.
+	 */
+	public static ScenarioStepsAggregate aggregate(final Collection<Step> steps) {
+		ScenarioStepsAggregate aggregate = new ScenarioStepsAggregate();
+		PageStepsAggregate pageSteps = null;
+		for (Step step : steps) {
+			Page page = step.getPage();
+			if (pageSteps == null || page == null || !page.equals(pageSteps.getPage())) {
+				pageSteps = new PageStepsAggregate(page);
+				aggregate.getPagesAndSteps().add(pageSteps);
+			}
+			Step aggregatedStep = new Step();
+			aggregatedStep.setStepDescription(step.getStepDescription());
+			aggregatedStep.setMetadata(step.getMetadata());
+			pageSteps.getSteps().add(aggregatedStep);
+		}
+		aggregate.setNumberOfSteps(steps.size());
+		aggregate.setChecksum(calculateChecksum(aggregate));
+		return aggregate;
+	}
+	
+	/**
+	 * All steps of the aggregate in their order, with the page of their group (but without HTML).
+	 */
+	public static List<Step> getSteps(final ScenarioStepsAggregate aggregate) {
+		List<Step> result = new ArrayList<Step>(aggregate.getNumberOfSteps());
+		for (PageStepsAggregate pageSteps : aggregate.getPagesAndSteps()) {
+			for (Step step : pageSteps.getSteps()) {
+				step.setPage(pageSteps.getPage());
+				result.add(step);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Checksum over the saved steps of a scenario, used to detect aggregates that do not match the saved steps anymore
+	 * (e.g. because a step has been saved again without pre-aggregation).
+	 * 
+	 * @param stepDocumentHashes
+	 *            hashes (see {@link BinaryFileUtil#hash(BinaryContent)}) of the uncompressed encoded documents of all
+	 *            steps in any order, the order of step files differs from the order of their step indexes for more
+	 *            than 1000 steps, but each document contains its step index anyway.
+	 */
+	public static String calculateStepsChecksum(final Collection<String> stepDocumentHashes) {
+		List<String> sortedHashes = new ArrayList<String>(stepDocumentHashes);
+		Collections.sort(sortedHashes);
+		StringBuilder content = new StringBuilder();
+		for (String hash : sortedHashes) {
+			content.append(hash).append('\n');
+		}
+		return hash(content.toString());
+	}
+	
+	/**
+	 * @return true if the aggregate contains as many steps as announced and the checksum matches its content, this
+	 *         detects incompletely written aggregates. Whether the aggregate still matches the saved steps is
+	 *         checked by the steps checksum.
+	 */
+	public static boolean isValid(final ScenarioStepsAggregate aggregate) {
+		int numberOfSteps = 0;
+		for (PageStepsAggregate pageSteps : aggregate.getPagesAndSteps()) {
+			numberOfSteps += pageSteps.getSteps().size();
+		}
+		return numberOfSteps == aggregate.getNumberOfSteps()
+				&& calculateChecksum(aggregate).equals(aggregate.getChecksum());
+	}
+	
+	/**
+	 * Hash over the identifying data of all pages and steps (index, title, status, screenshot and number of details),
+	 * this is enough to detect incompletely written aggregates.
+	 */
+	private static String calculateChecksum(final ScenarioStepsAggregate aggregate) {
+		StringBuilder content = new StringBuilder();
+		content.append(aggregate.getNumberOfSteps()).append('\n');
+		for (PageStepsAggregate pageSteps : aggregate.getPagesAndSteps()) {
+			Page page = pageSteps.getPage();
+			content.append("page:").append(page == null ? "" : page.getName()).append(':')
+					.append(page == null ? 0 : page.getDetails().size()).append('\n');
+			for (Step step : pageSteps.getSteps()) {
+				StepDescription description = step.getStepDescription();
+				content.append(description.getIndex()).append(':').append(description.getTitle()).append(':')
+						.append(description.getStatus()).append(':').append(description.getScreenshotFileName())
+						.append(':').append(description.getDetails().size()).append(':')
+						.append(step.getMetadata() == null ? 0 : step.getMetadata().getDetails().size()).append('\n');
+			}
+		}
+		return hash(content.toString());
+	}
+	
+	private static String hash(final String content) {
+		try {
+			byte[] bytes = content.getBytes(CHECKSUM_ENCODING);
+			return BinaryFileUtil.hash(BinaryContent.fromBuffer(ByteBuffer.wrap(bytes)));
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("Unsupported " + CHECKSUM_ENCODING + " charset.", e);
+		}
+	}
+	
+	private static String getScenarioKey(final String useCaseName, final String scenarioName) {
+		return useCaseName + "/" + scenarioName;
+	}
+	
+}
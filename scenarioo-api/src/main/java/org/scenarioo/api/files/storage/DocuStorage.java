@@ -0,0 +1,79 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.files.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Storage of all files of the documentation, the files are addressed by their path as given by
+ * {@link org.scenarioo.api.files.ScenarioDocuFiles}, no matter where they are actually stored.
+ * 
+ * Implementations have to be thread safe, the files are written and read by several threads at the same time.
+ * 
+ * @see FileSystemStorage
+ * @see InMemoryStorage
+ */
+public interface DocuStorage {
+	
+	boolean exists(File file);
+	
+	boolean isFile(File file);
+	
+	boolean isDirectory(File file);
+	
+	/**
+	 * @return the names of all files and sub directories in the directory (in no particular order), or null if there is
+	 *         no such directory.
+	 */
+	String[] list(File directory);
+	
+	/**
+	 * @throws java.io.FileNotFoundException
+	 *             if there is no such file.
+	 */
+	InputStream openForReading(File file) throws IOException;
+	
+	/**
+	 * Open a file for writing, the written content only replaces the file when the stream is committed, see
+	 * {@link StorageOutputStream}.
+	 * 
+	 * @param synced
+	 *            true to force the content to the storage device on commit, if supported by the storage.
+	 */
+	StorageOutputStream openForWriting(File file, boolean synced) throws IOException;
+	
+	/**
+	 * Create the directory and all missing parent directories.
+	 */
+	void createDirectories(File directory);
+	
+	/**
+	 * Delete a file or an empty directory.
+	 * 
+	 * @return true if deleted.
+	 */
+	boolean delete(File file);
+	
+}
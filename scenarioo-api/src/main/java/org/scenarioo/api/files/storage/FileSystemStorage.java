@@ -0,0 +1,125 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.files.storage;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+
+import org.scenarioo.api.util.files.AtomicFileOutputStream;
+
+/**
+ * Stores the files directly in the file system, files are written atomically by {@link AtomicFileOutputStream}.
+ */
+public class FileSystemStorage implements DocuStorage {
+	
+	public static final FileSystemStorage INSTANCE = new FileSystemStorage();
+	
+	@Override
+	public boolean exists(final File file) {
+		return file.exists();
+	}
+	
+	@Override
+	public boolean isFile(final File file) {
+		return file.isFile();
+	}
+	
+	@Override
+	public boolean isDirectory(final File file) {
+		return file.isDirectory();
+	}
+	
+	@Override
+	public String[] list(final File directory) {
+		return directory.list();
+	}
+	
+	@Override
+	public InputStream openForReading(final File file) throws IOException {
+		return new FileInputStream(file);
+	}
+	
+	@Override
+	public StorageOutputStream openForWriting(final File file, final boolean synced) throws IOException {
+		return new AtomicFileStorageOutputStream(new AtomicFileOutputStream(file, synced));
+	}
+	
+	@Override
+	public void createDirectories(final File directory) {
+		directory.mkdirs();
+	}
+	
+	@Override
+	public boolean delete(final File file) {
+		return file.delete();
+	}
+	
+	private static class AtomicFileStorageOutputStream extends StorageOutputStream {
+		
+		private final AtomicFileOutputStream out;
+		
+		private AtomicFileStorageOutputStream(final AtomicFileOutputStream out) {
+			this.out = out;
+		}
+		
+		@Override
+		public void write(final int b) throws IOException {
+			out.write(b);
+		}
+		
+		@Override
+		public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+			out.write(bytes, offset, length);
+		}
+		
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+		
+		@Override
+		public WritableByteChannel getChannel() {
+			return out.getChannel();
+		}
+		
+		@Override
+		public long getBytesWritten() throws IOException {
+			return out.getChannel().position();
+		}
+		
+		@Override
+		public void commit() throws IOException {
+			out.commit();
+		}
+		
+		@Override
+		public void close() throws IOException {
+			out.close();
+		}
+		
+	}
+	
+}
@@ -0,0 +1,207 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.files.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Keeps all files in memory, e.g. for fast tests and benchmarks without any file system access.
+ * 
+ * Behaves like the file system: files can only be written into existing directories and a committed file replaces
+ * the previous content of the file at once.
+ */
+public class InMemoryStorage implements DocuStorage {
+	
+	/**
+	 * Highest character, to get all paths starting with a prefix from the sorted maps.
+	 */
+	private static final char MAX_CHAR = '\uffff';
+	
+	/**
+	 * Content of all files by absolute path.
+	 */
+	private final ConcurrentSkipListMap<String, byte[]> files = new ConcurrentSkipListMap<String, byte[]>();
+	
+	/**
+	 * Absolute paths of all directories.
+	 */
+	private final ConcurrentSkipListSet<String> directories = new ConcurrentSkipListSet<String>();
+	
+	@Override
+	public boolean exists(final File file) {
+		return isFile(file) || isDirectory(file);
+	}
+	
+	@Override
+	public boolean isFile(final File file) {
+		return files.containsKey(getPath(file));
+	}
+	
+	@Override
+	public boolean isDirectory(final File file) {
+		return directories.contains(getPath(file));
+	}
+	
+	@Override
+	public String[] list(final File directory) {
+		if (!isDirectory(directory)) {
+			return null;
+		}
+		String prefix = getChildPathPrefix(directory);
+		Set<String> names = new LinkedHashSet<String>();
+		addChildNames(names, prefix, files.subMap(prefix, prefix + MAX_CHAR).keySet());
+		addChildNames(names, prefix, directories.subSet(prefix, prefix + MAX_CHAR));
+		return names.toArray(new String[names.size()]);
+	}
+	
+	@Override
+	public InputStream openForReading(final File file) throws IOException {
+		byte[] content = files.get(getPath(file));
+		if (content == null) {
+			throw new FileNotFoundException(getPath(file));
+		}
+		return new ByteArrayInputStream(content);
+	}
+	
+	@Override
+	public StorageOutputStream openForWriting(final File file, final boolean synced) throws IOException {
+		File parentDirectory = file.getAbsoluteFile().getParentFile();
+		if (parentDirectory != null && !isDirectory(parentDirectory)) {
+			throw new FileNotFoundException(getPath(file) + " (parent directory does not exist)");
+		}
+		if (isDirectory(file)) {
+			throw new FileNotFoundException(getPath(file) + " (is a directory)");
+		}
+		return new InMemoryOutputStream(getPath(file));
+	}
+	
+	@Override
+	public void createDirectories(final File directory) {
+		File current = directory.getAbsoluteFile();
+		while (current != null && directories.add(getPath(current))) {
+			current = current.getParentFile();
+		}
+	}
+	
+	@Override
+	public boolean delete(final File file) {
+		String path = getPath(file);
+		if (files.remove(path) != null) {
+			return true;
+		}
+		String[] content = list(file);
+		return content != null && content.length == 0 && directories.remove(path);
+	}
+	
+	private static String getPath(final File file) {
+		return file.getAbsolutePath();
+	}
+	
+	private static String getChildPathPrefix(final File directory) {
+		String path = getPath(directory);
+		return path.endsWith(File.separator) ? path : path + File.separator;
+	}
+	
+	/**
+	 * Add the names of the direct children of the directory with the given prefix, the paths are all starting with the
+	 * prefix.
+	 */
+	private static void addChildNames(final Set<String> names, final String prefix, final Set<String> paths) {
+		for (String path : paths) {
+			String relativePath = path.substring(prefix.length());
+			int separatorIndex = relativePath.indexOf(File.separatorChar);
+			names.add(separatorIndex < 0 ? relativePath : relativePath.substring(0, separatorIndex));
+		}
+	}
+	
+	/**
+	 * Collects the written content in memory and stores it as file content on commit.
+	 */
+	private class InMemoryOutputStream extends StorageOutputStream {
+		
+		private final String path;
+		
+		private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+		
+		private final WritableByteChannel channel = Channels.newChannel(this);
+		
+		private boolean closed = false;
+		
+		private InMemoryOutputStream(final String path) {
+			this.path = path;
+		}
+		
+		@Override
+		public void write(final int b) throws IOException {
+			assertNotClosed();
+			content.write(b);
+		}
+		
+		@Override
+		public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+			assertNotClosed();
+			content.write(bytes, offset, length);
+		}
+		
+		@Override
+		public WritableByteChannel getChannel() {
+			return channel;
+		}
+		
+		@Override
+		public long getBytesWritten() {
+			return content.size();
+		}
+		
+		@Override
+		public void commit() throws IOException {
+			assertNotClosed();
+			closed = true;
+			files.put(path, content.toByteArray());
+		}
+		
+		@Override
+		public void close() {
+			closed = true;
+		}
+		
+		private void assertNotClosed() throws IOException {
+			if (closed) {
+				throw new IOException("Stream for " + path + " has already been closed");
+			}
+		}
+		
+	}
+	
+}
@@ -0,0 +1,51 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.files.storage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Stream to write a file of a {@link DocuStorage}, the file is only replaced by the written content on
+ * {@link #commit()}, such that readers never see partially written files. Closing the stream without committing
+ * discards the written content.
+ */
+public abstract class StorageOutputStream extends OutputStream {
+	
+	/**
+	 * Channel to write into the same file, e.g. to write buffers without copying them.
+	 */
+	public abstract WritableByteChannel getChannel();
+	
+	/**
+	 * Number of bytes written so far, through the stream or the channel.
+	 */
+	public abstract long getBytesWritten() throws IOException;
+	
+	/**
+	 * Close the stream and replace the file by the written content.
+	 */
+	public abstract void commit() throws IOException;
+	
+}
@@ -0,0 +1,117 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Histogram of durations, with buckets of exponentially growing size: the first bucket counts durations below 1 ms,
+ * each further bucket durations below twice the upper bound of the previous bucket, the last bucket all longer
+ * durations.
+ */
+public class LatencyHistogram {
+	
+	private static final int NUMBER_OF_BUCKETS = 16;
+	
+	private final long[] bucketCounts = new long[NUMBER_OF_BUCKETS];
+	
+	private long count = 0;
+	
+	private long totalTimeInNanos = 0;
+	
+	private long maxTimeInNanos = 0;
+	
+	public synchronized void record(final long timeInNanos) {
+		bucketCounts[getBucket(timeInNanos)]++;
+		count++;
+		totalTimeInNanos += timeInNanos;
+		maxTimeInNanos = Math.max(maxTimeInNanos, timeInNanos);
+	}
+	
+	public synchronized long getCount() {
+		return count;
+	}
+	
+	public synchronized long getTotalTimeInNanos() {
+		return totalTimeInNanos;
+	}
+	
+	public synchronized long getMaxTimeInNanos() {
+		return maxTimeInNanos;
+	}
+	
+	public synchronized double getAverageTimeInMillis() {
+		return count == 0 ? 0 : (double) totalTimeInNanos / count / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+	
+	/**
+	 * Upper bound of each bucket in milliseconds (exclusive), the last bucket has no upper bound.
+	 */
+	public long[] getBucketUpperBoundsInMillis() {
+		long[] upperBounds = new long[NUMBER_OF_BUCKETS];
+		for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+			upperBounds[i] = i == NUMBER_OF_BUCKETS - 1 ? Long.MAX_VALUE : 1L << i;
+		}
+		return upperBounds;
+	}
+	
+	public synchronized long[] getBucketCounts() {
+		return bucketCounts.clone();
+	}
+	
+	/**
+	 * Estimate of the percentile, as the upper bound of the bucket that contains it (the maximum for the last
+	 * bucket).
+	 * 
+	 * @param percentile
+	 *            between 0 and 100.
+	 */
+	public synchronized long getPercentileInMillis(final double percentile) {
+		long rank = (long) Math.ceil(percentile / 100 * count);
+		long countedSoFar = 0;
+		for (int i = 0; i < NUMBER_OF_BUCKETS - 1; i++) {
+			countedSoFar += bucketCounts[i];
+			if (countedSoFar >= rank && countedSoFar > 0) {
+				return 1L << i;
+			}
+		}
+		return TimeUnit.NANOSECONDS.toMillis(maxTimeInNanos);
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return count + " writes, avg " + String.format("%.1f", getAverageTimeInMillis()) + " ms, p50 < "
+				+ getPercentileInMillis(50) + " ms, p99 < " + getPercentileInMillis(99) + " ms, max "
+				+ TimeUnit.NANOSECONDS.toMillis(maxTimeInNanos) + " ms";
+	}
+	
+	private static int getBucket(final long timeInNanos) {
+		long timeInMillis = TimeUnit.NANOSECONDS.toMillis(timeInNanos);
+		int bucket = 0;
+		while (bucket < NUMBER_OF_BUCKETS - 1 && timeInMillis >= 1L << bucket) {
+			bucket++;
+		}
+		return bucket;
+	}
+	
+}
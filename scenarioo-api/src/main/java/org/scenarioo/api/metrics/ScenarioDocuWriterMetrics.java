@@ -0,0 +1,145 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measurements of a {@link org.scenarioo.api.ScenarioDocuWriter}, to find out how much time is spent on writing the
+ * documentation and to tune the writer configuration.
+ * 
+ * Contains the time callers of save methods have been blocked because the write buffer was full, the number of writes
+ * waiting to be executed, the duration of the writes and the bytes written per {@link WriteType}.
+ */
+public class ScenarioDocuWriterMetrics {
+	
+	private long blockedCount = 0;
+	
+	private long blockedTimeInNanos = 0;
+	
+	private long maxBlockedTimeInNanos = 0;
+	
+	private long queueDepthSamples = 0;
+	
+	private long queueDepthSum = 0;
+	
+	private int maxQueueDepth = 0;
+	
+	private final Map<WriteType, LatencyHistogram> writeLatencies = new EnumMap<WriteType, LatencyHistogram>(
+			WriteType.class);
+	
+	private final Map<WriteType, Long> bytesWritten = new EnumMap<WriteType, Long>(WriteType.class);
+	
+	public ScenarioDocuWriterMetrics() {
+		for (WriteType type : WriteType.values()) {
+			writeLatencies.put(type, new LatencyHistogram());
+			bytesWritten.put(type, 0L);
+		}
+	}
+	
+	/**
+	 * Record the time a caller of a save method has been blocked, nothing is recorded if it was not blocked at all.
+	 */
+	public synchronized void recordBlockedTime(final long blockedTimeInNanos) {
+		if (blockedTimeInNanos > 0) {
+			blockedCount++;
+			this.blockedTimeInNanos += blockedTimeInNanos;
+			maxBlockedTimeInNanos = Math.max(maxBlockedTimeInNanos, blockedTimeInNanos);
+		}
+	}
+	
+	/**
+	 * Record the number of writes not yet finished, at the time a further write is submitted (including this one).
+	 */
+	public synchronized void recordQueueDepth(final int queueDepth) {
+		queueDepthSamples++;
+		queueDepthSum += queueDepth;
+		maxQueueDepth = Math.max(maxQueueDepth, queueDepth);
+	}
+	
+	public void recordWriteTime(final WriteType type, final long writeTimeInNanos) {
+		writeLatencies.get(type).record(writeTimeInNanos);
+	}
+	
+	public synchronized void recordBytesWritten(final WriteType type, final long bytes) {
+		bytesWritten.put(type, bytesWritten.get(type) + bytes);
+	}
+	
+	public synchronized long getBlockedCount() {
+		return blockedCount;
+	}
+	
+	public synchronized long getBlockedTimeInNanos() {
+		return blockedTimeInNanos;
+	}
+	
+	public synchronized long getMaxBlockedTimeInNanos() {
+		return maxBlockedTimeInNanos;
+	}
+	
+	public synchronized int getMaxQueueDepth() {
+		return maxQueueDepth;
+	}
+	
+	public synchronized double getAverageQueueDepth() {
+		return queueDepthSamples == 0 ? 0 : (double) queueDepthSum / queueDepthSamples;
+	}
+	
+	public LatencyHistogram getWriteLatency(final WriteType type) {
+		return writeLatencies.get(type);
+	}
+	
+	public synchronized long getBytesWritten(final WriteType type) {
+		return bytesWritten.get(type);
+	}
+	
+	public synchronized long getTotalBytesWritten() {
+		long total = 0;
+		for (long bytes : bytesWritten.values()) {
+			total += bytes;
+		}
+		return total;
+	}
+	
+	/**
+	 * Summary of all measurements as text with one line per measurement, types without any writes are omitted.
+	 */
+	public synchronized String getSummary() {
+		StringBuilder summary = new StringBuilder();
+		summary.append("blocked: " + blockedCount + " times, " + TimeUnit.NANOSECONDS.toMillis(blockedTimeInNanos)
+				+ " ms in total, max " + TimeUnit.NANOSECONDS.toMillis(maxBlockedTimeInNanos) + " ms\n");
+		summary.append("queue depth: max " + maxQueueDepth + ", avg "
+				+ String.format("%.1f", getAverageQueueDepth()) + "\n");
+		summary.append("bytes written: " + getTotalBytesWritten());
+		for (WriteType type : WriteType.values()) {
+			LatencyHistogram latency = writeLatencies.get(type);
+			if (latency.getCount() > 0) {
+				summary.append("\n" + type + ": " + latency + ", " + bytesWritten.get(type) + " bytes");
+			}
+		}
+		return summary.toString();
+	}
+	
+}
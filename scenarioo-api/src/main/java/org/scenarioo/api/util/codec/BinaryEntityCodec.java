@@ -0,0 +1,174 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.util.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamConstants;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Writes the entities in the compact binary format of Java serialization, which is much smaller and faster to read
+ * than XML, but can only be read by Java with compatible versions of the entity classes.
+ * 
+ * The format is not tolerant to changes of the entity classes: the fixed serialVersionUID of the classes does not
+ * make content written with other fields readable, such content fails to read or misses data. Use it only where
+ * writer and reader use the same version of the model, e.g. for derived files that are imported again on changes.
+ * 
+ * All written objects have to be {@link java.io.Serializable}. Skipping elements while reading is not supported,
+ * the whole object is always read.
+ * 
+ * Only the classes of the ScenarioDocu entities, the derived data and the JDK value and collection types used by them
+ * are read, any other class in the content is rejected, such that the content can not instantiate arbitrary classes.
+ */
+public class BinaryEntityCodec implements EntityCodec {
+	
+	private static final String[] ALLOWED_PACKAGES = { "org.scenarioo.model.docu.entities.",
+			"org.scenarioo.model.docu.derived.", "org.scenarioo.model.docu.aggregates." };
+	
+	private static final Set<String> ALLOWED_CLASSES = new HashSet<String>(Arrays.asList(String.class.getName(),
+			Boolean.class.getName(), Byte.class.getName(), Character.class.getName(), Short.class.getName(),
+			Integer.class.getName(), Long.class.getName(), Float.class.getName(), Double.class.getName(),
+			Number.class.getName(), Enum.class.getName(), BigInteger.class.getName(), BigDecimal.class.getName(),
+			Date.class.getName(), ArrayList.class.getName(), LinkedList.class.getName(), HashMap.class.getName(),
+			LinkedHashMap.class.getName(), TreeMap.class.getName(), HashSet.class.getName(),
+			LinkedHashSet.class.getName(), TreeSet.class.getName()));
+	
+	private static final byte[] HEADER = { (byte) (ObjectStreamConstants.STREAM_MAGIC >> 8),
+			(byte) ObjectStreamConstants.STREAM_MAGIC, (byte) (ObjectStreamConstants.STREAM_VERSION >> 8),
+			(byte) ObjectStreamConstants.STREAM_VERSION };
+	
+	@Override
+	public void encode(final Object object, final OutputStream outStream) {
+		try {
+			ObjectOutputStream out = new ObjectOutputStream(outStream);
+			out.writeObject(object);
+			out.flush();
+		} catch (Exception e) {
+			throw new RuntimeException("Could not marshall Object of type " + object.getClass().getName(), e);
+		}
+	}
+	
+	@Override
+	public <T> T decode(final Class<T> targetClass, final InputStream inStream, final String... skippedElementPaths) {
+		try {
+			ObjectInputStream in = new EntityObjectInputStream(inStream, targetClass.getClassLoader());
+			return targetClass.cast(in.readObject());
+		} catch (Exception e) {
+			throw new RuntimeException("Could not unmarshall object of type " + targetClass.getName(), e);
+		}
+	}
+	
+	@Override
+	public boolean isEncodedBy(final byte[] header) {
+		if (header.length < HEADER.length) {
+			return false;
+		}
+		for (int i = 0; i < HEADER.length; i++) {
+			if (header[i] != HEADER[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @return true if objects of the class (or arrays of it) may be read.
+	 */
+	static boolean isAllowedClass(final String className) {
+		String name = className;
+		if (name.startsWith("[")) {
+			// arrays are named like "[[Lorg.scenarioo.SomeClass;" or "[B"
+			name = name.substring(name.lastIndexOf('[') + 1);
+			if (name.length() == 1) {
+				return true;
+			}
+			name = name.substring(1, name.length() - 1);
+		}
+		if (ALLOWED_CLASSES.contains(name)) {
+			return true;
+		}
+		for (String allowedPackage : ALLOWED_PACKAGES) {
+			if (name.startsWith(allowedPackage)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Only resolves allowed classes (see {@link BinaryEntityCodec#isAllowedClass(String)}), by the class loader of the
+	 * entity classes first, because the default resolution might use another class loader inside application servers.
+	 */
+	private static class EntityObjectInputStream extends ObjectInputStream {
+		
+		private final ClassLoader classLoader;
+		
+		private EntityObjectInputStream(final InputStream inStream, final ClassLoader classLoader)
+				throws IOException {
+			super(inStream);
+			this.classLoader = classLoader;
+		}
+		
+		@Override
+		protected Class<?> resolveClass(final ObjectStreamClass description) throws IOException,
+				ClassNotFoundException {
+			if (!isAllowedClass(description.getName())) {
+				throw new InvalidClassException(description.getName(), "Class is not allowed in entity content");
+			}
+			if (classLoader != null) {
+				try {
+					return Class.forName(description.getName(), false, classLoader);
+				} catch (ClassNotFoundException e) {
+					// fall back to default resolution
+				}
+			}
+			return super.resolveClass(description);
+		}
+		
+		@Override
+		protected Class<?> resolveProxyClass(final String[] interfaces) throws IOException {
+			throw new InvalidClassException(Arrays.toString(interfaces),
+					"Proxy classes are not allowed in entity content");
+		}
+		
+	}
+	
+}
@@ -0,0 +1,65 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.util.codec;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Format to write ScenarioDocu entities and derived data into files and to read them back.
+ * 
+ * The format of written content is detected when reading it again (see
+ * {@link EntityCodecs#decode(Class, java.io.InputStream, boolean, String...)}), such that the format can be changed at
+ * any time without converting already written files, as long as the reader has the binary format enabled.
+ * 
+ * Implementations have to be thread safe.
+ * 
+ * @see XmlEntityCodec
+ * @see BinaryEntityCodec
+ */
+public interface EntityCodec {
+	
+	/**
+	 * Write the object into the stream, the stream is not closed.
+	 */
+	void encode(Object object, OutputStream outStream);
+	
+	/**
+	 * Read an object from the stream, the stream is not closed.
+	 * 
+	 * @param skippedElementPaths
+	 *            XML elements not to read (see
+	 *            {@link org.scenarioo.api.util.xml.ScenarioDocuXMLUtil#unmarshalSkippingElements}), codecs that can
+	 *            not skip parts of the content read the whole object.
+	 */
+	<T> T decode(Class<T> targetClass, InputStream inStream, String... skippedElementPaths);
+	
+	/**
+	 * @param header
+	 *            the first bytes of the content, might be less than {@link EntityCodecs#HEADER_SIZE_IN_BYTES} for
+	 *            very short content.
+	 * @return true if the content has been written by this codec.
+	 */
+	boolean isEncodedBy(byte[] header);
+	
+}
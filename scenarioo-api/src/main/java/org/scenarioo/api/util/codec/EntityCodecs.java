@@ -0,0 +1,131 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.util.codec;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Available codecs and detection of the codec of written content. Binary content is only read where it is enabled
+ * explicitly.
+ */
+public class EntityCodecs {
+	
+	/**
+	 * Number of bytes at the beginning of the content needed to detect its codec.
+	 */
+	public static final int HEADER_SIZE_IN_BYTES = 4;
+	
+	public static final EntityCodec FORMATTED_XML = new XmlEntityCodec(true);
+	
+	public static final EntityCodec COMPACT_XML = new XmlEntityCodec(false);
+	
+	public static final EntityCodec BINARY = new BinaryEntityCodec();
+	
+	/**
+	 * Codecs in the order they are checked when detecting the codec of content, XML last as fallback.
+	 */
+	private static final EntityCodec[] DETECTABLE_CODECS = { BINARY, FORMATTED_XML };
+	
+	private EntityCodecs() {
+	}
+	
+	/**
+	 * Codec to write files, as configured.
+	 * 
+	 * @param binary
+	 *            true for {@link #BINARY}, false for XML.
+	 * @param formattedOutput
+	 *            false to write compact XML without any line breaks and indentation.
+	 */
+	public static EntityCodec getCodec(final boolean binary, final boolean formattedOutput) {
+		if (binary) {
+			return BINARY;
+		}
+		return formattedOutput ? FORMATTED_XML : COMPACT_XML;
+	}
+	
+	/**
+	 * Read an object from XML content, binary content is rejected. The stream is not closed.
+	 * 
+	 * @param skippedElementPaths
+	 *            see {@link EntityCodec#decode(Class, InputStream, String...)}.
+	 */
+	public static <T> T decode(final Class<T> targetClass, final InputStream inStream,
+			final String... skippedElementPaths) {
+		return decode(targetClass, inStream, false, skippedElementPaths);
+	}
+	
+	/**
+	 * Read an object from the stream by the codec it has been written with. The stream is not closed.
+	 * 
+	 * @param binaryFormatEnabled
+	 *            true to read binary content as well, only enable this for content written by trusted writers, even
+	 *            though only the entity classes are deserialized (see {@link BinaryEntityCodec}). False to only read
+	 *            XML content.
+	 * @param skippedElementPaths
+	 *            see {@link EntityCodec#decode(Class, InputStream, String...)}.
+	 */
+	public static <T> T decode(final Class<T> targetClass, final InputStream inStream,
+			final boolean binaryFormatEnabled, final String... skippedElementPaths) {
+		InputStream in = inStream.markSupported() ? inStream : new BufferedInputStream(inStream);
+		EntityCodec codec;
+		try {
+			codec = detectCodec(in);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not unmarshall object of type " + targetClass.getName(), e);
+		}
+		if (codec == BINARY && !binaryFormatEnabled) {
+			throw new RuntimeException("Could not unmarshall object of type " + targetClass.getName()
+					+ ", reading content in binary format is not enabled.");
+		}
+		return codec.decode(targetClass, in, skippedElementPaths);
+	}
+	
+	/**
+	 * Detect the codec by the header of the content, the stream is reset to the beginning of the content afterwards.
+	 */
+	private static EntityCodec detectCodec(final InputStream in) throws IOException {
+		in.mark(HEADER_SIZE_IN_BYTES);
+		byte[] header = new byte[HEADER_SIZE_IN_BYTES];
+		int length = 0;
+		int read = 0;
+		while (length < header.length && read != -1) {
+			read = in.read(header, length, header.length - length);
+			length += Math.max(read, 0);
+		}
+		in.reset();
+		if (length < header.length) {
+			header = Arrays.copyOf(header, length);
+		}
+		for (EntityCodec codec : DETECTABLE_CODECS) {
+			if (codec.isEncodedBy(header)) {
+				return codec;
+			}
+		}
+		return FORMATTED_XML;
+	}
+	
+}
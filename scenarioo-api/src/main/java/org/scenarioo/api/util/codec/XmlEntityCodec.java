@@ -0,0 +1,64 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.util.codec;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.scenarioo.api.util.xml.ScenarioDocuXMLUtil;
+
+/**
+ * Writes the entities as XML by JAXB (see {@link ScenarioDocuXMLUtil}), the default format, which can also be read by
+ * other tools.
+ */
+public class XmlEntityCodec implements EntityCodec {
+	
+	private final boolean formattedOutput;
+	
+	/**
+	 * @param formattedOutput
+	 *            false to write compact XML without any line breaks and indentation.
+	 */
+	public XmlEntityCodec(final boolean formattedOutput) {
+		this.formattedOutput = formattedOutput;
+	}
+	
+	@Override
+	public void encode(final Object object, final OutputStream outStream) {
+		ScenarioDocuXMLUtil.marshal(object, outStream, formattedOutput);
+	}
+	
+	@Override
+	public <T> T decode(final Class<T> targetClass, final InputStream inStream, final String... skippedElementPaths) {
+		return ScenarioDocuXMLUtil.unmarshalSkippingElements(targetClass, inStream, skippedElementPaths);
+	}
+	
+	/**
+	 * XML content has no fixed header, any content not detected as another format is read as XML.
+	 */
+	@Override
+	public boolean isEncodedBy(final byte[] header) {
+		return true;
+	}
+	
+}
@@ -0,0 +1,87 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.util.concurrent;
+
+/**
+ * Limits the number of bytes retained by queued tasks. Acquiring more bytes than currently available blocks the caller
+ * until enough bytes have been released again.
+ * 
+ * An amount bigger than the whole budget is granted as soon as nothing else is retained, otherwise such a request could
+ * never be fulfilled.
+ */
+public class ByteBudget {
+	
+	private final long maxBytes;
+	
+	private long retainedBytes = 0;
+	
+	/**
+	 * @param maxBytes
+	 *            maximal number of bytes that can be retained at the same time.
+	 */
+	public ByteBudget(final long maxBytes) {
+		if (maxBytes < 1) {
+			throw new IllegalArgumentException("Byte budget must be at least 1 byte, but was: " + maxBytes);
+		}
+		this.maxBytes = maxBytes;
+	}
+	
+	/**
+	 * Retain the given number of bytes, blocks as long as not enough bytes are available.
+	 * 
+	 * @return the time in nanoseconds the calling thread was blocked, 0 if it was not blocked at all.
+	 */
+	public synchronized long acquire(final long bytes) throws InterruptedException {
+		if (!mustWait(bytes)) {
+			retainedBytes += bytes;
+			return 0;
+		}
+		long startTime = System.nanoTime();
+		while (mustWait(bytes)) {
+			wait();
+		}
+		retainedBytes += bytes;
+		return System.nanoTime() - startTime;
+	}
+	
+	/**
+	 * Release bytes previously retained by {@link #acquire(long)}.
+	 */
+	public synchronized void release(final long bytes) {
+		retainedBytes -= bytes;
+		notifyAll();
+	}
+	
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+	
+	public synchronized long getRetainedBytes() {
+		return retainedBytes;
+	}
+	
+	private boolean mustWait(final long bytes) {
+		return retainedBytes > 0 && retainedBytes + bytes > maxBytes;
+	}
+	
+}
@@ -0,0 +1,170 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.util.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor that executes tasks on a fixed number of threads, but keeps the order of execution for all tasks submitted
+ * with the same key.
+ * 
+ * Each thread has its own queue (called a lane), tasks are assigned to a lane by the hash code of their key. Therefore
+ * tasks with same key are always executed one after the other in the order they have been submitted, while tasks for
+ * different keys can be executed in parallel.
+ * 
+ * As soon as the queue of a lane is full, submitting further tasks to this lane will block the calling thread, until
+ * there is space again in the queue.
+ */
+public class KeyOrderedExecutor {
+	
+	private final ExecutorService[] lanes;
+	
+	/**
+	 * @param numberOfThreads
+	 *            number of threads (=lanes) to execute tasks in parallel
+	 * @param queueCapacityPerThread
+	 *            maximal number of tasks waiting for execution in each lane, before submitting further tasks blocks.
+	 */
+	public KeyOrderedExecutor(final int numberOfThreads, final int queueCapacityPerThread) {
+		this(numberOfThreads, queueCapacityPerThread, Executors.defaultThreadFactory());
+	}
+	
+	/**
+	 * @param threadFactory
+	 *            factory to create the threads of all lanes, e.g. to create daemon threads for an executor that is never
+	 *            shut down.
+	 */
+	public KeyOrderedExecutor(final int numberOfThreads, final int queueCapacityPerThread,
+			final ThreadFactory threadFactory) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("Number of threads must be at least 1, but was: " + numberOfThreads);
+		}
+		lanes = new ExecutorService[numberOfThreads];
+		for (int i = 0; i < numberOfThreads; i++) {
+			lanes[i] = newLane(queueCapacityPerThread, threadFactory);
+		}
+	}
+	
+	public int getNumberOfThreads() {
+		return lanes.length;
+	}
+	
+	/**
+	 * Execute the task after all other tasks already submitted with the same key.
+	 * 
+	 * @param key
+	 *            key to identify the tasks that have to keep the order, null is allowed and is treated as any other key.
+	 */
+	public void execute(final Object key, final Runnable task) {
+		getLane(key).execute(task);
+	}
+	
+	/**
+	 * Stop accepting further tasks, already submitted tasks will still be executed.
+	 */
+	public void shutdown() {
+		for (ExecutorService lane : lanes) {
+			lane.shutdown();
+		}
+	}
+	
+	/**
+	 * Stop all lanes immediately, tasks that did not yet start are not executed anymore.
+	 */
+	public void shutdownNow() {
+		for (ExecutorService lane : lanes) {
+			lane.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Wait until all lanes have terminated after {@link #shutdown()}.
+	 * 
+	 * @return true if all lanes terminated, false if the timeout elapsed before.
+	 */
+	public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (ExecutorService lane : lanes) {
+			long remaining = deadline - System.nanoTime();
+			if (!lane.awaitTermination(Math.max(remaining, 0L), TimeUnit.NANOSECONDS)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private ExecutorService getLane(final Object key) {
+		int hash = key == null ? 0 : key.hashCode();
+		return lanes[(hash & Integer.MAX_VALUE) % lanes.length];
+	}
+	
+	/**
+	 * Creates an executor that queues the passed tasks for execution by one single additional thread and blocks the
+	 * caller as long as the queue is full.
+	 */
+	private static ExecutorService newLane(final int queueCapacity, final ThreadFactory threadFactory) {
+		return new ThreadPoolExecutor(
+				1,
+				1,
+				60L,
+				TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(queueCapacity),
+				threadFactory,
+				new BlockCallerUntilQueuedPolicy());
+	}
+	
+	/**
+	 * Instead of rejecting a task when the queue is full, wait until the task can be put into the queue.
+	 * 
+	 * The executor can be shut down while waiting, a task that was queued after the shutdown might never be executed
+	 * and is therefore rejected, unless it has already been taken for execution.
+	 */
+	private static class BlockCallerUntilQueuedPolicy implements RejectedExecutionHandler {
+		
+		@Override
+		public void rejectedExecution(final Runnable task, final ThreadPoolExecutor executor) {
+			if (executor.isShutdown()) {
+				throw new RejectedExecutionException("Executor has already been shut down, task can not be executed.");
+			}
+			try {
+				executor.getQueue().put(task);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException("Interrupted while waiting for space in write queue.", e);
+			}
+			if (executor.isShutdown() && executor.remove(task)) {
+				throw new RejectedExecutionException("Executor has been shut down while waiting for space in write "
+						+ "queue, task can not be executed.");
+			}
+		}
+		
+	}
+	
+}
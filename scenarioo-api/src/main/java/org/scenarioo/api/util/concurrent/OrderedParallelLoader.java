@@ -0,0 +1,174 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads a list of items in parallel (e.g. unmarshalling of files), the results are returned in the same order as the
+ * passed items.
+ * 
+ * All loaders share one pool with one daemon thread per available processor. The calling thread loads items as well,
+ * and only waits for items that are currently loaded by other threads. Therefore loading never waits for free threads
+ * in the pool, even if the pool is busy with loading for other callers.
+ */
+public class OrderedParallelLoader {
+	
+	private static ExecutorService sharedPool;
+	
+	/**
+	 * Loads one item.
+	 */
+	public interface ItemLoader<S, T> {
+		
+		T load(S item);
+		
+	}
+	
+	/**
+	 * Load all items in parallel.
+	 * 
+	 * @return the loaded results in the order of the passed items.
+	 * @throws RuntimeException
+	 *             the first exception thrown by the loader, other items might not have been loaded in this case.
+	 */
+	public static <S, T> List<T> loadAll(final List<S> items, final ItemLoader<S, T> loader) {
+		ExecutorService pool = getSharedPool();
+		int numberOfHelpers = Math.min(items.size(), Runtime.getRuntime().availableProcessors()) - 1;
+		if (numberOfHelpers <= 0) {
+			return loadSequentially(items, loader);
+		}
+		
+		final Object[] results = new Object[items.size()];
+		final AtomicInteger nextIndex = new AtomicInteger(0);
+		final AtomicBoolean failed = new AtomicBoolean(false);
+		Runnable loadTask = new Runnable() {
+			@Override
+			public void run() {
+				int index = nextIndex.getAndIncrement();
+				while (index < items.size() && !failed.get()) {
+					try {
+						results[index] = loader.load(items.get(index));
+					} catch (RuntimeException e) {
+						results[index] = e;
+						failed.set(true);
+					}
+					index = nextIndex.getAndIncrement();
+				}
+			}
+		};
+		List<Future<?>> helpers = new ArrayList<Future<?>>(numberOfHelpers);
+		for (int i = 0; i < numberOfHelpers; i++) {
+			helpers.add(pool.submit(loadTask));
+		}
+		loadTask.run();
+		awaitHelpers(helpers);
+		
+		List<T> result = new ArrayList<T>(items.size());
+		for (Object loaded : results) {
+			if (loaded instanceof RuntimeException) {
+				throw (RuntimeException) loaded;
+			}
+			result.add(OrderedParallelLoader.<T> cast(loaded));
+		}
+		return result;
+	}
+	
+	/**
+	 * Run a task in the background on the shared pool (e.g. reading ahead). The task must not block while waiting for
+	 * its caller, because the pool only has one thread per available processor.
+	 */
+	public static Future<?> submit(final Runnable task) {
+		return getSharedPool().submit(task);
+	}
+	
+	private static <S, T> List<T> loadSequentially(final List<S> items, final ItemLoader<S, T> loader) {
+		List<T> result = new ArrayList<T>(items.size());
+		for (S item : items) {
+			result.add(loader.load(item));
+		}
+		return result;
+	}
+	
+	/**
+	 * Helpers that did not start yet are not needed anymore, because all items have already been taken.
+	 */
+	private static void awaitHelpers(final List<Future<?>> helpers) {
+		for (Future<?> helper : helpers) {
+			if (helper.cancel(false)) {
+				continue;
+			}
+			try {
+				helper.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while waiting for parallel loading to finish.", e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException("Could not load items in parallel.", e.getCause());
+			}
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <T> T cast(final Object loaded) {
+		return (T) loaded;
+	}
+	
+	/**
+	 * The shared pool is created on first use and never shut down, therefore its threads are daemon threads.
+	 */
+	private static synchronized ExecutorService getSharedPool() {
+		if (sharedPool == null) {
+			int numberOfThreads = Runtime.getRuntime().availableProcessors();
+			sharedPool = new ThreadPoolExecutor(
+					numberOfThreads,
+					numberOfThreads,
+					60L,
+					TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactory() {
+						private final AtomicInteger threadNumber = new AtomicInteger(1);
+				
+						@Override
+						public Thread newThread(final Runnable runnable) {
+							Thread thread = new Thread(runnable, "scenarioo-docu-loader-"
+									+ threadNumber.getAndIncrement());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return sharedPool;
+	}
+	
+}
@@ -0,0 +1,74 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.util.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the tasks submitted to an executor that is shared with others, such that it is possible to wait until all own
+ * tasks have finished, without shutting down the executor.
+ */
+public class PendingTasks {
+	
+	private int pendingTasks = 0;
+	
+	/**
+	 * Count a task as pending, before submitting it.
+	 */
+	public synchronized void taskSubmitted() {
+		pendingTasks++;
+	}
+	
+	/**
+	 * Count a task as no longer pending, after it has finished or failed to be submitted.
+	 */
+	public synchronized void taskFinished() {
+		pendingTasks--;
+		if (pendingTasks == 0) {
+			notifyAll();
+		}
+	}
+	
+	public synchronized int getPendingTasks() {
+		return pendingTasks;
+	}
+	
+	/**
+	 * Wait until no more tasks are pending.
+	 * 
+	 * @return true if all tasks finished, false if the timeout elapsed before.
+	 */
+	public synchronized boolean awaitNoPendingTasks(final long timeout, final TimeUnit unit)
+			throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (pendingTasks > 0) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return false;
+			}
+			TimeUnit.NANOSECONDS.timedWait(this, remaining);
+		}
+		return true;
+	}
+	
+}
@@ -0,0 +1,135 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.util.files;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Output stream that writes into a temporary file next to the destination file and only replaces the destination file
+ * by renaming the temporary file on {@link #commit()}.
+ * 
+ * Readers therefore either see the old or the new content of a file, but never a partially written file, even if the
+ * writing process gets killed. Closing the stream without committing discards the written content.
+ * 
+ * Usage:
+ * 
+ * <pre>
+ * AtomicFileOutputStream out = new AtomicFileOutputStream(file, false);
+ * try {
+ * 	// write content to out ...
+ * 	out.commit();
+ * } finally {
+ * 	out.close();
+ * }
+ * </pre>
+ */
+public class AtomicFileOutputStream extends FileOutputStream {
+	
+	private static final String TEMP_FILE_PREFIX = ".";
+	
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+	
+	private final File destFile;
+	
+	private final File tempFile;
+	
+	private final boolean synced;
+	
+	private boolean closed = false;
+	
+	/**
+	 * @param synced
+	 *            true to force the content to the storage device before the file is renamed, otherwise a crash of the
+	 *            operating system might still leave an empty or partially written file behind.
+	 */
+	public AtomicFileOutputStream(final File destFile, final boolean synced) throws IOException {
+		this(destFile, createTempFile(destFile), synced);
+	}
+	
+	private AtomicFileOutputStream(final File destFile, final File tempFile, final boolean synced) throws IOException {
+		super(tempFile);
+		this.destFile = destFile;
+		this.tempFile = tempFile;
+		this.synced = synced;
+	}
+	
+	/**
+	 * True for temporary files of not yet committed (or interrupted) writes, such files have to be ignored when
+	 * listing the files of a directory.
+	 */
+	public static boolean isTempFile(final File file) {
+		String name = file.getName();
+		return name.startsWith(TEMP_FILE_PREFIX) && name.endsWith(TEMP_FILE_SUFFIX);
+	}
+	
+	/**
+	 * Close the stream and replace the destination file by the written content.
+	 */
+	public void commit() throws IOException {
+		if (closed) {
+			throw new IOException("Stream for " + destFile.getAbsolutePath() + " has already been closed");
+		}
+		try {
+			flush();
+			if (synced) {
+				getFD().sync();
+			}
+		} finally {
+			closed = true;
+			super.close();
+		}
+		if (!tempFile.renameTo(destFile)) {
+			// renaming onto an existing file fails on some platforms
+			destFile.delete();
+			if (!tempFile.renameTo(destFile)) {
+				tempFile.delete();
+				throw new IOException("Could not rename " + tempFile.getAbsolutePath() + " to "
+						+ destFile.getAbsolutePath());
+			}
+		}
+	}
+	
+	/**
+	 * Discard the written content, if not yet committed.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			super.close();
+		} finally {
+			tempFile.delete();
+		}
+	}
+	
+	private static File createTempFile(final File destFile) throws IOException {
+		return File.createTempFile(TEMP_FILE_PREFIX + destFile.getName() + ".", TEMP_FILE_SUFFIX,
+				destFile.getAbsoluteFile().getParentFile());
+	}
+	
+}
@@ -0,0 +1,117 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.util.files;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Decodes base64 encoded content character by character and writes the decoded bytes to a channel in small chunks.
+ * 
+ * Like the base64 decoding of commons-codec, all characters that are not part of the base64 alphabet (e.g. line
+ * breaks) are ignored and decoding stops at the first padding character.
+ */
+class Base64ChannelDecoder {
+	
+	private static final int BUFFER_SIZE = 8192;
+	
+	private static final byte[] DECODE_TABLE = new byte[128];
+	
+	private static final char PADDING = '=';
+	
+	static {
+		Arrays.fill(DECODE_TABLE, (byte) -1);
+		String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+		for (int i = 0; i < alphabet.length(); i++) {
+			DECODE_TABLE[alphabet.charAt(i)] = (byte) i;
+		}
+	}
+	
+	private final WritableByteChannel channel;
+	
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	
+	private int quantum = 0;
+	
+	private int quantumLength = 0;
+	
+	private boolean paddingReached = false;
+	
+	Base64ChannelDecoder(final WritableByteChannel channel) {
+		this.channel = channel;
+	}
+	
+	void decode(final int encodedChar) throws IOException {
+		if (paddingReached) {
+			return;
+		}
+		if (encodedChar == PADDING) {
+			paddingReached = true;
+			return;
+		}
+		if (encodedChar < 0 || encodedChar >= DECODE_TABLE.length || DECODE_TABLE[encodedChar] < 0) {
+			return;
+		}
+		quantum = (quantum << 6) | DECODE_TABLE[encodedChar];
+		quantumLength++;
+		if (quantumLength == 4) {
+			ensureBufferSpace(3);
+			buffer.put((byte) (quantum >> 16));
+			buffer.put((byte) (quantum >> 8));
+			buffer.put((byte) quantum);
+			quantum = 0;
+			quantumLength = 0;
+		}
+	}
+	
+	/**
+	 * Write the remaining decoded bytes of an incomplete last quantum and all buffered bytes.
+	 */
+	void finish() throws IOException {
+		ensureBufferSpace(2);
+		if (quantumLength == 2) {
+			buffer.put((byte) (quantum >> 4));
+		} else if (quantumLength == 3) {
+			buffer.put((byte) (quantum >> 10));
+			buffer.put((byte) (quantum >> 2));
+		}
+		quantum = 0;
+		quantumLength = 0;
+		flushBuffer();
+	}
+	
+	private void ensureBufferSpace(final int bytes) throws IOException {
+		if (buffer.remaining() < bytes) {
+			flushBuffer();
+		}
+	}
+	
+	private void flushBuffer() throws IOException {
+		buffer.flip();
+		BinaryFileUtil.writeFully(channel, buffer);
+		buffer.clear();
+	}
+	
+}
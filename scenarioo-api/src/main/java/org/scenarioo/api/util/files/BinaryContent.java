@@ -0,0 +1,157 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.util.files;
+
+import java.awt.image.RenderedImage;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * Binary content (like a screenshot) that is written to a channel only when needed, e.g. decoded or encoded on the
+ * fly, without copying the whole content into further arrays.
+ */
+public abstract class BinaryContent {
+	
+	private static final int BUFFER_SIZE = 8192;
+	
+	/**
+	 * Write the whole content to the channel.
+	 */
+	public abstract void writeTo(WritableByteChannel channel) throws IOException;
+	
+	/**
+	 * Whether the content can be written several times at low cost. Default is true.
+	 */
+	public boolean isRepeatable() {
+		return true;
+	}
+	
+	/**
+	 * The remaining bytes of the buffer, the position of the passed buffer is not changed.
+	 */
+	public static BinaryContent fromBuffer(final ByteBuffer content) {
+		return new BinaryContent() {
+			@Override
+			public void writeTo(final WritableByteChannel channel) throws IOException {
+				BinaryFileUtil.writeFully(channel, content.duplicate());
+			}
+		};
+	}
+	
+	/**
+	 * All bytes read from the stream, the stream is closed after writing and can therefore only be written once.
+	 */
+	public static BinaryContent fromStream(final InputStream content) {
+		return new BinaryContent() {
+			@Override
+			public void writeTo(final WritableByteChannel channel) throws IOException {
+				try {
+					ReadableByteChannel source = Channels.newChannel(content);
+					ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+					while (source.read(buffer) != -1) {
+						buffer.flip();
+						BinaryFileUtil.writeFully(channel, buffer);
+						buffer.clear();
+					}
+				} finally {
+					content.close();
+				}
+			}
+			
+			@Override
+			public boolean isRepeatable() {
+				return false;
+			}
+		};
+	}
+	
+	/**
+	 * The decoded bytes of base64 encoded content, decoded while writing.
+	 */
+	public static BinaryContent fromBase64(final byte[] base64Content) {
+		return new BinaryContent() {
+			@Override
+			public void writeTo(final WritableByteChannel channel) throws IOException {
+				Base64ChannelDecoder decoder = new Base64ChannelDecoder(channel);
+				for (byte encodedByte : base64Content) {
+					decoder.decode(encodedByte);
+				}
+				decoder.finish();
+			}
+		};
+	}
+	
+	/**
+	 * The decoded bytes of base64 encoded content, decoded while writing.
+	 */
+	public static BinaryContent fromBase64(final CharSequence base64Content) {
+		return new BinaryContent() {
+			@Override
+			public void writeTo(final WritableByteChannel channel) throws IOException {
+				Base64ChannelDecoder decoder = new Base64ChannelDecoder(channel);
+				int length = base64Content.length();
+				for (int i = 0; i < length; i++) {
+					decoder.decode(base64Content.charAt(i));
+				}
+				decoder.finish();
+			}
+		};
+	}
+	
+	/**
+	 * The image encoded as PNG, encoded while writing. Encoding is expensive, therefore this content is not considered
+	 * repeatable.
+	 */
+	public static BinaryContent fromImageAsPng(final RenderedImage image) {
+		return new BinaryContent() {
+			@Override
+			public void writeTo(final WritableByteChannel channel) throws IOException {
+				// Memory cache instead of the default file cache of ImageIO, to not create temporary files.
+				ImageOutputStream imageOut = new MemoryCacheImageOutputStream(new BufferedOutputStream(
+						Channels.newOutputStream(channel), BUFFER_SIZE));
+				try {
+					if (!ImageIO.write(image, "png", imageOut)) {
+						throw new IOException("No image writer available for PNG format");
+					}
+				} finally {
+					imageOut.close();
+				}
+			}
+			
+			@Override
+			public boolean isRepeatable() {
+				return false;
+			}
+		};
+	}
+	
+}
@@ -0,0 +1,205 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.util.files;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.scenarioo.api.files.storage.DocuStorage;
+import org.scenarioo.api.files.storage.FileSystemStorage;
+import org.scenarioo.api.files.storage.StorageOutputStream;
+
+/**
+ * Writing of binary files (like screenshots) through file channels, without copying the content into further arrays.
+ * 
+ * Files are written atomically, a file is only replaced as soon as its new content has been written completely.
+ */
+public class BinaryFileUtil {
+	
+	private static final String HASH_ALGORITHM = "SHA-1";
+	
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	
+	private BinaryFileUtil() {
+	}
+	
+	/**
+	 * Write the content into the file.
+	 * 
+	 * @return number of bytes written.
+	 */
+	public static long writeFile(final File destFile, final BinaryContent content) {
+		return writeFile(destFile, content, false);
+	}
+	
+	/**
+	 * Write the content into the file atomically, see {@link AtomicFileOutputStream}.
+	 * 
+	 * @param synced
+	 *            true to force the content to the storage device before replacing the file.
+	 * @return number of bytes written.
+	 */
+	public static long writeFile(final File destFile, final BinaryContent content, final boolean synced) {
+		return writeFile(FileSystemStorage.INSTANCE, destFile, content, synced);
+	}
+	
+	/**
+	 * Same as {@link #writeFile(File, BinaryContent, boolean)}, but into the given storage.
+	 */
+	public static long writeFile(final DocuStorage storage, final File destFile, final BinaryContent content,
+			final boolean synced) {
+		return writeFile(storage, destFile, content, null, synced);
+	}
+	
+	/**
+	 * Write the content into the file and calculate the hash of the content at the same time.
+	 * 
+	 * @return the SHA-1 hash of the written content as hex string.
+	 */
+	public static String writeFileAndHash(final File destFile, final BinaryContent content) {
+		return writeFileAndHash(destFile, content, false);
+	}
+	
+	/**
+	 * Same as {@link #writeFileAndHash(File, BinaryContent)}.
+	 * 
+	 * @param synced
+	 *            true to force the content to the storage device before replacing the file.
+	 */
+	public static String writeFileAndHash(final File destFile, final BinaryContent content, final boolean synced) {
+		MessageDigest digest = createDigest();
+		writeFile(FileSystemStorage.INSTANCE, destFile, content, digest, synced);
+		return toHexString(digest.digest());
+	}
+	
+	/**
+	 * Calculate the hash of the content without writing it anywhere.
+	 * 
+	 * @return the SHA-1 hash of the content as hex string.
+	 */
+	public static String hash(final BinaryContent content) {
+		MessageDigest digest = createDigest();
+		try {
+			content.writeTo(new DigestChannel(null, digest));
+		} catch (IOException e) {
+			throw new RuntimeException("Could not calculate hash of content", e);
+		}
+		return toHexString(digest.digest());
+	}
+	
+	static void writeFully(final WritableByteChannel channel, final ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+	
+	private static long writeFile(final DocuStorage storage, final File destFile, final BinaryContent content,
+			final MessageDigest digest, final boolean synced) {
+		StorageOutputStream fos = null;
+		try {
+			fos = storage.openForWriting(destFile, synced);
+			WritableByteChannel channel = fos.getChannel();
+			if (digest != null) {
+				channel = new DigestChannel(channel, digest);
+			}
+			content.writeTo(channel);
+			long bytesWritten = fos.getBytesWritten();
+			fos.commit();
+			return bytesWritten;
+		} catch (IOException e) {
+			throw new RuntimeException("Could not write file: " + destFile.getAbsolutePath(), e);
+		} finally {
+			try {
+				if (fos != null) {
+					fos.close();
+				}
+			} catch (IOException e) {
+				throw new RuntimeException("Could not close file output stream for " + destFile.getAbsolutePath(), e);
+			}
+		}
+	}
+	
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance(HASH_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Hash algorithm " + HASH_ALGORITHM + " is not supported by this JVM", e);
+		}
+	}
+	
+	private static String toHexString(final byte[] bytes) {
+		char[] hex = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+			hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+		}
+		return new String(hex);
+	}
+	
+	/**
+	 * Updates the digest with all written bytes and passes them on to the target channel (if any).
+	 */
+	private static class DigestChannel implements WritableByteChannel {
+		
+		private final WritableByteChannel target;
+		
+		private final MessageDigest digest;
+		
+		private boolean open = true;
+		
+		public DigestChannel(final WritableByteChannel target, final MessageDigest digest) {
+			this.target = target;
+			this.digest = digest;
+		}
+		
+		@Override
+		public int write(final ByteBuffer buffer) throws IOException {
+			if (target == null) {
+				int length = buffer.remaining();
+				digest.update(buffer);
+				return length;
+			}
+			ByteBuffer written = buffer.duplicate();
+			int length = target.write(buffer);
+			written.limit(written.position() + length);
+			digest.update(written);
+			return length;
+		}
+		
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+		
+		@Override
+		public void close() throws IOException {
+			open = false;
+		}
+		
+	}
+	
+}
@@ -26,14 +26,23 @@ package org.scenarioo.api.util.files;
 import java.io.File;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.text.CollationKey;
+import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 import org.scenarioo.api.exception.ResourceNotFoundException;
+import org.scenarioo.api.files.storage.DocuStorage;
+import org.scenarioo.api.files.storage.FileSystemStorage;
 
 public class FilesUtil {
 	
+	/**
+	 * Extension added to the name of files that are stored gzip compressed.
+	 */
+	public static final String COMPRESSED_FILE_EXTENSION = ".gz";
+	
 	private FilesUtil() {
 	}
 
@@ -51,21 +60,46 @@ public class FilesUtil {
 	 * List all files in the given directory sorted alphanumerically using a collator.
 	 */
 	public static File[] listFiles(final File directory) {
-		File[] files = directory.listFiles();
-		Arrays.sort(files, new AlphanumericFileComparator());
+		String[] names = listSortedNames(FileSystemStorage.INSTANCE, directory);
+		File[] files = new File[names.length];
+		for (int i = 0; i < names.length; i++) {
+			files[i] = new File(directory, names[i]);
+		}
 		return files;
 	}
+	
+	/**
+	 * Sort the names in the same order as {@link AlphanumericFileComparator} sorts files, but the collation key of
+	 * each name is only calculated once, instead of comparing the names by the collator on each comparison.
+	 */
+	public static void sortAlphanumerically(final List<String> names) {
+		Collator collator = Collator.getInstance();
+		CollationKey[] keys = new CollationKey[names.size()];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = collator.getCollationKey(names.get(i));
+		}
+		Arrays.sort(keys);
+		for (int i = 0; i < keys.length; i++) {
+			names.set(i, keys[i].getSourceString());
+		}
+	}
 
 	/**
-	 * Read all files from 'directory'.
+	 * Read all files from 'directory', except temporary files of unfinished writes (see
+	 * {@link AtomicFileOutputStream#isTempFile(File)}).
 	 */
 	public static List<File> getListOfFiles(final File directory) {
+		return getListOfFiles(FileSystemStorage.INSTANCE, directory);
+	}
+	
+	/**
+	 * Same as {@link #getListOfFiles(File)}, but for files in the given storage.
+	 */
+	public static List<File> getListOfFiles(final DocuStorage storage, final File directory) {
 		List<File> result = new ArrayList<File>();
-		if (!directory.exists() || !directory.isDirectory()) {
-			throw new ResourceNotFoundException(directory.getAbsolutePath());
-		}
-		for (File file : listFiles(directory)) {
-			if (!file.isDirectory()) {
+		for (String name : listSortedNames(storage, directory)) {
+			File file = new File(directory, name);
+			if (!AtomicFileOutputStream.isTempFile(file) && !storage.isDirectory(file)) {
 				result.add(file);
 			}
 		}
@@ -73,22 +107,75 @@ public class FilesUtil {
 	}
 
 	/**
-	 * Read all files with given name from all subdirectories of 'directory'.
+	 * Read all files with given name from all subdirectories of 'directory'. Also finds files that are stored
+	 * compressed, see {@link #resolveCompressedFile(File)}.
+	 * 
+	 * Only the expected file is checked in each directory entry, which also skips entries that are no directories,
+	 * instead of checking each entry for being a directory first.
 	 */
 	public static List<File> getListOfFilesFromSubdirs(final File directory, final String filename) {
+		return getListOfFilesFromSubdirs(FileSystemStorage.INSTANCE, directory, filename);
+	}
+	
+	/**
+	 * Same as {@link #getListOfFilesFromSubdirs(File, String)}, but for files in the given storage.
+	 */
+	public static List<File> getListOfFilesFromSubdirs(final DocuStorage storage, final File directory,
+			final String filename) {
 		List<File> result = new ArrayList<File>();
-		if (!directory.exists() || !directory.isDirectory()) {
-			throw new ResourceNotFoundException(directory.getAbsolutePath());
-		}
-		for (File subDir : listFiles(directory)) {
-			if (subDir.isDirectory()) {
-				File file = new File(subDir, filename);
-				if (file.exists()) {
-					result.add(file);
+		for (String name : listSortedNames(storage, directory)) {
+			File file = new File(new File(directory, name), filename);
+			if (storage.isFile(file)) {
+				result.add(file);
+			} else {
+				File compressedFile = getCompressedFile(file);
+				if (storage.isFile(compressedFile)) {
+					result.add(compressedFile);
 				}
 			}
 		}
 		return result;
 	}
 	
+	/**
+	 * Names of all entries in the directory, sorted alphanumerically. Only the names are listed, which is cheaper than
+	 * listing files.
+	 */
+	private static String[] listSortedNames(final DocuStorage storage, final File directory) {
+		String[] names = storage.list(directory);
+		if (names == null) {
+			throw new ResourceNotFoundException(directory.getAbsolutePath());
+		}
+		sortAlphanumerically(Arrays.asList(names));
+		return names;
+	}
+	
+	public static File getCompressedFile(final File file) {
+		return new File(file.getParentFile(), file.getName() + COMPRESSED_FILE_EXTENSION);
+	}
+	
+	public static boolean isCompressedFile(final File file) {
+		return file.getName().endsWith(COMPRESSED_FILE_EXTENSION);
+	}
+	
+	/**
+	 * Get the compressed file, if the file itself does not exist but is stored compressed.
+	 * 
+	 * @return the passed file, if it exists or there is no compressed file either.
+	 */
+	public static File resolveCompressedFile(final File file) {
+		return resolveCompressedFile(FileSystemStorage.INSTANCE, file);
+	}
+	
+	/**
+	 * Same as {@link #resolveCompressedFile(File)}, but for a file in the given storage.
+	 */
+	public static File resolveCompressedFile(final DocuStorage storage, final File file) {
+		if (storage.exists(file) || isCompressedFile(file)) {
+			return file;
+		}
+		File compressedFile = getCompressedFile(file);
+		return storage.exists(compressedFile) ? compressedFile : file;
+	}
+	
 }
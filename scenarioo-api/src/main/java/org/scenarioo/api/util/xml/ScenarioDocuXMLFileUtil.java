@@ -23,65 +23,238 @@
 
 package org.scenarioo.api.util.xml;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import org.apache.commons.io.output.CountingOutputStream;
 import org.scenarioo.api.exception.ResourceNotFoundException;
 import org.scenarioo.api.files.ObjectFromDirectory;
+import org.scenarioo.api.files.storage.DocuStorage;
+import org.scenarioo.api.files.storage.FileSystemStorage;
+import org.scenarioo.api.files.storage.StorageOutputStream;
+import org.scenarioo.api.util.concurrent.OrderedParallelLoader;
+import org.scenarioo.api.util.codec.EntityCodec;
+import org.scenarioo.api.util.codec.EntityCodecs;
+import org.scenarioo.api.util.concurrent.OrderedParallelLoader.ItemLoader;
+import org.scenarioo.api.util.files.AtomicFileOutputStream;
+import org.scenarioo.api.util.files.FilesUtil;
 
 /**
  * Writing or reading of all ScenarioDocu entities to XML files and back
+ * 
+ * Files can also be written gzip compressed (with additional extension ".gz"), such files are found and read
+ * transparently when reading the uncompressed file.
+ * 
+ * Files can also be written in another format than XML (see {@link EntityCodec}), the format is detected when
+ * reading the file, the name of the file stays the same.
+ * 
+ * All methods without a {@link DocuStorage} parameter access the files in the file system.
  */
 public class ScenarioDocuXMLFileUtil {
 	
+	private static final int BUFFER_SIZE = 8192;
+	
 	public static <T> void marshal(final T object, final File destFile) {
-		FileOutputStream fos = null;
+		marshal(object, destFile, true, false);
+	}
+	
+	/**
+	 * @param formattedOutput
+	 *            false to write compact XML without any line breaks and indentation.
+	 * @param compressed
+	 *            true to write the file gzip compressed, with additional file extension ".gz". An already existing
+	 *            file with the other compression is deleted, to not keep outdated content.
+	 * @return number of bytes written into the file.
+	 */
+	public static <T> long marshal(final T object, final File destFile, final boolean formattedOutput,
+			final boolean compressed) {
+		return marshal(object, destFile, formattedOutput, compressed, false);
+	}
+	
+	/**
+	 * The file is written atomically: the content is written into a temporary file that only replaces the file when
+	 * completely written, see {@link AtomicFileOutputStream}.
+	 * 
+	 * @param synced
+	 *            true to force the content to the storage device before replacing the file.
+	 * @return number of bytes written into the file.
+	 */
+	public static <T> long marshal(final T object, final File destFile, final boolean formattedOutput,
+			final boolean compressed, final boolean synced) {
+		return marshal(FileSystemStorage.INSTANCE, object, destFile, formattedOutput, compressed, synced);
+	}
+	
+	/**
+	 * Same as {@link #marshal(Object, File, boolean, boolean, boolean)}, but into the given storage.
+	 */
+	public static <T> long marshal(final DocuStorage storage, final T object, final File destFile,
+			final boolean formattedOutput, final boolean compressed, final boolean synced) {
+		return marshal(storage, object, destFile, EntityCodecs.getCodec(false, formattedOutput), compressed, synced);
+	}
+	
+	/**
+	 * Same as {@link #marshal(DocuStorage, Object, File, boolean, boolean, boolean)}, but in the format of the given
+	 * codec.
+	 */
+	public static <T> long marshal(final DocuStorage storage, final T object, final File destFile,
+			final EntityCodec codec, final boolean compressed, final boolean synced) {
+		File uncompressedFile = destFile;
+		File compressedFile = FilesUtil.getCompressedFile(destFile);
+		File file = compressed ? compressedFile : uncompressedFile;
+		OutputStream out = null;
+		CountingOutputStream countingStream = null;
 		try {
-			fos = new FileOutputStream(destFile);
-			ScenarioDocuXMLUtil.marshal(object, fos);
+			StorageOutputStream fileStream = storage.openForWriting(file, synced);
+			countingStream = new CountingOutputStream(fileStream);
+			out = countingStream;
+			if (compressed) {
+				GZIPOutputStream gzipStream = new GZIPOutputStream(new BufferedOutputStream(out, BUFFER_SIZE),
+						BUFFER_SIZE);
+				out = gzipStream;
+				codec.encode(object, gzipStream);
+				gzipStream.finish();
+				gzipStream.flush();
+			} else {
+				codec.encode(object, out);
+			}
+			fileStream.commit();
 		} catch (Exception e) {
 			throw new RuntimeException("Could not marshall Object of type " + object.getClass().getName()
-					+ " into file: " + destFile.getAbsolutePath(), e);
+					+ " into file: " + file.getAbsolutePath(), e);
 		} finally {
 			try {
-				if (fos != null) {
-					fos.close();
+				if (out != null) {
+					out.close();
 				}
 			} catch (IOException e) {
-				throw new RuntimeException("Could not close file output stream for " + destFile.getAbsolutePath(), e);
+				throw new RuntimeException("Could not close file output stream for " + file.getAbsolutePath(), e);
 			}
 		}
+		File outdatedFile = compressed ? uncompressedFile : compressedFile;
+		if (storage.exists(outdatedFile)) {
+			storage.delete(outdatedFile);
+		}
+		return countingStream.getByteCount();
 	}
 	
+	/**
+	 * Read the file, or its compressed file if only this one exists. Files in binary format are not read by this and
+	 * the other methods without the parameter binaryFormatEnabled (see
+	 * {@link EntityCodecs#decode(Class, InputStream, boolean, String...)}).
+	 */
 	public static <T> T unmarshal(final Class<T> targetClass, final File srcFile) {
-		if (!srcFile.exists()) {
+		return unmarshalSkippingElements(targetClass, srcFile);
+	}
+	
+	/**
+	 * Read the file like {@link #unmarshal(Class, File)}, but skip the passed elements while parsing, see
+	 * {@link ScenarioDocuXMLUtil#unmarshalSkippingElements(Class, InputStream, String...)}.
+	 */
+	public static <T> T unmarshalSkippingElements(final Class<T> targetClass, final File srcFile,
+			final String... skippedElementPaths) {
+		return unmarshalSkippingElements(FileSystemStorage.INSTANCE, targetClass, srcFile, skippedElementPaths);
+	}
+	
+	/**
+	 * Same as {@link #unmarshal(Class, File)}, but from the given storage.
+	 */
+	public static <T> T unmarshal(final DocuStorage storage, final Class<T> targetClass, final File srcFile) {
+		return unmarshalSkippingElements(storage, targetClass, srcFile);
+	}
+	
+	/**
+	 * Same as {@link #unmarshal(DocuStorage, Class, File)}, but reads files in binary format as well, if enabled.
+	 */
+	public static <T> T unmarshal(final DocuStorage storage, final Class<T> targetClass, final File srcFile,
+			final boolean binaryFormatEnabled) {
+		return unmarshalSkippingElements(storage, targetClass, srcFile, binaryFormatEnabled);
+	}
+	
+	/**
+	 * Same as {@link #unmarshalSkippingElements(Class, File, String...)}, but from the given storage.
+	 */
+	public static <T> T unmarshalSkippingElements(final DocuStorage storage, final Class<T> targetClass,
+			final File srcFile, final String... skippedElementPaths) {
+		return unmarshalSkippingElements(storage, targetClass, srcFile, false, skippedElementPaths);
+	}
+	
+	/**
+	 * Same as {@link #unmarshalSkippingElements(DocuStorage, Class, File, String...)}, but reads files in binary
+	 * format as well, if enabled.
+	 */
+	public static <T> T unmarshalSkippingElements(final DocuStorage storage, final Class<T> targetClass,
+			final File srcFile, final boolean binaryFormatEnabled, final String... skippedElementPaths) {
+		File file = FilesUtil.resolveCompressedFile(storage, srcFile);
+		if (!storage.exists(file)) {
 			throw new ResourceNotFoundException(srcFile.getAbsolutePath());
 		}
-		FileInputStream fis = null;
+		InputStream fis = null;
 		try {
-			fis = new FileInputStream(srcFile);
-			return ScenarioDocuXMLUtil.unmarshal(targetClass, fis);
+			fis = storage.openForReading(file);
+			if (FilesUtil.isCompressedFile(file)) {
+				fis = new GZIPInputStream(fis, BUFFER_SIZE);
+			}
+			return EntityCodecs.decode(targetClass, fis, binaryFormatEnabled, skippedElementPaths);
 		} catch (Exception e) {
-			throw new RuntimeException("Could not unmarshall " + srcFile.getAbsolutePath(), e);
+			throw new RuntimeException("Could not unmarshall " + file.getAbsolutePath(), e);
 		} finally {
 			try {
 				if (fis != null) {
 					fis.close();
 				}
 			} catch (IOException e) {
-				throw new RuntimeException("Could not close file input stream for " + srcFile.getAbsolutePath(), e);
+				throw new RuntimeException("Could not close file input stream for " + file.getAbsolutePath(), e);
 			}
 		}
 	}
 	
 	public static <T> List<T> unmarshalListOfFiles(final Class<T> targetClass, final List<File> files) {
+		return unmarshalListOfFiles(targetClass, files, false);
+	}
+	
+	/**
+	 * @param parallel
+	 *            true to unmarshal the files in parallel on all available processors (see
+	 *            {@link OrderedParallelLoader}), the result keeps the order of the passed files.
+	 */
+	public static <T> List<T> unmarshalListOfFiles(final Class<T> targetClass, final List<File> files,
+			final boolean parallel) {
+		return unmarshalListOfFiles(FileSystemStorage.INSTANCE, targetClass, files, parallel);
+	}
+	
+	/**
+	 * Same as {@link #unmarshalListOfFiles(Class, List, boolean)}, but from the given storage.
+	 */
+	public static <T> List<T> unmarshalListOfFiles(final DocuStorage storage, final Class<T> targetClass,
+			final List<File> files, final boolean parallel) {
+		return unmarshalListOfFiles(storage, targetClass, files, parallel, false);
+	}
+	
+	/**
+	 * Same as {@link #unmarshalListOfFiles(DocuStorage, Class, List, boolean)}, but reads files in binary format as
+	 * well, if enabled.
+	 */
+	public static <T> List<T> unmarshalListOfFiles(final DocuStorage storage, final Class<T> targetClass,
+			final List<File> files, final boolean parallel, final boolean binaryFormatEnabled) {
+		ItemLoader<File, T> loader = new ItemLoader<File, T>() {
+			@Override
+			public T load(final File file) {
+				return unmarshal(storage, targetClass, file, binaryFormatEnabled);
+			}
+		};
+		if (parallel) {
+			return OrderedParallelLoader.loadAll(files, loader);
+		}
 		List<T> result = new ArrayList<T>();
 		for (File file : files) {
-			result.add(unmarshal(targetClass, file));
+			result.add(loader.load(file));
 		}
 		return result;
 	}
@@ -92,10 +265,46 @@ public class ScenarioDocuXMLFileUtil {
 	 */
 	public static <T> List<ObjectFromDirectory<T>> unmarshalListOfFilesWithDirNames(
 			final List<File> files, final Class<T> targetClass, final Class<?>... classesToBind) {
+		return unmarshalListOfFilesWithDirNames(files, targetClass, false);
+	}
+	
+	/**
+	 * @param parallel
+	 *            true to unmarshal the files in parallel, the result keeps the order of the passed files.
+	 */
+	public static <T> List<ObjectFromDirectory<T>> unmarshalListOfFilesWithDirNames(
+			final List<File> files, final Class<T> targetClass, final boolean parallel) {
+		return unmarshalListOfFilesWithDirNames(FileSystemStorage.INSTANCE, files, targetClass, parallel);
+	}
+	
+	/**
+	 * Same as {@link #unmarshalListOfFilesWithDirNames(List, Class, boolean)}, but from the given storage.
+	 */
+	public static <T> List<ObjectFromDirectory<T>> unmarshalListOfFilesWithDirNames(final DocuStorage storage,
+			final List<File> files, final Class<T> targetClass, final boolean parallel) {
+		return unmarshalListOfFilesWithDirNames(storage, files, targetClass, parallel, false);
+	}
+	
+	/**
+	 * Same as {@link #unmarshalListOfFilesWithDirNames(DocuStorage, List, Class, boolean)}, but reads files in binary
+	 * format as well, if enabled.
+	 */
+	public static <T> List<ObjectFromDirectory<T>> unmarshalListOfFilesWithDirNames(final DocuStorage storage,
+			final List<File> files, final Class<T> targetClass, final boolean parallel,
+			final boolean binaryFormatEnabled) {
+		ItemLoader<File, ObjectFromDirectory<T>> loader = new ItemLoader<File, ObjectFromDirectory<T>>() {
+			@Override
+			public ObjectFromDirectory<T> load(final File file) {
+				return new ObjectFromDirectory<T>(unmarshal(storage, targetClass, file, binaryFormatEnabled), file
+						.getParentFile().getName());
+			}
+		};
+		if (parallel) {
+			return OrderedParallelLoader.loadAll(files, loader);
+		}
 		List<ObjectFromDirectory<T>> result = new ArrayList<ObjectFromDirectory<T>>();
 		for (File file : files) {
-			result.add(new ObjectFromDirectory<T>(unmarshal(targetClass, file), file
-					.getParentFile().getName()));
+			result.add(loader.load(file));
 		}
 		return result;
 	}
@@ -28,13 +28,22 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
+import org.scenarioo.model.docu.entities.NormalizedPage;
 import org.scenarioo.model.docu.entities.generic.Details;
+import org.scenarioo.model.docu.entities.generic.NormalizedObjectDescription;
 import org.scenarioo.model.docu.entities.generic.ObjectDescription;
 import org.scenarioo.model.docu.entities.generic.ObjectList;
 import org.scenarioo.model.docu.entities.generic.ObjectReference;
@@ -42,21 +51,54 @@ import org.scenarioo.model.docu.entities.generic.ObjectTreeNode;
 
 /**
  * Streaming of all ScenarioDocu entities to XML and back from input streams or to output streams.
+ * 
+ * Creating a {@link JAXBContext} is expensive, therefore the context for each root class is only created once and
+ * shared by all threads. Marshallers and unmarshallers are not thread safe, they are kept in a bounded pool per root
+ * class and each one is only used by one thread at a time.
  */
 public class ScenarioDocuXMLUtil {
 	
 	private static final Class<?>[] SUPPORTED_COLLECTION_CLASSES = new Class<?>[] { HashMap.class, ArrayList.class };
 	
 	private static final Class<?>[] SUPPORTED_GENERIC_CLASSES = new Class<?>[] { ObjectDescription.class,
-			ObjectReference.class, ObjectList.class, ObjectTreeNode.class, Details.class };
+			ObjectReference.class, ObjectList.class, ObjectTreeNode.class, Details.class,
+			NormalizedObjectDescription.class, NormalizedPage.class };
+	
+	private static final ConcurrentMap<Class<?>, JAXBContext> CONTEXTS = new ConcurrentHashMap<Class<?>, JAXBContext>();
+	
+	/**
+	 * Maximal number of idle marshallers or unmarshallers kept per root class, further ones are created when needed and
+	 * discarded after use.
+	 */
+	private static final int MAX_POOL_SIZE = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+	
+	private static final ConcurrentMap<Class<?>, Pool<Marshaller>> MARSHALLERS =
+			new ConcurrentHashMap<Class<?>, Pool<Marshaller>>();
+	
+	private static final ConcurrentMap<Class<?>, Pool<Unmarshaller>> UNMARSHALLERS =
+			new ConcurrentHashMap<Class<?>, Pool<Unmarshaller>>();
+	
+	/**
+	 * Factories are not guaranteed to be thread safe, therefore each factory is only used by one thread at a time.
+	 */
+	private static final Pool<XMLInputFactory> XML_INPUT_FACTORIES = new Pool<XMLInputFactory>();
 	
 	public static <T> void marshal(final T object, final OutputStream outStream) {
+		marshal(object, outStream, true);
+	}
+	
+	/**
+	 * @param formattedOutput
+	 *            false to write compact XML without any line breaks and indentation.
+	 */
+	public static <T> void marshal(final T object, final OutputStream outStream, final boolean formattedOutput) {
 		
 		try {
-			JAXBContext contextObj = createJAXBContext(object.getClass());
-			Marshaller marshallerObj = contextObj.createMarshaller();
-			marshallerObj.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+			Pool<Marshaller> marshallers = getPool(MARSHALLERS, object.getClass());
+			Marshaller marshallerObj = getMarshaller(marshallers, object.getClass());
+			marshallerObj.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, formattedOutput);
 			marshallerObj.marshal(object, outStream);
+			marshallers.offer(marshallerObj);
 		} catch (Exception e) {
 			throw new RuntimeException("Could not marshall Object of type " + object.getClass().getName(), e);
 		}
@@ -65,20 +107,129 @@ public class ScenarioDocuXMLUtil {
 	@SuppressWarnings("unchecked")
 	public static <T> T unmarshal(final Class<T> targetClass, final InputStream inStream) {
 		try {
-			JAXBContext contextObj = createJAXBContext(targetClass);
-			Unmarshaller unmarshallerObj = contextObj.createUnmarshaller();
-			return (T) unmarshallerObj.unmarshal(inStream);
+			Pool<Unmarshaller> unmarshallers = getPool(UNMARSHALLERS, targetClass);
+			Unmarshaller unmarshallerObj = getUnmarshaller(unmarshallers, targetClass);
+			T result = (T) unmarshallerObj.unmarshal(inStream);
+			unmarshallers.offer(unmarshallerObj);
+			return result;
 		} catch (Exception e) {
 			throw new RuntimeException("Could not unmarshall object of type " + targetClass.getName(), e);
 		}
 	}
 	
+	/**
+	 * Unmarshal the object, but skip the passed elements with all their content while parsing (see
+	 * {@link SkippingXMLStreamReader}), such that their content is neither parsed nor kept in memory.
+	 * 
+	 * @param skippedElementPaths
+	 *            paths of local element names from the root element, e.g. "step/html".
+	 */
+	public static <T> T unmarshalSkippingElements(final Class<T> targetClass, final InputStream inStream,
+			final String... skippedElementPaths) {
+		if (skippedElementPaths.length == 0) {
+			return unmarshal(targetClass, inStream);
+		}
+		XMLStreamReader xmlReader = null;
+		try {
+			xmlReader = new SkippingXMLStreamReader(createXMLStreamReader(inStream), skippedElementPaths);
+			Pool<Unmarshaller> unmarshallers = getPool(UNMARSHALLERS, targetClass);
+			Unmarshaller unmarshallerObj = getUnmarshaller(unmarshallers, targetClass);
+			T result = unmarshallerObj.unmarshal(xmlReader, targetClass).getValue();
+			unmarshallers.offer(unmarshallerObj);
+			return result;
+		} catch (Exception e) {
+			throw new RuntimeException("Could not unmarshall object of type " + targetClass.getName(), e);
+		} finally {
+			closeQuietly(xmlReader);
+		}
+	}
+	
+	/**
+	 * Get the shared context for the given root class, the context is only created on first access.
+	 */
+	public static JAXBContext getJAXBContext(final Class<?> rootClass) throws JAXBException {
+		JAXBContext context = CONTEXTS.get(rootClass);
+		if (context == null) {
+			JAXBContext newContext = createJAXBContext(rootClass);
+			context = CONTEXTS.putIfAbsent(rootClass, newContext);
+			if (context == null) {
+				context = newContext;
+			}
+		}
+		return context;
+	}
+	
+	/**
+	 * Creates a new context on each call, use {@link #getJAXBContext(Class)} to reuse already created contexts.
+	 */
 	public static JAXBContext createJAXBContext(Class<?>... classesToBind) throws JAXBException {
 		classesToBind = appendClasses(classesToBind, SUPPORTED_COLLECTION_CLASSES);
 		classesToBind = appendClasses(classesToBind, SUPPORTED_GENERIC_CLASSES);
 		return JAXBContext.newInstance(classesToBind);
 	}
 	
+	/**
+	 * Removes all shared contexts and pooled marshallers, unmarshallers and factories, e.g. when the application using
+	 * them is stopped, such that they do not keep any classes of the application loaded.
+	 */
+	public static void clearCaches() {
+		CONTEXTS.clear();
+		MARSHALLERS.clear();
+		UNMARSHALLERS.clear();
+		XML_INPUT_FACTORIES.clear();
+	}
+	
+	private static <T> Pool<T> getPool(final ConcurrentMap<Class<?>, Pool<T>> pools, final Class<?> rootClass) {
+		Pool<T> pool = pools.get(rootClass);
+		if (pool == null) {
+			Pool<T> newPool = new Pool<T>();
+			pool = pools.putIfAbsent(rootClass, newPool);
+			if (pool == null) {
+				pool = newPool;
+			}
+		}
+		return pool;
+	}
+	
+	private static Marshaller getMarshaller(final Pool<Marshaller> marshallers, final Class<?> rootClass)
+			throws JAXBException {
+		Marshaller marshaller = marshallers.poll();
+		if (marshaller == null) {
+			marshaller = getJAXBContext(rootClass).createMarshaller();
+		}
+		return marshaller;
+	}
+	
+	private static Unmarshaller getUnmarshaller(final Pool<Unmarshaller> unmarshallers, final Class<?> rootClass)
+			throws JAXBException {
+		Unmarshaller unmarshaller = unmarshallers.poll();
+		if (unmarshaller == null) {
+			unmarshaller = getJAXBContext(rootClass).createUnmarshaller();
+		}
+		return unmarshaller;
+	}
+	
+	private static XMLStreamReader createXMLStreamReader(final InputStream inStream) throws XMLStreamException {
+		XMLInputFactory factory = XML_INPUT_FACTORIES.poll();
+		if (factory == null) {
+			factory = XMLInputFactory.newInstance();
+		}
+		XMLStreamReader xmlReader = factory.createXMLStreamReader(inStream);
+		XML_INPUT_FACTORIES.offer(factory);
+		return xmlReader;
+	}
+	
+	private static void closeQuietly(final XMLStreamReader xmlReader) {
+		if (xmlReader == null) {
+			return;
+		}
+		try {
+			xmlReader.close();
+		} catch (XMLStreamException e) {
+			// ignore, the underlying stream is closed by the caller
+		}
+	}
+	
 	private static Class<?>[] appendClasses(Class<?>[] classesToBind, final Class<?>... additionalClasses) {
 		int index = classesToBind.length;
 		classesToBind = Arrays.copyOf(classesToBind, classesToBind.length + additionalClasses.length);
@@ -89,4 +240,46 @@ public class ScenarioDocuXMLUtil {
 		return classesToBind;
 	}
 	
+	
+	/**
+	 * Bounded pool of objects that are not thread safe. The objects are shared by all threads instead of being kept
+	 * per thread, because long living threads (e.g. of an application server) would otherwise keep them (and their
+	 * classes) forever.
+	 */
+	private static class Pool<T> {
+		
+		private final ConcurrentLinkedQueue<T> idleObjects = new ConcurrentLinkedQueue<T>();
+		
+		private final AtomicInteger size = new AtomicInteger();
+		
+		/**
+		 * @return an idle object that is not used by any other thread anymore, or null if there is none.
+		 */
+		public T poll() {
+			T object = idleObjects.poll();
+			if (object != null) {
+				size.decrementAndGet();
+			}
+			return object;
+		}
+		
+		/**
+		 * Return an object that is not used anymore, it is discarded if the pool is already full.
+		 */
+		public void offer(final T object) {
+			if (size.incrementAndGet() <= MAX_POOL_SIZE) {
+				idleObjects.offer(object);
+			} else {
+				size.decrementAndGet();
+			}
+		}
+		
+		public void clear() {
+			while (poll() != null) {
+				// just remove all idle objects
+			}
+		}
+		
+	}
+	
 }
@@ -0,0 +1,121 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.util.xml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+/**
+ * StAX reader that skips some elements with all their content while parsing, such that an unmarshaller reading from
+ * this reader never sees these elements, e.g. to not parse the big HTML source of a step when it is not needed.
+ * 
+ * Elements are identified by the path of local element names from the root element, e.g. "step/html".
+ */
+public class SkippingXMLStreamReader extends StreamReaderDelegate {
+	
+	private final Set<String> skippedElementPaths;
+	
+	/**
+	 * Local names of all skipped elements, to check the path only for elements with such a name.
+	 */
+	private final Set<String> skippedElementNames = new HashSet<String>();
+	
+	/**
+	 * Local names of the current element and its parents.
+	 */
+	private final List<String> elementPath = new ArrayList<String>();
+	
+	public SkippingXMLStreamReader(final XMLStreamReader reader, final String... skippedElementPaths) {
+		super(reader);
+		this.skippedElementPaths = new HashSet<String>(Arrays.asList(skippedElementPaths));
+		for (String path : skippedElementPaths) {
+			skippedElementNames.add(path.substring(path.lastIndexOf('/') + 1));
+		}
+	}
+	
+	@Override
+	public int next() throws XMLStreamException {
+		int event = super.next();
+		while (event == XMLStreamConstants.START_ELEMENT && isSkippedElement(getLocalName())) {
+			skipElementContent();
+			event = super.next();
+		}
+		if (event == XMLStreamConstants.START_ELEMENT) {
+			elementPath.add(getLocalName());
+		} else if (event == XMLStreamConstants.END_ELEMENT && !elementPath.isEmpty()) {
+			elementPath.remove(elementPath.size() - 1);
+		}
+		return event;
+	}
+	
+	@Override
+	public int nextTag() throws XMLStreamException {
+		int event = next();
+		while (event == XMLStreamConstants.CHARACTERS && isWhiteSpace()
+				|| event == XMLStreamConstants.CDATA && isWhiteSpace()
+				|| event == XMLStreamConstants.SPACE
+				|| event == XMLStreamConstants.PROCESSING_INSTRUCTION
+				|| event == XMLStreamConstants.COMMENT) {
+			event = next();
+		}
+		if (event != XMLStreamConstants.START_ELEMENT && event != XMLStreamConstants.END_ELEMENT) {
+			throw new XMLStreamException("Expected start or end tag", getLocation());
+		}
+		return event;
+	}
+	
+	private boolean isSkippedElement(final String localName) {
+		if (!skippedElementNames.contains(localName)) {
+			return false;
+		}
+		StringBuilder path = new StringBuilder();
+		for (String name : elementPath) {
+			path.append(name).append('/');
+		}
+		return skippedElementPaths.contains(path.append(localName).toString());
+	}
+	
+	/**
+	 * Skip everything up to the end tag of the current start element.
+	 */
+	private void skipElementContent() throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = super.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+	
+}
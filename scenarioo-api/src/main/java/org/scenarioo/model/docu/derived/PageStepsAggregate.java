@@ -0,0 +1,62 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.scenarioo.model.docu.derived;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+
+import lombok.Data;
+
+import org.scenarioo.model.docu.entities.Page;
+import org.scenarioo.model.docu.entities.Step;
+
+/**
+ * Consecutive steps of a scenario on the same page, the page is only contained once and not inside the steps.
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+@Data
+public class PageStepsAggregate implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private Page page;
+	
+	@XmlElementWrapper(name = "steps")
+	@XmlElement(name = "step")
+	private List<Step> steps = new ArrayList<Step>();
+	
+	public PageStepsAggregate() {
+	}
+	
+	public PageStepsAggregate(final Page page) {
+		this.page = page;
+	}
+	
+}
@@ -0,0 +1,64 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.scenarioo.model.docu.derived;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import lombok.Data;
+
+/**
+ * All data of the steps of a scenario that is needed to aggregate the scenario on the server (everything except the
+ * HTML of the steps), grouped by the pages like the server groups them.
+ * 
+ * Written by the {@link org.scenarioo.api.ScenarioDocuWriter} if steps pre-aggregation is enabled, such that the
+ * server does not have to read each step of the scenario on import. The checksum is used to verify that the data has
+ * not been changed or truncated since it was written, the steps checksum to verify that it still matches the saved
+ * steps (see {@link org.scenarioo.api.files.StepsPreAggregator#calculateStepsChecksum}).
+ */
+@XmlRootElement
+@XmlAccessorType(XmlAccessType.FIELD)
+@Data
+public class ScenarioStepsAggregate implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private int numberOfSteps;
+	
+	private String checksum;
+	
+	private String stepsChecksum;
+	
+	@XmlElementWrapper(name = "pagesAndSteps")
+	@XmlElement(name = "pageSteps")
+	private List<PageStepsAggregate> pagesAndSteps = new ArrayList<PageStepsAggregate>();
+	
+}
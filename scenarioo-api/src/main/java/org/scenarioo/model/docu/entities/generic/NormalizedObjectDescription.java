@@ -0,0 +1,50 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.model.docu.entities.generic;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Reference to an object description that is stored only once per build, written by the
+ * {@link org.scenarioo.api.ScenarioDocuWriter} instead of the object description itself, if object normalization is
+ * enabled.
+ * 
+ * Only contains type and name of the object, the {@link org.scenarioo.api.ScenarioDocuReader} replaces it by the
+ * stored object description.
+ */
+@XmlRootElement
+@XmlAccessorType(XmlAccessType.FIELD)
+public class NormalizedObjectDescription extends ObjectDescription {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public NormalizedObjectDescription() {
+	}
+	
+	public NormalizedObjectDescription(final String type, final String name) {
+		super(type, name);
+	}
+	
+}
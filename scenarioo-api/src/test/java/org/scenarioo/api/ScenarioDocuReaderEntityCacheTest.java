@@ -0,0 +1,75 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.scenarioo.api.files.EntityCache;
+import org.scenarioo.model.docu.entities.Step;
+
+/**
+ * Tests reading steps with a {@link ScenarioDocuReader} caching the loaded entities.
+ */
+public class ScenarioDocuReaderEntityCacheTest extends ScenarioDocuWriterTestBase {
+	
+	@Test
+	public void cached_steps_are_reloaded_when_changed() throws InterruptedException {
+		
+		// GIVEN: a reader with entity cache and a saved step
+		String cachedBuildName = "cachedStepsBuild";
+		ScenarioDocuWriter cachedWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				cachedBuildName);
+		cachedWriter.saveStep(TEST_CASE_NAME, TEST_SCENARIO_NAME, createBigDataStepForLoadTestAsyncWriting(0));
+		cachedWriter.flush();
+		EntityCache cache = new EntityCache(10 * 1024 * 1024);
+		ScenarioDocuReader cachingReader = new ScenarioDocuReader(testRootDirectory);
+		cachingReader.setEntityCache(cache);
+		
+		// WHEN: loading the step twice
+		Step step = cachingReader.loadStep(TEST_BRANCH_NAME, cachedBuildName, TEST_CASE_NAME, TEST_SCENARIO_NAME, 0);
+		Step cachedStep = cachingReader.loadStep(TEST_BRANCH_NAME, cachedBuildName, TEST_CASE_NAME,
+				TEST_SCENARIO_NAME, 0);
+		
+		// THEN: the step is only parsed once, but each caller gets its own copy
+		assertNotSame(step, cachedStep);
+		assertEquals(step.getStepDescription(), cachedStep.getStepDescription());
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		
+		// WHEN: the step is changed
+		Step changedStep = createBigDataStepForLoadTestAsyncWriting(0);
+		changedStep.getStepDescription().setTitle("changed title");
+		Thread.sleep(1000);
+		cachedWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME, cachedBuildName);
+		cachedWriter.saveStep(TEST_CASE_NAME, TEST_SCENARIO_NAME, changedStep);
+		cachedWriter.flush();
+		
+		// THEN: the changed step is loaded
+		assertEquals("changed title", cachingReader.loadStep(TEST_BRANCH_NAME, cachedBuildName, TEST_CASE_NAME,
+				TEST_SCENARIO_NAME, 0).getStepDescription().getTitle());
+		assertEquals(2, cache.getMisses());
+		
+	}
+	
+}
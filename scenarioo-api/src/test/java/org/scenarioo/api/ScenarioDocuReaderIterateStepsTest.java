@@ -0,0 +1,83 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.scenarioo.api.files.StepIterator;
+import org.scenarioo.model.docu.entities.Step;
+
+/**
+ * Tests iterating over the steps of a scenario with the {@link ScenarioDocuReader}, with and without read ahead.
+ */
+public class ScenarioDocuReaderIterateStepsTest extends ScenarioDocuWriterTestBase {
+	
+	@Test
+	public void iterate_steps_one_after_the_other_with_read_ahead() {
+		
+		// GIVEN: one scenario with steps saved into one file and one scenario with one file per step
+		String iteratedBuildName = "iteratedStepsBuild";
+		ScenarioDocuWriter iteratedWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				iteratedBuildName);
+		List<Step> stepsToSave = new ArrayList<Step>();
+		for (int index = 0; index < 10; index++) {
+			stepsToSave.add(createBigDataStepForLoadTestAsyncWriting(index));
+			iteratedWriter.saveStep(TEST_CASE_NAME, TEST_SCENARIO_NAME, createBigDataStepForLoadTestAsyncWriting(index));
+		}
+		iteratedWriter.saveSteps(TEST_CASE_NAME, "scenarioWithStepsFile", stepsToSave);
+		iteratedWriter.flush();
+		
+		for (String scenarioName : Arrays.asList(TEST_SCENARIO_NAME, "scenarioWithStepsFile")) {
+			for (int readAheadSteps : new int[] { 0, 3 }) {
+				
+				// WHEN: iterating over the steps
+				StepIterator steps = reader.iterateSteps(TEST_BRANCH_NAME, iteratedBuildName, TEST_CASE_NAME,
+						scenarioName, readAheadSteps);
+				
+				// THEN: all steps are returned in order
+				int expectedIndex = 0;
+				while (steps.hasNext()) {
+					Step step = steps.next();
+					assertEquals(expectedIndex, step.getStepDescription().getIndex());
+					assertNotNull(step.getHtml());
+					expectedIndex++;
+				}
+				assertEquals(10, expectedIndex);
+			}
+		}
+		
+		// THEN: iterating can be stopped early
+		StepIterator steps = reader.iterateSteps(TEST_BRANCH_NAME, iteratedBuildName, TEST_CASE_NAME,
+				"scenarioWithStepsFile", 2);
+		assertEquals(0, steps.next().getStepDescription().getIndex());
+		steps.close();
+		assertFalse(steps.hasNext());
+		
+	}
+	
+}
@@ -0,0 +1,64 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.scenarioo.model.docu.entities.Step;
+
+/**
+ * Tests loading the steps of a scenario with the {@link ScenarioDocuReader} unmarshalling them in parallel.
+ */
+public class ScenarioDocuReaderParallelUnmarshallingTest extends ScenarioDocuWriterTestBase {
+	
+	@Test
+	public void parallel_unmarshalling_keeps_order_of_steps() {
+		
+		// GIVEN: a scenario with many steps
+		String parallelBuildName = "parallelUnmarshallingBuild";
+		ScenarioDocuWriter parallelWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				parallelBuildName);
+		for (int index = 0; index < 50; index++) {
+			parallelWriter.saveStep(TEST_CASE_NAME, TEST_SCENARIO_NAME, createBigDataStepForLoadTestAsyncWriting(index));
+		}
+		parallelWriter.flush();
+		
+		// WHEN: loading the steps in parallel
+		ScenarioDocuReader parallelReader = new ScenarioDocuReader(testRootDirectory);
+		parallelReader.setParallelUnmarshallingEnabled(true);
+		List<Step> steps = parallelReader.loadSteps(TEST_BRANCH_NAME, parallelBuildName, TEST_CASE_NAME,
+				TEST_SCENARIO_NAME);
+		
+		// THEN: all steps are loaded in the same order as when loading sequentially
+		assertEquals(50, steps.size());
+		for (int index = 0; index < 50; index++) {
+			assertEquals(index, steps.get(index).getStepDescription().getIndex());
+		}
+		assertEquals(reader.loadBranches().size(), parallelReader.loadBranches().size());
+		
+	}
+	
+}
@@ -0,0 +1,83 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.scenarioo.api.files.StepIterator;
+import org.scenarioo.model.docu.entities.Step;
+
+/**
+ * Tests reading steps with the {@link ScenarioDocuReader} without their HTML and visible text.
+ */
+public class ScenarioDocuReaderStepsWithoutHtmlTest extends ScenarioDocuWriterTestBase {
+	
+	@Test
+	public void read_steps_without_html() {
+		
+		// GIVEN: steps with HTML and visible text, saved one by one and saved together in one file
+		String withoutHtmlBuildName = "stepsWithoutHtmlBuild";
+		ScenarioDocuWriter withoutHtmlWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				withoutHtmlBuildName);
+		List<Step> stepsToSave = new ArrayList<Step>();
+		for (int index = 0; index < 3; index++) {
+			Step step = createBigDataStepForLoadTestAsyncWriting(index);
+			step.getMetadata().setVisibleText("visible text of step " + index);
+			stepsToSave.add(step);
+			withoutHtmlWriter.saveStep(TEST_CASE_NAME, TEST_SCENARIO_NAME, step);
+		}
+		withoutHtmlWriter.saveSteps(TEST_CASE_NAME, "scenarioWithStepsFile", stepsToSave);
+		withoutHtmlWriter.flush();
+		
+		for (String scenarioName : Arrays.asList(TEST_SCENARIO_NAME, "scenarioWithStepsFile")) {
+			
+			// WHEN: reading the steps without HTML
+			Step step = reader.loadStepWithoutHtml(TEST_BRANCH_NAME, withoutHtmlBuildName, TEST_CASE_NAME,
+					scenarioName, 1);
+			StepIterator steps = reader.iterateStepsWithoutHtml(TEST_BRANCH_NAME, withoutHtmlBuildName,
+					TEST_CASE_NAME, scenarioName, 0);
+			
+			// THEN: all data except the HTML and visible text is read
+			assertNull(step.getHtml());
+			assertNull(step.getMetadata().getVisibleText());
+			assertEquals(1000, step.getMetadata().getDetails().size());
+			assertEquals(1, step.getStepDescription().getIndex());
+			assertEquals("test.jsp", step.getPage().getName());
+			int numberOfSteps = 0;
+			while (steps.hasNext()) {
+				assertNull(steps.next().getHtml());
+				numberOfSteps++;
+			}
+			assertEquals(3, numberOfSteps);
+			assertEquals("visible text of step 1", reader.loadStep(TEST_BRANCH_NAME, withoutHtmlBuildName,
+					TEST_CASE_NAME, scenarioName, 1).getMetadata().getVisibleText());
+		}
+		
+	}
+	
+}
@@ -25,17 +25,9 @@ package org.scenarioo.api;
 import static org.junit.Assert.*;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.Date;
 
-
-import org.apache.commons.io.FileUtils;
-import org.junit.AfterClass;
-import org.junit.Before;
 import org.junit.Test;
-import org.scenarioo.api.ScenarioDocuReader;
-import org.scenarioo.api.ScenarioDocuWriter;
-import org.scenarioo.api.files.ScenarioDocuFiles;
 import org.scenarioo.model.docu.entities.Branch;
 import org.scenarioo.model.docu.entities.Build;
 import org.scenarioo.model.docu.entities.Page;
@@ -53,49 +45,12 @@ import org.scenarioo.model.docu.entities.generic.ObjectReference;
 /**
  * Some smoke tests for the Scenarioo generator API.
  */
-public class ScenarioDocuWriterAndReaderTest {
+public class ScenarioDocuWriterAndReaderTest extends ScenarioDocuWriterTestBase {
 	
-	private static final File TEST_ROOT_DIRECTORY = new File("tmpScenarioDocuUnitTestFiles");
-	private static final String TEST_BRANCH_NAME = "testBranch";
-	private static final String TEST_BUILD_NAME = "testBuild";
-	private static final String TEST_CASE_NAME = "testCase";
-	private static final String TEST_SCENARIO_NAME = "testScenario";
 	private static int TEST_STEP_INDEX = 1;
 	
 	private static final String TEST_DETAILS_VERSION_KEY = "version";
 	
-	/**
-	 * Objects under test
-	 */
-	private ScenarioDocuWriter writer;
-	private ScenarioDocuReader reader;
-	
-	/**
-	 * docuFiles is used for checking some of the written files.
-	 */
-	private ScenarioDocuFiles docuFiles;
-	
-	@Before
-	public void setUp() {
-		TEST_ROOT_DIRECTORY.mkdirs();
-		writer = new ScenarioDocuWriter(TEST_ROOT_DIRECTORY, TEST_BRANCH_NAME, TEST_BUILD_NAME);
-		reader = new ScenarioDocuReader(TEST_ROOT_DIRECTORY);
-		docuFiles = new ScenarioDocuFiles(TEST_ROOT_DIRECTORY);
-	}
-	
-	@AfterClass
-	public static void tearDown() {
-		deleteDirectory(TEST_ROOT_DIRECTORY);
-	}
-	
-	private static void deleteDirectory(final File testRootDirectory) {
-		try {
-			FileUtils.deleteDirectory(TEST_ROOT_DIRECTORY);
-		} catch (IOException e) {
-			throw new RuntimeException("Could not delete test data directory", e);
-		}
-	}
-	
 	@Test
 	public void write_and_read_branch_description() {
 		
@@ -292,62 +247,4 @@ public class ScenarioDocuWriterAndReaderTest {
 		
 	}
 	
-	private Step createBigDataStepForLoadTestAsyncWriting(final int index) {
-		
-		Step step = new Step();
-		
-		// Description
-		StepDescription stepDescription = new StepDescription();
-		stepDescription.setIndex(index);
-		stepDescription.setScreenshotFileName(docuFiles.getScreenshotFile(TEST_BRANCH_NAME, TEST_BUILD_NAME,
-				TEST_CASE_NAME, TEST_SCENARIO_NAME, index).getName());
-		stepDescription
-				.setTitle("this is a step with a lot of data in it such that writing should take realy long for testing async writing");
-		step.setStepDescription(stepDescription);
-		
-		// Metdata with a lot of details
-		step.setMetadata(createBigMetadata());
-		
-		// Page
-		step.setPage(new Page("test.jsp"));
-		
-		// HTML (lot of dummy data, just to generate big data for writing)
-		step.setHtml(createBigHtml());
-		
-		return step;
-	}
-	
-	/**
-	 * Simply generate StepMetadata object with a lot of details to get a big step for load testing of writing.
-	 */
-	private StepMetadata createBigMetadata() {
-		StepMetadata stepMetadata = new StepMetadata();
-		for (int i = 0; i < 1000; i++) {
-			stepMetadata.getDetails().addDetail("detail" + i,
-					"just a detail to produce a lot of data that needs marshalling and writing.");
-		}
-		return stepMetadata;
-	}
-	
-	/**
-	 * Simply generate a big dummy html for load testing of writing.
-	 */
-	private StepHtml createBigHtml() {
-		
-		StringBuilder builder = new StringBuilder();
-		builder.append("<html><head></head><body>");
-		builder.append("<p>This is just a dummy html code with lot of content to generate a lot of big data to write for load testing.<p>");
-		for (int i = 0; i < 1000; i++) {
-			builder.append("<div class=\"dummyParagraph"
-					+ i
-					+ "\">This is just a dummy html code with lot of content to generate a lot of big data to write for load testing.</div>");
-		}
-		builder.append("</body></html>");
-		
-		StepHtml html = new StepHtml();
-		html.setHtmlSource(builder.toString());
-		return html;
-		
-	}
-	
 }
@@ -0,0 +1,84 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.scenarioo.api.util.xml.ScenarioDocuXMLFileUtil;
+import org.scenarioo.model.docu.entities.Step;
+
+/**
+ * Tests that docu files are replaced atomically, such that interrupted writes never leave broken files behind.
+ */
+public class ScenarioDocuWriterAtomicWritesTest extends ScenarioDocuWriterTestBase {
+	
+	@Test
+	public void files_are_replaced_atomically_and_leftovers_of_interrupted_writes_are_ignored() {
+		
+		// GIVEN: a written step and a leftover temporary file of an interrupted write in the same directory
+		String atomicBuildName = "atomicBuild";
+		ScenarioDocuWriter atomicWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				atomicBuildName);
+		atomicWriter.saveStep(TEST_CASE_NAME, TEST_SCENARIO_NAME, createBigDataStepForLoadTestAsyncWriting(0));
+		atomicWriter.flush();
+		File stepFile = docuFiles.getStepFile(TEST_BRANCH_NAME, atomicBuildName, TEST_CASE_NAME, TEST_SCENARIO_NAME,
+				0);
+		File leftoverFile = new File(stepFile.getParentFile(), "." + stepFile.getName() + ".12345.tmp");
+		writeTruncatedFile(leftoverFile);
+		
+		// WHEN: overwriting the step fails while writing
+		try {
+			ScenarioDocuXMLFileUtil.marshal(new UnmarshallableObject(), stepFile);
+			fail("expected failure on writing unmarshallable object");
+		} catch (RuntimeException e) {
+			// expected
+		}
+		
+		// THEN: the old step is still readable and no further temporary file is left behind
+		List<Step> steps = reader.loadSteps(TEST_BRANCH_NAME, atomicBuildName, TEST_CASE_NAME, TEST_SCENARIO_NAME);
+		assertEquals(1, steps.size());
+		assertEquals(2, stepFile.getParentFile().list().length);
+		
+	}
+	
+	private static void writeTruncatedFile(final File file) {
+		try {
+			FileUtils.writeStringToFile(file, "<step><page>");
+		} catch (IOException e) {
+			throw new RuntimeException("Could not write " + file.getAbsolutePath(), e);
+		}
+	}
+	
+	/**
+	 * Not bound to JAXB, therefore marshalling it always fails.
+	 */
+	private static class UnmarshallableObject {
+	}
+	
+}
@@ -0,0 +1,95 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.scenarioo.api.configuration.ScenarioDocuGeneratorConfiguration;
+import org.scenarioo.model.docu.entities.Scenario;
+import org.scenarioo.model.docu.entities.Step;
+import org.scenarioo.model.docu.entities.UseCase;
+
+/**
+ * Tests writing docu files in the binary file format and reading them together with XML files.
+ */
+public class ScenarioDocuWriterBinaryFileFormatTest extends ScenarioDocuWriterTestBase {
+	
+	@Test
+	public void write_and_read_binary_file_format() throws IOException {
+		
+		// GIVEN: a use case written as XML
+		String binaryBuildName = "binaryFileFormatBuild";
+		ScenarioDocuWriter xmlWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME, binaryBuildName);
+		xmlWriter.saveUseCase(new UseCase(TEST_CASE_NAME, "written as XML"));
+		xmlWriter.flush();
+		
+		// WHEN: writing the scenario and its steps in the binary format
+		ScenarioDocuGeneratorConfiguration.INSTANCE.setBinaryFileFormatEnabled(true);
+		ScenarioDocuWriter binaryWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				binaryBuildName);
+		binaryWriter.saveScenario(TEST_CASE_NAME, new Scenario(TEST_SCENARIO_NAME, "written as binary", 0, 3));
+		List<Step> stepsToSave = new ArrayList<Step>();
+		for (int index = 0; index < 3; index++) {
+			Step step = createBigDataStepForLoadTestAsyncWriting(index);
+			stepsToSave.add(step);
+			binaryWriter.saveStep(TEST_CASE_NAME, TEST_SCENARIO_NAME, step);
+		}
+		binaryWriter.saveSteps(TEST_CASE_NAME, "scenarioWithStepsFile", stepsToSave);
+		binaryWriter.flush();
+		
+		// THEN: the files are written in the binary format and both formats are read, if enabled for the reader
+		File stepFile = docuFiles.getStepFile(TEST_BRANCH_NAME, binaryBuildName, TEST_CASE_NAME,
+				TEST_SCENARIO_NAME, 1);
+		byte[] content = FileUtils.readFileToByteArray(stepFile);
+		assertEquals((byte) 0xAC, content[0]);
+		assertEquals((byte) 0xED, content[1]);
+		try {
+			reader.loadScenario(TEST_BRANCH_NAME, binaryBuildName, TEST_CASE_NAME, TEST_SCENARIO_NAME);
+			fail("expected binary format not to be read by default");
+		} catch (RuntimeException e) {
+			// expected
+		}
+		reader.setBinaryFileFormatEnabled(true);
+		assertEquals("written as XML", reader.loadUsecase(TEST_BRANCH_NAME, binaryBuildName, TEST_CASE_NAME)
+				.getDescription());
+		assertEquals("written as binary", reader.loadScenario(TEST_BRANCH_NAME, binaryBuildName, TEST_CASE_NAME,
+				TEST_SCENARIO_NAME).getDescription());
+		for (String scenarioName : Arrays.asList(TEST_SCENARIO_NAME, "scenarioWithStepsFile")) {
+			List<Step> steps = reader.loadSteps(TEST_BRANCH_NAME, binaryBuildName, TEST_CASE_NAME, scenarioName);
+			assertEquals(stepsToSave, steps);
+			Step step = reader.loadStepWithoutHtml(TEST_BRANCH_NAME, binaryBuildName, TEST_CASE_NAME,
+					scenarioName, 2);
+			assertEquals(1000, step.getMetadata().getDetails().size());
+		}
+		
+	}
+	
+}
@@ -0,0 +1,91 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.scenarioo.api.configuration.ScenarioDocuGeneratorConfiguration;
+import org.scenarioo.model.docu.entities.Scenario;
+import org.scenarioo.model.docu.entities.Step;
+import org.scenarioo.model.docu.entities.UseCase;
+
+/**
+ * Tests writing a whole build into one archive file and reading it from there.
+ */
+public class ScenarioDocuWriterBuildArchiveTest extends ScenarioDocuWriterTestBase {
+	
+	@Test
+	public void write_and_read_build_as_archive() throws IOException {
+		
+		// GIVEN: a writer that writes the build as archive, with deduplicated screenshots
+		String archivedBuildName = "archivedBuild";
+		ScenarioDocuGeneratorConfiguration.INSTANCE.setBuildArchiveEnabled(true);
+		ScenarioDocuGeneratorConfiguration.INSTANCE.setScreenshotDeduplicationEnabled(true);
+		ScenarioDocuWriter archiveWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				archivedBuildName);
+		byte[] image = new byte[] { 1, 2, 3, 4, 5 };
+		
+		// WHEN: saving use case, scenario, steps and screenshots
+		archiveWriter.saveUseCase(new UseCase(TEST_CASE_NAME, "archived use case"));
+		archiveWriter.saveScenario(TEST_CASE_NAME, new Scenario(TEST_SCENARIO_NAME, "archived scenario", 1, 3));
+		for (int index = 0; index < 3; index++) {
+			archiveWriter.saveStep(TEST_CASE_NAME, TEST_SCENARIO_NAME,
+					createBigDataStepForLoadTestAsyncWriting(index));
+			archiveWriter.saveScreenshotAsPng(TEST_CASE_NAME, TEST_SCENARIO_NAME, index, image);
+		}
+		archiveWriter.flush();
+		
+		// THEN: only the archive is written and everything can be read from it
+		assertTrue("expected archive",
+				docuFiles.getBuildArchiveFile(TEST_BRANCH_NAME, archivedBuildName).exists());
+		assertFalse("expected no use case directory",
+				docuFiles.getUseCaseDirectory(TEST_BRANCH_NAME, archivedBuildName, TEST_CASE_NAME).exists());
+		assertEquals("archived use case", reader.loadUsecases(TEST_BRANCH_NAME, archivedBuildName).get(0)
+				.getDescription());
+		assertEquals("archived scenario",
+				reader.loadScenario(TEST_BRANCH_NAME, archivedBuildName, TEST_CASE_NAME, TEST_SCENARIO_NAME)
+						.getDescription());
+		List<Step> steps = reader.loadSteps(TEST_BRANCH_NAME, archivedBuildName, TEST_CASE_NAME,
+				TEST_SCENARIO_NAME);
+		assertEquals("expected number of steps", 3, steps.size());
+		assertEquals(2, reader.loadStep(TEST_BRANCH_NAME, archivedBuildName, TEST_CASE_NAME, TEST_SCENARIO_NAME,
+				2).getStepDescription().getIndex());
+		InputStream screenshot = reader.openScreenshot(TEST_BRANCH_NAME, archivedBuildName, TEST_CASE_NAME,
+				TEST_SCENARIO_NAME, "002.png");
+		try {
+			assertArrayEquals(image, IOUtils.toByteArray(screenshot));
+		} finally {
+			screenshot.close();
+		}
+		assertNull("expected no screenshot", reader.openScreenshot(TEST_BRANCH_NAME, archivedBuildName,
+				TEST_CASE_NAME, TEST_SCENARIO_NAME, "003.png"));
+		
+	}
+	
+}
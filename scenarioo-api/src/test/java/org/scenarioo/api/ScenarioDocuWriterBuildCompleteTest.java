@@ -0,0 +1,64 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.scenarioo.model.docu.entities.Scenario;
+import org.scenarioo.model.docu.entities.UseCase;
+
+/**
+ * Tests that a build is only reported as complete after all writers of the build have been flushed.
+ */
+public class ScenarioDocuWriterBuildCompleteTest extends ScenarioDocuWriterTestBase {
+	
+	@Test
+	public void build_is_complete_after_all_writers_are_flushed() {
+		
+		// GIVEN: two writers writing the same build
+		String completeBuildName = "completeBuild";
+		ScenarioDocuWriter useCaseWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				completeBuildName);
+		ScenarioDocuWriter scenarioWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				completeBuildName);
+		UseCase usecase = new UseCase(TEST_CASE_NAME, "");
+		useCaseWriter.saveUseCase(usecase);
+		scenarioWriter.saveScenario(usecase, new Scenario(TEST_SCENARIO_NAME, "", 0, 0));
+		assertFalse("expected incomplete build while writing",
+				reader.isBuildComplete(TEST_BRANCH_NAME, completeBuildName));
+		
+		// WHEN: flushing the writers one after the other
+		useCaseWriter.flush();
+		boolean completeAfterFirstFlush = reader.isBuildComplete(TEST_BRANCH_NAME, completeBuildName);
+		scenarioWriter.flush();
+		
+		// THEN: the build is only complete after the last writer has been flushed
+		assertFalse("expected incomplete build after first flush", completeAfterFirstFlush);
+		assertTrue("expected complete build", reader.isBuildComplete(TEST_BRANCH_NAME, completeBuildName));
+		assertTrue("expected build without markers to be complete", reader.isBuildComplete(TEST_BRANCH_NAME,
+				"buildWrittenWithoutMarkers"));
+		
+	}
+	
+}
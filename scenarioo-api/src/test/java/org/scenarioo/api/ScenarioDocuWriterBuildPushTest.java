@@ -0,0 +1,125 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+import org.junit.Test;
+import org.scenarioo.api.configuration.ScenarioDocuGeneratorConfiguration;
+import org.scenarioo.api.files.BuildPushReceiver;
+import org.scenarioo.api.files.ScenarioDocuFiles;
+import org.scenarioo.model.docu.entities.Branch;
+import org.scenarioo.model.docu.entities.Build;
+import org.scenarioo.model.docu.entities.Scenario;
+import org.scenarioo.model.docu.entities.UseCase;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests pushing a build to a server over HTTP, instead of writing it into the local file system.
+ */
+public class ScenarioDocuWriterBuildPushTest extends ScenarioDocuWriterTestBase {
+	
+	@Test
+	public void push_build_to_server_over_http() throws IOException {
+		
+		// GIVEN: a server receiving pushed builds into its own directory and a writer pushing to it
+		final File serverRootDirectory = new File(testRootDirectory, "pushServer");
+		serverRootDirectory.mkdirs();
+		HttpServer server = startPushServer(new BuildPushReceiver(serverRootDirectory));
+		String pushedBuildName = "pushedBuild";
+		int numberOfSteps = 30;
+		ScenarioDocuGeneratorConfiguration.INSTANCE.setPushServerUrl("http://localhost:"
+				+ server.getAddress().getPort() + "/scenarioo/");
+		try {
+			ScenarioDocuWriter pushWriter = new ScenarioDocuWriter(new File(testRootDirectory, "notWritten"),
+					TEST_BRANCH_NAME, pushedBuildName);
+			
+			// WHEN: writing a build with more files than fit into one batch
+			pushWriter.saveBranchDescription(new Branch(TEST_BRANCH_NAME));
+			pushWriter.saveBuildDescription(new Build(pushedBuildName));
+			pushWriter.saveUseCase(new UseCase(TEST_CASE_NAME, ""));
+			Scenario scenario = new Scenario(TEST_SCENARIO_NAME, "pushed scenario", 0, 0);
+			pushWriter.saveScenario(TEST_CASE_NAME, scenario);
+			for (int index = 0; index < numberOfSteps; index++) {
+				pushWriter.saveStep(TEST_CASE_NAME, TEST_SCENARIO_NAME,
+						createBigDataStepForLoadTestAsyncWriting(index));
+			}
+			pushWriter.saveScreenshotAsPng(TEST_CASE_NAME, TEST_SCENARIO_NAME, 0, new byte[] { 1, 2, 3 });
+			scenario.setStatus("success");
+			pushWriter.saveScenario(TEST_CASE_NAME, scenario);
+			pushWriter.flush();
+		} finally {
+			server.stop(0);
+		}
+		
+		// THEN: the build is stored completely on the server and nothing is written locally
+		ScenarioDocuReader serverReader = new ScenarioDocuReader(serverRootDirectory);
+		assertTrue(serverReader.isBuildComplete(TEST_BRANCH_NAME, pushedBuildName));
+		assertEquals(TEST_BRANCH_NAME, serverReader.loadBranch(TEST_BRANCH_NAME).getName());
+		assertEquals(pushedBuildName, serverReader.loadBuild(TEST_BRANCH_NAME, pushedBuildName).getName());
+		assertEquals("success",
+				serverReader.loadScenario(TEST_BRANCH_NAME, pushedBuildName, TEST_CASE_NAME, TEST_SCENARIO_NAME)
+						.getStatus());
+		assertEquals(numberOfSteps, serverReader.loadSteps(TEST_BRANCH_NAME, pushedBuildName, TEST_CASE_NAME,
+				TEST_SCENARIO_NAME).size());
+		assertEquals(3, new ScenarioDocuFiles(serverRootDirectory).getScreenshotFile(TEST_BRANCH_NAME,
+				pushedBuildName, TEST_CASE_NAME, TEST_SCENARIO_NAME, 0).length());
+		assertFalse(new File(testRootDirectory, "notWritten").exists());
+		
+	}
+	
+	/**
+	 * Simple server that passes all pushed batches to the receiver, like the push resource of the scenarioo server.
+	 */
+	private static HttpServer startPushServer(final BuildPushReceiver receiver) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/scenarioo/rest/branches/", new HttpHandler() {
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				String[] path = exchange.getRequestURI().getPath().split("/");
+				String query = exchange.getRequestURI().getQuery();
+				try {
+					receiver.receiveBatch(path[4], path[6], exchange.getRequestBody(),
+							query.contains(BuildPushReceiver.PARAM_FIRST_BATCH + "=true"),
+							query.contains(BuildPushReceiver.PARAM_LAST_BATCH + "=true"),
+							query.contains(BuildPushReceiver.PARAM_COMPLETE + "=true"));
+					exchange.sendResponseHeaders(204, -1);
+				} catch (RuntimeException e) {
+					exchange.sendResponseHeaders(500, -1);
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		server.start();
+		return server;
+	}
+	
+}
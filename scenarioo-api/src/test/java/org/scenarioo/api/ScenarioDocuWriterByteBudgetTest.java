@@ -0,0 +1,118 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+import org.scenarioo.api.configuration.ScenarioDocuGeneratorConfiguration;
+import org.scenarioo.api.files.storage.InMemoryStorage;
+import org.scenarioo.api.files.storage.StorageOutputStream;
+
+/**
+ * Tests that the {@link ScenarioDocuWriter} blocks the callers of the save methods as soon as the steps waiting to be
+ * written exceed the async write buffer size in bytes.
+ */
+public class ScenarioDocuWriterByteBudgetTest extends ScenarioDocuWriterTestBase {
+	
+	/**
+	 * Test that callers are blocked while the write buffer is full, such that not more steps are retained than fit
+	 * into the buffer, and that all steps are written anyway.
+	 */
+	@Test
+	public void write_with_small_byte_budget_blocks_until_files_are_written() {
+		
+		// GIVEN: a writer with two write threads and a write buffer that is much smaller than one step
+		ScenarioDocuGeneratorConfiguration.INSTANCE.setAsyncWriteThreads(2);
+		ScenarioDocuGeneratorConfiguration.INSTANCE.setAsyncWriteBufferSizeInBytes(1);
+		SlowStepsStorage storage = new SlowStepsStorage();
+		storage.createDirectories(testRootDirectory);
+		ScenarioDocuWriter smallBufferWriter = new ScenarioDocuWriter(testRootDirectory, storage, TEST_BRANCH_NAME,
+				TEST_BUILD_NAME);
+		
+		// WHEN: saving steps of two scenarios, which could be written in parallel
+		for (int index = 0; index < 5; index++) {
+			smallBufferWriter.saveStep(TEST_CASE_NAME, "smallBufferScenario1",
+					createBigDataStepForLoadTestAsyncWriting(index));
+			smallBufferWriter.saveStep(TEST_CASE_NAME, "smallBufferScenario2",
+					createBigDataStepForLoadTestAsyncWriting(index));
+		}
+		smallBufferWriter.flush();
+		
+		// THEN: the caller was blocked, only one step was retained for writing at a time and all steps are written
+		assertTrue("expected blocked caller", smallBufferWriter.getMetrics().getBlockedCount() > 0);
+		assertEquals("expected maximal number of steps written at the same time", 1,
+				storage.getMaxConcurrentStepWrites());
+		ScenarioDocuReader inMemoryReader = new ScenarioDocuReader(testRootDirectory, storage);
+		for (String scenarioName : new String[] { "smallBufferScenario1", "smallBufferScenario2" }) {
+			assertEquals("expected number of steps", 5,
+					inMemoryReader.loadSteps(TEST_BRANCH_NAME, TEST_BUILD_NAME, TEST_CASE_NAME, scenarioName).size());
+		}
+		
+	}
+	
+	/**
+	 * Slows down opening of step files and records how many step files are opened at the same time.
+	 */
+	private static class SlowStepsStorage extends InMemoryStorage {
+		
+		private int concurrentStepWrites = 0;
+		
+		private int maxConcurrentStepWrites = 0;
+		
+		@Override
+		public StorageOutputStream openForWriting(final File file, final boolean synced) throws IOException {
+			if (!"steps".equals(file.getParentFile().getName())) {
+				return super.openForWriting(file, synced);
+			}
+			stepWriteStarted();
+			try {
+				Thread.sleep(20);
+				return super.openForWriting(file, synced);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while writing " + file.getName());
+			} finally {
+				stepWriteFinished();
+			}
+		}
+		
+		private synchronized void stepWriteStarted() {
+			concurrentStepWrites++;
+			maxConcurrentStepWrites = Math.max(maxConcurrentStepWrites, concurrentStepWrites);
+		}
+		
+		private synchronized void stepWriteFinished() {
+			concurrentStepWrites--;
+		}
+		
+		public synchronized int getMaxConcurrentStepWrites() {
+			return maxConcurrentStepWrites;
+		}
+		
+	}
+	
+}
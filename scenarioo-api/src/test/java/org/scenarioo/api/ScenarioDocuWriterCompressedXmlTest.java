@@ -0,0 +1,82 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Test;
+import org.scenarioo.api.configuration.ScenarioDocuGeneratorConfiguration;
+import org.scenarioo.model.docu.derived.BuildLink;
+import org.scenarioo.model.docu.entities.Build;
+import org.scenarioo.model.docu.entities.Step;
+import org.scenarioo.model.docu.entities.UseCase;
+
+/**
+ * Tests writing compact and compressed XML files, which are read transparently.
+ */
+public class ScenarioDocuWriterCompressedXmlTest extends ScenarioDocuWriterTestBase {
+	
+	@Test
+	public void write_and_read_compact_and_compressed_xml_files() {
+		
+		// GIVEN: a writer that writes compact and compressed XML files
+		String compressedBuildName = "compressedBuild";
+		ScenarioDocuGeneratorConfiguration.INSTANCE.setFormattedXmlOutput(false);
+		ScenarioDocuGeneratorConfiguration.INSTANCE.setCompressedXmlOutput(true);
+		ScenarioDocuWriter compressingWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				compressedBuildName);
+		
+		// WHEN: saving build, use case and steps
+		compressingWriter.saveBuildDescription(new Build(compressedBuildName));
+		compressingWriter.saveUseCase(new UseCase(TEST_CASE_NAME, "compressed use case"));
+		for (int index = 0; index < 3; index++) {
+			compressingWriter.saveStep(TEST_CASE_NAME, TEST_SCENARIO_NAME,
+					createBigDataStepForLoadTestAsyncWriting(index));
+		}
+		compressingWriter.flush();
+		
+		// THEN: the files are written compressed and are read transparently
+		File stepFile = docuFiles.getStepFile(TEST_BRANCH_NAME, compressedBuildName, TEST_CASE_NAME,
+				TEST_SCENARIO_NAME, 0);
+		assertFalse("expected no uncompressed file", stepFile.exists());
+		assertTrue("expected compressed file", new File(stepFile.getPath() + ".gz").exists());
+		assertEquals(compressedBuildName, reader.loadBuild(TEST_BRANCH_NAME, compressedBuildName).getName());
+		boolean buildFound = false;
+		for (BuildLink buildLink : reader.loadBuilds(TEST_BRANCH_NAME)) {
+			buildFound |= compressedBuildName.equals(buildLink.getLinkName());
+		}
+		assertTrue("expected build in list of builds", buildFound);
+		assertEquals("compressed use case", reader.loadUsecases(TEST_BRANCH_NAME, compressedBuildName).get(0)
+				.getDescription());
+		List<Step> steps = reader.loadSteps(TEST_BRANCH_NAME, compressedBuildName, TEST_CASE_NAME,
+				TEST_SCENARIO_NAME);
+		assertEquals("expected number of steps", 3, steps.size());
+		assertEquals(1, reader.loadStep(TEST_BRANCH_NAME, compressedBuildName, TEST_CASE_NAME, TEST_SCENARIO_NAME,
+				1).getStepDescription().getIndex());
+		
+	}
+	
+}
@@ -0,0 +1,163 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scenarioo.api.files.ScenarioDocuFiles;
+import org.scenarioo.api.files.storage.FileSystemStorage;
+import org.scenarioo.model.docu.entities.Scenario;
+import org.scenarioo.model.docu.entities.Step;
+import org.scenarioo.model.docu.entities.StepDescription;
+import org.scenarioo.model.docu.entities.UseCase;
+
+/**
+ * Tests that the writer checks and creates each directory only once, independent of the number of files written.
+ */
+public class ScenarioDocuWriterDirectoriesTest {
+	
+	private static final File TEST_ROOT_DIRECTORY = new File("tmpScenarioDocuWriterDirectoriesTestFiles");
+	private static final String TEST_BRANCH_NAME = "testBranch";
+	private static final String TEST_BUILD_NAME = "testBuild";
+	
+	private final CountingStorage storage = new CountingStorage();
+	
+	@Before
+	public void setUp() {
+		TEST_ROOT_DIRECTORY.mkdirs();
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(TEST_ROOT_DIRECTORY);
+	}
+	
+	@Test
+	public void each_directory_is_checked_and_created_only_once() {
+		// GIVEN:
+		ScenarioDocuWriter writer = new ScenarioDocuWriter(TEST_ROOT_DIRECTORY, storage, TEST_BRANCH_NAME,
+				TEST_BUILD_NAME);
+		UseCase useCase = new UseCase("useCase", "");
+		Scenario scenario = new Scenario();
+		scenario.setName("scenario");
+		
+		// WHEN: many steps are saved into the same directory
+		writer.saveUseCase(useCase);
+		writer.saveScenario(useCase, scenario);
+		for (int index = 0; index < 50; index++) {
+			writer.saveStep(useCase, scenario, createStep(index));
+		}
+		writer.flush();
+		
+		// THEN:
+		File stepsDirectory = new ScenarioDocuFiles(TEST_ROOT_DIRECTORY).getStepsDirectory(TEST_BRANCH_NAME,
+				TEST_BUILD_NAME, "useCase", "scenario");
+		assertTrue(new File(stepsDirectory, "049.xml").exists());
+		assertEquals(1, storage.getExistsChecks(stepsDirectory));
+		assertEquals(1, storage.getCreations(stepsDirectory));
+		assertTrue(storage.getExistsChecks(TEST_ROOT_DIRECTORY) <= 5);
+	}
+	
+	@Test
+	public void existing_directory_is_not_created_again() {
+		// GIVEN: the directory of a scenario written by a first writer
+		ScenarioDocuWriter firstWriter = new ScenarioDocuWriter(TEST_ROOT_DIRECTORY, TEST_BRANCH_NAME,
+				TEST_BUILD_NAME);
+		firstWriter.saveStep("useCase", "scenario", createStep(0));
+		firstWriter.flush();
+		
+		// WHEN: a second writer saves further steps into the same directory
+		ScenarioDocuWriter secondWriter = new ScenarioDocuWriter(TEST_ROOT_DIRECTORY, storage, TEST_BRANCH_NAME,
+				TEST_BUILD_NAME);
+		secondWriter.saveStep("useCase", "scenario", createStep(1));
+		secondWriter.saveStep("useCase", "scenario", createStep(2));
+		secondWriter.flush();
+		
+		// THEN:
+		File stepsDirectory = new ScenarioDocuFiles(TEST_ROOT_DIRECTORY).getStepsDirectory(TEST_BRANCH_NAME,
+				TEST_BUILD_NAME, "useCase", "scenario");
+		assertEquals(1, storage.getExistsChecks(stepsDirectory));
+		assertEquals(0, storage.getCreations(stepsDirectory));
+		assertTrue(new File(stepsDirectory, "002.xml").exists());
+	}
+	
+	private static Step createStep(final int index) {
+		Step step = new Step();
+		StepDescription stepDescription = new StepDescription();
+		stepDescription.setIndex(index);
+		step.setStepDescription(stepDescription);
+		return step;
+	}
+	
+	/**
+	 * Counts the filesystem accesses for each directory.
+	 */
+	private static class CountingStorage extends FileSystemStorage {
+		
+		private final ConcurrentMap<File, AtomicInteger> existsChecks = new ConcurrentHashMap<File, AtomicInteger>();
+		
+		private final ConcurrentMap<File, AtomicInteger> creations = new ConcurrentHashMap<File, AtomicInteger>();
+		
+		@Override
+		public boolean exists(final File file) {
+			count(existsChecks, file);
+			return super.exists(file);
+		}
+		
+		@Override
+		public void createDirectories(final File directory) {
+			count(creations, directory);
+			super.createDirectories(directory);
+		}
+		
+		public int getExistsChecks(final File file) {
+			return getCount(existsChecks, file);
+		}
+		
+		public int getCreations(final File directory) {
+			return getCount(creations, directory);
+		}
+		
+		private static void count(final ConcurrentMap<File, AtomicInteger> counters, final File file) {
+			counters.putIfAbsent(file, new AtomicInteger());
+			counters.get(file).incrementAndGet();
+		}
+		
+		private static int getCount(final ConcurrentMap<File, AtomicInteger> counters, final File file) {
+			AtomicInteger counter = counters.get(file);
+			return counter == null ? 0 : counter.get();
+		}
+		
+	}
+	
+}
@@ -0,0 +1,104 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.scenarioo.api.files.storage.InMemoryStorage;
+import org.scenarioo.model.docu.entities.Branch;
+import org.scenarioo.model.docu.entities.Build;
+import org.scenarioo.model.docu.entities.Scenario;
+import org.scenarioo.model.docu.entities.Step;
+import org.scenarioo.model.docu.entities.UseCase;
+
+/**
+ * Tests writing and reading a build in an in-memory storage instead of the file system.
+ */
+public class ScenarioDocuWriterInMemoryStorageTest extends ScenarioDocuWriterTestBase {
+	
+	@Test
+	public void write_and_read_build_in_memory_storage() throws IOException {
+		
+		// GIVEN: a writer and a reader for the same in-memory storage
+		File inMemoryRootDirectory = new File("inMemoryScenarioDocuFiles");
+		String inMemoryBuildName = "inMemoryBuild";
+		InMemoryStorage storage = new InMemoryStorage();
+		storage.createDirectories(inMemoryRootDirectory);
+		ScenarioDocuWriter inMemoryWriter = new ScenarioDocuWriter(inMemoryRootDirectory, storage, TEST_BRANCH_NAME,
+				inMemoryBuildName);
+		ScenarioDocuReader inMemoryReader = new ScenarioDocuReader(inMemoryRootDirectory, storage);
+		byte[] screenshot = new byte[] { 1, 2, 3 };
+		
+		// WHEN: writing a build with steps saved one by one and saved together in one file
+		inMemoryWriter.saveBranchDescription(new Branch(TEST_BRANCH_NAME));
+		inMemoryWriter.saveBuildDescription(new Build(inMemoryBuildName));
+		inMemoryWriter.saveUseCase(new UseCase(TEST_CASE_NAME, ""));
+		inMemoryWriter.saveScenario(TEST_CASE_NAME, new Scenario(TEST_SCENARIO_NAME, "", 0, 3));
+		List<Step> stepsToSave = new ArrayList<Step>();
+		for (int index = 0; index < 3; index++) {
+			Step step = createBigDataStepForLoadTestAsyncWriting(index);
+			stepsToSave.add(step);
+			inMemoryWriter.saveStep(TEST_CASE_NAME, TEST_SCENARIO_NAME, step);
+		}
+		inMemoryWriter.saveSteps(TEST_CASE_NAME, "scenarioWithStepsFile", stepsToSave);
+		inMemoryWriter.saveScreenshot(TEST_CASE_NAME, TEST_SCENARIO_NAME, 0, Base64.encodeBase64String(screenshot));
+		inMemoryWriter.flush();
+		
+		// THEN: the build is read from the storage, without any files written into the file system
+		assertFalse(inMemoryRootDirectory.exists());
+		assertEquals(1, inMemoryReader.loadBranches().size());
+		assertEquals(inMemoryBuildName, inMemoryReader.loadBuilds(TEST_BRANCH_NAME).get(0).getBuild().getName());
+		assertEquals(TEST_CASE_NAME, inMemoryReader.loadUsecases(TEST_BRANCH_NAME, inMemoryBuildName).get(0)
+				.getName());
+		assertEquals(TEST_SCENARIO_NAME, inMemoryReader.loadScenario(TEST_BRANCH_NAME, inMemoryBuildName,
+				TEST_CASE_NAME, TEST_SCENARIO_NAME).getName());
+		for (String scenarioName : Arrays.asList(TEST_SCENARIO_NAME, "scenarioWithStepsFile")) {
+			List<Step> steps = inMemoryReader.loadSteps(TEST_BRANCH_NAME, inMemoryBuildName, TEST_CASE_NAME,
+					scenarioName);
+			assertEquals(3, steps.size());
+			assertEquals(2, steps.get(2).getStepDescription().getIndex());
+			assertEquals(1, inMemoryReader.loadStep(TEST_BRANCH_NAME, inMemoryBuildName, TEST_CASE_NAME,
+					scenarioName, 1).getStepDescription().getIndex());
+		}
+		InputStream screenshotStream = inMemoryReader.openScreenshot(TEST_BRANCH_NAME, inMemoryBuildName,
+				TEST_CASE_NAME, TEST_SCENARIO_NAME, "000.png");
+		try {
+			assertArrayEquals(screenshot, IOUtils.toByteArray(screenshotStream));
+		} finally {
+			IOUtils.closeQuietly(screenshotStream);
+		}
+		assertTrue(inMemoryReader.isBuildComplete(TEST_BRANCH_NAME, inMemoryBuildName));
+		
+	}
+	
+}
@@ -0,0 +1,65 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.scenarioo.api.metrics.ScenarioDocuWriterMetrics;
+import org.scenarioo.api.metrics.WriteType;
+
+/**
+ * Tests the metrics recorded while writing with the {@link ScenarioDocuWriter}.
+ */
+public class ScenarioDocuWriterMetricsTest extends ScenarioDocuWriterTestBase {
+	
+	@Test
+	public void writer_metrics_contain_write_times_and_bytes_per_type() {
+		
+		// GIVEN: a writer for steps and screenshots
+		ScenarioDocuWriter measuredWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				"measuredBuild");
+		
+		// WHEN: saving some steps and a screenshot
+		for (int index = 0; index < 3; index++) {
+			measuredWriter.saveStep(TEST_CASE_NAME, TEST_SCENARIO_NAME,
+					createBigDataStepForLoadTestAsyncWriting(index));
+		}
+		measuredWriter.saveScreenshotAsPng(TEST_CASE_NAME, TEST_SCENARIO_NAME, 0, new byte[] { 1, 2, 3, 4 });
+		measuredWriter.flush();
+		
+		// THEN: the metrics contain the writes of each type
+		ScenarioDocuWriterMetrics metrics = measuredWriter.getMetrics();
+		assertEquals(3, metrics.getWriteLatency(WriteType.STEP).getCount());
+		assertEquals(1, metrics.getWriteLatency(WriteType.SCREENSHOT).getCount());
+		assertEquals(0, metrics.getWriteLatency(WriteType.SCENARIO).getCount());
+		assertEquals(4, metrics.getBytesWritten(WriteType.SCREENSHOT));
+		long stepFileSize = docuFiles.getStepFile(TEST_BRANCH_NAME, "measuredBuild", TEST_CASE_NAME,
+				TEST_SCENARIO_NAME, 0).length();
+		assertTrue("expected bytes of all steps", metrics.getBytesWritten(WriteType.STEP) >= 3 * stepFileSize);
+		assertTrue("expected queue depth", metrics.getMaxQueueDepth() >= 1);
+		assertTrue("expected summary", metrics.getSummary().contains("STEP: 3 writes"));
+		
+	}
+	
+}
@@ -0,0 +1,82 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.scenarioo.api.configuration.ScenarioDocuGeneratorConfiguration;
+import org.scenarioo.model.docu.entities.Page;
+import org.scenarioo.model.docu.entities.Step;
+import org.scenarioo.model.docu.entities.generic.ObjectDescription;
+
+/**
+ * Tests that pages and objects are written only once and resolved when reading, if object normalization is
+ * enabled.
+ */
+public class ScenarioDocuWriterObjectNormalizationTest extends ScenarioDocuWriterTestBase {
+	
+	@Test
+	public void write_and_read_steps_with_normalized_pages_and_objects() throws IOException {
+		
+		// GIVEN: two steps with the same page and the same object in their details
+		ScenarioDocuGeneratorConfiguration.INSTANCE.setObjectNormalizationEnabled(true);
+		String normalizedBuildName = "normalizedBuild";
+		ScenarioDocuWriter normalizingWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				normalizedBuildName);
+		ObjectDescription service = new ObjectDescription("service", "loginService");
+		service.addDetail("url", "http://localhost/login");
+		service.addDetail("dependency", new ObjectDescription("service", "userService"));
+		((ObjectDescription) service.getDetails().get("dependency")).addDetail("url", "http://localhost/user");
+		for (int index = 0; index < 2; index++) {
+			Step step = createBigDataStepForLoadTestAsyncWriting(index);
+			step.setPage(new Page("loginPage"));
+			step.getPage().getDetails().addDetail("title", "Login");
+			step.getMetadata().addDetail("calledService", service);
+			
+			// WHEN: saving the steps with object normalization
+			normalizingWriter.saveStep(TEST_CASE_NAME, TEST_SCENARIO_NAME, step);
+		}
+		normalizingWriter.flush();
+		
+		// THEN: page and objects are written once and resolved when reading
+		assertTrue("expected stored page", docuFiles.getPageFile(TEST_BRANCH_NAME, normalizedBuildName,
+				"loginPage").exists());
+		assertTrue("expected stored object", docuFiles.getObjectFile(TEST_BRANCH_NAME, normalizedBuildName,
+				"service", "userService").exists());
+		String stepXml = FileUtils.readFileToString(docuFiles.getStepFile(TEST_BRANCH_NAME, normalizedBuildName,
+				TEST_CASE_NAME, TEST_SCENARIO_NAME, 1));
+		assertFalse("expected no object details in step", stepXml.contains("http://localhost/login"));
+		Step loadedStep = reader.loadStep(TEST_BRANCH_NAME, normalizedBuildName, TEST_CASE_NAME,
+				TEST_SCENARIO_NAME, 1);
+		assertEquals("Login", loadedStep.getPage().getDetails().get("title"));
+		assertEquals(service, loadedStep.getMetadata().getDetails().get("calledService"));
+		assertEquals(2, reader.loadSteps(TEST_BRANCH_NAME, normalizedBuildName, TEST_CASE_NAME,
+				TEST_SCENARIO_NAME).size());
+		
+	}
+	
+}
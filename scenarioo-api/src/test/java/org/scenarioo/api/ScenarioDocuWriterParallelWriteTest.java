@@ -0,0 +1,117 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.scenarioo.api.configuration.ScenarioDocuGeneratorConfiguration;
+import org.scenarioo.api.exception.ScenarioDocuSaveException;
+import org.scenarioo.model.docu.entities.Step;
+
+/**
+ * Tests the asynchronous writing of the {@link ScenarioDocuWriter} with several write threads.
+ */
+public class ScenarioDocuWriterParallelWriteTest extends ScenarioDocuWriterTestBase {
+	
+	/**
+	 * Test that steps of different scenarios can be written in parallel and that the steps of each scenario are still
+	 * written completely.
+	 */
+	@Test
+	public void parallel_write_of_multiple_scenarios_and_flush() {
+		
+		// GIVEN: a writer that writes with several threads
+		ScenarioDocuGeneratorConfiguration.INSTANCE.setAsyncWriteThreads(4);
+		ScenarioDocuWriter parallelWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				TEST_BUILD_NAME);
+		
+		// WHEN: saving steps of several scenarios
+		for (int scenarioIndex = 0; scenarioIndex < 6; scenarioIndex++) {
+			for (int index = 0; index < 5; index++) {
+				parallelWriter.saveStep(TEST_CASE_NAME, "parallelScenario" + scenarioIndex,
+						createBigDataStepForLoadTestAsyncWriting(index));
+			}
+		}
+		parallelWriter.flush();
+		
+		// THEN: all steps of all scenarios are written in correct order
+		for (int scenarioIndex = 0; scenarioIndex < 6; scenarioIndex++) {
+			List<Step> steps = reader.loadSteps(TEST_BRANCH_NAME, TEST_BUILD_NAME, TEST_CASE_NAME,
+					"parallelScenario" + scenarioIndex);
+			assertEquals("expected number of steps", 5, steps.size());
+			for (int index = 0; index < 5; index++) {
+				assertEquals("expected step index", index, steps.get(index).getStepDescription().getIndex());
+			}
+		}
+		
+	}
+	
+	/**
+	 * Test that a step saved several times is written in the order of saving, such that the step saved last wins, also
+	 * when the steps of several scenarios are written in parallel.
+	 */
+	@Test
+	public void parallel_write_of_same_step_several_times_keeps_step_saved_last() {
+		
+		// GIVEN: a writer that writes with several threads
+		ScenarioDocuGeneratorConfiguration.INSTANCE.setAsyncWriteThreads(4);
+		ScenarioDocuWriter parallelWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				TEST_BUILD_NAME);
+		
+		// WHEN: saving the same step of several scenarios several times, each time with another title
+		for (int version = 0; version < 10; version++) {
+			for (int scenarioIndex = 0; scenarioIndex < 6; scenarioIndex++) {
+				Step step = createBigDataStepForLoadTestAsyncWriting(1);
+				step.getStepDescription().setTitle("version " + version);
+				parallelWriter.saveStep(TEST_CASE_NAME, "parallelScenario" + scenarioIndex, step);
+			}
+		}
+		parallelWriter.flush();
+		
+		// THEN: the step of each scenario contains the title saved last
+		for (int scenarioIndex = 0; scenarioIndex < 6; scenarioIndex++) {
+			Step step = reader.loadStep(TEST_BRANCH_NAME, TEST_BUILD_NAME, TEST_CASE_NAME, "parallelScenario"
+					+ scenarioIndex, 1);
+			assertEquals("expected title of step saved last", "version 9", step.getStepDescription().getTitle());
+		}
+		
+	}
+	
+	@Test(expected = ScenarioDocuSaveException.class)
+	public void exception_on_async_write_is_reported_on_flush() {
+		
+		// GIVEN: a step that can not be saved because it has no description
+		Step invalidStep = new Step();
+		
+		// WHEN: saving the step
+		writer.saveStep(TEST_CASE_NAME, TEST_SCENARIO_NAME, invalidStep);
+		
+		// THEN: flush reports the failure
+		writer.flush();
+		
+	}
+	
+}
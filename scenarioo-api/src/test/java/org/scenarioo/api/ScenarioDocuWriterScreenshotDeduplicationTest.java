@@ -0,0 +1,75 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.scenarioo.api.configuration.ScenarioDocuGeneratorConfiguration;
+
+/**
+ * Tests that the {@link ScenarioDocuWriter} stores equal screenshots only once, if screenshot deduplication is
+ * enabled.
+ */
+public class ScenarioDocuWriterScreenshotDeduplicationTest extends ScenarioDocuWriterTestBase {
+	
+	@Test
+	public void write_equal_screenshots_only_once_with_screenshot_deduplication() throws IOException {
+		
+		// GIVEN: a writer with screenshot deduplication and two different images
+		ScenarioDocuGeneratorConfiguration.INSTANCE.setScreenshotDeduplicationEnabled(true);
+		ScenarioDocuWriter deduplicatingWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				TEST_BUILD_NAME);
+		byte[] image = new byte[] { 1, 2, 3, 4, 5 };
+		byte[] otherImage = new byte[] { 5, 4, 3, 2, 1 };
+		
+		// WHEN: saving the same image several times, in different ways and for different scenarios
+		deduplicatingWriter.saveScreenshotAsPng(TEST_CASE_NAME, TEST_SCENARIO_NAME, 0, image);
+		deduplicatingWriter.saveScreenshotAsPng(TEST_CASE_NAME, TEST_SCENARIO_NAME, 1, otherImage);
+		deduplicatingWriter.saveScreenshotAsPng(TEST_CASE_NAME, TEST_SCENARIO_NAME, 2,
+				new ByteArrayInputStream(image));
+		deduplicatingWriter.saveScreenshot(TEST_CASE_NAME, "otherScenario", 0,
+				new String(Base64.encodeBase64(image), "US-ASCII"));
+		deduplicatingWriter.flush();
+		
+		// THEN: each distinct image is stored once and the reader resolves the screenshots to the stored images
+		File blobsDirectory = docuFiles.getScreenshotBlobsDirectory(TEST_BRANCH_NAME, TEST_BUILD_NAME);
+		assertEquals("expected number of stored images", 2, blobsDirectory.listFiles().length);
+		assertArrayEquals(image, FileUtils.readFileToByteArray(reader.getScreenshotFile(TEST_BRANCH_NAME,
+				TEST_BUILD_NAME, TEST_CASE_NAME, TEST_SCENARIO_NAME, "000.png")));
+		assertArrayEquals(otherImage, FileUtils.readFileToByteArray(reader.getScreenshotFile(TEST_BRANCH_NAME,
+				TEST_BUILD_NAME, TEST_CASE_NAME, TEST_SCENARIO_NAME, "001.png")));
+		assertArrayEquals(image, FileUtils.readFileToByteArray(reader.getScreenshotFile(TEST_BRANCH_NAME,
+				TEST_BUILD_NAME, TEST_CASE_NAME, TEST_SCENARIO_NAME, "002.png")));
+		assertArrayEquals(image, FileUtils.readFileToByteArray(reader.getScreenshotFile(TEST_BRANCH_NAME,
+				TEST_BUILD_NAME, TEST_CASE_NAME, "otherScenario", "000.png")));
+		
+	}
+	
+}
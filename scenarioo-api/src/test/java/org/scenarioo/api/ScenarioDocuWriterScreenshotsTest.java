@@ -0,0 +1,106 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+/**
+ * Tests the different ways of saving screenshots with the {@link ScenarioDocuWriter}.
+ */
+public class ScenarioDocuWriterScreenshotsTest extends ScenarioDocuWriterTestBase {
+	
+	@Test
+	public void write_screenshots_from_base64_and_raw_png_bytes() throws IOException {
+		
+		// GIVEN: some image bytes and their base64 encoding with line breaks
+		byte[] image = new byte[1000];
+		for (int i = 0; i < image.length; i++) {
+			image[i] = (byte) i;
+		}
+		String imageBase64Encoded = new String(Base64.encodeBase64(image), "US-ASCII");
+		String imageBase64EncodedWithLineBreaks = imageBase64Encoded.substring(0, 76) + "\r\n"
+				+ imageBase64Encoded.substring(76);
+		
+		// WHEN: saving the screenshots in all supported ways
+		writer.saveScreenshot(TEST_CASE_NAME, TEST_SCENARIO_NAME, 0, imageBase64Encoded.getBytes("US-ASCII"));
+		writer.saveScreenshot(TEST_CASE_NAME, TEST_SCENARIO_NAME, 1, imageBase64EncodedWithLineBreaks);
+		writer.saveScreenshotAsPng(TEST_CASE_NAME, TEST_SCENARIO_NAME, 2, image);
+		writer.saveScreenshotAsPng(TEST_CASE_NAME, TEST_SCENARIO_NAME, 3, ByteBuffer.wrap(image));
+		writer.saveScreenshotAsPng(TEST_CASE_NAME, TEST_SCENARIO_NAME, 4, new ByteArrayInputStream(image));
+		writer.flush();
+		
+		// THEN: all screenshot files contain the decoded image bytes
+		for (int stepIndex = 0; stepIndex < 5; stepIndex++) {
+			File screenshotFile = docuFiles.getScreenshotFile(TEST_BRANCH_NAME, TEST_BUILD_NAME, TEST_CASE_NAME,
+					TEST_SCENARIO_NAME, stepIndex);
+			assertArrayEquals("expected screenshot content of step " + stepIndex, image,
+					FileUtils.readFileToByteArray(screenshotFile));
+		}
+		
+	}
+	
+	@Test
+	public void write_screenshots_from_image_and_pixels() throws IOException {
+		
+		// GIVEN: an image with some colored pixels
+		int width = 20;
+		int height = 10;
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				image.setRGB(x, y, 0xFF000000 | (x * 10) << 16 | (y * 20) << 8);
+			}
+		}
+		int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+		
+		// WHEN: saving the image and its pixels as screenshots
+		writer.saveScreenshot(TEST_CASE_NAME, TEST_SCENARIO_NAME, 0, image);
+		writer.saveScreenshotFromPixels(TEST_CASE_NAME, TEST_SCENARIO_NAME, 1, pixels, width, height);
+		writer.flush();
+		
+		// THEN: both screenshots are encoded as PNG files containing the same pixels
+		for (int stepIndex = 0; stepIndex < 2; stepIndex++) {
+			BufferedImage screenshot = ImageIO.read(docuFiles.getScreenshotFile(TEST_BRANCH_NAME, TEST_BUILD_NAME,
+					TEST_CASE_NAME, TEST_SCENARIO_NAME, stepIndex));
+			assertEquals("expected width", width, screenshot.getWidth());
+			assertEquals("expected height", height, screenshot.getHeight());
+			assertTrue("expected same pixels",
+					Arrays.equals(pixels, screenshot.getRGB(0, 0, width, height, null, 0, width)));
+		}
+		
+	}
+	
+}
@@ -0,0 +1,71 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.scenarioo.api.configuration.ScenarioDocuGeneratorConfiguration;
+import org.scenarioo.api.exception.ScenarioDocuSaveException;
+import org.scenarioo.model.docu.entities.Step;
+
+/**
+ * Tests several writers sharing the same asynchronous write service.
+ */
+public class ScenarioDocuWriterSharedWriteServiceTest extends ScenarioDocuWriterTestBase {
+	
+	@Test
+	public void parallel_write_of_several_writers_with_shared_write_service() {
+		
+		// GIVEN: two writers sharing the same write service, one of them saving an invalid step
+		ScenarioDocuGeneratorConfiguration.INSTANCE.setSharedAsyncWriteServiceEnabled(true);
+		ScenarioDocuWriter firstWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				"sharedServiceBuild1");
+		ScenarioDocuWriter secondWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				"sharedServiceBuild2");
+		
+		// WHEN: saving steps with both writers
+		for (int index = 0; index < 5; index++) {
+			firstWriter.saveStep(TEST_CASE_NAME, TEST_SCENARIO_NAME,
+					createBigDataStepForLoadTestAsyncWriting(index));
+			secondWriter.saveStep(TEST_CASE_NAME, TEST_SCENARIO_NAME,
+					createBigDataStepForLoadTestAsyncWriting(index));
+		}
+		secondWriter.saveStep(TEST_CASE_NAME, TEST_SCENARIO_NAME, new Step());
+		
+		// THEN: each flush waits for the files of its writer and reports only its own errors
+		firstWriter.flush();
+		assertEquals(5, docuFiles.getStepFiles(TEST_BRANCH_NAME, "sharedServiceBuild1", TEST_CASE_NAME,
+				TEST_SCENARIO_NAME).size());
+		try {
+			secondWriter.flush();
+			fail("expected exception of invalid step");
+		} catch (ScenarioDocuSaveException e) {
+			// expected
+		}
+		assertEquals(5, docuFiles.getStepFiles(TEST_BRANCH_NAME, "sharedServiceBuild2", TEST_CASE_NAME,
+				TEST_SCENARIO_NAME).size());
+		
+	}
+	
+}
@@ -0,0 +1,70 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.scenarioo.model.docu.entities.Step;
+
+/**
+ * Tests saving all steps of a scenario together into one file.
+ */
+public class ScenarioDocuWriterStepsFileTest extends ScenarioDocuWriterTestBase {
+	
+	@Test
+	public void write_and_read_steps_saved_together() {
+		
+		// GIVEN: many steps of a scenario
+		String indexedStepsBuildName = "indexedStepsBuild";
+		ScenarioDocuWriter stepsWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				indexedStepsBuildName);
+		List<Step> steps = new ArrayList<Step>();
+		for (int index = 0; index < 20; index++) {
+			steps.add(createBigDataStepForLoadTestAsyncWriting(index));
+		}
+		
+		// WHEN: saving all steps together
+		stepsWriter.saveSteps(TEST_CASE_NAME, TEST_SCENARIO_NAME, steps);
+		stepsWriter.flush();
+		
+		// THEN: all steps are written into one file and can be read all together or one by one
+		assertTrue("expected one file for all steps", docuFiles.getIndexedStepsFile(TEST_BRANCH_NAME,
+				indexedStepsBuildName, TEST_CASE_NAME, TEST_SCENARIO_NAME).exists());
+		assertFalse("expected no single step files", docuFiles.getStepFile(TEST_BRANCH_NAME, indexedStepsBuildName,
+				TEST_CASE_NAME, TEST_SCENARIO_NAME, 0).exists());
+		List<Step> loadedSteps = reader.loadSteps(TEST_BRANCH_NAME, indexedStepsBuildName, TEST_CASE_NAME,
+				TEST_SCENARIO_NAME);
+		assertEquals("expected number of steps", 20, loadedSteps.size());
+		assertEquals(19, loadedSteps.get(19).getStepDescription().getIndex());
+		Step loadedStep = reader.loadStep(TEST_BRANCH_NAME, indexedStepsBuildName, TEST_CASE_NAME,
+				TEST_SCENARIO_NAME, 13);
+		assertEquals(13, loadedStep.getStepDescription().getIndex());
+		assertEquals(steps.get(13).getHtml().getHtmlSource(), loadedStep.getHtml().getHtmlSource());
+		
+	}
+	
+}
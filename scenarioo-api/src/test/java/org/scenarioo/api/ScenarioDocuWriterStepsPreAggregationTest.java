@@ -0,0 +1,157 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.scenarioo.api.configuration.ScenarioDocuGeneratorConfiguration;
+import org.scenarioo.api.files.StepsPreAggregator;
+import org.scenarioo.model.docu.derived.ScenarioStepsAggregate;
+import org.scenarioo.model.docu.entities.Page;
+import org.scenarioo.model.docu.entities.Step;
+
+/**
+ * Tests the steps of each scenario pre-aggregated while writing, and that outdated aggregates are not used.
+ */
+public class ScenarioDocuWriterStepsPreAggregationTest extends ScenarioDocuWriterTestBase {
+	
+	@Test
+	public void write_and_read_pre_aggregated_steps() throws IOException {
+		
+		// GIVEN: a writer pre-aggregating the steps
+		ScenarioDocuGeneratorConfiguration.INSTANCE.setStepsPreAggregationEnabled(true);
+		String aggregatedBuildName = "preAggregatedStepsBuild";
+		ScenarioDocuWriter aggregatingWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				aggregatedBuildName);
+		
+		// WHEN: saving steps on two different pages
+		for (int index = 0; index < 3; index++) {
+			Step step = createBigDataStepForLoadTestAsyncWriting(index);
+			if (index == 2) {
+				step.setPage(new Page("other.jsp"));
+			}
+			aggregatingWriter.saveStep(TEST_CASE_NAME, TEST_SCENARIO_NAME, step);
+		}
+		aggregatingWriter.flush();
+		
+		// THEN: the aggregate contains all steps grouped by page, without HTML
+		ScenarioStepsAggregate aggregate = reader.loadScenarioStepsAggregate(TEST_BRANCH_NAME,
+				aggregatedBuildName, TEST_CASE_NAME, TEST_SCENARIO_NAME);
+		assertNotNull("expected pre-aggregated steps", aggregate);
+		assertEquals(3, aggregate.getNumberOfSteps());
+		assertEquals(2, aggregate.getPagesAndSteps().size());
+		assertEquals("test.jsp", aggregate.getPagesAndSteps().get(0).getPage().getName());
+		assertEquals(2, aggregate.getPagesAndSteps().get(0).getSteps().size());
+		List<Step> steps = StepsPreAggregator.getSteps(aggregate);
+		assertEquals("other.jsp", steps.get(2).getPage().getName());
+		assertEquals(1000, steps.get(2).getMetadata().getDetails().size());
+		assertNull(steps.get(2).getHtml());
+		
+		// THEN: the aggregate is not used anymore as soon as it does not match the saved steps
+		ScenarioDocuWriter otherWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				aggregatedBuildName);
+		ScenarioDocuGeneratorConfiguration.INSTANCE.setStepsPreAggregationEnabled(false);
+		otherWriter.saveStep(TEST_CASE_NAME, TEST_SCENARIO_NAME, createBigDataStepForLoadTestAsyncWriting(3));
+		otherWriter.flush();
+		assertNull(reader.loadScenarioStepsAggregate(TEST_BRANCH_NAME, aggregatedBuildName, TEST_CASE_NAME,
+				TEST_SCENARIO_NAME));
+		
+	}
+	
+	@Test
+	public void rewriting_a_step_with_same_number_of_steps_invalidates_pre_aggregated_steps() {
+		
+		// GIVEN: pre-aggregated steps saved one by one and saved into one compressed file
+		ScenarioDocuGeneratorConfiguration.INSTANCE.setStepsPreAggregationEnabled(true);
+		ScenarioDocuGeneratorConfiguration.INSTANCE.setCompressedXmlOutput(true);
+		String aggregatedBuildName = "rewrittenPreAggregatedStepsBuild";
+		ScenarioDocuWriter aggregatingWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				aggregatedBuildName);
+		List<Step> stepsToSave = new ArrayList<Step>();
+		for (int index = 0; index < 3; index++) {
+			aggregatingWriter.saveStep(TEST_CASE_NAME, TEST_SCENARIO_NAME, createStepWithStatus(index, "failed"));
+			stepsToSave.add(createStepWithStatus(index, "failed"));
+		}
+		aggregatingWriter.saveSteps(TEST_CASE_NAME, "scenarioWithStepsFile", stepsToSave);
+		aggregatingWriter.flush();
+		for (String scenarioName : Arrays.asList(TEST_SCENARIO_NAME, "scenarioWithStepsFile")) {
+			assertNotNull("expected pre-aggregated steps for " + scenarioName, reader.loadScenarioStepsAggregate(
+					TEST_BRANCH_NAME, aggregatedBuildName, TEST_CASE_NAME, scenarioName));
+		}
+		
+		// WHEN: another writer without pre-aggregation saves one step again with another status
+		ScenarioDocuGeneratorConfiguration.INSTANCE.setStepsPreAggregationEnabled(false);
+		ScenarioDocuWriter otherWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				aggregatedBuildName);
+		otherWriter.saveStep(TEST_CASE_NAME, TEST_SCENARIO_NAME, createStepWithStatus(1, "passed"));
+		stepsToSave.set(1, createStepWithStatus(1, "passed"));
+		otherWriter.saveSteps(TEST_CASE_NAME, "scenarioWithStepsFile", stepsToSave);
+		otherWriter.flush();
+		
+		// THEN: the aggregates are not used anymore, although the number of steps did not change
+		for (String scenarioName : Arrays.asList(TEST_SCENARIO_NAME, "scenarioWithStepsFile")) {
+			assertEquals(3, reader.loadSteps(TEST_BRANCH_NAME, aggregatedBuildName, TEST_CASE_NAME, scenarioName)
+					.size());
+			assertNull("expected outdated pre-aggregated steps for " + scenarioName,
+					reader.loadScenarioStepsAggregate(TEST_BRANCH_NAME, aggregatedBuildName, TEST_CASE_NAME,
+							scenarioName));
+		}
+		
+	}
+	
+	@Test
+	public void pre_aggregated_steps_are_valid_in_build_archive() {
+		
+		// GIVEN: a build archive with pre-aggregated steps saved one by one and saved into one file
+		ScenarioDocuGeneratorConfiguration.INSTANCE.setStepsPreAggregationEnabled(true);
+		ScenarioDocuGeneratorConfiguration.INSTANCE.setBuildArchiveEnabled(true);
+		String archivedBuildName = "archivedPreAggregatedStepsBuild";
+		ScenarioDocuWriter archiveWriter = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME,
+				archivedBuildName);
+		List<Step> stepsToSave = new ArrayList<Step>();
+		for (int index = 0; index < 3; index++) {
+			archiveWriter.saveStep(TEST_CASE_NAME, TEST_SCENARIO_NAME, createStepWithStatus(index, "success"));
+			stepsToSave.add(createStepWithStatus(index, "success"));
+		}
+		archiveWriter.saveSteps(TEST_CASE_NAME, "scenarioWithStepsFile", stepsToSave);
+		archiveWriter.flush();
+		
+		// WHEN: loading the aggregates from the archive
+		for (String scenarioName : Arrays.asList(TEST_SCENARIO_NAME, "scenarioWithStepsFile")) {
+			ScenarioStepsAggregate aggregate = reader.loadScenarioStepsAggregate(TEST_BRANCH_NAME,
+					archivedBuildName, TEST_CASE_NAME, scenarioName);
+			
+			// THEN: the aggregates match the archived steps
+			assertNotNull("expected pre-aggregated steps for " + scenarioName, aggregate);
+			assertEquals(3, aggregate.getNumberOfSteps());
+		}
+		
+	}
+	
+}
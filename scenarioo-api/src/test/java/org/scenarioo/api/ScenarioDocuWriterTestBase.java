@@ -0,0 +1,177 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.scenarioo.api.configuration.ScenarioDocuGeneratorConfiguration;
+import org.scenarioo.api.files.ScenarioDocuFiles;
+import org.scenarioo.model.docu.entities.Page;
+import org.scenarioo.model.docu.entities.Step;
+import org.scenarioo.model.docu.entities.StepDescription;
+import org.scenarioo.model.docu.entities.StepHtml;
+import org.scenarioo.model.docu.entities.StepMetadata;
+
+/**
+ * Base class for the tests of the Scenarioo generator API. Each test writes into its own directory of the test class
+ * and may change {@link ScenarioDocuGeneratorConfiguration#INSTANCE}, which is reset after each test.
+ */
+public abstract class ScenarioDocuWriterTestBase {
+	
+	protected static final String TEST_BRANCH_NAME = "testBranch";
+	protected static final String TEST_BUILD_NAME = "testBuild";
+	protected static final String TEST_CASE_NAME = "testCase";
+	protected static final String TEST_SCENARIO_NAME = "testScenario";
+	
+	protected final File testRootDirectory = new File("tmp" + getClass().getSimpleName() + "Files");
+	
+	/**
+	 * Objects under test
+	 */
+	protected ScenarioDocuWriter writer;
+	protected ScenarioDocuReader reader;
+	
+	/**
+	 * docuFiles is used for checking some of the written files.
+	 */
+	protected ScenarioDocuFiles docuFiles;
+	
+	private final Map<Field, Object> configurationBeforeTest = new HashMap<Field, Object>();
+	
+	@Before
+	public void setUp() {
+		saveConfiguration();
+		testRootDirectory.mkdirs();
+		writer = new ScenarioDocuWriter(testRootDirectory, TEST_BRANCH_NAME, TEST_BUILD_NAME);
+		reader = new ScenarioDocuReader(testRootDirectory);
+		docuFiles = new ScenarioDocuFiles(testRootDirectory);
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		restoreConfiguration();
+		FileUtils.deleteDirectory(testRootDirectory);
+	}
+	
+	private void saveConfiguration() {
+		try {
+			for (Field field : ScenarioDocuGeneratorConfiguration.class.getDeclaredFields()) {
+				if (!Modifier.isStatic(field.getModifiers())) {
+					field.setAccessible(true);
+					configurationBeforeTest.put(field, field.get(ScenarioDocuGeneratorConfiguration.INSTANCE));
+				}
+			}
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException("Could not save generator configuration", e);
+		}
+	}
+	
+	private void restoreConfiguration() {
+		try {
+			for (Entry<Field, Object> fieldValue : configurationBeforeTest.entrySet()) {
+				fieldValue.getKey().set(ScenarioDocuGeneratorConfiguration.INSTANCE, fieldValue.getValue());
+			}
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException("Could not restore generator configuration", e);
+		}
+	}
+	
+	protected Step createBigDataStepForLoadTestAsyncWriting(final int index) {
+		
+		Step step = new Step();
+		
+		// Description
+		StepDescription stepDescription = new StepDescription();
+		stepDescription.setIndex(index);
+		stepDescription.setScreenshotFileName(docuFiles.getScreenshotFile(TEST_BRANCH_NAME, TEST_BUILD_NAME,
+				TEST_CASE_NAME, TEST_SCENARIO_NAME, index).getName());
+		stepDescription
+				.setTitle("this is a step with a lot of data in it such that writing should take realy long for testing async writing");
+		step.setStepDescription(stepDescription);
+		
+		// Metdata with a lot of details
+		step.setMetadata(createBigMetadata());
+		
+		// Page
+		step.setPage(new Page("test.jsp"));
+		
+		// HTML (lot of dummy data, just to generate big data for writing)
+		step.setHtml(createBigHtml());
+		
+		return step;
+	}
+	
+	protected Step createStepWithStatus(final int index, final String status) {
+		Step step = new Step();
+		StepDescription stepDescription = new StepDescription();
+		stepDescription.setIndex(index);
+		stepDescription.setTitle("step " + index);
+		stepDescription.setStatus(status);
+		step.setStepDescription(stepDescription);
+		step.setPage(new Page("test.jsp"));
+		return step;
+	}
+	
+	/**
+	 * Simply generate StepMetadata object with a lot of details to get a big step for load testing of writing.
+	 */
+	private StepMetadata createBigMetadata() {
+		StepMetadata stepMetadata = new StepMetadata();
+		for (int i = 0; i < 1000; i++) {
+			stepMetadata.getDetails().addDetail("detail" + i,
+					"just a detail to produce a lot of data that needs marshalling and writing.");
+		}
+		return stepMetadata;
+	}
+	
+	/**
+	 * Simply generate a big dummy html for load testing of writing.
+	 */
+	private StepHtml createBigHtml() {
+		
+		StringBuilder builder = new StringBuilder();
+		builder.append("<html><head></head><body>");
+		builder.append("<p>This is just a dummy html code with lot of content to generate a lot of big data to write for load testing.<p>");
+		for (int i = 0; i < 1000; i++) {
+			builder.append("<div class=\"dummyParagraph"
+					+ i
+					+ "\">This is just a dummy html code with lot of content to generate a lot of big data to write for load testing.</div>");
+		}
+		builder.append("</body></html>");
+		
+		StepHtml html = new StepHtml();
+		html.setHtmlSource(builder.toString());
+		return html;
+		
+	}
+	
+}
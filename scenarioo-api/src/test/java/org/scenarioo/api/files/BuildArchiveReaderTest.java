@@ -0,0 +1,157 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.files;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scenarioo.api.util.files.AtomicFileOutputStream;
+
+public class BuildArchiveReaderTest {
+	
+	private static final File TEST_ROOT_DIRECTORY = new File("tmpBuildArchiveReaderTestFiles");
+	
+	private static long numberOfWrittenArchives = 0;
+	
+	private File buildDirectory;
+	
+	private File archiveFile;
+	
+	@Before
+	public void setUp() {
+		buildDirectory = new File(TEST_ROOT_DIRECTORY, "build");
+		buildDirectory.mkdirs();
+		archiveFile = new File(buildDirectory, "build.zip");
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(TEST_ROOT_DIRECTORY);
+	}
+	
+	@Test
+	public void rewriting_archive_closes_replaced_readers() throws IOException {
+		List<BuildArchiveReader> replacedReaders = new ArrayList<BuildArchiveReader>();
+		for (int version = 0; version < 50; version++) {
+			// GIVEN: the archive is rewritten with new content
+			writeArchive(archiveFile, version);
+			
+			// WHEN:
+			BuildArchiveReader archive = BuildArchiveReader.getBuildArchive(buildDirectory, archiveFile);
+			
+			// THEN: the new content is read and all readers of the previous archive files are closed
+			try {
+				assertEquals("version " + version, readContent(archive, "case/usecase.xml"));
+			} finally {
+				archive.release();
+			}
+			assertFalse("Cached reader must stay open", archive.isClosed());
+			for (BuildArchiveReader replacedReader : replacedReaders) {
+				assertTrue("Replaced reader must be closed", replacedReader.isClosed());
+			}
+			replacedReaders.add(archive);
+		}
+	}
+	
+	@Test
+	public void replaced_reader_is_not_closed_while_still_in_use() throws IOException {
+		// GIVEN: a reader in use with an open stream
+		writeArchive(archiveFile, 1);
+		BuildArchiveReader archive = BuildArchiveReader.getBuildArchive(buildDirectory, archiveFile);
+		InputStream inStream = archive.open(new File(buildDirectory, "case/usecase.xml"));
+		
+		// WHEN: the archive is rewritten and read again by someone else
+		writeArchive(archiveFile, 2);
+		BuildArchiveReader.getBuildArchive(buildDirectory, archiveFile).release();
+		
+		// THEN: the replaced reader is only closed, as soon as it is released and the stream is closed
+		assertFalse(archive.isClosed());
+		archive.release();
+		assertFalse(archive.isClosed());
+		assertEquals("version 1", IOUtils.toString(inStream, "UTF-8"));
+		inStream.close();
+		assertTrue(archive.isClosed());
+	}
+	
+	@Test
+	public void evicted_reader_is_closed() throws IOException {
+		// GIVEN: a cached reader
+		writeArchive(archiveFile, 1);
+		BuildArchiveReader evictedArchive = BuildArchiveReader.getBuildArchive(buildDirectory, archiveFile);
+		evictedArchive.release();
+		
+		// WHEN: reading more archives than can be cached
+		for (int i = 0; i < 20; i++) {
+			File otherBuildDirectory = new File(TEST_ROOT_DIRECTORY, "build" + i);
+			otherBuildDirectory.mkdirs();
+			File otherArchiveFile = new File(otherBuildDirectory, "build.zip");
+			writeArchive(otherArchiveFile, i);
+			BuildArchiveReader.getBuildArchive(otherBuildDirectory, otherArchiveFile).release();
+		}
+		
+		// THEN:
+		assertTrue(evictedArchive.isClosed());
+	}
+	
+	private String readContent(final BuildArchiveReader archive, final String path) throws IOException {
+		InputStream inStream = archive.open(new File(buildDirectory, path));
+		try {
+			return IOUtils.toString(inStream, "UTF-8");
+		} finally {
+			inStream.close();
+		}
+	}
+	
+	/**
+	 * Replaces the archive like the {@link BuildArchiveWriter} does.
+	 */
+	private static void writeArchive(final File file, final int version) throws IOException {
+		AtomicFileOutputStream archiveOut = new AtomicFileOutputStream(file, false);
+		ZipOutputStream zipStream = new ZipOutputStream(archiveOut);
+		try {
+			zipStream.putNextEntry(new ZipEntry("case/usecase.xml"));
+			zipStream.write(("version " + version).getBytes("UTF-8"));
+			zipStream.closeEntry();
+			zipStream.finish();
+			archiveOut.commit();
+		} finally {
+			zipStream.close();
+		}
+		// make sure the changed archive is detected, even on file systems with a coarse modification time
+		numberOfWrittenArchives++;
+		file.setLastModified(1000000000000L + numberOfWrittenArchives * 2000L);
+	}
+	
+}
@@ -0,0 +1,186 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.files;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scenarioo.api.exception.PushedBatchTooLargeException;
+
+public class BuildPushReceiverTest {
+	
+	private static final File TEST_ROOT_DIRECTORY = new File("tmpBuildPushReceiverTestFiles");
+	
+	private static final String BRANCH_NAME = "trunk";
+	
+	private static final String BUILD_NAME = "build1";
+	
+	private File buildDirectory;
+	
+	@Before
+	public void setUp() {
+		TEST_ROOT_DIRECTORY.mkdirs();
+		buildDirectory = new ScenarioDocuFiles(TEST_ROOT_DIRECTORY).getBuildDirectory(BRANCH_NAME, BUILD_NAME);
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(TEST_ROOT_DIRECTORY);
+	}
+	
+	@Test
+	public void store_files_of_single_batch_and_mark_build_complete() throws IOException {
+		// GIVEN:
+		BuildPushReceiver receiver = new BuildPushReceiver(TEST_ROOT_DIRECTORY);
+		ByteArrayInputStream batch = new ByteArrayInputStream(createBatch(3, 100));
+		
+		// WHEN:
+		boolean complete = receiver.receiveBatch(BRANCH_NAME, BUILD_NAME, batch, true, true, true);
+		
+		// THEN: all files are stored and the whole request has been read
+		assertTrue(complete);
+		assertEquals(100, new File(buildDirectory, "file2.txt").length());
+		assertEquals(0, batch.available());
+	}
+	
+	@Test
+	public void batch_bigger_than_maximal_batch_size_is_rejected() throws IOException {
+		// GIVEN:
+		BuildPushReceiver receiver = new BuildPushReceiver(TEST_ROOT_DIRECTORY, 1000, 1000000, 100);
+		byte[] batch = createBatchWithRandomContent(5000);
+		
+		// WHEN:
+		assertRejected(receiver, batch);
+		
+		// THEN:
+		assertFalse(new File(buildDirectory, "file0.txt").exists());
+	}
+	
+	@Test
+	public void batch_with_files_bigger_than_maximal_uncompressed_size_is_rejected() throws IOException {
+		// GIVEN: a small batch with a file that decompresses to a huge file
+		BuildPushReceiver receiver = new BuildPushReceiver(TEST_ROOT_DIRECTORY, 1000000, 100000, 100);
+		byte[] batch = createBatch(1, 10000000);
+		assertTrue(batch.length < 100000);
+		
+		// WHEN:
+		assertRejected(receiver, batch);
+		
+		// THEN:
+		assertFalse(new File(buildDirectory, "file0.txt").exists());
+	}
+	
+	@Test
+	public void uncompressed_size_is_limited_for_all_files_of_a_batch_together() throws IOException {
+		// GIVEN:
+		BuildPushReceiver receiver = new BuildPushReceiver(TEST_ROOT_DIRECTORY, 1000000, 1000, 100);
+		byte[] batch = createBatch(3, 400);
+		
+		// WHEN:
+		assertRejected(receiver, batch);
+		
+		// THEN:
+		assertTrue(new File(buildDirectory, "file1.txt").exists());
+		assertFalse(new File(buildDirectory, "file2.txt").exists());
+	}
+	
+	@Test
+	public void batch_with_too_many_files_is_rejected() throws IOException {
+		// GIVEN:
+		BuildPushReceiver receiver = new BuildPushReceiver(TEST_ROOT_DIRECTORY, 1000000, 1000000, 10);
+		byte[] batch = createBatch(11, 1);
+		
+		// WHEN:
+		assertRejected(receiver, batch);
+		
+		// THEN:
+		assertFalse(new File(buildDirectory, "file10.txt").exists());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void file_outside_of_build_directory_is_rejected() throws IOException {
+		// GIVEN:
+		BuildPushReceiver receiver = new BuildPushReceiver(TEST_ROOT_DIRECTORY);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ZipOutputStream zipOut = new ZipOutputStream(bytes);
+		zipOut.putNextEntry(new ZipEntry("otherBuild/file.txt"));
+		zipOut.write(1);
+		zipOut.close();
+		
+		// WHEN:
+		receiver.receiveBatch(BRANCH_NAME, BUILD_NAME, new ByteArrayInputStream(bytes.toByteArray()), true, true,
+				true);
+	}
+	
+	/**
+	 * The rejected batch is the last one of a complete build, but the build is not marked as complete.
+	 */
+	private void assertRejected(final BuildPushReceiver receiver, final byte[] batch) {
+		try {
+			receiver.receiveBatch(BRANCH_NAME, BUILD_NAME, new ByteArrayInputStream(batch), true, true, true);
+			fail("batch should have been rejected");
+		} catch (PushedBatchTooLargeException e) {
+			// expected
+		}
+		assertFalse(BuildCompletionMarker.isComplete(buildDirectory));
+	}
+	
+	private static byte[] createBatchWithRandomContent(final int fileSizeInBytes) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ZipOutputStream zipOut = new ZipOutputStream(bytes);
+		byte[] content = new byte[fileSizeInBytes];
+		new Random(42).nextBytes(content);
+		zipOut.putNextEntry(new ZipEntry(BUILD_NAME + "/file0.txt"));
+		zipOut.write(content);
+		zipOut.close();
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * Batch with files of zeros inside the build directory, as pushed by the {@link BuildPushWriter}.
+	 */
+	private static byte[] createBatch(final int numberOfFiles, final int fileSizeInBytes) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ZipOutputStream zipOut = new ZipOutputStream(bytes);
+		byte[] content = new byte[fileSizeInBytes];
+		for (int i = 0; i < numberOfFiles; i++) {
+			zipOut.putNextEntry(new ZipEntry(BUILD_NAME + "/file" + i + ".txt"));
+			zipOut.write(content);
+			zipOut.closeEntry();
+		}
+		zipOut.close();
+		return bytes.toByteArray();
+	}
+	
+}
@@ -0,0 +1,166 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.files;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scenarioo.api.files.EntityCache.EntityLoader;
+import org.scenarioo.model.docu.entities.Step;
+import org.scenarioo.model.docu.entities.StepDescription;
+import org.scenarioo.model.docu.entities.StepHtml;
+
+public class EntityCacheTest {
+	
+	private static final File TEST_ROOT_DIRECTORY = new File("tmpEntityCacheTestFiles");
+	
+	private static final int HTML_LENGTH = 10000;
+	
+	private File sourceFile;
+	
+	@Before
+	public void setUp() throws IOException {
+		sourceFile = new File(TEST_ROOT_DIRECTORY, "steps.xml");
+		FileUtils.writeStringToFile(sourceFile, "steps");
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(TEST_ROOT_DIRECTORY);
+	}
+	
+	@Test
+	public void cached_entity_is_returned_as_copy() {
+		// GIVEN:
+		EntityCache cache = new EntityCache(1024 * 1024);
+		CountingStepLoader loader = new CountingStepLoader(1);
+		Step loadedStep = cache.get(sourceFile, "step1", loader);
+		
+		// WHEN:
+		Step cachedStep = cache.get(sourceFile, "step1", loader);
+		cachedStep.getStepDescription().setTitle("modified");
+		
+		// THEN:
+		assertEquals(1, loader.loads.get());
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertNotSame(loadedStep, cachedStep);
+		assertEquals(loadedStep.getHtml(), cachedStep.getHtml());
+		assertEquals("step 1", cache.get(sourceFile, "step1", loader).getStepDescription().getTitle());
+	}
+	
+	@Test
+	public void changed_source_file_is_loaded_again() throws IOException {
+		// GIVEN:
+		EntityCache cache = new EntityCache(1024 * 1024);
+		CountingStepLoader loader = new CountingStepLoader(1);
+		cache.get(sourceFile, "step1", loader);
+		
+		// WHEN:
+		FileUtils.writeStringToFile(sourceFile, "changed steps");
+		cache.get(sourceFile, "step1", loader);
+		
+		// THEN:
+		assertEquals(2, loader.loads.get());
+		assertEquals(0, cache.getHits());
+	}
+	
+	@Test
+	public void least_recently_used_entities_are_evicted_when_size_is_exceeded() {
+		// GIVEN: a cache big enough for two steps
+		EntityCache cache = new EntityCache(HTML_LENGTH * 5 / 2);
+		CountingStepLoader[] loaders = new CountingStepLoader[3];
+		for (int i = 0; i < loaders.length; i++) {
+			loaders[i] = new CountingStepLoader(i);
+		}
+		cache.get(sourceFile, "step0", loaders[0]);
+		cache.get(sourceFile, "step1", loaders[1]);
+		cache.get(sourceFile, "step0", loaders[0]);
+		
+		// WHEN:
+		cache.get(sourceFile, "step2", loaders[2]);
+		
+		// THEN:
+		assertEquals(2, cache.getSize());
+		assertTrue(cache.getSizeInBytes() <= HTML_LENGTH * 5 / 2);
+		cache.get(sourceFile, "step0", loaders[0]);
+		cache.get(sourceFile, "step1", loaders[1]);
+		assertEquals(1, loaders[0].loads.get());
+		assertEquals(2, loaders[1].loads.get());
+	}
+	
+	@Test
+	public void entity_bigger_than_cache_is_not_cached() {
+		// GIVEN:
+		EntityCache cache = new EntityCache(HTML_LENGTH / 2);
+		CountingStepLoader loader = new CountingStepLoader(1);
+		
+		// WHEN:
+		cache.get(sourceFile, "step1", loader);
+		cache.get(sourceFile, "step1", loader);
+		
+		// THEN:
+		assertEquals(2, loader.loads.get());
+		assertEquals(0, cache.getSize());
+		assertEquals(0, cache.getSizeInBytes());
+	}
+	
+	/**
+	 * Creates a step with big HTML on each load.
+	 */
+	private static class CountingStepLoader implements EntityLoader<Step> {
+		
+		private final int index;
+		
+		private final AtomicInteger loads = new AtomicInteger(0);
+		
+		private CountingStepLoader(final int index) {
+			this.index = index;
+		}
+		
+		@Override
+		public Step load() {
+			loads.incrementAndGet();
+			Step step = new Step();
+			StepDescription description = new StepDescription();
+			description.setIndex(index);
+			description.setTitle("step " + index);
+			step.setStepDescription(description);
+			StringBuilder html = new StringBuilder();
+			for (int i = 0; i < HTML_LENGTH; i++) {
+				html.append('x');
+			}
+			step.setHtml(new StepHtml(html.toString()));
+			return step;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,201 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.files;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Test;
+import org.scenarioo.api.exception.ResourceNotFoundException;
+import org.scenarioo.api.files.IndexedStepsFile.StepsReader;
+import org.scenarioo.model.docu.entities.Page;
+import org.scenarioo.model.docu.entities.Step;
+import org.scenarioo.model.docu.entities.StepDescription;
+import org.scenarioo.model.docu.entities.StepHtml;
+
+public class IndexedStepsFileTest {
+	
+	private static final File TEST_ROOT_DIRECTORY = new File("tmpIndexedStepsFileTestFiles");
+	
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(TEST_ROOT_DIRECTORY);
+	}
+	
+	@Test
+	public void read_all_steps_in_written_order() throws IOException {
+		// GIVEN:
+		byte[] content = write(createSteps(5), false);
+		
+		// WHEN:
+		List<Step> steps = IndexedStepsFile.readSteps(new ByteArrayInputStream(content));
+		
+		// THEN:
+		assertEquals(5, steps.size());
+		for (int i = 0; i < 5; i++) {
+			assertStep(i, steps.get(i));
+		}
+	}
+	
+	@Test
+	public void read_compressed_steps() throws IOException {
+		// GIVEN:
+		List<Step> writtenSteps = createSteps(5);
+		byte[] uncompressedContent = write(writtenSteps, false);
+		
+		// WHEN:
+		byte[] compressedContent = write(writtenSteps, true);
+		
+		// THEN:
+		assertTrue(compressedContent.length < uncompressedContent.length);
+		List<Step> steps = IndexedStepsFile.readSteps(new ByteArrayInputStream(compressedContent));
+		assertEquals(5, steps.size());
+		assertStep(4, steps.get(4));
+	}
+	
+	@Test
+	public void read_number_of_steps() throws IOException {
+		// GIVEN:
+		byte[] content = write(createSteps(7), true);
+		
+		// WHEN:
+		int numberOfSteps = IndexedStepsFile.readNumberOfSteps(new ByteArrayInputStream(content));
+		
+		// THEN:
+		assertEquals(7, numberOfSteps);
+	}
+	
+	@Test
+	public void read_single_step_from_stream_and_from_file() throws IOException {
+		// GIVEN:
+		byte[] content = write(createSteps(10), true);
+		File file = writeFile(content);
+		
+		// WHEN:
+		Step stepFromStream = IndexedStepsFile.readStep(new ByteArrayInputStream(content), 6, "steps");
+		Step stepFromFile = IndexedStepsFile.readStep(file, 6);
+		
+		// THEN:
+		assertStep(6, stepFromStream);
+		assertStep(6, stepFromFile);
+	}
+	
+	@Test(expected = ResourceNotFoundException.class)
+	public void read_missing_step() throws IOException {
+		// GIVEN:
+		File file = writeFile(write(createSteps(3), false));
+		
+		// WHEN:
+		IndexedStepsFile.readStep(file, 3);
+	}
+	
+	@Test
+	public void steps_reader_skips_elements() throws IOException {
+		// GIVEN:
+		byte[] content = write(createSteps(3), true);
+		
+		// WHEN:
+		List<Step> steps = new ArrayList<Step>();
+		StepsReader reader = IndexedStepsFile.openStepsReader(new ByteArrayInputStream(content), "step/html");
+		try {
+			while (reader.hasNextStep()) {
+				steps.add(reader.loadNextStep());
+			}
+		} finally {
+			reader.close();
+		}
+		
+		// THEN:
+		assertEquals(3, reader.getNumberOfSteps());
+		assertEquals(3, steps.size());
+		for (int i = 0; i < 3; i++) {
+			assertEquals(i, steps.get(i).getStepDescription().getIndex());
+			assertNull(steps.get(i).getHtml());
+		}
+	}
+	
+	@Test(expected = IOException.class)
+	public void reading_other_content_fails() throws IOException {
+		IndexedStepsFile.readSteps(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }));
+	}
+	
+	private static List<Step> createSteps(final int numberOfSteps) {
+		List<Step> steps = new ArrayList<Step>();
+		for (int i = 0; i < numberOfSteps; i++) {
+			Step step = new Step();
+			StepDescription stepDescription = new StepDescription();
+			stepDescription.setIndex(i);
+			stepDescription.setTitle("step " + i);
+			step.setStepDescription(stepDescription);
+			step.setPage(new Page("page" + i));
+			step.setHtml(new StepHtml("<html><body>" + repeat("<p>content</p>", 100) + " step " + i
+					+ "</body></html>"));
+			steps.add(step);
+		}
+		return steps;
+	}
+	
+	private static String repeat(final String text, final int times) {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < times; i++) {
+			result.append(text);
+		}
+		return result.toString();
+	}
+	
+	private static void assertStep(final int expectedIndex, final Step step) {
+		assertEquals(expectedIndex, step.getStepDescription().getIndex());
+		assertEquals("step " + expectedIndex, step.getStepDescription().getTitle());
+		assertEquals("page" + expectedIndex, step.getPage().getName());
+		assertTrue(step.getHtml().getHtmlSource().endsWith(" step " + expectedIndex + "</body></html>"));
+	}
+	
+	private static byte[] write(final List<Step> steps, final boolean compressed) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		IndexedStepsFile.toContent(steps, false, compressed).writeTo(Channels.newChannel(out));
+		return out.toByteArray();
+	}
+	
+	private static File writeFile(final byte[] content) throws IOException {
+		TEST_ROOT_DIRECTORY.mkdirs();
+		File file = new File(TEST_ROOT_DIRECTORY, "steps.bin");
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+	
+}
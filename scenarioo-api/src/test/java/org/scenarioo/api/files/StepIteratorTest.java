@@ -0,0 +1,195 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.files;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.scenarioo.api.files.StepIterator.StepSource;
+import org.scenarioo.api.util.concurrent.OrderedParallelLoader;
+import org.scenarioo.model.docu.entities.Step;
+import org.scenarioo.model.docu.entities.StepDescription;
+
+public class StepIteratorTest {
+	
+	private static final long TIMEOUT_IN_MILLIS = 5000;
+	
+	@Test
+	public void iterate_all_steps_with_read_ahead_and_close_source_at_the_end() throws Exception {
+		// GIVEN:
+		CountingStepSource source = new CountingStepSource(10, -1);
+		StepIterator steps = new StepIterator(source, 3);
+		
+		// WHEN:
+		int expectedIndex = 0;
+		while (steps.hasNext()) {
+			assertEquals(expectedIndex++, steps.next().getStepDescription().getIndex());
+		}
+		
+		// THEN:
+		assertEquals(10, expectedIndex);
+		waitUntilClosed(source);
+		assertEquals(10, source.loadedSteps.get());
+	}
+	
+	@Test
+	public void read_ahead_stops_when_enough_steps_are_waiting() throws Exception {
+		// GIVEN:
+		List<CountingStepSource> sources = new ArrayList<CountingStepSource>();
+		
+		// WHEN: more iterators are abandoned than the shared pool has threads
+		for (int i = 0; i <= Runtime.getRuntime().availableProcessors(); i++) {
+			CountingStepSource source = new CountingStepSource(100, -1);
+			sources.add(source);
+			new StepIterator(source, 3);
+		}
+		
+		// THEN: no thread of the pool is blocked by the abandoned iterators
+		final AtomicBoolean executed = new AtomicBoolean(false);
+		Future<?> task = OrderedParallelLoader.submit(new Runnable() {
+			@Override
+			public void run() {
+				executed.set(true);
+			}
+		});
+		task.get(TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS);
+		assertTrue(executed.get());
+		for (CountingStepSource source : sources) {
+			waitUntilLoaded(source, 3);
+			assertFalse(source.closed.get());
+		}
+		Thread.sleep(100);
+		for (CountingStepSource source : sources) {
+			assertEquals(3, source.loadedSteps.get());
+		}
+	}
+	
+	@Test
+	public void close_stops_read_ahead_and_closes_source() throws Exception {
+		// GIVEN:
+		CountingStepSource source = new CountingStepSource(100, -1);
+		StepIterator steps = new StepIterator(source, 3);
+		assertEquals(0, steps.next().getStepDescription().getIndex());
+		
+		// WHEN:
+		steps.close();
+		
+		// THEN:
+		waitUntilClosed(source);
+		int loadedSteps = source.loadedSteps.get();
+		assertTrue(loadedSteps <= 5);
+		assertFalse(steps.hasNext());
+		Thread.sleep(100);
+		assertEquals(loadedSteps, source.loadedSteps.get());
+	}
+	
+	@Test
+	public void exception_of_source_is_thrown_and_source_is_closed() throws Exception {
+		// GIVEN:
+		CountingStepSource source = new CountingStepSource(10, 2);
+		StepIterator steps = new StepIterator(source, 3);
+		assertEquals(0, steps.next().getStepDescription().getIndex());
+		assertEquals(1, steps.next().getStepDescription().getIndex());
+		
+		// WHEN:
+		try {
+			steps.next();
+			fail("expected exception");
+		} catch (RuntimeException e) {
+			
+			// THEN:
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		waitUntilClosed(source);
+		assertFalse(steps.hasNext());
+	}
+	
+	private void waitUntilClosed(final CountingStepSource source) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+		while (!source.closed.get() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue("expected closed source", source.closed.get());
+	}
+	
+	private void waitUntilLoaded(final CountingStepSource source, final int steps) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_IN_MILLIS;
+		while (source.loadedSteps.get() < steps && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(steps, source.loadedSteps.get());
+	}
+	
+	/**
+	 * Creates the steps by index and counts the loaded steps.
+	 */
+	private static class CountingStepSource implements StepSource {
+		
+		private final int numberOfSteps;
+		
+		private final int failingStepIndex;
+		
+		private final AtomicInteger loadedSteps = new AtomicInteger(0);
+		
+		private final AtomicBoolean closed = new AtomicBoolean(false);
+		
+		private CountingStepSource(final int numberOfSteps, final int failingStepIndex) {
+			this.numberOfSteps = numberOfSteps;
+			this.failingStepIndex = failingStepIndex;
+		}
+		
+		@Override
+		public boolean hasNextStep() {
+			return loadedSteps.get() < numberOfSteps;
+		}
+		
+		@Override
+		public Step loadNextStep() throws IOException {
+			assertFalse("step loaded from closed source", closed.get());
+			int index = loadedSteps.getAndIncrement();
+			if (index == failingStepIndex) {
+				throw new IOException("Step " + index + " is broken");
+			}
+			Step step = new Step();
+			StepDescription description = new StepDescription();
+			description.setIndex(index);
+			step.setStepDescription(description);
+			return step;
+		}
+		
+		@Override
+		public void close() {
+			closed.set(true);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,163 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.util.codec;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InvalidClassException;
+import java.util.Date;
+
+import org.junit.Test;
+import org.scenarioo.model.docu.derived.PageStepsAggregate;
+import org.scenarioo.model.docu.derived.ScenarioStepsAggregate;
+import org.scenarioo.model.docu.entities.Build;
+import org.scenarioo.model.docu.entities.Page;
+import org.scenarioo.model.docu.entities.Step;
+import org.scenarioo.model.docu.entities.StepDescription;
+import org.scenarioo.model.docu.entities.generic.ObjectDescription;
+import org.scenarioo.model.docu.entities.generic.ObjectList;
+
+public class BinaryEntityCodecTest {
+	
+	@Test
+	public void entities_with_details_are_read() {
+		// GIVEN:
+		Step step = createStep();
+		ObjectList<String> list = new ObjectList<String>();
+		list.add("item");
+		step.getStepDescription().getDetails().addDetail("list", list);
+		step.getStepDescription().getDetails().addDetail("object", new ObjectDescription("service", "login"));
+		step.getStepDescription().getDetails().addDetail("number", 42L);
+		Build build = new Build("build");
+		build.setDate(new Date(1000));
+		
+		// WHEN:
+		Step readStep = decode(Step.class, encode(step));
+		Build readBuild = decode(Build.class, encode(build));
+		
+		// THEN:
+		assertEquals(step, readStep);
+		assertEquals(build, readBuild);
+	}
+	
+	@Test
+	public void derived_data_is_read() {
+		// GIVEN:
+		ScenarioStepsAggregate aggregate = new ScenarioStepsAggregate();
+		aggregate.getPagesAndSteps().add(new PageStepsAggregate(new Page("page")));
+		aggregate.getPagesAndSteps().get(0).getSteps().add(createStep());
+		aggregate.setNumberOfSteps(1);
+		
+		// WHEN:
+		ScenarioStepsAggregate readAggregate = decode(ScenarioStepsAggregate.class, encode(aggregate));
+		
+		// THEN:
+		assertEquals(aggregate, readAggregate);
+	}
+	
+	@Test
+	public void content_with_other_classes_is_rejected() {
+		// GIVEN: a step with a detail of a class that is not allowed
+		Step step = createStep();
+		step.getStepDescription().getDetails().addDetail("file", new File("not allowed"));
+		byte[] content = encode(step);
+		
+		// WHEN:
+		try {
+			decode(Step.class, content);
+			fail("expected exception");
+		} catch (RuntimeException e) {
+			
+			// THEN:
+			assertTrue(e.getCause() instanceof InvalidClassException);
+		}
+	}
+	
+	@Test
+	public void allowed_classes() {
+		assertTrue(BinaryEntityCodec.isAllowedClass(Step.class.getName()));
+		assertTrue(BinaryEntityCodec.isAllowedClass(ScenarioStepsAggregate.class.getName()));
+		assertTrue(BinaryEntityCodec.isAllowedClass("org.scenarioo.model.docu.aggregates.scenarios.PageSteps"));
+		assertTrue(BinaryEntityCodec.isAllowedClass(String.class.getName()));
+		assertTrue(BinaryEntityCodec.isAllowedClass(new byte[0].getClass().getName()));
+		assertTrue(BinaryEntityCodec.isAllowedClass(new String[0][0].getClass().getName()));
+		assertFalse(BinaryEntityCodec.isAllowedClass(File.class.getName()));
+		assertFalse(BinaryEntityCodec.isAllowedClass(new File[0].getClass().getName()));
+		assertFalse(BinaryEntityCodec.isAllowedClass("org.scenarioo.model.configuration.Configuration"));
+	}
+	
+	@Test
+	public void binary_content_is_only_read_if_enabled() {
+		// GIVEN:
+		byte[] content = encode(createStep());
+		
+		// WHEN:
+		try {
+			EntityCodecs.decode(Step.class, new ByteArrayInputStream(content));
+			fail("expected binary content to be rejected");
+		} catch (RuntimeException e) {
+			// expected
+		}
+		Step step = EntityCodecs.decode(Step.class, new ByteArrayInputStream(content), true);
+		
+		// THEN:
+		assertEquals(createStep(), step);
+	}
+	
+	@Test
+	public void xml_content_is_read_with_binary_format_enabled() {
+		// GIVEN:
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		EntityCodecs.COMPACT_XML.encode(createStep(), content);
+		
+		// WHEN:
+		Step step = EntityCodecs.decode(Step.class, new ByteArrayInputStream(content.toByteArray()), true);
+		
+		// THEN:
+		assertEquals(createStep(), step);
+	}
+	
+	private static Step createStep() {
+		Step step = new Step();
+		StepDescription description = new StepDescription();
+		description.setIndex(3);
+		description.setTitle("step");
+		step.setStepDescription(description);
+		step.setPage(new Page("page"));
+		return step;
+	}
+	
+	private static byte[] encode(final Object object) {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		EntityCodecs.BINARY.encode(object, content);
+		return content.toByteArray();
+	}
+	
+	private static <T> T decode(final Class<T> targetClass, final byte[] content) {
+		return EntityCodecs.BINARY.decode(targetClass, new ByteArrayInputStream(content));
+	}
+	
+}
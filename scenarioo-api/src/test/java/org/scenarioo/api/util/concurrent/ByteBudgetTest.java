@@ -0,0 +1,96 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.util.concurrent;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ByteBudgetTest {
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void budget_must_be_at_least_one_byte() {
+		new ByteBudget(0);
+	}
+	
+	@Test
+	public void acquire_within_budget_does_not_block() throws InterruptedException {
+		// GIVEN:
+		ByteBudget budget = new ByteBudget(100);
+		
+		// WHEN:
+		long blockedTime1 = budget.acquire(60);
+		long blockedTime2 = budget.acquire(40);
+		
+		// THEN:
+		assertEquals(0, blockedTime1);
+		assertEquals(0, blockedTime2);
+		assertEquals(100, budget.getRetainedBytes());
+	}
+	
+	@Test
+	public void acquire_bigger_than_budget_is_granted_when_nothing_retained() throws InterruptedException {
+		// GIVEN:
+		ByteBudget budget = new ByteBudget(10);
+		
+		// WHEN:
+		long blockedTime = budget.acquire(1000);
+		
+		// THEN:
+		assertEquals(0, blockedTime);
+		assertEquals(1000, budget.getRetainedBytes());
+	}
+	
+	@Test
+	public void acquire_blocks_until_enough_bytes_released() throws InterruptedException {
+		// GIVEN: a budget that is used up
+		final ByteBudget budget = new ByteBudget(100);
+		budget.acquire(80);
+		
+		// WHEN: acquiring more bytes than available on another thread
+		final CountDownLatch acquired = new CountDownLatch(1);
+		Thread acquiringThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					budget.acquire(50);
+					acquired.countDown();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		acquiringThread.start();
+		
+		// THEN: it is blocked until the retained bytes are released
+		assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+		budget.release(80);
+		assertTrue(acquired.await(5, TimeUnit.SECONDS));
+		acquiringThread.join();
+		assertEquals(50, budget.getRetainedBytes());
+	}
+	
+}
@@ -0,0 +1,221 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.util.concurrent;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class KeyOrderedExecutorTest {
+	
+	private KeyOrderedExecutor executor;
+	
+	@After
+	public void shutdownExecutor() throws InterruptedException {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void at_least_one_thread_is_required() {
+		new KeyOrderedExecutor(0, 10);
+	}
+	
+	@Test
+	public void tasks_with_same_key_are_executed_in_submitted_order() throws InterruptedException {
+		// GIVEN:
+		executor = new KeyOrderedExecutor(4, 5);
+		final List<List<Integer>> executedTasksPerKey = new ArrayList<List<Integer>>();
+		for (int key = 0; key < 10; key++) {
+			executedTasksPerKey.add(Collections.synchronizedList(new ArrayList<Integer>()));
+		}
+		
+		// WHEN:
+		for (int task = 0; task < 100; task++) {
+			for (int key = 0; key < 10; key++) {
+				final List<Integer> executedTasks = executedTasksPerKey.get(key);
+				final int taskNumber = task;
+				executor.execute("key" + key, new Runnable() {
+					@Override
+					public void run() {
+						executedTasks.add(taskNumber);
+					}
+				});
+			}
+		}
+		executor.shutdown();
+		
+		// THEN:
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		for (List<Integer> executedTasks : executedTasksPerKey) {
+			assertEquals(100, executedTasks.size());
+			for (int task = 0; task < 100; task++) {
+				assertEquals(Integer.valueOf(task), executedTasks.get(task));
+			}
+		}
+	}
+	
+	@Test
+	public void tasks_with_different_keys_are_executed_in_parallel() throws InterruptedException {
+		// GIVEN: two keys that are assigned to different lanes
+		executor = new KeyOrderedExecutor(2, 5);
+		final CountDownLatch bothStarted = new CountDownLatch(2);
+		final CountDownLatch bothSawEachOther = new CountDownLatch(2);
+		Runnable waitForOtherTask = new Runnable() {
+			@Override
+			public void run() {
+				bothStarted.countDown();
+				try {
+					if (bothStarted.await(5, TimeUnit.SECONDS)) {
+						bothSawEachOther.countDown();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		
+		// WHEN:
+		executor.execute(Integer.valueOf(0), waitForOtherTask);
+		executor.execute(Integer.valueOf(1), waitForOtherTask);
+		
+		// THEN: each task only finishes when the other one is running at the same time
+		assertTrue(bothSawEachOther.await(5, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void submitting_blocks_while_queue_of_lane_is_full() throws InterruptedException {
+		// GIVEN: one lane with a running task that waits and a full queue
+		executor = new KeyOrderedExecutor(1, 1);
+		final CountDownLatch releaseRunningTask = new CountDownLatch(1);
+		executor.execute("key", new Runnable() {
+			@Override
+			public void run() {
+				try {
+					releaseRunningTask.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		executor.execute("key", new Runnable() {
+			@Override
+			public void run() {
+			}
+		});
+		
+		// WHEN: submitting one more task on another thread
+		final CountDownLatch submitted = new CountDownLatch(1);
+		Thread submittingThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				executor.execute("key", new Runnable() {
+					@Override
+					public void run() {
+					}
+				});
+				submitted.countDown();
+			}
+		});
+		submittingThread.start();
+		
+		// THEN: it is blocked until the running task has finished
+		assertFalse(submitted.await(100, TimeUnit.MILLISECONDS));
+		releaseRunningTask.countDown();
+		assertTrue(submitted.await(5, TimeUnit.SECONDS));
+		submittingThread.join();
+	}
+	
+	@Test
+	public void task_waiting_for_space_while_shutting_down_is_rejected() throws InterruptedException {
+		// GIVEN: one lane with a running task that waits, a full queue and a caller waiting for space in the queue
+		executor = new KeyOrderedExecutor(1, 1);
+		final CountDownLatch runningTaskStarted = new CountDownLatch(1);
+		executor.execute("key", new Runnable() {
+			@Override
+			public void run() {
+				runningTaskStarted.countDown();
+				try {
+					new CountDownLatch(1).await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		assertTrue(runningTaskStarted.await(5, TimeUnit.SECONDS));
+		executor.execute("key", new Runnable() {
+			@Override
+			public void run() {
+			}
+		});
+		final AtomicBoolean waitingTaskExecuted = new AtomicBoolean();
+		final AtomicReference<Exception> submitFailure = new AtomicReference<Exception>();
+		Thread submittingThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					executor.execute("key", new Runnable() {
+						@Override
+						public void run() {
+							waitingTaskExecuted.set(true);
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					submitFailure.set(e);
+				}
+			}
+		});
+		submittingThread.start();
+		waitUntilBlocked(submittingThread);
+		
+		// WHEN: shutting down immediately, which frees the queue without executing the queued tasks anymore
+		executor.shutdownNow();
+		submittingThread.join(5000);
+		
+		// THEN: the waiting task is not silently lost, but rejected
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+		assertFalse(waitingTaskExecuted.get());
+		assertTrue("expected rejected task", submitFailure.get() instanceof RejectedExecutionException);
+	}
+	
+	private static void waitUntilBlocked(final Thread thread) throws InterruptedException {
+		long timeout = System.currentTimeMillis() + 5000;
+		while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+			assertTrue("thread did not block in time", System.currentTimeMillis() < timeout);
+			Thread.sleep(1);
+		}
+	}
+	
+}
@@ -0,0 +1,80 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.util.files;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Test;
+
+public class FilesUtilTest {
+	
+	private static final File TEST_ROOT_DIRECTORY = new File("tmpFilesUtilTestFiles");
+	
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(TEST_ROOT_DIRECTORY);
+	}
+	
+	@Test
+	public void list_files_sorted_alphanumerically() throws IOException {
+		
+		// GIVEN: a directory with files, compressed files and sub directories
+		File directory = new File(TEST_ROOT_DIRECTORY, "listedDirectory");
+		List<String> names = Arrays.asList("b.xml", "A.xml", "10.xml", "9.xml", "a.xml", "_c.xml");
+		for (String name : names) {
+			FileUtils.writeStringToFile(new File(directory, name), name);
+			FileUtils.writeStringToFile(new File(new File(directory, "dir" + name), "content.xml"), name);
+		}
+		FileUtils.writeStringToFile(new File(new File(directory, "dirCompressed"), "content.xml.gz"), "compressed");
+		new File(directory, "emptyDir").mkdirs();
+		
+		// WHEN: listing the files
+		List<File> files = FilesUtil.getListOfFiles(directory);
+		List<File> filesFromSubdirs = FilesUtil.getListOfFilesFromSubdirs(directory, "content.xml");
+		
+		// THEN: files are listed in the same order as sorted by the alphanumeric comparator
+		List<File> expectedFiles = new ArrayList<File>();
+		for (String name : names) {
+			expectedFiles.add(new File(directory, name));
+		}
+		Collections.sort(expectedFiles, new AlphanumericFileComparator());
+		assertEquals(expectedFiles, files);
+		assertEquals(names.size() + 1, filesFromSubdirs.size());
+		assertTrue(filesFromSubdirs.contains(new File(new File(directory, "dirCompressed"), "content.xml.gz")));
+		for (int i = 1; i < filesFromSubdirs.size(); i++) {
+			assertTrue(new AlphanumericFileComparator().compare(filesFromSubdirs.get(i - 1).getParentFile(),
+					filesFromSubdirs.get(i).getParentFile()) < 0);
+		}
+		
+	}
+	
+}
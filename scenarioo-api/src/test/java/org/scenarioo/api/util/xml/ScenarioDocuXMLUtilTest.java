@@ -0,0 +1,143 @@
+/* scenarioo-api
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * As a special exception, the copyright holders of this library give you 
+ * permission to link this library with independent modules, according 
+ * to the GNU General Public License with "Classpath" exception as provided
+ * in the LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.api.util.xml;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+
+import org.junit.Test;
+import org.scenarioo.model.docu.entities.Scenario;
+import org.scenarioo.model.docu.entities.UseCase;
+
+public class ScenarioDocuXMLUtilTest {
+	
+	@Test
+	public void context_is_created_only_once_per_root_class() throws JAXBException {
+		// WHEN:
+		JAXBContext useCaseContext1 = ScenarioDocuXMLUtil.getJAXBContext(UseCase.class);
+		JAXBContext useCaseContext2 = ScenarioDocuXMLUtil.getJAXBContext(UseCase.class);
+		JAXBContext scenarioContext = ScenarioDocuXMLUtil.getJAXBContext(Scenario.class);
+		
+		// THEN:
+		assertSame(useCaseContext1, useCaseContext2);
+		assertNotSame(useCaseContext1, scenarioContext);
+	}
+	
+	@Test
+	public void create_context_always_creates_a_new_context() throws JAXBException {
+		// WHEN:
+		JAXBContext context1 = ScenarioDocuXMLUtil.createJAXBContext(UseCase.class);
+		JAXBContext context2 = ScenarioDocuXMLUtil.createJAXBContext(UseCase.class);
+		
+		// THEN:
+		assertNotSame(context1, context2);
+		assertNotSame(ScenarioDocuXMLUtil.getJAXBContext(UseCase.class), context1);
+	}
+	
+	@Test
+	public void marshal_and_unmarshal_concurrently_from_several_threads() throws Exception {
+		// GIVEN:
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<UseCase>> results = new ArrayList<Future<UseCase>>();
+		
+		// WHEN:
+		try {
+			for (int i = 0; i < 100; i++) {
+				final UseCase useCase = new UseCase("useCase" + i, "description " + i);
+				useCase.addDetail("index", "" + i);
+				final boolean formattedOutput = i % 2 == 0;
+				results.add(executor.submit(new Callable<UseCase>() {
+					@Override
+					public UseCase call() {
+						return marshalAndUnmarshal(useCase, formattedOutput);
+					}
+				}));
+			}
+			
+			// THEN:
+			for (int i = 0; i < 100; i++) {
+				UseCase useCase = results.get(i).get();
+				assertEquals("useCase" + i, useCase.getName());
+				assertEquals("description " + i, useCase.getDescription());
+				assertEquals("" + i, useCase.getDetails().getDetail("index"));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void reused_marshaller_applies_formatting_of_each_call() {
+		// GIVEN:
+		UseCase useCase = new UseCase("useCase", "description");
+		
+		// WHEN:
+		String formatted = marshal(useCase, true);
+		String compact = marshal(useCase, false);
+		String formattedAgain = marshal(useCase, true);
+		
+		// THEN:
+		assertTrue(formatted.contains("\n    <name>useCase</name>"));
+		assertFalse(compact.contains("\n"));
+		assertEquals(formatted, formattedAgain);
+	}
+	
+	@Test
+	public void contexts_are_created_again_after_clearing_caches() throws JAXBException {
+		// GIVEN:
+		JAXBContext context = ScenarioDocuXMLUtil.getJAXBContext(UseCase.class);
+		UseCase useCase = new UseCase("useCase", "description");
+		marshalAndUnmarshal(useCase, true);
+		
+		// WHEN:
+		ScenarioDocuXMLUtil.clearCaches();
+		
+		// THEN:
+		assertNotSame(context, ScenarioDocuXMLUtil.getJAXBContext(UseCase.class));
+		assertEquals("description", marshalAndUnmarshal(useCase, false).getDescription());
+	}
+	
+	private static UseCase marshalAndUnmarshal(final UseCase useCase, final boolean formattedOutput) {
+		ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+		ScenarioDocuXMLUtil.marshal(useCase, outStream, formattedOutput);
+		return ScenarioDocuXMLUtil.unmarshal(UseCase.class, new ByteArrayInputStream(outStream.toByteArray()));
+	}
+	
+	private static String marshal(final UseCase useCase, final boolean formattedOutput) {
+		ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+		ScenarioDocuXMLUtil.marshal(useCase, outStream, formattedOutput);
+		return new String(outStream.toByteArray());
+	}
+	
+}
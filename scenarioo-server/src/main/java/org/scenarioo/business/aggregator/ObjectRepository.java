@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -40,6 +41,14 @@ import org.scenarioo.model.docu.entities.generic.ObjectList;
 import org.scenarioo.model.docu.entities.generic.ObjectReference;
 import org.scenarioo.model.docu.entities.generic.ObjectTreeNode;
 
+/**
+ * Collects all objects and object references of the steps of a build, for saving the object descriptions and the
+ * object indexes.
+ * 
+ * When use cases are aggregated in parallel, each use case collects its objects in its own repository, that is not
+ * shared with other threads. Its objects are only saved when merged into the repository of the build by
+ * {@link #saveUseCaseObjects(ObjectRepository)}.
+ */
 public class ObjectRepository {
 	
 	private static final Logger LOGGER = Logger.getLogger(ObjectRepository.class);
@@ -54,6 +63,12 @@ public class ObjectRepository {
 	
 	private final Set<String> objectTypes = new HashSet<String>();
 	
+	/**
+	 * Object descriptions not yet saved, only the first description of each object is kept.
+	 */
+	private final Map<ObjectReference, ObjectDescription> unsavedObjects =
+			new LinkedHashMap<ObjectReference, ObjectDescription>();
+	
 	private final Map<ObjectReference, ObjectReference> objectReferencePool = new HashMap<ObjectReference, ObjectReference>(
 			100000);
 	
@@ -152,7 +167,7 @@ public class ObjectRepository {
 	 */
 	public void addObject(final List<ObjectReference> referencePath, final ObjectDescription object) {
 		ObjectReference ref = createObjectReference(object.getType(), object.getName());
-		saveObject(object);
+		addUnsavedObject(ref, object);
 		addObjectReference(referencePath, ref);
 		referencePath.add(ref);
 		addObjects(referencePath, object.getDetails());
@@ -187,11 +202,20 @@ public class ObjectRepository {
 		}
 	}
 	
-	private void saveObject(final ObjectDescription object) {
+	private void addUnsavedObject(final ObjectReference ref, final ObjectDescription object) {
 		objectTypes.add(object.getType());
-		if (!dao.isObjectDescriptionSaved(branchName, buildName, object)) {
-			dao.saveObjectDescription(branchName, buildName, object);
+		if (!unsavedObjects.containsKey(ref)) {
+			unsavedObjects.put(ref, object);
+		}
+	}
+	
+	private void saveObjects() {
+		for (ObjectDescription object : unsavedObjects.values()) {
+			if (!dao.isObjectDescriptionSaved(branchName, buildName, object)) {
+				dao.saveObjectDescription(branchName, buildName, object);
+			}
 		}
+		unsavedObjects.clear();
 	}
 	
 	/**
@@ -265,7 +289,7 @@ public class ObjectRepository {
 			// Save page description (if not yet)
 			ObjectDescription pageDescription = new ObjectDescription("page", page.getName());
 			pageDescription.setDetails(page.getDetails());
-			saveObject(pageDescription);
+			addUnsavedObject(pageReference, pageDescription);
 			
 			// Add referenced objects from page
 			addObjects(referencePath, page.getDetails());
@@ -287,7 +311,21 @@ public class ObjectRepository {
 		}
 	}
 	
+	/**
+	 * Save the objects of one use case and add its references to the object indexes. Use cases have to be merged in
+	 * the same order as they would be aggregated sequentially, because the first saved description of an object wins
+	 * and the references of each use case are appended to the existing indexes.
+	 * 
+	 * @param useCaseObjects
+	 *            repository that collected the objects of the use case.
+	 */
+	public void saveUseCaseObjects(final ObjectRepository useCaseObjects) {
+		useCaseObjects.updateAndSaveObjectIndexesForCurrentCase();
+		objectTypes.addAll(useCaseObjects.objectTypes);
+	}
+	
 	public void updateAndSaveObjectIndexesForCurrentCase() {
+		saveObjects();
 		LOGGER.info("      Writing object repository index files for last use case. This might take a while ...");
 		for (Entry<ObjectReference, ObjectReferenceTreeBuilder> objectRefTreeBuilder : objectReferences.entrySet()) {
 			ObjectReference objectRef = objectRefTreeBuilder.getKey();
@@ -19,9 +19,16 @@ package org.scenarioo.business.aggregator;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import lombok.Data;
 
@@ -29,6 +36,8 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 import org.scenarioo.api.ScenarioDocuReader;
 import org.scenarioo.api.exception.ResourceNotFoundException;
+import org.scenarioo.api.files.StepIterator;
+import org.scenarioo.api.files.StepsPreAggregator;
 import org.scenarioo.dao.aggregates.ScenarioDocuAggregationDAO;
 import org.scenarioo.dao.configuration.ConfigurationDAO;
 import org.scenarioo.model.docu.aggregates.branches.BuildIdentifier;
@@ -41,6 +50,7 @@ import org.scenarioo.model.docu.aggregates.usecases.PageVariantsCounter;
 import org.scenarioo.model.docu.aggregates.usecases.UseCaseScenarios;
 import org.scenarioo.model.docu.aggregates.usecases.UseCaseScenariosList;
 import org.scenarioo.model.docu.derived.BuildLink;
+import org.scenarioo.model.docu.derived.ScenarioStepsAggregate;
 import org.scenarioo.model.docu.entities.Page;
 import org.scenarioo.model.docu.entities.Scenario;
 import org.scenarioo.model.docu.entities.ScenarioCalculatedData;
@@ -57,6 +67,10 @@ import org.scenarioo.model.docu.entities.generic.ObjectReference;
  * Make sure to adjust the value of {@link ScenarioDocuAggregator#CURRENT_FILE_FORMAT_VERSION} when the format of
  * generated data is extended or changed.
  * 
+ * The use cases of a build can be aggregated in parallel (see configuration "aggregationThreads"), but are merged one
+ * after the other in the order of the use cases, such that the aggregated data is the same as when aggregating one use
+ * case after the other.
+ * 
  * TODO: Make aggregator more fail safe ... let him continue in case of exceptions or unexpected data (null pointers?)
  * to aggregate at least that part of a documentation build that is okay, such that this part can be accessed and read.
  */
@@ -68,9 +82,16 @@ public class ScenarioDocuAggregator {
 	 */
 	public static final String CURRENT_FILE_FORMAT_VERSION = "0.22";
 	
+	private static final String BINARY_FILE_FORMAT_VERSION_SUFFIX = "-binary";
+	
 	private final static Logger LOGGER = Logger.getLogger(ScenarioDocuAggregator.class);
 	
-	private final ScenarioDocuReader reader = new ScenarioDocuReader(ConfigurationDAO.getDocuDataDirectoryPath());
+	/**
+	 * Number of steps parsed in advance while the current step of a scenario is aggregated.
+	 */
+	private static final int STEPS_READ_AHEAD = 4;
+	
+	private final ScenarioDocuReader reader = ConfigurationDAO.createDocuReader();
 	
 	private final LongObjectNamesResolver longObjectNamesResolver = new LongObjectNamesResolver();
 	
@@ -81,6 +102,11 @@ public class ScenarioDocuAggregator {
 	
 	private ObjectRepository objectRepository;
 	
+	public ScenarioDocuAggregator() {
+		// importing is CPU bound on unmarshalling of all steps
+		reader.setParallelUnmarshallingEnabled(true);
+	}
+	
 	@Data
 	public static class StepVariantState {
 		private StepIdentification firstStep;
@@ -97,10 +123,39 @@ public class ScenarioDocuAggregator {
 		}
 	}
 	
+	/**
+	 * Aggregated data of one use case, that is calculated independently of all other use cases.
+	 */
+	private static class UseCaseAggregate {
+		
+		private final UseCaseScenarios useCaseScenarios;
+		
+		private final ObjectRepository objectRepository;
+		
+		private final List<ScenarioPageSteps> scenarioPageSteps = new ArrayList<ScenarioPageSteps>();
+		
+		public UseCaseAggregate(final UseCaseScenarios useCaseScenarios, final ObjectRepository objectRepository) {
+			this.useCaseScenarios = useCaseScenarios;
+			this.objectRepository = objectRepository;
+		}
+		
+	}
+	
+	/**
+	 * The version of the derived files includes their format (see init parameter "binaryDerivedFileFormatEnabled"),
+	 * such that builds are imported again when the format is changed.
+	 */
+	public static String getCurrentFileFormatVersion() {
+		if (ConfigurationDAO.isBinaryDerivedFileFormatEnabled()) {
+			return CURRENT_FILE_FORMAT_VERSION + BINARY_FILE_FORMAT_VERSION_SUFFIX;
+		}
+		return CURRENT_FILE_FORMAT_VERSION;
+	}
+	
 	public boolean containsAggregatedDataForBuild(final String branchName, final String buildName) {
 		String version = dao.loadVersion(branchName, buildName);
 		return !StringUtils.isBlank(version)
-				&& version.equals(CURRENT_FILE_FORMAT_VERSION);
+				&& version.equals(getCurrentFileFormatVersion());
 	}
 	
 	public void removeAggregatedDataForBuild(final String branchName,
@@ -119,10 +174,7 @@ public class ScenarioDocuAggregator {
 		LOGGER.info("  calculating aggregated data for build : " + buildName);
 		UseCaseScenariosList useCaseScenariosList = calculateUseCaseScenariosList(
 				branchName, buildName);
-		for (UseCaseScenarios scenarios : useCaseScenariosList
-				.getUseCaseScenarios()) {
-			calulateAggregatedDataForUseCase(branchName, buildName, scenarios);
-		}
+		calculateAggregatedDataForUseCases(branchName, buildName, useCaseScenariosList.getUseCaseScenarios());
 		
 		// Calculate page variant counters
 		HashMap<String, Integer> counters = new HashMap<String, Integer>();
@@ -146,7 +198,7 @@ public class ScenarioDocuAggregator {
 		
 		dao.saveLongObjectNamesIndex(branchName, buildName, longObjectNamesResolver);
 		
-		dao.saveVersion(branchName, buildName, CURRENT_FILE_FORMAT_VERSION);
+		dao.saveVersion(branchName, buildName, getCurrentFileFormatVersion());
 		
 	}
 	
@@ -175,107 +227,222 @@ public class ScenarioDocuAggregator {
 		return result;
 	}
 	
-	private void calulateAggregatedDataForUseCase(final String branchName,
+	/**
+	 * Aggregates the use cases in parallel (unless only one thread is configured) and merges them in the order of the
+	 * use cases on the calling thread. Only a limited number of aggregated use cases is kept in memory while waiting
+	 * for the use cases before to be merged.
+	 */
+	private void calculateAggregatedDataForUseCases(final String branchName, final String buildName,
+			final List<UseCaseScenarios> useCaseScenariosList) {
+		int numberOfThreads = getNumberOfAggregationThreads();
+		if (numberOfThreads == 1) {
+			for (UseCaseScenarios useCaseScenarios : useCaseScenariosList) {
+				mergeAggregatedDataForUseCase(branchName, buildName,
+						calulateAggregatedDataForUseCase(branchName, buildName, useCaseScenarios));
+			}
+			return;
+		}
+		// threads are created by the import thread, such that they inherit the log context of the imported build
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		try {
+			LinkedList<Future<UseCaseAggregate>> pendingUseCases = new LinkedList<Future<UseCaseAggregate>>();
+			Iterator<UseCaseScenarios> useCases = useCaseScenariosList.iterator();
+			while (useCases.hasNext() || !pendingUseCases.isEmpty()) {
+				while (useCases.hasNext() && pendingUseCases.size() < 2 * numberOfThreads) {
+					pendingUseCases.add(executor.submit(newUseCaseAggregationTask(branchName, buildName,
+							useCases.next())));
+				}
+				mergeAggregatedDataForUseCase(branchName, buildName, getResult(pendingUseCases.removeFirst()));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	private int getNumberOfAggregationThreads() {
+		int numberOfThreads = ConfigurationDAO.getConfiguration().getAggregationThreads();
+		if (numberOfThreads <= 0) {
+			return Runtime.getRuntime().availableProcessors();
+		}
+		return numberOfThreads;
+	}
+	
+	private Callable<UseCaseAggregate> newUseCaseAggregationTask(final String branchName, final String buildName,
+			final UseCaseScenarios useCaseScenarios) {
+		return new Callable<UseCaseAggregate>() {
+			@Override
+			public UseCaseAggregate call() {
+				return calulateAggregatedDataForUseCase(branchName, buildName, useCaseScenarios);
+			}
+		};
+	}
+	
+	private UseCaseAggregate getResult(final Future<UseCaseAggregate> useCaseAggregate) {
+		try {
+			return useCaseAggregate.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Could not aggregate use case, interrupted while waiting for the result.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException("Could not aggregate use case.", e.getCause());
+		}
+	}
+	
+	/**
+	 * Calculates the data of one use case that does not depend on other use cases. This is called in parallel for
+	 * different use cases and therefore must not access any data shared between use cases, the objects are only
+	 * collected in a repository for this use case.
+	 */
+	private UseCaseAggregate calulateAggregatedDataForUseCase(final String branchName,
 			final String buildName, final UseCaseScenarios useCaseScenarios) {
 		
 		LOGGER.info("    calculating aggregated data for use case : " + useCaseScenarios.getUseCase().getName());
 		
-		List<ObjectReference> referencePath = objectRepository
-				.createPath(objectRepository.createObjectReference("case", useCaseScenarios.getUseCase().getName()));
-		objectRepository.addObjects(referencePath, useCaseScenarios.getUseCase().getDetails());
+		ObjectRepository useCaseObjects = new ObjectRepository(branchName, buildName, dao);
+		UseCaseAggregate result = new UseCaseAggregate(useCaseScenarios, useCaseObjects);
+		
+		List<ObjectReference> referencePath = useCaseObjects
+				.createPath(useCaseObjects.createObjectReference("case", useCaseScenarios.getUseCase().getName()));
+		useCaseObjects.addObjects(referencePath, useCaseScenarios.getUseCase().getDetails());
 		
 		for (Scenario scenario : useCaseScenarios.getScenarios()) {
 			try {
-				calculateAggregatedDataForScenario(referencePath, branchName, buildName, useCaseScenarios.getUseCase(),
-						scenario);
+				result.scenarioPageSteps.add(calculateAggregatedDataForScenario(useCaseObjects, referencePath,
+						branchName, buildName, useCaseScenarios.getUseCase(), scenario));
 			} catch (ResourceNotFoundException ex) {
 				LOGGER.warn("could not load scenario " + scenario.getName()
 						+ " in use case"
 						+ useCaseScenarios.getUseCase().getName());
 			}
 		}
-		dao.saveUseCaseScenarios(branchName, buildName, useCaseScenarios);
+		return result;
+	}
+	
+	/**
+	 * Merges the aggregated data of one use case after all use cases before, the step variants are linked across
+	 * scenarios and the objects are saved in the same order as when aggregating one use case after the other.
+	 */
+	private void mergeAggregatedDataForUseCase(final String branchName, final String buildName,
+			final UseCaseAggregate useCaseAggregate) {
+		for (ScenarioPageSteps scenarioPageSteps : useCaseAggregate.scenarioPageSteps) {
+			processStepVariants(branchName, buildName, scenarioPageSteps);
+			dao.saveScenarioPageSteps(branchName, buildName, scenarioPageSteps);
+		}
+		dao.saveUseCaseScenarios(branchName, buildName, useCaseAggregate.useCaseScenarios);
 		
-		objectRepository.updateAndSaveObjectIndexesForCurrentCase();
+		objectRepository.saveUseCaseObjects(useCaseAggregate.objectRepository);
 	}
 	
-	private void calculateAggregatedDataForScenario(List<ObjectReference> referencePath, final String branchName,
-			final String buildName, final UseCase usecase,
-			final Scenario scenario) {
+	private ScenarioPageSteps calculateAggregatedDataForScenario(final ObjectRepository useCaseObjects,
+			List<ObjectReference> referencePath, final String branchName, final String buildName,
+			final UseCase usecase, final Scenario scenario) {
 		
-		referencePath = objectRepository.addReferencedScenarioObjects(referencePath, scenario);
+		referencePath = useCaseObjects.addReferencedScenarioObjects(referencePath, scenario);
 		
 		LOGGER.info("      calculating aggregated data for scenario : "
 				+ scenario.getName());
-		ScenarioPageSteps scenarioPageSteps = calculateScenarioPageSteps(referencePath,
-				branchName, buildName, usecase, scenario);
-		
-		dao.saveScenarioPageSteps(branchName, buildName, scenarioPageSteps);
+		return calculateScenarioPageSteps(useCaseObjects, referencePath, branchName, buildName, usecase, scenario);
 	}
 	
-	private ScenarioPageSteps calculateScenarioPageSteps(final List<ObjectReference> referencePath,
-			final String branchName, final String buildName,
+	private ScenarioPageSteps calculateScenarioPageSteps(final ObjectRepository useCaseObjects,
+			final List<ObjectReference> referencePath, final String branchName, final String buildName,
 			final UseCase usecase, final Scenario scenario) {
 		
 		ScenarioPageSteps result = new ScenarioPageSteps();
 		result.setUseCase(usecase);
 		result.setScenario(scenario);
 		
-		// pages and steps
-		List<Step> steps = reader.loadSteps(branchName, buildName,
+		// pages and steps, taken from the steps pre-aggregated by the writer if available, otherwise the steps are
+		// loaded one after the other without their HTML, such that not all steps have to be held in memory
+		Iterator<Step> steps;
+		StepIterator stepIterator = null;
+		ScenarioStepsAggregate stepsAggregate = reader.loadScenarioStepsAggregate(branchName, buildName,
 				usecase.getName(), scenario.getName());
-		int numberOfSteps = steps.size();
+		if (stepsAggregate != null) {
+			steps = StepsPreAggregator.getSteps(stepsAggregate).iterator();
+		} else {
+			stepIterator = reader.iterateStepsWithoutHtml(branchName, buildName,
+					usecase.getName(), scenario.getName(), STEPS_READ_AHEAD);
+			steps = stepIterator;
+		}
 		List<PageSteps> pageStepsList = new ArrayList<PageSteps>();
 		Page page = null;
 		PageSteps pageSteps = null;
 		int pageIndex = 0;
 		int pageStepIndex = 0;
 		int index = 0;
-		for (Step step : steps) {
-			
-			boolean isNewPage = page == null || step.getPage() == null
-					|| !page.equals(step.getPage());
-			if (isNewPage) {
-				page = step.getPage();
-				pageSteps = new PageSteps();
-				pageSteps.setPage(page);
-				pageSteps.setSteps(new ArrayList<StepDescription>());
-				pageStepsList.add(pageSteps);
-				pageStepIndex = 0;
-				if (index > 0) {
-					pageIndex++;
+		try {
+			while (steps.hasNext()) {
+				Step step = steps.next();
+				
+				boolean isNewPage = page == null || step.getPage() == null
+						|| !page.equals(step.getPage());
+				if (isNewPage) {
+					page = step.getPage();
+					pageSteps = new PageSteps();
+					pageSteps.setPage(page);
+					pageSteps.setSteps(new ArrayList<StepDescription>());
+					pageStepsList.add(pageSteps);
+					pageStepIndex = 0;
+					if (index > 0) {
+						pageIndex++;
+					}
 				}
+				StepDescription stepDescription = step.getStepDescription();
+				stepDescription.setOccurence(pageIndex);
+				stepDescription.setRelativeIndex(pageStepIndex);
+				pageSteps.getSteps().add(stepDescription);
+				
+				useCaseObjects.addReferencedStepObjects(referencePath, step);
+				
+				index++;
+				pageStepIndex++;
+			}
+		} finally {
+			if (stepIterator != null) {
+				// stop reading ahead, in case aggregation failed
+				stepIterator.close();
 			}
-			StepDescription stepDescription = step.getStepDescription();
-			stepDescription.setOccurence(pageIndex);
-			stepDescription.setRelativeIndex(pageStepIndex);
-			pageSteps.getSteps().add(stepDescription);
-			
-			StepIdentification stepIdentification = new StepIdentification(
-					usecase.getName(), scenario.getName(), page.getName(),
-					index, pageIndex, pageStepIndex);
-			processStepVariant(branchName, buildName, pageStepsList, step,
-					page.getName(), stepIdentification);
-			
-			objectRepository.addReferencedStepObjects(referencePath, step);
-			
-			index++;
-			pageStepIndex++;
 		}
 		result.setPagesAndSteps(pageStepsList);
 		
 		// scenario calculated data from pages and steps
 		ScenarioCalculatedData calculatedData = new ScenarioCalculatedData();
 		calculatedData.setNumberOfPages(pageIndex);
-		calculatedData.setNumberOfSteps(numberOfSteps);
+		calculatedData.setNumberOfSteps(index);
 		scenario.setCalculatedData(calculatedData);
 		
 		return result;
 	}
 	
+	/**
+	 * Link the steps of the scenario with the previous and next variants of the steps on same page, in the order of the
+	 * steps, the pages are taken from the passed page steps, which have one entry for each page occurrence.
+	 */
+	private void processStepVariants(final String branchName, final String buildName,
+			final ScenarioPageSteps scenarioPageSteps) {
+		List<PageSteps> pageStepsList = scenarioPageSteps.getPagesAndSteps();
+		int index = 0;
+		for (int pageIndex = 0; pageIndex < pageStepsList.size(); pageIndex++) {
+			PageSteps pageSteps = pageStepsList.get(pageIndex);
+			String pageName = pageSteps.getPage().getName();
+			for (int pageStepIndex = 0; pageStepIndex < pageSteps.getSteps().size(); pageStepIndex++) {
+				StepIdentification stepIdentification = new StepIdentification(
+						scenarioPageSteps.getUseCase().getName(), scenarioPageSteps.getScenario().getName(), pageName,
+						index, pageIndex, pageStepIndex);
+				processStepVariant(branchName, buildName, pageStepsList, pageSteps.getSteps().get(pageStepIndex),
+						pageName, stepIdentification);
+				index++;
+			}
+		}
+	}
+	
 	private void processStepVariant(final String branchName,
 			final String buildName, final List<PageSteps> pageStepsList,
-			final Step step, final String pageName,
+			final StepDescription stepDescription, final String pageName,
 			final StepIdentification stepIdentification) {
 		StepVariantState variant = null;
 		if (mapOfStepVariant.containsKey(pageName)) {
@@ -287,7 +454,6 @@ public class ScenarioDocuAggregator {
 		
 		variant.increaseCounter();
 		if (variant.getPreviousStep() != null) {
-			StepDescription stepDescription = step.getStepDescription();
 			stepDescription.setVariantIndex(variant.getCounter());
 			stepDescription.setPreviousStepVariant(variant.getPreviousStep());
 			setNextVariant(branchName, buildName, pageStepsList,
@@ -338,7 +504,7 @@ public class ScenarioDocuAggregator {
 		buildSummary.setBuildDescription(buildLink.getBuild());
 		String version = dao.loadVersion(buildIdentifier.getBranchName(), buildIdentifier.getBuildName());
 		boolean aggregated = !StringUtils.isBlank(version);
-		boolean outdated = aggregated && !version.equals(CURRENT_FILE_FORMAT_VERSION);
+		boolean outdated = aggregated && !version.equals(getCurrentFileFormatVersion());
 		boolean error = buildSummary.getStatus().isFailed();
 		if (error) {
 			buildSummary.setStatus(BuildImportStatus.FAILED);
@@ -30,6 +30,7 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
+import org.scenarioo.api.ScenarioDocuReader;
 import org.scenarioo.business.aggregator.ScenarioDocuAggregator;
 import org.scenarioo.dao.aggregates.ScenarioDocuAggregationDAO;
 import org.scenarioo.dao.configuration.ConfigurationDAO;
@@ -41,11 +42,19 @@ import org.scenarioo.model.docu.derived.BuildLink;
 
 /**
  * Takes care of importing new builds.
+ * 
+ * Builds that are still being written are deferred until they have been written completely. Writing is only tracked
+ * inside the JVM of the writer, builds written by several JVMs at the same time might therefore be imported too early.
+ * Builds that are marked as being written for longer than the configured
+ * {@link org.scenarioo.model.configuration.Configuration#getIncompleteBuildImportTimeoutInHours()} are imported anyway
+ * (e.g. after the writer crashed), an administrator can also import such a build immediately by a reimport.
  */
 public class BuildImporter {
 	
 	private static final Logger LOGGER = Logger.getLogger(BuildImporter.class);
 	
+	private static final String STATUS_MESSAGE_BUILD_INCOMPLETE = "Build is still being written, import is deferred.";
+	
 	/**
 	 * Current state for all builds whether imported and aggregated correctly.
 	 */
@@ -94,13 +103,27 @@ public class BuildImporter {
 		buildImportSummaries = result;
 	}
 	
+	/**
+	 * Submit all builds that need to be imported, except builds that are still being written, these are imported on a
+	 * later update as soon as they are complete.
+	 */
 	public synchronized void submitUnprocessedBuildsForImport(final AvailableBuildsList availableBuilds) {
+		ScenarioDocuReader reader = ConfigurationDAO.createDocuReader();
+		boolean importDeferred = false;
 		for (BuildIdentifier buildIdentifier : buildImportSummaries.keySet()) {
 			final BuildImportSummary summary = buildImportSummaries.get(buildIdentifier);
 			if (summary != null && summary.getStatus().isImportNeeded()) {
-				submitBuildForImport(availableBuilds, buildIdentifier);
+				if (reader.isBuildComplete(buildIdentifier.getBranchName(), buildIdentifier.getBuildName())
+						|| isIncompleteBuildTimedOut(reader, buildIdentifier)) {
+					submitBuildForImport(availableBuilds, buildIdentifier);
+				} else {
+					importDeferred |= deferImportOfIncompleteBuild(summary);
+				}
 			}
 		}
+		if (importDeferred) {
+			saveBuildImportSummaries(buildImportSummaries);
+		}
 	}
 	
 	public synchronized void submitBuildForReimport(final AvailableBuildsList availableBuilds,
@@ -129,6 +152,37 @@ public class BuildImporter {
 		aggregator.removeAggregatedDataForBuild(buildIdentifier.getBranchName(), buildIdentifier.getBuildName());
 	}
 	
+	/**
+	 * A build that is marked as being written for longer than the configured timeout is imported anyway, because a
+	 * crashed writer never marks its build as complete.
+	 */
+	private boolean isIncompleteBuildTimedOut(final ScenarioDocuReader reader, final BuildIdentifier buildIdentifier) {
+		int timeoutInHours = ConfigurationDAO.getConfiguration().getIncompleteBuildImportTimeoutInHours();
+		long writingStartTime = reader.getBuildWritingStartTime(buildIdentifier.getBranchName(),
+				buildIdentifier.getBuildName());
+		if (timeoutInHours <= 0 || writingStartTime == 0
+				|| System.currentTimeMillis() - writingStartTime < TimeUnit.HOURS.toMillis(timeoutInHours)) {
+			return false;
+		}
+		LOGGER.warn("  Importing build that is marked as being written for more than " + timeoutInHours
+				+ " hours, the writer has probably not finished: " + buildIdentifier.getBranchName() + "/"
+				+ buildIdentifier.getBuildName());
+		return true;
+	}
+	
+	/**
+	 * @return true if the build has not already been deferred before.
+	 */
+	private boolean deferImportOfIncompleteBuild(final BuildImportSummary summary) {
+		if (STATUS_MESSAGE_BUILD_INCOMPLETE.equals(summary.getStatusMessage())) {
+			return false;
+		}
+		LOGGER.info("  Deferring import of build that is still being written: "
+				+ summary.getIdentifier().getBranchName() + "/" + summary.getIdentifier().getBuildName());
+		summary.setStatusMessage(STATUS_MESSAGE_BUILD_INCOMPLETE);
+		return true;
+	}
+	
 	/**
 	 * Submit any build for import.
 	 */
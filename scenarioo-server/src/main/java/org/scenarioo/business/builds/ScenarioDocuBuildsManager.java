@@ -22,6 +22,10 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.log4j.Logger;
 import org.scenarioo.api.ScenarioDocuReader;
@@ -69,6 +73,13 @@ public class ScenarioDocuBuildsManager {
 	 */
 	private BuildImporter buildImporter = new BuildImporter();
 	
+	/**
+	 * Executes the updates requested by {@link #submitUpdateAllBuildsAndNewBuildsForImport()}.
+	 */
+	private final ExecutorService asyncUpdateExecutor = newAsyncUpdateExecutor();
+	
+	private final AtomicBoolean asyncUpdatePending = new AtomicBoolean(false);
+	
 	/**
 	 * Is a singleton. Use {@link #INSTANCE}.
 	 */
@@ -139,6 +150,22 @@ public class ScenarioDocuBuildsManager {
 		LOGGER.info("******************** update finished *******************************");
 	}
 	
+	/**
+	 * Same as {@link #updateAllBuildsAndSubmitNewBuildsForImport()}, but executed in the background. Requests for an
+	 * update while another update is still waiting to be executed are merged into this one update.
+	 */
+	public void submitUpdateAllBuildsAndNewBuildsForImport() {
+		if (asyncUpdatePending.compareAndSet(false, true)) {
+			asyncUpdateExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					asyncUpdatePending.set(false);
+					updateAllBuildsAndSubmitNewBuildsForImport();
+				}
+			});
+		}
+	}
+	
 	private synchronized void updateBuildImportStatesAndAvailableBuildsList() {
 		LOGGER.info("Updating the list of available builds and their states ...");
 		Map<BuildIdentifier, BuildImportSummary> loadedBuildImportSummaries = loadBuildImportSummaries();
@@ -160,7 +187,7 @@ public class ScenarioDocuBuildsManager {
 	}
 	
 	private List<BranchBuilds> loadBranchBuildsList() {
-		final ScenarioDocuReader reader = new ScenarioDocuReader(ConfigurationDAO.getDocuDataDirectoryPath());
+		final ScenarioDocuReader reader = ConfigurationDAO.createDocuReader();
 		List<BranchBuilds> result = new ArrayList<BranchBuilds>();
 		List<Branch> branches = reader.loadBranches();
 		for (Branch branch : branches) {
@@ -206,4 +233,18 @@ public class ScenarioDocuBuildsManager {
 		}
 	}
 	
+	/**
+	 * The executor is never shut down, therefore its thread is a daemon thread.
+	 */
+	private static ExecutorService newAsyncUpdateExecutor() {
+		return Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				Thread thread = new Thread(runnable, "scenarioo-builds-update");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
 }
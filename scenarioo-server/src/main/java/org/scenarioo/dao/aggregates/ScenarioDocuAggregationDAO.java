@@ -18,17 +18,25 @@
 package org.scenarioo.dao.aggregates;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
+import org.scenarioo.api.files.storage.DocuStorage;
+import org.scenarioo.api.files.storage.FileSystemStorage;
+import org.scenarioo.api.files.storage.StorageOutputStream;
+import org.scenarioo.api.util.codec.EntityCodec;
+import org.scenarioo.api.util.codec.EntityCodecs;
 import org.scenarioo.api.util.xml.ScenarioDocuXMLFileUtil;
 import org.scenarioo.business.aggregator.ScenarioDocuAggregator;
+import org.scenarioo.dao.configuration.ConfigurationDAO;
 import org.scenarioo.model.docu.aggregates.branches.BuildImportSummaries;
 import org.scenarioo.model.docu.aggregates.branches.BuildImportSummary;
 import org.scenarioo.model.docu.aggregates.objects.LongObjectNamesResolver;
@@ -52,6 +60,9 @@ import org.scenarioo.model.docu.entities.generic.ObjectReference;
  * 
  * If accessing data for a specific build you have to make sure to use the constructor that initializes the
  * {@link LongObjectNamesResolver} with the object names as available for the specific build you want to access.
+ * 
+ * The derived files are stored in the same {@link DocuStorage} as the documentation content, by default the file
+ * system.
  */
 public class ScenarioDocuAggregationDAO {
 	
@@ -61,30 +72,39 @@ public class ScenarioDocuAggregationDAO {
 	
 	private final ScenarioDocuAggregationFiles files;
 	
+	private final DocuStorage storage;
+	
 	private LongObjectNamesResolver longObjectNameResolver = null;
 	
 	public ScenarioDocuAggregationDAO(final File rootDirectory) {
-		files = new ScenarioDocuAggregationFiles(rootDirectory);
+		this(rootDirectory, FileSystemStorage.INSTANCE, null);
 	}
 	
 	public ScenarioDocuAggregationDAO(final File rootDirectory, final LongObjectNamesResolver longObjectNameResolver) {
-		files = new ScenarioDocuAggregationFiles(rootDirectory);
+		this(rootDirectory, FileSystemStorage.INSTANCE, longObjectNameResolver);
+	}
+	
+	public ScenarioDocuAggregationDAO(final File rootDirectory, final DocuStorage storage,
+			final LongObjectNamesResolver longObjectNameResolver) {
+		files = new ScenarioDocuAggregationFiles(rootDirectory, storage);
+		this.storage = storage;
 		this.longObjectNameResolver = longObjectNameResolver;
 	}
 	
 	public String loadVersion(final String branchName, final String buildName) {
 		File versionFile = files.getVersionFile(branchName, buildName);
-		if (versionFile.exists()) {
+		if (storage.exists(versionFile)) {
 			Properties properties = new Properties();
+			InputStream in = null;
 			try {
-				properties.load(new FileReader(versionFile));
+				in = storage.openForReading(versionFile);
+				properties.load(new InputStreamReader(in));
 				return properties.getProperty(VERSION_PROPERTY_KEY);
-			} catch (FileNotFoundException e) {
-				throw new RuntimeException("file not found: "
-						+ versionFile.getAbsolutePath(), e);
 			} catch (IOException e) {
 				throw new RuntimeException("file not readable: "
 						+ versionFile.getAbsolutePath(), e);
+			} finally {
+				IOUtils.closeQuietly(in);
 			}
 		} else {
 			return "";
@@ -93,25 +113,25 @@ public class ScenarioDocuAggregationDAO {
 	
 	public List<UseCaseScenarios> loadUseCaseScenariosList(final String branchName, final String buildName) {
 		File file = files.getUseCasesAndScenariosFile(branchName, buildName);
-		UseCaseScenariosList list = ScenarioDocuXMLFileUtil.unmarshal(UseCaseScenariosList.class, file);
+		UseCaseScenariosList list = unmarshal(UseCaseScenariosList.class, file);
 		return list.getUseCaseScenarios();
 	}
 	
 	public UseCaseScenarios loadUseCaseScenarios(final String branchName, final String buildName,
 			final String usecaseName) {
 		File scenariosFile = files.getUseCaseScenariosFile(branchName, buildName, usecaseName);
-		return ScenarioDocuXMLFileUtil.unmarshal(UseCaseScenarios.class, scenariosFile);
+		return unmarshal(UseCaseScenarios.class, scenariosFile);
 	}
 	
 	public ScenarioPageSteps loadScenarioPageSteps(final String branchName, final String buildName,
 			final String usecaseName, final String scenarioName) {
 		File file = files.getScenarioStepsFile(branchName, buildName, usecaseName, scenarioName);
-		return ScenarioDocuXMLFileUtil.unmarshal(ScenarioPageSteps.class, file);
+		return unmarshal(ScenarioPageSteps.class, file);
 	}
 	
 	public PageVariantsCounter loadPageVariantsCounter(final String branchName, final String buildName) {
 		File file = files.getPageVariantsFile(branchName, buildName);
-		return ScenarioDocuXMLFileUtil.unmarshal(PageVariantsCounter.class, file);
+		return unmarshal(PageVariantsCounter.class, file);
 	}
 	
 	public void saveVersion(final String branchName, final String buildName, final String currentFileFormatVersion) {
@@ -122,30 +142,36 @@ public class ScenarioDocuAggregationDAO {
 	}
 	
 	private void saveProperties(final File file, final Properties properties, final String comment) {
+		StorageOutputStream out = null;
 		try {
-			properties.store(new FileWriter(file), comment);
+			out = storage.openForWriting(file, isSyncedFileWrites());
+			properties.store(new OutputStreamWriter(out), comment);
+			out.commit();
 		} catch (IOException e) {
 			throw new RuntimeException("could not write " + file.getAbsolutePath(), e);
+		} finally {
+			closeQuietly(out);
 		}
 	}
 	
 	public void savePageVariants(final String branchName, final String buildName,
 			final PageVariantsCounter pageVariantsCounter) {
 		File fileCounter = files.getPageVariantsFile(branchName, buildName);
-		ScenarioDocuXMLFileUtil.marshal(pageVariantsCounter, fileCounter);
+		marshal(pageVariantsCounter, fileCounter);
 	}
 	
 	public void saveUseCaseScenariosList(final String branchName, final String buildName,
 			final UseCaseScenariosList useCaseScenariosList) {
 		File file = files.getUseCasesAndScenariosFile(branchName, buildName);
-		ScenarioDocuXMLFileUtil.marshal(useCaseScenariosList, file);
+		marshal(useCaseScenariosList, file);
 	}
 	
 	public void saveUseCaseScenarios(final String branchName, final String buildName,
 			final UseCaseScenarios useCaseScenarios) {
 		File scenariosFile = files.getUseCaseScenariosFile(branchName, buildName, useCaseScenarios
 				.getUseCase().getName());
-		ScenarioDocuXMLFileUtil.marshal(useCaseScenarios, scenariosFile);
+		storage.createDirectories(scenariosFile.getParentFile());
+		marshal(useCaseScenarios, scenariosFile);
 	}
 	
 	public void saveScenarioPageSteps(final String branchName, final String buildName,
@@ -153,7 +179,8 @@ public class ScenarioDocuAggregationDAO {
 		String usecaseName = scenarioPageSteps.getUseCase().getName();
 		String scenarioName = scenarioPageSteps.getScenario().getName();
 		File file = files.getScenarioStepsFile(branchName, buildName, usecaseName, scenarioName);
-		ScenarioDocuXMLFileUtil.marshal(scenarioPageSteps, file);
+		storage.createDirectories(file.getParentFile());
+		marshal(scenarioPageSteps, file);
 	}
 	
 	public boolean isObjectDescriptionSaved(final String branchName, final String buildName,
@@ -165,15 +192,15 @@ public class ScenarioDocuAggregationDAO {
 	public boolean isObjectDescriptionSaved(final String branchName, final String buildName, final String type,
 			final String name) {
 		File objectFile = files.getObjectFile(branchName, buildName, type, resolveObjectFileName(name));
-		return objectFile.exists();
+		return storage.exists(objectFile);
 	}
 	
 	public void saveObjectDescription(final String branchName, final String buildName,
 			final ObjectDescription objectDescription) {
 		File objectFile = files.getObjectFile(branchName, buildName, objectDescription.getType(),
 				resolveObjectFileName(objectDescription.getName()));
-		objectFile.getParentFile().mkdirs();
-		ScenarioDocuXMLFileUtil.marshal(objectDescription, objectFile);
+		storage.createDirectories(objectFile.getParentFile());
+		marshal(objectDescription, objectFile);
 	}
 	
 	public ObjectDescription loadObjectDescription(final String branchName, final String buildName,
@@ -184,14 +211,14 @@ public class ScenarioDocuAggregationDAO {
 	}
 	
 	public ObjectDescription loadObjectDescription(final File file) {
-		return ScenarioDocuXMLFileUtil.unmarshal(ObjectDescription.class, file);
+		return unmarshal(ObjectDescription.class, file);
 	}
 	
 	public void saveObjectIndex(final String branchName, final String buildName, final ObjectIndex objectIndex) {
 		File objectFile = files.getObjectIndexFile(branchName, buildName, objectIndex.getObject().getType(),
 				resolveObjectFileName(objectIndex.getObject().getName()));
-		objectFile.getParentFile().mkdirs();
-		ScenarioDocuXMLFileUtil.marshal(objectIndex, objectFile);
+		storage.createDirectories(objectFile.getParentFile());
+		marshal(objectIndex, objectFile);
 	}
 	
 	/**
@@ -202,20 +229,20 @@ public class ScenarioDocuAggregationDAO {
 			final String objectType, final String objectName) {
 		String objectFileName = resolveObjectFileName(objectName);
 		File objectFile = files.getObjectIndexFile(branchName, buildName, objectType, objectFileName);
-		return ScenarioDocuXMLFileUtil.unmarshal(ObjectIndex.class, objectFile);
+		return unmarshal(ObjectIndex.class, objectFile);
 	}
 	
 	@SuppressWarnings("unchecked")
 	public ObjectList<ObjectDescription> loadObjectsList(final String branchName, final String buildName,
 			final String type) {
 		File objectListFile = files.getObjectListFile(branchName, buildName, type);
-		return ScenarioDocuXMLFileUtil.unmarshal(ObjectList.class, objectListFile);
+		return unmarshal(ObjectList.class, objectListFile);
 	}
 	
 	public void saveObjectsList(final String branchName, final String buildName, final String type,
 			final ObjectList<ObjectDescription> objectList) {
 		File objectListFile = files.getObjectListFile(branchName, buildName, type);
-		ScenarioDocuXMLFileUtil.marshal(objectList, objectListFile);
+		marshal(objectList, objectListFile);
 	}
 	
 	public ScenarioDocuAggregationFiles getFiles() {
@@ -234,7 +261,7 @@ public class ScenarioDocuAggregationDAO {
 			final String objectType, final String objectName) {
 		String objectFileName = resolveObjectFileName(objectName);
 		File objectFile = files.getObjectIndexFile(branchName, buildName, objectType, objectFileName);
-		if (objectFile.exists()) {
+		if (storage.exists(objectFile)) {
 			return loadObjectIndex(branchName, buildName, objectType, objectName);
 		}
 		else {
@@ -244,13 +271,12 @@ public class ScenarioDocuAggregationDAO {
 	
 	public List<BuildImportSummary> loadBuildImportSummaries() {
 		File buildImportSummariesFile = files.getBuildStatesFile();
-		if (!buildImportSummariesFile.exists()) {
+		if (!storage.exists(buildImportSummariesFile)) {
 			return new ArrayList<BuildImportSummary>();
 		}
 		else {
 			try {
-				BuildImportSummaries summaries = ScenarioDocuXMLFileUtil.unmarshal(BuildImportSummaries.class,
-						buildImportSummariesFile);
+				BuildImportSummaries summaries = unmarshal(BuildImportSummaries.class, buildImportSummariesFile);
 				return summaries.getBuildSummaries();
 			} catch (Exception e) {
 				LOGGER.error(
@@ -263,18 +289,18 @@ public class ScenarioDocuAggregationDAO {
 	
 	public void saveBuildImportSummaries(final List<BuildImportSummary> summariesToSave) {
 		BuildImportSummaries summaries = new BuildImportSummaries(summariesToSave);
-		ScenarioDocuXMLFileUtil.marshal(summaries, files.getBuildStatesFile());
+		marshal(summaries, files.getBuildStatesFile());
 	}
 	
 	public void saveLongObjectNamesIndex(final String branchName, final String buildName,
 			final LongObjectNamesResolver longObjectNamesResolver) {
 		File longObjectNamesFile = files.getLongObjectNamesIndexFile(branchName, buildName);
-		ScenarioDocuXMLFileUtil.marshal(longObjectNamesResolver, longObjectNamesFile);
+		marshal(longObjectNamesResolver, longObjectNamesFile);
 	}
 	
 	public LongObjectNamesResolver loadLongObjectNamesIndex(final String branchName, final String buildName) {
 		File longObjectNamesFile = files.getLongObjectNamesIndexFile(branchName, buildName);
-		return ScenarioDocuXMLFileUtil.unmarshal(LongObjectNamesResolver.class, longObjectNamesFile);
+		return unmarshal(LongObjectNamesResolver.class, longObjectNamesFile);
 	}
 	
 	public File getBuildImportLogFile(final String branchName, final String buildName) {
@@ -286,11 +312,46 @@ public class ScenarioDocuAggregationDAO {
 	 */
 	public void deleteDerivedFiles(final String branchName, final String buildName) {
 		File versionFile = files.getVersionFile(branchName, buildName);
-		versionFile.delete();
+		storage.delete(versionFile);
+		// the import log is always written into the file system by the log appender
 		File logFile = getBuildImportLogFile(branchName, buildName);
 		logFile.delete();
 		File longObjectNamesFile = files.getLongObjectNamesIndexFile(branchName, buildName);
-		longObjectNamesFile.delete();
+		storage.delete(longObjectNamesFile);
+	}
+	
+	/**
+	 * All derived files are written atomically, such that an interrupted import never leaves truncated files behind.
+	 */
+	private <T> void marshal(final T object, final File file) {
+		ScenarioDocuXMLFileUtil.marshal(storage, object, file, getDerivedFileCodec(), false, isSyncedFileWrites());
+	}
+	
+	/**
+	 * Derived files in binary format are only read while the binary format is enabled, after disabling it the builds
+	 * are imported again, because the version of the derived files contains their format.
+	 */
+	private <T> T unmarshal(final Class<T> targetClass, final File file) {
+		return ScenarioDocuXMLFileUtil.unmarshal(storage, targetClass, file,
+				ConfigurationDAO.isBinaryDerivedFileFormatEnabled());
+	}
+	
+	private EntityCodec getDerivedFileCodec() {
+		return EntityCodecs.getCodec(ConfigurationDAO.isBinaryDerivedFileFormatEnabled(), true);
+	}
+	
+	private boolean isSyncedFileWrites() {
+		return ConfigurationDAO.getConfiguration().isSyncedDerivedFileWritesEnabled();
+	}
+	
+	private static void closeQuietly(final OutputStream out) {
+		try {
+			if (out != null) {
+				out.close();
+			}
+		} catch (IOException e) {
+			LOGGER.warn("could not close file output stream", e);
+		}
 	}
 	
 }
@@ -21,6 +21,7 @@ import java.io.File;
 import java.util.List;
 
 import org.scenarioo.api.files.ScenarioDocuFiles;
+import org.scenarioo.api.files.storage.DocuStorage;
 import org.scenarioo.api.util.files.FilesUtil;
 
 /**
@@ -43,6 +44,14 @@ public class ScenarioDocuAggregationFiles {
 		docuFiles = new ScenarioDocuFiles(rootDirectory);
 	}
 	
+	public ScenarioDocuAggregationFiles(final File rootDirectory, final DocuStorage storage) {
+		docuFiles = new ScenarioDocuFiles(rootDirectory, storage);
+	}
+	
+	public DocuStorage getStorage() {
+		return docuFiles.getStorage();
+	}
+	
 	public File getBuildStatesFile() {
 		return new File(docuFiles.getRootDirectory(), "builds.states.derived.xml");
 	}
@@ -107,7 +116,8 @@ public class ScenarioDocuAggregationFiles {
 	}
 	
 	public List<File> getObjectFiles(final String branchName, final String buildName, final String typeName) {
-		return FilesUtil.getListOfFiles(getObjectsDirectoryForObjectType(branchName, buildName, typeName));
+		return FilesUtil.getListOfFiles(docuFiles.getStorage(),
+				getObjectsDirectoryForObjectType(branchName, buildName, typeName));
 	}
 	
 	/**
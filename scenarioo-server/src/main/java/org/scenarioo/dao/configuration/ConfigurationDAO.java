@@ -23,6 +23,7 @@ import java.net.URL;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
+import org.scenarioo.api.ScenarioDocuReader;
 import org.scenarioo.api.util.xml.ScenarioDocuXMLFileUtil;
 import org.scenarioo.model.configuration.Configuration;
 
@@ -39,14 +40,110 @@ public class ConfigurationDAO {
 	private static final String CONFIG_FILE_NAME = "config.xml";
 	private static final String DEFAULT_CONFIG_PATH = CONFIG_FILE_NAME;
 	
+	public static final int DEFAULT_BUILD_PUSH_MAX_BATCH_SIZE_IN_MEGABYTES = 64;
+	public static final int DEFAULT_BUILD_PUSH_MAX_UNCOMPRESSED_BATCH_SIZE_IN_MEGABYTES = 1024;
+	
 	private static Configuration configuration = null;
 	
 	private static String configurationDirectory = null;
 	
+	private static String buildPushToken = null;
+	
+	private static boolean buildPushEnabled = false;
+	
+	private static int buildPushMaxBatchSizeInMegabytes = DEFAULT_BUILD_PUSH_MAX_BATCH_SIZE_IN_MEGABYTES;
+	
+	private static int buildPushMaxUncompressedBatchSizeInMegabytes =
+			DEFAULT_BUILD_PUSH_MAX_UNCOMPRESSED_BATCH_SIZE_IN_MEGABYTES;
+	
+	private static boolean binaryDocuFileFormatEnabled = false;
+	
+	private static boolean binaryDerivedFileFormatEnabled = false;
+	
 	public static void setConfigurationDirectory(final String configurationDirectory) {
 		ConfigurationDAO.configurationDirectory = configurationDirectory;
 	}
 	
+	/**
+	 * Secret that writers have to send with each pushed batch of files, pushing is rejected as long as no secret is
+	 * set.
+	 * 
+	 * The settings for pushing builds are not part of the {@link Configuration}, because the configuration can be read
+	 * and changed by all clients. They are set on deployment (init parameters of the web application).
+	 */
+	public static void setBuildPushToken(final String buildPushToken) {
+		ConfigurationDAO.buildPushToken = buildPushToken;
+	}
+	
+	public static String getBuildPushToken() {
+		return buildPushToken;
+	}
+	
+	/**
+	 * Accept builds pushed over HTTP by writers (see {@link org.scenarioo.rest.BuildPushResource}), which stores the
+	 * pushed files in the documentation directory. Disabled by default, only takes effect if a push token is set.
+	 */
+	public static void setBuildPushEnabled(final boolean buildPushEnabled) {
+		ConfigurationDAO.buildPushEnabled = buildPushEnabled;
+	}
+	
+	public static boolean isBuildPushEnabled() {
+		return buildPushEnabled && !StringUtils.isBlank(buildPushToken);
+	}
+	
+	/**
+	 * Maximal size of one pushed batch of files as sent over HTTP.
+	 */
+	public static void setBuildPushMaxBatchSizeInMegabytes(final int buildPushMaxBatchSizeInMegabytes) {
+		ConfigurationDAO.buildPushMaxBatchSizeInMegabytes = buildPushMaxBatchSizeInMegabytes;
+	}
+	
+	public static int getBuildPushMaxBatchSizeInMegabytes() {
+		return buildPushMaxBatchSizeInMegabytes;
+	}
+	
+	/**
+	 * Maximal size of all files of one pushed batch after decompression, protects against batches that decompress to
+	 * huge files.
+	 */
+	public static void setBuildPushMaxUncompressedBatchSizeInMegabytes(
+			final int buildPushMaxUncompressedBatchSizeInMegabytes) {
+		ConfigurationDAO.buildPushMaxUncompressedBatchSizeInMegabytes = buildPushMaxUncompressedBatchSizeInMegabytes;
+	}
+	
+	public static int getBuildPushMaxUncompressedBatchSizeInMegabytes() {
+		return buildPushMaxUncompressedBatchSizeInMegabytes;
+	}
+	
+	/**
+	 * Read documentation files written in binary format (see
+	 * {@link org.scenarioo.api.configuration.ScenarioDocuGeneratorConfiguration#setBinaryFileFormatEnabled(boolean)}),
+	 * binary files are rejected otherwise. Only enable this if all writers of the documentation are trusted, because
+	 * reading the binary format deserializes Java objects.
+	 * 
+	 * The file formats are not part of the {@link Configuration}, because the configuration can be changed by all
+	 * clients. They are set on deployment (init parameters of the web application).
+	 */
+	public static void setBinaryDocuFileFormatEnabled(final boolean binaryDocuFileFormatEnabled) {
+		ConfigurationDAO.binaryDocuFileFormatEnabled = binaryDocuFileFormatEnabled;
+	}
+	
+	public static boolean isBinaryDocuFileFormatEnabled() {
+		return binaryDocuFileFormatEnabled;
+	}
+	
+	/**
+	 * Write and read derived files in the binary format instead of XML, which is much faster to read when serving
+	 * requests. All builds are imported again when this is changed.
+	 */
+	public static void setBinaryDerivedFileFormatEnabled(final boolean binaryDerivedFileFormatEnabled) {
+		ConfigurationDAO.binaryDerivedFileFormatEnabled = binaryDerivedFileFormatEnabled;
+	}
+	
+	public static boolean isBinaryDerivedFileFormatEnabled() {
+		return binaryDerivedFileFormatEnabled;
+	}
+	
 	/**
 	 * Only for testing
 	 */
@@ -122,6 +219,15 @@ public class ConfigurationDAO {
 		return defaultConfigFile;
 	}
 	
+	/**
+	 * Reader for the documentation in the docu data directory, configured to read the configured file formats.
+	 */
+	public static ScenarioDocuReader createDocuReader() {
+		ScenarioDocuReader reader = new ScenarioDocuReader(getDocuDataDirectoryPath());
+		reader.setBinaryFileFormatEnabled(binaryDocuFileFormatEnabled);
+		return reader;
+	}
+	
 	public static File getDocuDataDirectoryPath() {
 		if (StringUtils.isBlank(configuration.getTestDocumentationDirPath())) {
 			URL exampleDocuDataPath = Configuration.class.getClassLoader().getResource(EXAMPLE_DOCUMENTATION_DIRECTORY);
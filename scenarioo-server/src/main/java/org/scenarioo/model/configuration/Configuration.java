@@ -56,4 +56,33 @@ public class Configuration {
 	
 	private Map<String, String> buildstates = new HashMap<String, String>();
 	
+	/**
+	 * Force each derived file to the storage device before it replaces the previous file, protects the imported data
+	 * also against operating system crashes, but makes importing builds slower.
+	 */
+	private boolean syncedDerivedFileWritesEnabled = false;
+	
+	/**
+	 * Builds that are still being written are not imported, but a build that is marked as being written for more than
+	 * this number of hours is imported anyway, because its writer probably crashed. 0 to never import such builds
+	 * automatically, they can still be imported by a reimport.
+	 * 
+	 * Writing of a build is only tracked inside one JVM: a build written by several JVMs at the same time is already
+	 * marked as complete as soon as the first JVM has finished writing.
+	 */
+	private int incompleteBuildImportTimeoutInHours = 24;
+	
+	/**
+	 * Number of threads to aggregate the use cases of a build on import. By default the use cases are aggregated one
+	 * after the other, more threads aggregate them in parallel with the same result, 0 to use one thread for each
+	 * available processor.
+	 */
+	private int aggregationThreads = 1;
+	
+	/**
+	 * Maximal size of the steps cached in memory for requests of single steps (with their HTML), 0 to not cache any
+	 * steps. Takes effect on restart.
+	 */
+	private int stepCacheSizeInMegabytes = 64;
+	
 }
@@ -1,11 +1,15 @@
 package org.scenarioo.model.docu.aggregates.branches;
 
+import java.io.Serializable;
+
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
 @Data
 @EqualsAndHashCode
-public class BuildIdentifier {
+public class BuildIdentifier implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
 	
 	private String branchName;
 	
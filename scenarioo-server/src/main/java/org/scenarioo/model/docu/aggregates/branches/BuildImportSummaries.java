@@ -17,6 +17,7 @@
 
 package org.scenarioo.model.docu.aggregates.branches;
 
+import java.io.Serializable;
 import java.util.List;
 
 import javax.xml.bind.annotation.XmlAccessType;
@@ -30,7 +31,9 @@ import lombok.Data;
 @XmlRootElement
 @XmlAccessorType(XmlAccessType.FIELD)
 @Data
-public class BuildImportSummaries {
+public class BuildImportSummaries implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
 	
 	@XmlElementWrapper(name = "buildSummaries")
 	@XmlElement(name = "buildSummary")
@@ -1,5 +1,6 @@
 package org.scenarioo.model.docu.aggregates.branches;
 
+import java.io.Serializable;
 import java.util.Date;
 
 import javax.xml.bind.annotation.XmlAccessType;
@@ -15,7 +16,9 @@ import org.scenarioo.model.docu.entities.Build;
 @XmlAccessorType(XmlAccessType.FIELD)
 @Data
 @EqualsAndHashCode(of = { "identifier" })
-public class BuildImportSummary {
+public class BuildImportSummary implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
 	
 	private BuildIdentifier identifier;
 	
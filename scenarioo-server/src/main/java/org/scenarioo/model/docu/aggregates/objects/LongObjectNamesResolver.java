@@ -17,6 +17,7 @@
 
 package org.scenarioo.model.docu.aggregates.objects;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -33,7 +34,9 @@ import lombok.Data;
 @XmlRootElement
 @XmlAccessorType(XmlAccessType.FIELD)
 @Data()
-public class LongObjectNamesResolver {
+public class LongObjectNamesResolver implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
 	
 	/**
 	 * Key is the first 100 characters of the name.
@@ -17,6 +17,8 @@
 
 package org.scenarioo.model.docu.aggregates.objects;
 
+import java.io.Serializable;
+
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlRootElement;
@@ -30,7 +32,9 @@ import lombok.Data;
 @XmlRootElement
 @XmlAccessorType(XmlAccessType.FIELD)
 @Data()
-public class ObjectIndex {
+public class ObjectIndex implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
 	
 	private ObjectDescription object;
 	
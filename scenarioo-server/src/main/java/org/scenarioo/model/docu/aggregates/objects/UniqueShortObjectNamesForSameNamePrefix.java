@@ -17,6 +17,7 @@
 
 package org.scenarioo.model.docu.aggregates.objects;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -25,7 +26,9 @@ import java.util.Map;
  * names starting with the same name prefix (the head of the name consisting of the first 100 characters). This object
  * stores only the rest of the names (the tail) as a key.
  */
-class UniqueShortObjectNamesForSameNamePrefix {
+class UniqueShortObjectNamesForSameNamePrefix implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
 	
 	/**
 	 * Key is the rest of the name (after first 100 characters). The value in the second map is the unique short name to
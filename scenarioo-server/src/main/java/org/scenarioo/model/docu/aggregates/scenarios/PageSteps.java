@@ -17,6 +17,7 @@
 
 package org.scenarioo.model.docu.aggregates.scenarios;
 
+import java.io.Serializable;
 import java.util.List;
 
 import javax.xml.bind.annotation.XmlAccessType;
@@ -33,7 +34,9 @@ import lombok.Data;
 @XmlRootElement
 @XmlAccessorType(XmlAccessType.FIELD)
 @Data
-public class PageSteps {
+public class PageSteps implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
 	
 	private Page page;
 	
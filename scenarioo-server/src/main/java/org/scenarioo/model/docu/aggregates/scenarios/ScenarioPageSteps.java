@@ -17,6 +17,7 @@
 
 package org.scenarioo.model.docu.aggregates.scenarios;
 
+import java.io.Serializable;
 import java.util.List;
 
 import javax.xml.bind.annotation.XmlAccessType;
@@ -36,7 +37,9 @@ import lombok.Data;
 @XmlRootElement
 @XmlAccessorType(XmlAccessType.FIELD)
 @Data
-public class ScenarioPageSteps {
+public class ScenarioPageSteps implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
 	
 	private Scenario scenario;
 	
@@ -17,6 +17,7 @@
 
 package org.scenarioo.model.docu.aggregates.usecases;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -32,7 +33,9 @@ import lombok.Data;
 @XmlRootElement
 @XmlAccessorType(XmlAccessType.FIELD)
 @Data
-public class PageVariantsCounter {
+public class PageVariantsCounter implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
 	
 	private Map<String, Integer> counters;
 	
@@ -17,6 +17,7 @@
 
 package org.scenarioo.model.docu.aggregates.usecases;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -37,7 +38,9 @@ import lombok.Data;
 @XmlRootElement
 @XmlAccessorType(XmlAccessType.FIELD)
 @Data
-public class UseCaseScenarios {
+public class UseCaseScenarios implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
 	
 	private UseCase useCase;
 	
@@ -17,6 +17,7 @@
 
 package org.scenarioo.model.docu.aggregates.usecases;
 
+import java.io.Serializable;
 import java.util.List;
 
 import javax.xml.bind.annotation.XmlAccessType;
@@ -33,7 +34,9 @@ import lombok.Data;
 @XmlRootElement
 @XmlAccessorType(XmlAccessType.FIELD)
 @Data
-public class UseCaseScenariosList {
+public class UseCaseScenariosList implements Serializable {
+	
+	private static final long serialVersionUID = 1L;
 	
 	private String version;
 	@XmlElementWrapper(name = "list")
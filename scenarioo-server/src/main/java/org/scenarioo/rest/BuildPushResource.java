@@ -0,0 +1,114 @@
+/* scenarioo-server
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.rest;
+
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Response;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
+import org.scenarioo.api.exception.PushedBatchTooLargeException;
+import org.scenarioo.api.files.BuildPushReceiver;
+import org.scenarioo.business.builds.ScenarioDocuBuildsManager;
+import org.scenarioo.dao.configuration.ConfigurationDAO;
+
+/**
+ * Receives the files of builds pushed by writers that are configured to push to this server (instead of writing
+ * into a shared documentation directory), see {@link org.scenarioo.api.files.BuildPushWriter}.
+ * 
+ * Pushing has to be enabled by the init parameter "buildPushEnabled" of the web application and is only accepted with
+ * the push token configured by the init parameter "buildPushToken". The size of each batch is limited by the init
+ * parameters "buildPushMaxBatchSizeInMegabytes" and "buildPushMaxUncompressedBatchSizeInMegabytes". These settings
+ * are not part of the configuration, because the configuration can be changed by all clients.
+ * 
+ * As soon as the last batch of the last writer of a build has been received, the builds are updated and the new build
+ * is imported in the background.
+ */
+@Path("/rest/branches/{branchName}/builds/{buildName}/push")
+public class BuildPushResource {
+	
+	private static final Logger LOGGER = Logger.getLogger(BuildPushResource.class);
+	
+	private static final int STATUS_FORBIDDEN = 403;
+	
+	private static final int STATUS_REQUEST_ENTITY_TOO_LARGE = 413;
+	
+	private static final long BYTES_PER_MEGABYTE = 1024L * 1024;
+	
+	@POST
+	@Consumes(BuildPushReceiver.CONTENT_TYPE)
+	public Response receiveBatch(@PathParam("branchName") final String branchName,
+			@PathParam("buildName") final String buildName,
+			@QueryParam(BuildPushReceiver.PARAM_FIRST_BATCH) final boolean first,
+			@QueryParam(BuildPushReceiver.PARAM_LAST_BATCH) final boolean last,
+			@QueryParam(BuildPushReceiver.PARAM_COMPLETE) final boolean complete,
+			@HeaderParam(BuildPushReceiver.HEADER_PUSH_TOKEN) final String pushToken, final InputStream batch) {
+		LOGGER.info("REQUEST: receiveBatch(" + branchName + ", " + buildName + ", first=" + first + ", last=" + last
+				+ ")");
+		if (!ConfigurationDAO.isBuildPushEnabled()) {
+			LOGGER.warn("Rejected pushed files of build " + branchName + "/" + buildName
+					+ ", pushing builds is not enabled.");
+			return Response.status(STATUS_FORBIDDEN).build();
+		}
+		if (!isValidPushToken(ConfigurationDAO.getBuildPushToken(), pushToken)) {
+			LOGGER.warn("Rejected pushed files of build " + branchName + "/" + buildName + ", wrong push token.");
+			return Response.status(STATUS_FORBIDDEN).build();
+		}
+		BuildPushReceiver receiver = new BuildPushReceiver(ConfigurationDAO.getDocuDataDirectoryPath(),
+				ConfigurationDAO.getBuildPushMaxBatchSizeInMegabytes() * BYTES_PER_MEGABYTE,
+				ConfigurationDAO.getBuildPushMaxUncompressedBatchSizeInMegabytes() * BYTES_PER_MEGABYTE,
+				BuildPushReceiver.DEFAULT_MAX_FILES_PER_BATCH);
+		boolean buildComplete;
+		try {
+			buildComplete = receiver.receiveBatch(branchName, buildName, batch, first, last, complete);
+		} catch (PushedBatchTooLargeException e) {
+			LOGGER.warn("Rejected pushed files of build " + branchName + "/" + buildName + ": " + e.getMessage());
+			return Response.status(STATUS_REQUEST_ENTITY_TOO_LARGE).build();
+		}
+		if (buildComplete) {
+			LOGGER.info("Pushed build is complete, importing build: " + branchName + "/" + buildName);
+			ScenarioDocuBuildsManager.INSTANCE.submitUpdateAllBuildsAndNewBuildsForImport();
+		}
+		return Response.noContent().build();
+	}
+	
+	/**
+	 * Compares the tokens in constant time, to not reveal how many characters of a guessed token are correct. Without
+	 * a configured token no push is accepted.
+	 */
+	private static boolean isValidPushToken(final String configuredToken, final String pushToken) {
+		if (StringUtils.isBlank(configuredToken) || pushToken == null) {
+			return false;
+		}
+		try {
+			return MessageDigest.isEqual(configuredToken.getBytes("UTF-8"), pushToken.getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("Unsupported UTF-8 charset.", e);
+		}
+	}
+	
+}
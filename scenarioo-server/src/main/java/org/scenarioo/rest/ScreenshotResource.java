@@ -17,7 +17,7 @@
 
 package org.scenarioo.rest;
 
-import java.io.File;
+import java.io.InputStream;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
@@ -34,7 +34,7 @@ import org.scenarioo.dao.configuration.ConfigurationDAO;
 @Path("/rest/branches/{branchName}/builds/{buildName}/usecases/{usecaseName}/scenarios/{scenarioName}/image/{imgName}")
 public class ScreenshotResource {
 	
-	private final ScenarioDocuReader filesystem = new ScenarioDocuReader(ConfigurationDAO.getDocuDataDirectoryPath());
+	private final ScenarioDocuReader filesystem = ConfigurationDAO.createDocuReader();
 	
 	@GET
 	@Produces("image/jpeg")
@@ -42,8 +42,8 @@ public class ScreenshotResource {
 			@PathParam("buildName") final String buildName, @PathParam("usecaseName") final String usecaseName,
 			@PathParam("scenarioName") final String scenarioName, @PathParam("imgName") final String imgName) {
 		String resolvedBuildName = ScenarioDocuBuildsManager.INSTANCE.resolveAliasBuildName(branchName, buildName);
-		File img = filesystem.getScreenshotFile(branchName, resolvedBuildName, usecaseName, scenarioName, imgName);
-		if (img == null || !img.exists()) {
+		InputStream img = filesystem.openScreenshot(branchName, resolvedBuildName, usecaseName, scenarioName, imgName);
+		if (img == null) {
 			return Response.status(Status.BAD_REQUEST).build();
 		}
 		ResponseBuilder response = Response.ok(img);
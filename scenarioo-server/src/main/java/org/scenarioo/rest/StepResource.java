@@ -17,12 +17,16 @@
 
 package org.scenarioo.rest;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 
+import org.apache.log4j.Logger;
 import org.scenarioo.api.ScenarioDocuReader;
+import org.scenarioo.api.files.EntityCache;
 import org.scenarioo.business.builds.ScenarioDocuBuildsManager;
 import org.scenarioo.dao.configuration.ConfigurationDAO;
 import org.scenarioo.model.docu.entities.Step;
@@ -30,7 +34,27 @@ import org.scenarioo.model.docu.entities.Step;
 @Path("/rest/branches/{branchName}/builds/{buildName}/usecases/{usecaseName}/scenarios/{scenarioName}/steps/")
 public class StepResource {
 	
-	private final ScenarioDocuReader filesystem = new ScenarioDocuReader(ConfigurationDAO.getDocuDataDirectoryPath());
+	private static final Logger LOGGER = Logger.getLogger(StepResource.class);
+	
+	/**
+	 * The statistics of the step cache are logged after this number of requests.
+	 */
+	private static final long STEP_CACHE_STATISTICS_INTERVAL = 1000;
+	
+	private static final AtomicLong REQUESTS = new AtomicLong();
+	
+	/**
+	 * Cache shared by all requests, users often browse through the same few steps. Null if disabled.
+	 */
+	private static EntityCache stepCache;
+	
+	private static boolean stepCacheInitialized = false;
+	
+	private final ScenarioDocuReader filesystem = ConfigurationDAO.createDocuReader();
+	
+	public StepResource() {
+		filesystem.setEntityCache(getStepCache());
+	}
 	
 	/**
 	 * Get a step with all its data (meta data, html, ...)
@@ -42,7 +66,23 @@ public class StepResource {
 			@PathParam("buildName") final String buildName, @PathParam("usecaseName") final String usecaseName,
 			@PathParam("scenarioName") final String scenarioName, @PathParam("stepIndex") final int stepIndex) {
 		String resolvedBuildName = ScenarioDocuBuildsManager.INSTANCE.resolveAliasBuildName(branchName, buildName);
-		return filesystem.loadStep(branchName, resolvedBuildName, usecaseName, scenarioName, stepIndex);
+		Step step = filesystem.loadStep(branchName, resolvedBuildName, usecaseName, scenarioName, stepIndex);
+		if (stepCache != null && REQUESTS.incrementAndGet() % STEP_CACHE_STATISTICS_INTERVAL == 0) {
+			LOGGER.info("Step cache statistics: " + stepCache);
+		}
+		return step;
+	}
+	
+	/**
+	 * The cache is created on first use with the size configured at this time.
+	 */
+	private static synchronized EntityCache getStepCache() {
+		if (!stepCacheInitialized) {
+			long sizeInBytes = ConfigurationDAO.getConfiguration().getStepCacheSizeInMegabytes() * 1024L * 1024L;
+			stepCache = sizeInBytes > 0 ? new EntityCache(sizeInBytes) : null;
+			stepCacheInitialized = true;
+		}
+		return stepCache;
 	}
 	
 }
\ No newline at end of file
@@ -17,10 +17,13 @@
 
 package org.scenarioo.rest.application;
 
+import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
+import org.scenarioo.api.util.xml.ScenarioDocuXMLUtil;
 import org.scenarioo.business.builds.ScenarioDocuBuildsManager;
 import org.scenarioo.dao.configuration.ConfigurationDAO;
 import org.scenarioo.model.configuration.Configuration;
@@ -42,6 +45,8 @@ public class ScenariooWebApplication implements ServletContextListener {
 		String configurationDirectory = arg0.getServletContext().getInitParameter("configurationDirectory");
 		LOGGER.info("configured configuration directory:  " + configurationDirectory);
 		ConfigurationDAO.setConfigurationDirectory(configurationDirectory);
+		configureBuildPush(arg0.getServletContext());
+		configureFileFormats(arg0.getServletContext());
 		Configuration config = ConfigurationDAO.getConfiguration();
 		LOGGER.info("  Configuration loaded.");
 		LOGGER.info("  Configured documentation content directory: " +
@@ -55,8 +60,52 @@ public class ScenariooWebApplication implements ServletContextListener {
 		LOGGER.info("====================================================");
 	}
 	
+	/**
+	 * Pushing builds is only configured on deployment, it can not be enabled through the configuration that can be
+	 * changed by all clients.
+	 */
+	private void configureBuildPush(final ServletContext servletContext) {
+		boolean buildPushEnabled = Boolean.parseBoolean(servletContext.getInitParameter("buildPushEnabled"));
+		ConfigurationDAO.setBuildPushToken(servletContext.getInitParameter("buildPushToken"));
+		ConfigurationDAO.setBuildPushEnabled(buildPushEnabled);
+		ConfigurationDAO.setBuildPushMaxBatchSizeInMegabytes(getIntInitParameter(servletContext,
+				"buildPushMaxBatchSizeInMegabytes", ConfigurationDAO.DEFAULT_BUILD_PUSH_MAX_BATCH_SIZE_IN_MEGABYTES));
+		ConfigurationDAO.setBuildPushMaxUncompressedBatchSizeInMegabytes(getIntInitParameter(servletContext,
+				"buildPushMaxUncompressedBatchSizeInMegabytes",
+				ConfigurationDAO.DEFAULT_BUILD_PUSH_MAX_UNCOMPRESSED_BATCH_SIZE_IN_MEGABYTES));
+		if (buildPushEnabled && !ConfigurationDAO.isBuildPushEnabled()) {
+			LOGGER.error("  Pushing builds is not enabled, because no build push token is configured.");
+		}
+	}
+	
+	/**
+	 * Reading binary files deserializes Java objects, therefore the binary formats are only configured on deployment.
+	 */
+	private void configureFileFormats(final ServletContext servletContext) {
+		ConfigurationDAO.setBinaryDocuFileFormatEnabled(Boolean.parseBoolean(servletContext
+				.getInitParameter("binaryDocuFileFormatEnabled")));
+		ConfigurationDAO.setBinaryDerivedFileFormatEnabled(Boolean.parseBoolean(servletContext
+				.getInitParameter("binaryDerivedFileFormatEnabled")));
+	}
+	
+	private static int getIntInitParameter(final ServletContext servletContext, final String name,
+			final int defaultValue) {
+		String value = servletContext.getInitParameter(name);
+		if (StringUtils.isBlank(value)) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			LOGGER.error("  Invalid value of init parameter " + name + ": " + value + ", using " + defaultValue);
+			return defaultValue;
+		}
+	}
+	
 	@Override
 	public void contextDestroyed(final ServletContextEvent arg0) {
+		// pooled JAXB objects must not keep classes of the stopped application loaded
+		ScenarioDocuXMLUtil.clearCaches();
 		LOGGER.info("===================================================");
 		LOGGER.info("Scenarioo webapplication stopped.");
 		LOGGER.info("===================================================");
@@ -35,8 +35,8 @@ public class ScenarioDocuJAXBContextResolver implements ContextResolver<JAXBCont
 	@Override
 	public JAXBContext getContext(final Class<?> type) {
 		try {
-			LOGGER.info("Creating JAXB context for type: " + type.getName());
-			return ScenarioDocuXMLUtil.createJAXBContext(type);
+			LOGGER.debug("Resolving JAXB context for type: " + type.getName());
+			return ScenarioDocuXMLUtil.getJAXBContext(type);
 		} catch (JAXBException e) {
 			throw new IllegalStateException("Could not create JAX context for type" + type.getName(), e);
 		}
@@ -0,0 +1,150 @@
+/* scenarioo-server
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.business.aggregator;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scenarioo.api.ScenarioDocuWriter;
+import org.scenarioo.dao.aggregates.ScenarioDocuAggregationFiles;
+import org.scenarioo.dao.configuration.ConfigurationDAO;
+import org.scenarioo.model.configuration.Configuration;
+import org.scenarioo.model.docu.entities.Page;
+import org.scenarioo.model.docu.entities.Scenario;
+import org.scenarioo.model.docu.entities.Step;
+import org.scenarioo.model.docu.entities.StepDescription;
+import org.scenarioo.model.docu.entities.StepMetadata;
+import org.scenarioo.model.docu.entities.UseCase;
+import org.scenarioo.model.docu.entities.generic.ObjectDescription;
+import org.scenarioo.model.docu.entities.generic.ObjectReference;
+
+public class ScenarioDocuAggregatorTest {
+	
+	private static final File TEST_ROOT_DIRECTORY = new File("tmpScenarioDocuAggregatorTestFiles");
+	
+	private static final File SEQUENTIAL_ROOT_DIRECTORY = new File(TEST_ROOT_DIRECTORY, "sequential");
+	
+	private static final File PARALLEL_ROOT_DIRECTORY = new File(TEST_ROOT_DIRECTORY, "parallel");
+	
+	private static final String BRANCH_NAME = "trunk";
+	
+	private static final String BUILD_NAME = "build1";
+	
+	private static final String VERSION_FILE_NAME = "version.derived.properties";
+	
+	@Before
+	public void setUp() throws IOException {
+		SEQUENTIAL_ROOT_DIRECTORY.mkdirs();
+		writeSampleBuild(SEQUENTIAL_ROOT_DIRECTORY);
+		FileUtils.copyDirectory(SEQUENTIAL_ROOT_DIRECTORY, PARALLEL_ROOT_DIRECTORY);
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		ConfigurationDAO.injectConfiguration(new Configuration());
+		FileUtils.deleteDirectory(TEST_ROOT_DIRECTORY);
+	}
+	
+	@Test
+	public void parallel_aggregation_creates_same_derived_files_as_sequential_aggregation() throws IOException {
+		// Given: the same build in two directories
+		
+		// When: aggregating the build sequentially and in parallel
+		aggregate(SEQUENTIAL_ROOT_DIRECTORY, 1);
+		aggregate(PARALLEL_ROOT_DIRECTORY, 4);
+		
+		// Then: the object repository, page variants and step links are the same in the same order
+		ScenarioDocuAggregationFiles files = new ScenarioDocuAggregationFiles(SEQUENTIAL_ROOT_DIRECTORY);
+		assertTrue("expected objects", files.getObjectsDirectory(BRANCH_NAME, BUILD_NAME).isDirectory());
+		assertTrue("expected page variants", files.getPageVariantsFile(BRANCH_NAME, BUILD_NAME).isFile());
+		List<String> sequentialFiles = getRelativeFilePaths(SEQUENTIAL_ROOT_DIRECTORY);
+		assertEquals(sequentialFiles, getRelativeFilePaths(PARALLEL_ROOT_DIRECTORY));
+		for (String path : sequentialFiles) {
+			if (!path.endsWith(VERSION_FILE_NAME)) {
+				assertTrue("expected same content of " + path, FileUtils.contentEquals(
+						new File(SEQUENTIAL_ROOT_DIRECTORY, path), new File(PARALLEL_ROOT_DIRECTORY, path)));
+			}
+		}
+	}
+	
+	private void aggregate(final File rootDirectory, final int aggregationThreads) {
+		Configuration configuration = new Configuration();
+		configuration.setTestDocumentationDirPath(rootDirectory.getAbsolutePath());
+		configuration.setAggregationThreads(aggregationThreads);
+		ConfigurationDAO.injectConfiguration(configuration);
+		new ScenarioDocuAggregator().calculateAggregatedDataForBuild(BRANCH_NAME, BUILD_NAME);
+	}
+	
+	/**
+	 * Writes use cases sharing pages and objects, such that page variants are linked and objects are referenced across
+	 * use cases.
+	 */
+	private void writeSampleBuild(final File rootDirectory) {
+		ScenarioDocuWriter writer = new ScenarioDocuWriter(rootDirectory, BRANCH_NAME, BUILD_NAME);
+		ObjectDescription sharedService = new ObjectDescription("service", "userService");
+		for (int useCaseIndex = 0; useCaseIndex < 6; useCaseIndex++) {
+			UseCase useCase = new UseCase("useCase" + useCaseIndex, "use case " + useCaseIndex);
+			useCase.setStatus("success");
+			useCase.getDetails().addDetail("feature", new ObjectReference("feature", "feature" + useCaseIndex % 2));
+			writer.saveUseCase(useCase);
+			for (int scenarioIndex = 0; scenarioIndex < 3; scenarioIndex++) {
+				Scenario scenario = new Scenario("scenario" + scenarioIndex, "scenario " + scenarioIndex, 2, 4);
+				scenario.setStatus(useCaseIndex == 3 && scenarioIndex == 1 ? "failed" : "success");
+				writer.saveScenario(useCase, scenario);
+				for (int stepIndex = 0; stepIndex < 4; stepIndex++) {
+					Step step = new Step();
+					StepDescription stepDescription = new StepDescription();
+					stepDescription.setIndex(stepIndex);
+					stepDescription.setTitle("step " + stepIndex);
+					stepDescription.setStatus("success");
+					step.setStepDescription(stepDescription);
+					step.setPage(new Page("page" + (useCaseIndex + stepIndex) % 3));
+					StepMetadata metadata = new StepMetadata();
+					metadata.getDetails().addDetail("calledService", sharedService);
+					metadata.getDetails().addDetail("ownService",
+							new ObjectDescription("service", "service" + useCaseIndex + "." + stepIndex));
+					step.setMetadata(metadata);
+					writer.saveStep(useCase, scenario, step);
+				}
+			}
+		}
+		writer.flush();
+	}
+	
+	private List<String> getRelativeFilePaths(final File rootDirectory) {
+		Collection<File> files = FileUtils.listFiles(rootDirectory, null, true);
+		List<String> paths = new ArrayList<String>();
+		int prefixLength = rootDirectory.getAbsolutePath().length() + 1;
+		for (File file : files) {
+			paths.add(file.getAbsolutePath().substring(prefixLength));
+		}
+		Collections.sort(paths);
+		return paths;
+	}
+	
+}
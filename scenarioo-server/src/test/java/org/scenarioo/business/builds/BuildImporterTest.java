@@ -0,0 +1,161 @@
+/* scenarioo-server
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.business.builds;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scenarioo.dao.aggregates.ScenarioDocuAggregationDAO;
+import org.scenarioo.dao.configuration.ConfigurationDAO;
+import org.scenarioo.model.configuration.Configuration;
+import org.scenarioo.model.docu.aggregates.branches.BranchBuilds;
+import org.scenarioo.model.docu.aggregates.branches.BuildIdentifier;
+import org.scenarioo.model.docu.aggregates.branches.BuildImportStatus;
+import org.scenarioo.model.docu.aggregates.branches.BuildImportSummary;
+import org.scenarioo.model.docu.derived.BuildLink;
+import org.scenarioo.model.docu.entities.Branch;
+import org.scenarioo.model.docu.entities.Build;
+
+public class BuildImporterTest {
+	
+	private static final File TEST_ROOT_DIRECTORY = new File("tmpBuildImporterTestFiles");
+	
+	private static final String BRANCH_NAME = "trunk";
+	
+	private static final String BUILD_NAME = "build1";
+	
+	private static final BuildIdentifier BUILD_IDENTIFIER = new BuildIdentifier(BRANCH_NAME, BUILD_NAME);
+	
+	private Configuration configuration;
+	
+	private BuildImporter buildImporter;
+	
+	private File writingMarker;
+	
+	@Before
+	public void setUp() {
+		configuration = new Configuration();
+		configuration.setTestDocumentationDirPath(TEST_ROOT_DIRECTORY.getAbsolutePath());
+		ConfigurationDAO.injectConfiguration(configuration);
+		File buildDirectory = new File(new File(TEST_ROOT_DIRECTORY, BRANCH_NAME), BUILD_NAME);
+		buildDirectory.mkdirs();
+		writingMarker = new File(buildDirectory, "build.writing");
+		buildImporter = new BuildImporter();
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(TEST_ROOT_DIRECTORY);
+	}
+	
+	@Test
+	public void build_still_being_written_is_deferred() throws IOException {
+		// Given: a build that is still being written
+		writingMarker.createNewFile();
+		
+		// When: submitting unprocessed builds for import
+		BuildImportSummary summary = submitUnprocessedBuildsForImport();
+		
+		// Then: the import is deferred
+		assertEquals(BuildImportStatus.UNPROCESSED, summary.getStatus());
+		assertEquals("Build is still being written, import is deferred.", summary.getStatusMessage());
+	}
+	
+	@Test
+	public void build_marked_as_being_written_for_too_long_is_imported() throws Exception {
+		// Given: a build that is marked as being written since more than the configured timeout
+		configuration.setIncompleteBuildImportTimeoutInHours(24);
+		writingMarker.createNewFile();
+		writingMarker.setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(25));
+		
+		// When: submitting unprocessed builds for import
+		BuildImportSummary summary = submitUnprocessedBuildsForImport();
+		
+		// Then: the build is imported anyway
+		assertFalse("Expected build to be submitted for import",
+				BuildImportStatus.UNPROCESSED.equals(summary.getStatus()));
+		assertEquals(BuildImportStatus.SUCCESS, waitUntilImportFinished(summary));
+	}
+	
+	@Test
+	public void build_marked_as_being_written_is_never_imported_without_timeout() throws IOException {
+		// Given: no timeout for builds being written
+		configuration.setIncompleteBuildImportTimeoutInHours(0);
+		writingMarker.createNewFile();
+		writingMarker.setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1000));
+		
+		// When: submitting unprocessed builds for import
+		BuildImportSummary summary = submitUnprocessedBuildsForImport();
+		
+		// Then: the import is deferred
+		assertEquals(BuildImportStatus.UNPROCESSED, summary.getStatus());
+	}
+	
+	private BuildImportSummary submitUnprocessedBuildsForImport() {
+		Build build = new Build(BUILD_NAME);
+		build.setDate(new Date());
+		build.setStatus("success");
+		BranchBuilds branchBuilds = new BranchBuilds();
+		branchBuilds.setBranch(new Branch(BRANCH_NAME));
+		branchBuilds.setBuilds(new ArrayList<BuildLink>(Arrays.asList(new BuildLink(build, BUILD_NAME))));
+		List<BranchBuilds> branchBuildsList = new ArrayList<BranchBuilds>(Arrays.asList(branchBuilds));
+		buildImporter.updateBuildImportStates(branchBuildsList, new HashMap<BuildIdentifier, BuildImportSummary>());
+		AvailableBuildsList availableBuilds = new AvailableBuildsList();
+		availableBuilds.updateBuildsWithSuccessfullyImportedBuilds(branchBuildsList,
+				buildImporter.getBuildImportSummaries());
+		buildImporter.submitUnprocessedBuildsForImport(availableBuilds);
+		return buildImporter.getBuildImportSummaries().get(BUILD_IDENTIFIER);
+	}
+	
+	/**
+	 * The import runs asynchronously and has to be finished before the test files are deleted, it is finished as soon
+	 * as the final import status has been saved.
+	 */
+	private BuildImportStatus waitUntilImportFinished(final BuildImportSummary summary) throws InterruptedException {
+		ScenarioDocuAggregationDAO dao = new ScenarioDocuAggregationDAO(TEST_ROOT_DIRECTORY.getAbsoluteFile());
+		long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+		while (!isImportFinished(dao.loadBuildImportSummaries())) {
+			assertTrue("Import did not finish in time", System.currentTimeMillis() < timeout);
+			Thread.sleep(10);
+		}
+		return summary.getStatus();
+	}
+	
+	private boolean isImportFinished(final List<BuildImportSummary> savedSummaries) {
+		for (BuildImportSummary savedSummary : savedSummaries) {
+			if (savedSummary.getIdentifier().equals(BUILD_IDENTIFIER)) {
+				return savedSummary.getStatus() == BuildImportStatus.SUCCESS
+						|| savedSummary.getStatus() == BuildImportStatus.FAILED;
+			}
+		}
+		return false;
+	}
+	
+}
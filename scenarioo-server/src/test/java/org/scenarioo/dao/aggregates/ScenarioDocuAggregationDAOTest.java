@@ -0,0 +1,205 @@
+/* scenarioo-server
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.dao.aggregates;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.HashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scenarioo.api.files.storage.FileSystemStorage;
+import org.scenarioo.api.files.storage.StorageOutputStream;
+import org.scenarioo.api.util.files.AtomicFileOutputStream;
+import org.scenarioo.dao.configuration.ConfigurationDAO;
+import org.scenarioo.model.configuration.Configuration;
+import org.scenarioo.model.docu.aggregates.usecases.PageVariantsCounter;
+
+public class ScenarioDocuAggregationDAOTest {
+	
+	private static final File TEST_ROOT_DIRECTORY = new File("tmpScenarioDocuAggregationDAOTestFiles");
+	
+	private static final String BRANCH_NAME = "trunk";
+	
+	private static final String BUILD_NAME = "build1";
+	
+	private Configuration configuration;
+	
+	private FailingStorage storage;
+	
+	private ScenarioDocuAggregationDAO dao;
+	
+	private File buildDirectory;
+	
+	@Before
+	public void setUp() {
+		configuration = new Configuration();
+		configuration.setTestDocumentationDirPath(TEST_ROOT_DIRECTORY.getAbsolutePath());
+		ConfigurationDAO.injectConfiguration(configuration);
+		buildDirectory = new File(new File(TEST_ROOT_DIRECTORY, BRANCH_NAME), BUILD_NAME);
+		buildDirectory.mkdirs();
+		storage = new FailingStorage();
+		dao = new ScenarioDocuAggregationDAO(TEST_ROOT_DIRECTORY, storage, null);
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(TEST_ROOT_DIRECTORY);
+	}
+	
+	@Test
+	public void derived_files_are_written_without_leaving_temporary_files() {
+		// Given:
+		configuration.setSyncedDerivedFileWritesEnabled(false);
+		
+		// When:
+		dao.saveVersion(BRANCH_NAME, BUILD_NAME, "1.0");
+		dao.savePageVariants(BRANCH_NAME, BUILD_NAME, createPageVariantsCounter(3));
+		
+		// Then:
+		assertEquals("1.0", dao.loadVersion(BRANCH_NAME, BUILD_NAME));
+		assertEquals(Integer.valueOf(3), dao.loadPageVariantsCounter(BRANCH_NAME, BUILD_NAME).getCounters()
+				.get("page"));
+		assertNoTemporaryFiles();
+	}
+	
+	@Test
+	public void synced_derived_files_are_written_without_leaving_temporary_files() {
+		// Given:
+		configuration.setSyncedDerivedFileWritesEnabled(true);
+		
+		// When:
+		dao.saveVersion(BRANCH_NAME, BUILD_NAME, "1.0");
+		dao.savePageVariants(BRANCH_NAME, BUILD_NAME, createPageVariantsCounter(3));
+		
+		// Then:
+		assertEquals("1.0", dao.loadVersion(BRANCH_NAME, BUILD_NAME));
+		assertEquals(Integer.valueOf(3), dao.loadPageVariantsCounter(BRANCH_NAME, BUILD_NAME).getCounters()
+				.get("page"));
+		assertNoTemporaryFiles();
+	}
+	
+	@Test
+	public void failed_write_keeps_previous_derived_file() {
+		// Given: a previously written derived file
+		dao.savePageVariants(BRANCH_NAME, BUILD_NAME, createPageVariantsCounter(1));
+		
+		// When: writing the file fails after some bytes have been written
+		storage.failWrites = true;
+		try {
+			dao.savePageVariants(BRANCH_NAME, BUILD_NAME, createPageVariantsCounter(2));
+			fail("write should have failed");
+		} catch (RuntimeException e) {
+			// expected
+		}
+		
+		// Then:
+		assertEquals(Integer.valueOf(1), dao.loadPageVariantsCounter(BRANCH_NAME, BUILD_NAME).getCounters()
+				.get("page"));
+		assertNoTemporaryFiles();
+	}
+	
+	@Test
+	public void failed_write_of_properties_keeps_previous_file() {
+		// Given:
+		dao.saveVersion(BRANCH_NAME, BUILD_NAME, "1.0");
+		
+		// When:
+		storage.failWrites = true;
+		try {
+			dao.saveVersion(BRANCH_NAME, BUILD_NAME, "2.0");
+			fail("write should have failed");
+		} catch (RuntimeException e) {
+			// expected
+		}
+		
+		// Then:
+		assertEquals("1.0", dao.loadVersion(BRANCH_NAME, BUILD_NAME));
+		assertNoTemporaryFiles();
+	}
+	
+	private static PageVariantsCounter createPageVariantsCounter(final int count) {
+		HashMap<String, Integer> counters = new HashMap<String, Integer>();
+		counters.put("page", count);
+		return new PageVariantsCounter(counters);
+	}
+	
+	private void assertNoTemporaryFiles() {
+		for (File file : buildDirectory.listFiles()) {
+			assertFalse("temporary file left: " + file.getName(), AtomicFileOutputStream.isTempFile(file));
+		}
+	}
+	
+	/**
+	 * File system storage that can simulate an interrupted write, by failing after the first bytes.
+	 */
+	private static class FailingStorage extends FileSystemStorage {
+		
+		private boolean failWrites = false;
+		
+		@Override
+		public StorageOutputStream openForWriting(final File file, final boolean synced) throws IOException {
+			final StorageOutputStream out = super.openForWriting(file, synced);
+			if (!failWrites) {
+				return out;
+			}
+			return new StorageOutputStream() {
+				
+				@Override
+				public void write(final int b) throws IOException {
+					out.write(b);
+					throw new IOException("Simulated write failure");
+				}
+				
+				@Override
+				public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+					out.write(bytes, offset, Math.min(length, 10));
+					throw new IOException("Simulated write failure");
+				}
+				
+				@Override
+				public WritableByteChannel getChannel() {
+					return out.getChannel();
+				}
+				
+				@Override
+				public long getBytesWritten() throws IOException {
+					return out.getBytesWritten();
+				}
+				
+				@Override
+				public void commit() throws IOException {
+					out.commit();
+				}
+				
+				@Override
+				public void close() throws IOException {
+					out.close();
+				}
+				
+			};
+		}
+		
+	}
+	
+}
@@ -0,0 +1,151 @@
+/* scenarioo-server
+ * Copyright (C) 2014, scenarioo.org Development Team
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.scenarioo.rest;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.ws.rs.core.Response;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scenarioo.dao.configuration.ConfigurationDAO;
+import org.scenarioo.model.configuration.Configuration;
+
+public class BuildPushResourceTest {
+	
+	private static final File TEST_ROOT_DIRECTORY = new File("tmpBuildPushResourceTestFiles");
+	
+	private static final String BRANCH_NAME = "trunk";
+	
+	private static final String BUILD_NAME = "build1";
+	
+	private final BuildPushResource resource = new BuildPushResource();
+	
+	private File pushedFile;
+	
+	@Before
+	public void setUp() {
+		TEST_ROOT_DIRECTORY.mkdirs();
+		Configuration configuration = new Configuration();
+		configuration.setTestDocumentationDirPath(TEST_ROOT_DIRECTORY.getAbsolutePath());
+		ConfigurationDAO.injectConfiguration(configuration);
+		pushedFile = new File(new File(new File(TEST_ROOT_DIRECTORY, BRANCH_NAME), BUILD_NAME), "file.txt");
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		ConfigurationDAO.setBuildPushToken(null);
+		ConfigurationDAO.setBuildPushEnabled(false);
+		ConfigurationDAO.setBuildPushMaxUncompressedBatchSizeInMegabytes(
+				ConfigurationDAO.DEFAULT_BUILD_PUSH_MAX_UNCOMPRESSED_BATCH_SIZE_IN_MEGABYTES);
+		FileUtils.deleteDirectory(TEST_ROOT_DIRECTORY);
+	}
+	
+	@Test
+	public void pushing_is_disabled_by_default() throws IOException {
+		// When:
+		Response response = push(null, createBatch(10));
+		
+		// Then:
+		assertEquals(403, response.getStatus());
+		assertFalse(pushedFile.exists());
+	}
+	
+	@Test
+	public void push_is_rejected_when_enabled_without_configured_token() throws IOException {
+		// Given:
+		ConfigurationDAO.setBuildPushEnabled(true);
+		
+		// When:
+		Response response = push(null, createBatch(10));
+		
+		// Then:
+		assertFalse(ConfigurationDAO.isBuildPushEnabled());
+		assertEquals(403, response.getStatus());
+		assertFalse(pushedFile.exists());
+	}
+	
+	@Test
+	public void push_without_configured_token_is_rejected() throws IOException {
+		// Given:
+		ConfigurationDAO.setBuildPushEnabled(true);
+		ConfigurationDAO.setBuildPushToken("secret");
+		
+		// When:
+		Response responseWithoutToken = push(null, createBatch(10));
+		Response responseWithWrongToken = push("wrong", createBatch(10));
+		
+		// Then:
+		assertEquals(403, responseWithoutToken.getStatus());
+		assertEquals(403, responseWithWrongToken.getStatus());
+		assertFalse(pushedFile.exists());
+	}
+	
+	@Test
+	public void push_with_configured_token_is_stored() throws IOException {
+		// Given:
+		ConfigurationDAO.setBuildPushEnabled(true);
+		ConfigurationDAO.setBuildPushToken("secret");
+		
+		// When:
+		Response response = push("secret", createBatch(10));
+		
+		// Then:
+		assertEquals(204, response.getStatus());
+		assertEquals(10, pushedFile.length());
+	}
+	
+	@Test
+	public void push_exceeding_configured_uncompressed_size_is_rejected() throws IOException {
+		// Given:
+		ConfigurationDAO.setBuildPushEnabled(true);
+		ConfigurationDAO.setBuildPushToken("secret");
+		ConfigurationDAO.setBuildPushMaxUncompressedBatchSizeInMegabytes(1);
+		
+		// When:
+		Response response = push("secret", createBatch(2 * 1024 * 1024));
+		
+		// Then:
+		assertEquals(413, response.getStatus());
+		assertFalse(pushedFile.exists());
+	}
+	
+	private Response push(final String pushToken, final InputStream batch) {
+		return resource.receiveBatch(BRANCH_NAME, BUILD_NAME, true, true, false, pushToken, batch);
+	}
+	
+	private static InputStream createBatch(final int fileSizeInBytes) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ZipOutputStream zipOut = new ZipOutputStream(bytes);
+		zipOut.putNextEntry(new ZipEntry(BUILD_NAME + "/file.txt"));
+		zipOut.write(new byte[fileSizeInBytes]);
+		zipOut.close();
+		return new ByteArrayInputStream(bytes.toByteArray());
+	}
+	
+}